@@ -144,8 +144,30 @@ public class Box extends Shape3D {
 
     }
 
+    @Override
+    public List<Point2D> getContactPointsWithBottomShape(Shape3D otherShape, Point3D ownOffset, Point3D otherOffset) {
+        if (otherShape instanceof Box) {
+            Box otherBox = (Box) otherShape;
+            if (ownOffset.y != otherOffset.y + otherBox.height)
+                return new ArrayList<>();
+
+            List<Point2D> contactPoints = BoxContactKernel.contactPoints(this, ownOffset, otherBox, otherOffset);
+            if (contactPoints != null)
+                return contactPoints;
+        }
+
+        return super.getContactPointsWithBottomShape(otherShape, ownOffset, otherOffset);
+    }
+
     @Override
     public double getBaseSupportFactor(Shape3D shape, double offsetX, double offsetY, double offsetZ) {
+        if (shape instanceof Box) {
+            Box box = (Box) shape;
+            return (-offsetY != box.height)
+                    ? 0
+                    : BoxContactKernel.contactArea(this, box, offsetX, offsetZ) / getBaseShape().getArea();
+        }
+
         return shape.getTopCoverageArea(getBaseShape(), -offsetX, -offsetY, -offsetZ) / getBaseShape().getArea();
     }
 
@@ -0,0 +1,78 @@
+package com.wim.palletizing.geometry.dim3;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contact computations between two axis-aligned {@link Box}es.
+ * <p>
+ * The base of a box is a rectangle parallel to the x- and z-axis, so the contact area of two boxes is the
+ * intersection of two such rectangles and can be calculated from the min and max coordinates alone, without building
+ * JTS geometries. All results equal those of the general {@link Shape3D} implementation.
+ */
+final class BoxContactKernel {
+
+    private BoxContactKernel() {
+    }
+
+    /**
+     * @return length of the intersection of the intervals [min1, max1] and [min2, max2], 0 if they do not overlap
+     */
+    static double overlap(double min1, double max1, double min2, double max2) {
+        double overlap = Math.min(max1, max2) - Math.max(min1, min2);
+        return overlap > 0 ? overlap : 0;
+    }
+
+    /**
+     * @param top     the upper box
+     * @param bottom  the lower box
+     * @param offsetX how much bottom is shifted in x direction in relation to the position of top
+     * @param offsetZ how much bottom is shifted in z direction in relation to the position of top
+     * @return area of the base of top which lies on the top surface of bottom, ignoring the y-coordinates
+     */
+    static double contactArea(Box top, Box bottom, double offsetX, double offsetZ) {
+        double overlapX = overlap(0, top.width, offsetX, offsetX + bottom.width);
+        if (overlapX == 0)
+            return 0;
+        return overlapX * overlap(0, top.depth, offsetZ, offsetZ + bottom.depth);
+    }
+
+    /**
+     * Calculates the corners of the contact area of two boxes in the order the convex hull of JTS returns them,
+     * starting at the min x and min z corner, rounded to two decimal places.
+     *
+     * @param top          the upper box
+     * @param topOffset    position of the upper box
+     * @param bottom       the lower box
+     * @param bottomOffset position of the lower box
+     * @return the four corners of the contact area or null, if the contact area is degenerated to a line or a point
+     * and has to be calculated by the general implementation
+     */
+    static List<Point2D> contactPoints(Box top, Point3D topOffset, Box bottom, Point3D bottomOffset) {
+        double minX = Math.max(topOffset.x, bottomOffset.x);
+        double maxX = Math.min(topOffset.x + top.width, bottomOffset.x + bottom.width);
+        double minZ = Math.max(topOffset.z, bottomOffset.z);
+        double maxZ = Math.min(topOffset.z + top.depth, bottomOffset.z + bottom.depth);
+
+        if (maxX <= minX || maxZ <= minZ)
+            return null;
+
+        minX = round(minX);
+        maxX = round(maxX);
+        minZ = round(minZ);
+        maxZ = round(maxZ);
+
+        List<Point2D> points = new ArrayList<>(4);
+        points.add(new Point2D(minX, minZ));
+        points.add(new Point2D(minX, maxZ));
+        points.add(new Point2D(maxX, maxZ));
+        points.add(new Point2D(maxX, minZ));
+        return points;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -3,6 +3,7 @@ package com.wim.palletizing.model.item;
 import com.wim.palletizing.geometry.Dimensions;
 import com.wim.palletizing.geometry.dim3.*;
 import com.wim.palletizing.model.incompatibility.CommodityTypeSet;
+import com.wim.palletizing.model.support.LateralContactIndex;
 import com.wim.palletizing.model.uld_properties.ULDProperties;
 import com.wim.palletizing.packing_sequence.model.PackingSide;
 import com.wim.palletizing.packing_sequence.packing_devices.AbstractPackingDevice;
@@ -26,6 +27,11 @@ public class PlacedItem extends Item implements Comparable<PlacedItem>, Cloneabl
     private final ItemCoordinates ITEM_COORDINATES;
     private EnvironmentRelations environmentRelations;
 
+    /**
+     * Cache for {@link #getFloor()}
+     */
+    private Box floor;
+
     //Assessment Only
     private PackingSequenceItem packingSequenceItem;
     private final ItemCommodities ITEM_COMMODITIES;
@@ -163,6 +169,15 @@ public class PlacedItem extends Item implements Comparable<PlacedItem>, Cloneabl
         }
     }
 
+    /**
+     * Removes the items below and on top of this item from its environment relations. All other relations, e.g. the
+     * neighbors, are kept.
+     */
+    public void clearSupportRelations() {
+        this.getEnvironmentRelations().getItemsBelow().clear();
+        this.getEnvironmentRelations().getItemsOnTop().clear();
+    }
+
     /**
      * Calcualtes its own center and adds the centerOfMass
      * @return the 3d point of the center of mass
@@ -172,14 +187,29 @@ public class PlacedItem extends Item implements Comparable<PlacedItem>, Cloneabl
                 ITEM_COORDINATES.getCenterZ() + centerOfMass.z);
     }
 
-	public double getBaseSupportFactor(){
-        double supportFactor = 0;
+    /**
+     * @return a box below the bounding box of this item, which simulates the support of the floor
+     */
+    private Box getFloor() {
+        if (floor == null)
+            floor = new Box(shape.getBoundingBox().getWidth(), 5, shape.getBoundingBox().getDepth());
+        return floor;
+    }
 
+    /**
+     * @return the percentage of the base surface supported by the floor, 0 if the item is not placed on the floor
+     */
+    public double getFloorSupportFactor() {
         //this simulates the base support the item would get by the floor
-        if (this.getItemCoordinates().getY() ==  0){
-            Box floor = new Box(shape.getBoundingBox().getWidth(), 5, shape.getBoundingBox().getDepth());
-            supportFactor += shape.getBaseSupportFactor(floor, 0, -floor.height, 0);
-        }
+        if (this.getItemCoordinates().getY() != 0)
+            return 0;
+
+        Box floor = getFloor();
+        return shape.getBaseSupportFactor(floor, 0, -floor.height, 0);
+    }
+
+	public double getBaseSupportFactor(){
+        double supportFactor = getFloorSupportFactor();
 
 		for (PlacedItem itemBelow: getEnvironmentRelations().getItemsBelow()){
 			if (itemBelow.sequence < this.sequence)
@@ -238,6 +268,19 @@ public class PlacedItem extends Item implements Comparable<PlacedItem>, Cloneabl
         return EnvironmentRelationService.hasXSupport(this.ITEM_COORDINATES, this.shape, placedItems,  palletWidth);
     }
 
+    /**
+     * Checks if an item is placed directly next to an item of the index or a pallet edge in x direction. Only the
+     * items whose side faces lie in the plane of this item's left or right face are compared.
+     *
+     * @param lateralContactIndex the index over the items that are already placed on the pallet
+     * @param palletWidth the width of the pallet in height level of the item
+     * @return true if the item's x-position is defined by a pallet edge or another item
+     */
+    public boolean hasXSupport(LateralContactIndex lateralContactIndex, double palletWidth) {
+        return EnvironmentRelationService.hasXSupport(this.ITEM_COORDINATES, this.shape,
+                lateralContactIndex.getXContactCandidates(this), palletWidth);
+    }
+
     /**
      * Checks if an item is placed directly next to an already placed item or a pallet edge in z direction
      *
@@ -249,6 +292,19 @@ public class PlacedItem extends Item implements Comparable<PlacedItem>, Cloneabl
         return EnvironmentRelationService.hasZSupport(this.ITEM_COORDINATES, this.shape, placedItems, palletDepth);
     }
 
+    /**
+     * Checks if an item is placed directly next to an item of the index or a pallet edge in z direction. Only the
+     * items whose side faces lie in the plane of this item's front or back face are compared.
+     *
+     * @param lateralContactIndex the index over the items that are already placed on the pallet
+     * @param palletDepth the depth of the pallet in height level of this item
+     * @return true if the item's z-position is defined by a pallet edge or another item
+     */
+    public boolean hasZSupport(LateralContactIndex lateralContactIndex, double palletDepth) {
+        return EnvironmentRelationService.hasZSupport(this.ITEM_COORDINATES, this.shape,
+                lateralContactIndex.getZContactCandidates(this), palletDepth);
+    }
+
 
     //Loadable Item
 
@@ -6,6 +6,8 @@ import com.wim.palletizing.geometry.dim3.Shape3D;
 import com.wim.palletizing.libs.quickhull3d.QuickHull3D;
 import com.wim.palletizing.model.item.PlacedItem;
 import com.wim.palletizing.model.item.PlacedItemDTO;
+import com.wim.palletizing.model.support.LateralContactIndex;
+import com.wim.palletizing.model.support.SupportGraph;
 import com.wim.palletizing.model.uld_properties.*;
 import com.wim.palletizing.packing_sequence.model.PackingSide;
 import org.apache.logging.log4j.LogManager;
@@ -44,6 +46,21 @@ public class ULD implements Iterable<PlacedItem> {
 	 */
 	private Polyhedron hull;
 
+	/**
+	 * Incremented whenever the placed items change, invalidates {@link #supportGraph}
+	 */
+	private volatile long layoutVersion = 0;
+
+	/**
+	 * Support structure calculated last, see {@link #updateSupportGraph()}
+	 */
+	private volatile SupportGraph supportGraph;
+
+	/**
+	 * Side faces of the current layout, see {@link #getLateralContactIndex()}
+	 */
+	private volatile LateralContactIndex lateralContactIndex;
+
 	public ULD(ULDProperties properties) {
 		id = null;
 		this.properties = properties;
@@ -176,12 +193,8 @@ public class ULD implements Iterable<PlacedItem> {
     }
 
 	public int getNumberOfSupportedSides(PlacedItem item) {
-		int numberOfSupportedSides = 0;
-		Iterator<PlacedItem> iter = this.iterator();
-		PlacedItem pi;
 		EnumSet<PackingSide> supportedSides = EnumSet.noneOf(PackingSide.class);
-		while (iter.hasNext()) {
-			pi = iter.next();
+		for (PlacedItem pi : getLateralContactIndex().getLateralContactCandidates(item)) {
 			if (pi.isRightNeighborOf(item))
 				supportedSides.add(PackingSide.RIGHT);
 			else if (pi.isLeftNeighborOf(item))
@@ -194,32 +207,114 @@ public class ULD implements Iterable<PlacedItem> {
 		return supportedSides.size();
 	}
 
-	public void calculateItemSupportStructure() {
-		LinkedList<PlacedItem> placedItems = new LinkedList<PlacedItem>(this.placedItems.values());
+	/**
+	 * Returns the index over the side faces of the current layout, used to answer left/right/front/back neighbor
+	 * queries. It is built once and kept until the items of this ULD change.
+	 *
+	 * @return the lateral contact index of the current layout
+	 */
+	public LateralContactIndex getLateralContactIndex() {
+		LateralContactIndex index = lateralContactIndex;
+		if (index == null || index.getVersion() != layoutVersion || index.getItemCount() != placedItems.size())
+			synchronized (this) {
+				index = lateralContactIndex;
+				if (index == null || index.getVersion() != layoutVersion || index.getItemCount() != placedItems.size()) {
+					index = new LateralContactIndex(layoutVersion, placedItems.values());
+					lateralContactIndex = index;
+				}
+			}
+
+		return index;
+	}
+
+	/**
+	 * Returns the support structure of the current layout, without calculating it.
+	 *
+	 * @return the support graph of the current layout or null, if it has not been calculated since the items of this
+	 * ULD changed (see {@link #updateSupportGraph()})
+	 */
+	public SupportGraph getSupportGraph() {
+		SupportGraph graph = supportGraph;
+		return isOutdated(graph) ? null : graph;
+	}
 
-		// Outgoing from a single item sequence i, calculate all subsequent items j. Checks in both directions (time
-		// invariant/agnostic)
-		for (int i = 0; i < placedItems.size()-1; i++) {
-			for(int j = i+1; j < placedItems.size(); j++) {
-				placedItems.get(i).calculateAndStoreSupportRelation(placedItems.get(j));
+	/**
+	 * Calculates the support structure of the current layout, unless it has already been calculated since the items
+	 * of this ULD changed (see {@link #markItemsChanged()}), so it is shared by every criterion assessing the layout.
+	 * Calculating it replaces the items below and on top stored in the items'
+	 * {@link com.wim.palletizing.model.item.EnvironmentRelations}; it must not be called while other threads read them.
+	 *
+	 * @return the support graph of the current layout
+	 */
+	public synchronized SupportGraph updateSupportGraph() {
+		SupportGraph graph = supportGraph;
+		if (isOutdated(graph)) {
+			graph = SupportGraph.calculate(layoutVersion, placedItems.values());
+			supportGraph = graph;
 		}
+		return graph;
+	}
+
+	private boolean isOutdated(SupportGraph graph) {
+		// The item map may be shared with a ULDUnderConstruction, so growing or shrinking is detected as well
+		return graph == null || graph.getVersion() != layoutVersion || graph.getItemCount() != placedItems.size();
+	}
+
+	/**
+	 * Has to be called after items have been added to, removed from or moved on this ULD. Invalidates all caches
+	 * derived from the layout.
+	 */
+	public synchronized void markItemsChanged() {
+		layoutVersion++;
+		hull = null;
 	}
+
+	/**
+	 * Calculates for every item the items directly below and on top of it and stores them in the items'
+	 * {@link com.wim.palletizing.model.item.EnvironmentRelations}, replacing previously stored items below and on top.
+	 */
+	public synchronized void calculateItemSupportStructure() {
+		markItemsChanged();
+		updateSupportGraph();
 	}
 
     /**
-     * Checks which items are direct neighbors on the ULD
+     * Checks which items are direct neighbors on the ULD. Only items touching a side face (see
+     * {@link LateralContactIndex}) or resting on top of or below each other are compared.
      */
     public void calculateNeighbors() {
-        List<PlacedItem> checkedItems = new ArrayList<>();
+        SupportGraph graph = updateSupportGraph();
+        LateralContactIndex index = getLateralContactIndex();
+
+        Map<PlacedItem, Integer> positions = new IdentityHashMap<>();
+        for (PlacedItem item : this.placedItemsSorted)
+            positions.put(item, positions.size());
+
         for (PlacedItem item : this.placedItemsSorted) {
-            for (PlacedItem otherItem : this.placedItemsSorted) {
-                if(!checkedItems.contains(otherItem) && !item.equals(otherItem) &&
-                        item.checkForNeighborhood(otherItem)) {
+            int position = positions.get(item);
+
+            Set<PlacedItem> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidates.addAll(index.getLateralContactCandidates(item));
+            int graphIndex = graph.indexOf(item);
+            if (graphIndex >= 0) {
+                for (int i = 0; i < graph.getBelowCount(graphIndex); i++)
+                    candidates.add(graph.getItem(graph.getBelow(graphIndex, i)));
+                for (int i = 0; i < graph.getTopCount(graphIndex); i++)
+                    candidates.add(graph.getItem(graph.getTop(graphIndex, i)));
+            }
+
+            // every pair is checked once, from the item coming first; neighbors are added in item order
+            List<PlacedItem> laterCandidates = candidates.stream()
+                    .filter(otherItem -> positions.containsKey(otherItem) && positions.get(otherItem) > position)
+                    .sorted(Comparator.comparingInt(positions::get))
+                    .collect(Collectors.toList());
+
+            for (PlacedItem otherItem : laterCandidates) {
+                if (!item.equals(otherItem) && item.checkForNeighborhood(otherItem)) {
                     item.getEnvironmentRelations().addItemToNeighbor(otherItem);
                     otherItem.getEnvironmentRelations().addItemToNeighbor(item);
                 }
             }
-            checkedItems.add(item);
         }
     }
 }
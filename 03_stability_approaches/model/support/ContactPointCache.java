@@ -0,0 +1,23 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.List;
+
+/**
+ * Contact points between the items of a layout and the items directly below them, calculated once per pair of items
+ * in a direct support relation
+ */
+public interface ContactPointCache {
+
+    /**
+     * Looks up the contact points between two items of the layout. If the items are not in a direct support
+     * relation, the points are calculated without being cached.
+     *
+     * @param placedItem the item on top
+     * @param itemBelow  the item below
+     * @return the contact points; must not be modified
+     */
+    List<Point2D> getContactPoints(PlacedItem placedItem, PlacedItem itemBelow);
+}
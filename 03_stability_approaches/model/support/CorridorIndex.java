@@ -0,0 +1,39 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Index over the x-z footprints of all placed items of a layout, regardless of their y-level.
+ * <p>
+ * Two items can only lie in the vertical corridor of each other if their footprints overlap. The footprints are
+ * sorted by their min x coordinate, so the items whose footprint overlaps (or touches) the one of a given item are
+ * found by a binary search and a scan over the footprints within the x-range, instead of comparing the item with
+ * every other item. Whether an item really lies in the corridor is still decided by the exact checks of
+ * {@link PlacedItem}.
+ */
+public class CorridorIndex {
+
+    private final FootprintIndex.Level footprints;
+
+    public CorridorIndex(Collection<PlacedItem> placedItems) {
+        footprints = new FootprintIndex.Level(new ArrayList<>(placedItems));
+    }
+
+    /**
+     * @param placedItem the item whose corridor is searched
+     * @return all items whose footprint overlaps or touches the footprint of the given item, without the item itself
+     */
+    public List<PlacedItem> getItemsWithOverlappingFootprint(PlacedItem placedItem) {
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+        List<PlacedItem> items = new ArrayList<>();
+        footprints.collectOverlapping(coordinates.getX(), coordinates.getMaxX(), coordinates.getZ(),
+                coordinates.getMaxZ(), items);
+        items.removeIf(item -> item == placedItem);
+        return items;
+    }
+}
@@ -0,0 +1,167 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Spatial index over the x-z footprints of placed items, bucketed by the y-level of their top surface.
+ * <p>
+ * An item can only rest directly on items whose top surface lies at its own y-level and whose footprint
+ * overlaps its own. Instead of comparing every pair of items, candidates are therefore looked up in the bucket of
+ * the item's y-level, in which the footprints are sorted by their min x coordinate. The index is built in
+ * O(n log n); a lookup costs O(log n) plus the number of footprints inspected within the x-range.
+ * <p>
+ * Only {@link Box}es have a top surface that is guaranteed to be flat at the top of their bounding box. All other
+ * shapes are kept in a separate list and are always returned as candidates, so the exact relation check still
+ * decides for them.
+ */
+public class FootprintIndex {
+
+    /**
+     * Levels of box-shaped items, keyed by the y-coordinate of their top surface
+     */
+    private final TreeMap<Integer, Level> levels = new TreeMap<>();
+
+    /**
+     * Items with a shape other than {@link Box}, for which the top surface may not be flat
+     */
+    private final List<PlacedItem> irregularItems = new ArrayList<>();
+
+    public FootprintIndex(Collection<PlacedItem> placedItems) {
+        Map<Integer, List<PlacedItem>> itemsPerLevel = new HashMap<>();
+
+        for (PlacedItem placedItem : placedItems) {
+            if (placedItem.shape instanceof Box)
+                itemsPerLevel.computeIfAbsent(placedItem.getItemCoordinates().getMaxY(), y -> new ArrayList<>())
+                        .add(placedItem);
+            else
+                irregularItems.add(placedItem);
+        }
+
+        for (Map.Entry<Integer, List<PlacedItem>> entry : itemsPerLevel.entrySet())
+            levels.put(entry.getKey(), new Level(entry.getValue()));
+    }
+
+    /**
+     * Collects all items which could give direct support to the given item, that is all box-shaped items whose top
+     * surface is at the item's y-level and whose footprint overlaps (or touches) the item's footprint, and all
+     * non-box items.
+     *
+     * @param placedItem the item on top
+     * @return the candidates below, ordered by sequence; never contains the item itself
+     */
+    public List<PlacedItem> getSupportCandidates(PlacedItem placedItem) {
+        List<PlacedItem> candidates = new ArrayList<>();
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+
+        Level level = levels.get(coordinates.getY());
+        if (level != null)
+            level.collectOverlapping(coordinates.getX(), coordinates.getMaxX(), coordinates.getZ(),
+                    coordinates.getMaxZ(), candidates);
+
+        for (PlacedItem irregularItem : irregularItems)
+            if (irregularItem != placedItem && footprintsOverlap(irregularItem.getItemCoordinates(), coordinates))
+                candidates.add(irregularItem);
+
+        candidates.removeIf(candidate -> candidate == placedItem);
+        candidates.sort(Comparator.comparingInt(candidate -> candidate.sequence));
+        return candidates;
+    }
+
+    /**
+     * Runs through every pair of items that may stand in a direct support relation. Each unordered pair is visited
+     * at most once; the pairs are visited in the sequence order of the item on top.
+     *
+     * @param itemsInSequence all indexed items, ordered by their sequence
+     * @param consumer        receives the candidate below and the item on top
+     */
+    public void forEachSupportCandidatePair(List<PlacedItem> itemsInSequence,
+                                            BiConsumer<PlacedItem, PlacedItem> consumer) {
+        Map<PlacedItem, Integer> positions = new IdentityHashMap<>();
+        for (PlacedItem placedItem : itemsInSequence)
+            positions.put(placedItem, positions.size());
+
+        Set<PlacedItem> irregular = Collections.newSetFromMap(new IdentityHashMap<>());
+        irregular.addAll(irregularItems);
+        // Pairs containing a non-box item can be found from both of their items; remember them to visit them once
+        Set<Long> visitedIrregularPairs = new HashSet<>();
+
+        for (PlacedItem itemOnTop : itemsInSequence) {
+            for (PlacedItem candidate : getSupportCandidates(itemOnTop)) {
+                if ((irregular.contains(candidate) || irregular.contains(itemOnTop))
+                        && !visitedIrregularPairs.add(pairKey(positions.get(candidate), positions.get(itemOnTop))))
+                    continue;
+
+                consumer.accept(candidate, itemOnTop);
+            }
+        }
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) Math.min(first, second) << 32) | Math.max(first, second);
+    }
+
+    static boolean footprintsOverlap(ItemCoordinates first, ItemCoordinates second) {
+        return first.getX() <= second.getMaxX() && second.getX() <= first.getMaxX()
+                && first.getZ() <= second.getMaxZ() && second.getZ() <= first.getMaxZ();
+    }
+
+    /**
+     * All footprints of one top surface level, sorted by their min x coordinate
+     */
+    static class Level {
+        private final PlacedItem[] items;
+        private final int[] minX, maxX, minZ, maxZ;
+
+        /**
+         * The widest footprint of this level, bounds how far left of a query range a match can start
+         */
+        private int maxWidth;
+
+        Level(List<PlacedItem> levelItems) {
+            items = levelItems.toArray(new PlacedItem[0]);
+            Arrays.sort(items, Comparator.comparingInt(item -> item.getItemCoordinates().getX()));
+
+            minX = new int[items.length];
+            maxX = new int[items.length];
+            minZ = new int[items.length];
+            maxZ = new int[items.length];
+
+            for (int i = 0; i < items.length; i++) {
+                ItemCoordinates coordinates = items[i].getItemCoordinates();
+                minX[i] = coordinates.getX();
+                maxX[i] = coordinates.getMaxX();
+                minZ[i] = coordinates.getZ();
+                maxZ[i] = coordinates.getMaxZ();
+                maxWidth = Math.max(maxWidth, maxX[i] - minX[i]);
+            }
+        }
+
+        /**
+         * Adds all items whose footprint overlaps (or touches) the given range to the result
+         */
+        void collectOverlapping(int queryMinX, int queryMaxX, int queryMinZ, int queryMaxZ,
+                                        List<PlacedItem> result) {
+            // last footprint starting left of (or at) the right edge of the query
+            int low = 0, high = minX.length - 1, last = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (minX[mid] <= queryMaxX) {
+                    last = mid;
+                    low = mid + 1;
+                } else
+                    high = mid - 1;
+            }
+
+            long lowestRelevantMinX = (long) queryMinX - maxWidth;
+            for (int i = last; i >= 0 && minX[i] >= lowestRelevantMinX; i--) {
+                if (maxX[i] >= queryMinX && minZ[i] <= queryMaxZ && maxZ[i] >= queryMinZ)
+                    result.add(items[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.*;
+
+/**
+ * The support structure of a layout under construction, kept up to date while items are appended in sequence order
+ * and removed again from the end.
+ * <p>
+ * Appending an item only looks for support relations of the new item: the candidates below are the items whose top
+ * surface is at its bottom, the candidates on top the items whose bottom is at its top (items with a shape other
+ * than {@link Box} are always candidates, like in {@link FootprintIndex}). The relations are kept by the graph and
+ * ordered by sequence, like the ones {@link SupportGraph#calculate} stores; the
+ * {@link com.wim.palletizing.model.item.EnvironmentRelations} of the items, e.g. their lateral neighbors or relations
+ * to items not appended, are left as they are. Removing the last item removes its relations with the items it was in
+ * contact with.
+ * <p>
+ * The base support factor of an item only depends on the items below with a smaller sequence, so it is calculated
+ * once when the item is appended. The contact points and support polygons are calculated on request and kept until
+ * the items below the item change.
+ * <p>
+ * The footprints of the items are kept in a {@link CorridorIndex}. It is rebuilt when an append makes the items
+ * appended after the last rebuild outnumber the square root of all items; until then, their footprints are compared
+ * directly. A graph is not thread-safe.
+ */
+public class IncrementalSupportGraph implements ContactPointCache, SupportRelations {
+
+    /**
+     * Number of items appended after the last rebuild of the corridor index that never cause a rebuild
+     */
+    private static final int MIN_UNINDEXED_ITEMS = 32;
+
+    /**
+     * The items in the order they have been appended, which is sequence order
+     */
+    private final List<PlacedItem> items = new ArrayList<>();
+
+    private final Map<PlacedItem, Integer> indices = new IdentityHashMap<>();
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Indices of the box-shaped items per y-coordinate of their top surface
+     */
+    private final Map<Integer, List<Integer>> boxesByTopY = new HashMap<>();
+
+    /**
+     * Indices of all items per y-coordinate of their bottom
+     */
+    private final Map<Integer, List<Integer>> itemsByBottomY = new HashMap<>();
+
+    /**
+     * Indices of the items with a shape other than {@link Box}
+     */
+    private final List<Integer> irregularItems = new ArrayList<>();
+
+    /**
+     * The footprints of the items before indexedCount, and of items removed since; null until the first rebuild
+     */
+    private CorridorIndex corridorIndex;
+    private int indexedCount;
+
+    /**
+     * Appends the item to the layout and determines its support relations with the items appended before
+     *
+     * @param placedItem the item, its sequence greater than the ones of all items appended before
+     * @return the index of the item
+     * @throws IllegalArgumentException if the sequence of the item is not greater than the one of the last item
+     */
+    public int append(PlacedItem placedItem) {
+        if (!items.isEmpty() && placedItem.sequence <= getLastItem().sequence)
+            throw new IllegalArgumentException("Items must be appended in ascending sequence order, got "
+                    + placedItem.sequence + " after " + getLastItem().sequence);
+
+        int index = items.size();
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+        boolean irregular = !(placedItem.shape instanceof Box);
+
+        // every other item is checked once, in the role SupportGraph#calculate visits the pair in: as candidate on
+        // top if the item is a candidate below it, otherwise as candidate below
+        Set<Integer> candidatesOnTop = new TreeSet<>(irregular ? indices.values()
+                : itemsByBottomY.getOrDefault(coordinates.getMaxY(), Collections.emptyList()));
+        Set<Integer> candidatesBelow = new TreeSet<>(boxesByTopY.getOrDefault(coordinates.getY(),
+                Collections.emptyList()));
+        candidatesBelow.addAll(irregularItems);
+        candidatesBelow.removeAll(candidatesOnTop);
+
+        List<Integer> below = new ArrayList<>();
+        List<Integer> onTop = new ArrayList<>();
+        for (int candidate : candidatesBelow) {
+            if (!FootprintIndex.footprintsOverlap(items.get(candidate).getItemCoordinates(), coordinates))
+                continue;
+            int relation = getSupportRelation(items.get(candidate), placedItem);
+            if (relation > 0)
+                below.add(candidate);
+            else if (relation < 0)
+                onTop.add(candidate);
+        }
+        for (int candidate : candidatesOnTop) {
+            if (!FootprintIndex.footprintsOverlap(items.get(candidate).getItemCoordinates(), coordinates))
+                continue;
+            int relation = getSupportRelation(placedItem, items.get(candidate));
+            if (relation > 0)
+                onTop.add(candidate);
+            else if (relation < 0)
+                below.add(candidate);
+        }
+        Collections.sort(below);
+        Collections.sort(onTop);
+
+        items.add(placedItem);
+        indices.put(placedItem, index);
+        Node node = new Node();
+        nodes.add(node);
+
+        for (int indexBelow : below) {
+            node.addBelow(indexBelow);
+            nodes.get(indexBelow).addOnTop(index);
+        }
+        for (int indexOnTop : onTop) {
+            node.addOnTop(indexOnTop);
+            nodes.get(indexOnTop).addBelow(index);
+            nodes.get(indexOnTop).supportPolygon = null;
+        }
+
+        if (!irregular)
+            boxesByTopY.computeIfAbsent(coordinates.getMaxY(), y -> new ArrayList<>()).add(index);
+        else
+            irregularItems.add(index);
+        itemsByBottomY.computeIfAbsent(coordinates.getY(), y -> new ArrayList<>()).add(index);
+
+        node.baseSupportFactor = calculateBaseSupportFactor(index);
+
+        if (items.size() - indexedCount > Math.max(MIN_UNINDEXED_ITEMS, (int) Math.sqrt(items.size()))) {
+            corridorIndex = new CorridorIndex(items);
+            indexedCount = items.size();
+        }
+        return index;
+    }
+
+    /**
+     * Removes the item appended last together with its support relations
+     *
+     * @return the removed item
+     * @throws IllegalStateException if the graph is empty
+     */
+    public PlacedItem removeLast() {
+        if (items.isEmpty())
+            throw new IllegalStateException("No item has been appended");
+
+        int index = items.size() - 1;
+        PlacedItem placedItem = items.get(index);
+        Node node = nodes.get(index);
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+
+        // the item has the greatest sequence, so it is the last entry of every list it has been added to
+        for (int position = 0; position < node.belowCount; position++)
+            nodes.get(node.below[position]).topCount--;
+        for (int position = 0; position < node.topCount; position++) {
+            Node nodeOnTop = nodes.get(node.top[position]);
+            nodeOnTop.belowCount--;
+            nodeOnTop.contactPoints.remove(nodeOnTop.contactPoints.size() - 1);
+            nodeOnTop.supportPolygon = null;
+        }
+
+        if (placedItem.shape instanceof Box)
+            removeLastEntry(boxesByTopY, coordinates.getMaxY());
+        else
+            irregularItems.remove(irregularItems.size() - 1);
+        removeLastEntry(itemsByBottomY, coordinates.getY());
+
+        items.remove(index);
+        nodes.remove(index);
+        indices.remove(placedItem);
+        // the index keeps the footprint of the item, it is skipped by the lookups from now on
+        indexedCount = Math.min(indexedCount, index);
+        return placedItem;
+    }
+
+    private static void removeLastEntry(Map<Integer, List<Integer>> buckets, int key) {
+        List<Integer> bucket = buckets.get(key);
+        bucket.remove(bucket.size() - 1);
+        if (bucket.isEmpty())
+            buckets.remove(key);
+    }
+
+    /**
+     * Same decision as {@link PlacedItem#calculateAndStoreSupportRelation(PlacedItem)}, without storing it
+     *
+     * @return 1 if the other item rests directly on the item, -1 if the item rests directly on the other item and 0
+     * if they are not in a direct support relation
+     */
+    private static int getSupportRelation(PlacedItem placedItem, PlacedItem otherPlacedItem) {
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+        ItemCoordinates otherCoordinates = otherPlacedItem.getItemCoordinates();
+
+        int minYOtherItem = placedItem.getMinPossibleYForOtherShape(otherPlacedItem.shape, otherCoordinates.getX(),
+                otherCoordinates.getZ());
+        int minYThisItem = otherPlacedItem.getMinPossibleYForOtherShape(placedItem.shape, coordinates.getX(),
+                coordinates.getZ());
+
+        if (minYOtherItem == 0)
+            return 0;
+        else if (minYOtherItem == otherCoordinates.getY())
+            return 1;
+        else if (minYThisItem == coordinates.getY())
+            return -1;
+        return 0;
+    }
+
+    private double calculateBaseSupportFactor(int index) {
+        PlacedItem item = items.get(index);
+        ItemCoordinates coordinates = item.getItemCoordinates();
+        Node node = nodes.get(index);
+        double supportFactor = item.getFloorSupportFactor();
+
+        for (int position = 0; position < node.belowCount; position++) {
+            PlacedItem itemBelow = items.get(node.below[position]);
+            if (itemBelow.sequence < item.sequence) {
+                ItemCoordinates coordinatesBelow = itemBelow.getItemCoordinates();
+                supportFactor += item.shape.getBaseSupportFactor(itemBelow.shape,
+                        coordinatesBelow.getX() - coordinates.getX(),
+                        coordinatesBelow.getY() - coordinates.getY(),
+                        coordinatesBelow.getZ() - coordinates.getZ());
+            }
+        }
+        return supportFactor;
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * @return the items of the layout, ordered by sequence
+     */
+    public List<PlacedItem> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public PlacedItem getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @return the item appended last
+     */
+    public PlacedItem getLastItem() {
+        return items.get(items.size() - 1);
+    }
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the item's position in sequence order or -1, if it is not part of the layout
+     */
+    public int indexOf(PlacedItem placedItem) {
+        Integer index = indices.get(placedItem);
+        return index == null ? -1 : index;
+    }
+
+    public int getBelowCount(int index) {
+        return nodes.get(index).belowCount;
+    }
+
+    /**
+     * @param index    index of the item on top
+     * @param position position within the item's items below, ordered by sequence
+     * @return the index of the item below
+     */
+    public int getBelow(int index, int position) {
+        return nodes.get(index).below[position];
+    }
+
+    public int getTopCount(int index) {
+        return nodes.get(index).topCount;
+    }
+
+    /**
+     * @param index    index of the item below
+     * @param position position within the item's items on top, ordered by sequence
+     * @return the index of the item on top
+     */
+    public int getTop(int index, int position) {
+        return nodes.get(index).top[position];
+    }
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the items of the layout the item rests on directly, ordered by sequence; empty if the item is not part
+     * of the layout
+     */
+    @Override
+    public List<PlacedItem> getItemsBelow(PlacedItem placedItem) {
+        int index = indexOf(placedItem);
+        return index < 0 ? Collections.emptyList() : getItems(nodes.get(index).below, nodes.get(index).belowCount);
+    }
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the items of the layout resting directly on the item, ordered by sequence; empty if the item is not part
+     * of the layout
+     */
+    @Override
+    public List<PlacedItem> getItemsOnTop(PlacedItem placedItem) {
+        int index = indexOf(placedItem);
+        return index < 0 ? Collections.emptyList() : getItems(nodes.get(index).top, nodes.get(index).topCount);
+    }
+
+    private List<PlacedItem> getItems(int[] itemIndices, int count) {
+        List<PlacedItem> relatedItems = new ArrayList<>(count);
+        for (int position = 0; position < count; position++)
+            relatedItems.add(items.get(itemIndices[position]));
+        return relatedItems;
+    }
+
+    /**
+     * @param index index of the item
+     * @return the indices of the items appended before the item whose footprint overlaps or touches the one of the
+     * item, ascending; only these can lie in the vertical corridor of the item
+     */
+    public List<Integer> getEarlierItemsWithOverlappingFootprint(int index) {
+        PlacedItem item = items.get(index);
+        ItemCoordinates coordinates = item.getItemCoordinates();
+        List<Integer> overlapping = new ArrayList<>();
+        int end = Math.min(index, indexedCount);
+        if (end > 0) {
+            for (PlacedItem indexedItem : corridorIndex.getItemsWithOverlappingFootprint(item)) {
+                // items removed since the rebuild are left in the index, but none of them is before indexedCount
+                Integer indexedPosition = indices.get(indexedItem);
+                if (indexedPosition != null && indexedPosition < end)
+                    overlapping.add(indexedPosition);
+            }
+            Collections.sort(overlapping);
+        }
+        for (int i = end; i < index; i++)
+            if (FootprintIndex.footprintsOverlap(items.get(i).getItemCoordinates(), coordinates))
+                overlapping.add(i);
+        return overlapping;
+    }
+
+    /**
+     * Same as {@link SupportGraph#getBaseSupportFactor(int)}
+     *
+     * @param index index of the item
+     * @return percentage of the item's base surface that is supported by the floor and the items below
+     */
+    public double getBaseSupportFactor(int index) {
+        return nodes.get(index).baseSupportFactor;
+    }
+
+    /**
+     * Same as {@link SupportGraph#getContactPoints(int, int)}
+     *
+     * @param index    index of the item on top
+     * @param position position within the item's items below
+     * @return the contact points; must not be modified
+     */
+    public List<Point2D> getContactPoints(int index, int position) {
+        Node node = nodes.get(index);
+        List<Point2D> points = node.contactPoints.get(position);
+        if (points == null) {
+            PlacedItem item = items.get(index);
+            PlacedItem itemBelow = items.get(node.below[position]);
+            points = Collections.unmodifiableList(item.shape.getContactPointsWithBottomShape(itemBelow.shape,
+                    toPoint3D(item.getItemCoordinates()), toPoint3D(itemBelow.getItemCoordinates())));
+            node.contactPoints.set(position, points);
+        }
+        return points;
+    }
+
+    /**
+     * Same as {@link SupportGraph#getContactPoints(PlacedItem, PlacedItem)}
+     *
+     * @param placedItem the item on top
+     * @param itemBelow  the item below
+     * @return the contact points; must not be modified
+     */
+    @Override
+    public List<Point2D> getContactPoints(PlacedItem placedItem, PlacedItem itemBelow) {
+        int index = indexOf(placedItem);
+        int indexBelow = indexOf(itemBelow);
+        if (index >= 0 && indexBelow >= 0) {
+            Node node = nodes.get(index);
+            for (int position = 0; position < node.belowCount; position++)
+                if (node.below[position] == indexBelow)
+                    return getContactPoints(index, position);
+        }
+
+        return placedItem.shape.getContactPointsWithBottomShape(itemBelow.shape,
+                toPoint3D(placedItem.getItemCoordinates()), toPoint3D(itemBelow.getItemCoordinates()));
+    }
+
+    /**
+     * Same as {@link SupportGraph#getSupportPolygon(int)}
+     *
+     * @param index index of the item
+     * @return the area in which the item is supported by the items directly below it
+     */
+    public SupportPolygon getSupportPolygon(int index) {
+        Node node = nodes.get(index);
+        if (node.supportPolygon == null) {
+            List<PlacedItem> itemsBelow = new ArrayList<>(node.belowCount);
+            List<List<Point2D>> contactPoints = new ArrayList<>(node.belowCount);
+            for (int position = 0; position < node.belowCount; position++) {
+                itemsBelow.add(items.get(node.below[position]));
+                contactPoints.add(getContactPoints(index, position));
+            }
+            node.supportPolygon = SupportPolygon.calculate(itemsBelow, contactPoints);
+        }
+        return node.supportPolygon;
+    }
+
+    private static Point3D toPoint3D(ItemCoordinates coordinates) {
+        return new Point3D(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+
+    /**
+     * Relations and cached geometry of one item
+     */
+    private static final class Node {
+
+        private int[] below = new int[2], top = new int[2];
+        private int belowCount, topCount;
+
+        /**
+         * Contact points per item below, null until requested
+         */
+        private final List<List<Point2D>> contactPoints = new ArrayList<>(2);
+
+        private double baseSupportFactor;
+
+        /**
+         * Null until requested or after the items below have changed
+         */
+        private SupportPolygon supportPolygon;
+
+        void addBelow(int index) {
+            if (belowCount == below.length)
+                below = Arrays.copyOf(below, belowCount * 2);
+            below[belowCount++] = index;
+            contactPoints.add(null);
+        }
+
+        void addOnTop(int index) {
+            if (topCount == top.length)
+                top = Arrays.copyOf(top, topCount * 2);
+            top[topCount++] = index;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.*;
+
+/**
+ * Index over the side faces of the placed items of one layout of a {@link com.wim.palletizing.model.ULD}.
+ * <p>
+ * Two items can only be lateral neighbors if a side face of one lies in the same plane as the opposite side face of
+ * the other and both faces overlap or touch. The index therefore groups the items by the x-coordinates of their left
+ * and right faces and by the z-coordinates of their front and back faces. Within a plane, the faces are sorted by
+ * their start along the horizontal axis of the plane, so a query only sweeps over the faces that can reach the
+ * queried face and returns the ones whose horizontal and vertical ranges overlap or touch the ones of the queried
+ * face. Whether the items really are neighbors is still decided by the exact checks of
+ * {@link PlacedItem}, so the index only narrows down the items to compare.
+ */
+public class LateralContactIndex {
+
+    /**
+     * Layout version of the ULD this index has been built for
+     */
+    private final long version;
+
+    private final int itemCount;
+
+    /**
+     * Faces in the planes of constant x, sorted along z, and in the planes of constant z, sorted along x
+     */
+    private final Map<Integer, FacePlane> facesByMinX, facesByMaxX, facesByMinZ, facesByMaxZ;
+
+    public LateralContactIndex(long version, Collection<PlacedItem> placedItems) {
+        this.version = version;
+        this.itemCount = placedItems.size();
+
+        Map<Integer, List<PlacedItem>> itemsByMinX = new HashMap<>(), itemsByMaxX = new HashMap<>();
+        Map<Integer, List<PlacedItem>> itemsByMinZ = new HashMap<>(), itemsByMaxZ = new HashMap<>();
+        for (PlacedItem placedItem : placedItems) {
+            ItemCoordinates coordinates = placedItem.getItemCoordinates();
+            itemsByMinX.computeIfAbsent(coordinates.getX(), x -> new ArrayList<>()).add(placedItem);
+            itemsByMaxX.computeIfAbsent(coordinates.getMaxX(), x -> new ArrayList<>()).add(placedItem);
+            itemsByMinZ.computeIfAbsent(coordinates.getZ(), z -> new ArrayList<>()).add(placedItem);
+            itemsByMaxZ.computeIfAbsent(coordinates.getMaxZ(), z -> new ArrayList<>()).add(placedItem);
+        }
+
+        facesByMinX = createPlanes(itemsByMinX, true);
+        facesByMaxX = createPlanes(itemsByMaxX, true);
+        facesByMinZ = createPlanes(itemsByMinZ, false);
+        facesByMaxZ = createPlanes(itemsByMaxZ, false);
+    }
+
+    private static Map<Integer, FacePlane> createPlanes(Map<Integer, List<PlacedItem>> itemsByPlane, boolean alongZ) {
+        Map<Integer, FacePlane> planes = new HashMap<>(itemsByPlane.size() * 2);
+        for (Map.Entry<Integer, List<PlacedItem>> entry : itemsByPlane.entrySet())
+            planes.put(entry.getKey(), new FacePlane(entry.getValue(), alongZ));
+        return planes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @param placedItem the item whose neighbors are searched
+     * @return all items that may touch the left or right face of the given item, without the item itself
+     */
+    public List<PlacedItem> getXContactCandidates(PlacedItem placedItem) {
+        List<PlacedItem> candidates = new ArrayList<>();
+        addXContactCandidates(placedItem, candidates, null);
+        return candidates;
+    }
+
+    /**
+     * @param placedItem the item whose neighbors are searched
+     * @return all items that may touch the front or back face of the given item, without the item itself
+     */
+    public List<PlacedItem> getZContactCandidates(PlacedItem placedItem) {
+        List<PlacedItem> candidates = new ArrayList<>();
+        addZContactCandidates(placedItem, candidates, null);
+        return candidates;
+    }
+
+    /**
+     * @param placedItem the item whose neighbors are searched
+     * @return all items that may touch one of the four side faces of the given item, without the item itself
+     */
+    public List<PlacedItem> getLateralContactCandidates(PlacedItem placedItem) {
+        List<PlacedItem> candidates = new ArrayList<>();
+        // an item touching a vertical edge of the given item lies in an x- and a z-plane of it
+        Set<PlacedItem> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        addXContactCandidates(placedItem, candidates, added);
+        addZContactCandidates(placedItem, candidates, added);
+        return candidates;
+    }
+
+    private void addXContactCandidates(PlacedItem placedItem, List<PlacedItem> candidates, Set<PlacedItem> added) {
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+        addCandidates(facesByMaxX.get(coordinates.getX()), placedItem, candidates, added);
+        addCandidates(facesByMinX.get(coordinates.getMaxX()), placedItem, candidates, added);
+    }
+
+    private void addZContactCandidates(PlacedItem placedItem, List<PlacedItem> candidates, Set<PlacedItem> added) {
+        ItemCoordinates coordinates = placedItem.getItemCoordinates();
+        addCandidates(facesByMaxZ.get(coordinates.getZ()), placedItem, candidates, added);
+        addCandidates(facesByMinZ.get(coordinates.getMaxZ()), placedItem, candidates, added);
+    }
+
+    private static void addCandidates(FacePlane plane, PlacedItem placedItem, List<PlacedItem> candidates,
+                                      Set<PlacedItem> added) {
+        if (plane != null)
+            plane.addTouchingFaces(placedItem, candidates, added);
+    }
+
+    /**
+     * The faces of the items lying in one plane, sorted by their start along the horizontal axis of the plane. A face
+     * touching a given face starts at most the longest face length before the given face and at most at its end.
+     */
+    private static final class FacePlane {
+
+        /**
+         * Whether the horizontal axis of the plane is the z-axis, that is the plane has a constant x
+         */
+        private final boolean alongZ;
+
+        private final PlacedItem[] items;
+
+        /**
+         * Start of every face along the horizontal axis, ascending
+         */
+        private final int[] starts;
+
+        /**
+         * The longest extent of a face along the horizontal axis
+         */
+        private final int maxLength;
+
+        FacePlane(List<PlacedItem> planeItems, boolean alongZ) {
+            this.alongZ = alongZ;
+            this.items = planeItems.toArray(new PlacedItem[0]);
+            Arrays.sort(items, Comparator.comparingInt(this::start));
+
+            starts = new int[items.length];
+            int longest = 0;
+            for (int i = 0; i < items.length; i++) {
+                starts[i] = start(items[i]);
+                longest = Math.max(longest, end(items[i]) - starts[i]);
+            }
+            maxLength = longest;
+        }
+
+        private int start(PlacedItem placedItem) {
+            ItemCoordinates coordinates = placedItem.getItemCoordinates();
+            return alongZ ? coordinates.getZ() : coordinates.getX();
+        }
+
+        private int end(PlacedItem placedItem) {
+            ItemCoordinates coordinates = placedItem.getItemCoordinates();
+            return alongZ ? coordinates.getMaxZ() : coordinates.getMaxX();
+        }
+
+        /**
+         * Adds the items whose face overlaps or touches the range of the given item in this plane, in the order of
+         * their start
+         *
+         * @param added the items already added to the candidates, to add each item once; null to add all
+         */
+        void addTouchingFaces(PlacedItem placedItem, List<PlacedItem> candidates, Set<PlacedItem> added) {
+            int start = start(placedItem), end = end(placedItem);
+            int minY = placedItem.getItemCoordinates().getY(), maxY = placedItem.getItemCoordinates().getMaxY();
+
+            for (int i = firstStartingFrom(start - maxLength); i < items.length && starts[i] <= end; i++) {
+                PlacedItem item = items[i];
+                ItemCoordinates coordinates = item.getItemCoordinates();
+                if (item == placedItem || end(item) < start || coordinates.getMaxY() < minY
+                        || coordinates.getY() > maxY)
+                    continue;
+                if (added == null || added.add(item))
+                    candidates.add(item);
+            }
+        }
+
+        /**
+         * @return the index of the first face starting at or after the given coordinate
+         */
+        private int firstStartingFrom(int coordinate) {
+            int low = 0, high = items.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < coordinate)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+}
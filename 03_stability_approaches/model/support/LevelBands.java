@@ -0,0 +1,91 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.model.item.ItemCoordinates;
+
+import java.util.Arrays;
+
+/**
+ * The height levels of a layout, given by the distinct y-coordinates of the top surfaces of its items.
+ * <p>
+ * An item lies in (reaches into) the level of height t if its bottom is below t and its top is at or above t. The
+ * levels an item lies in therefore form a contiguous band of level indices, from the first level above its bottom up
+ * to its own level, the one of its top surface. The bands are calculated once per layout and attached to its
+ * {@link SupportGraph}, so per-level checks only need to look up the band of each item.
+ */
+public class LevelBands {
+
+    /**
+     * Distinct y-coordinates of the top surfaces, ascending
+     */
+    private final int[] levelYs;
+
+    /**
+     * Per item: index of its own level and of the first level it lies in
+     */
+    private final int[] ownLevels, firstLevels;
+
+    public LevelBands(SupportGraph supportGraph) {
+        int itemCount = supportGraph.getItemCount();
+
+        int[] topYs = new int[itemCount];
+        for (int i = 0; i < itemCount; i++)
+            topYs[i] = supportGraph.getItem(i).getItemCoordinates().getMaxY();
+        levelYs = Arrays.stream(topYs).sorted().distinct().toArray();
+
+        ownLevels = new int[itemCount];
+        firstLevels = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            ItemCoordinates coordinates = supportGraph.getItem(i).getItemCoordinates();
+            ownLevels[i] = Arrays.binarySearch(levelYs, coordinates.getMaxY());
+            firstLevels[i] = firstLevelAbove(coordinates.getY());
+        }
+    }
+
+    /**
+     * @param supportGraph the support graph of a layout
+     * @return the level bands attached to the support graph
+     */
+    public static LevelBands of(SupportGraph supportGraph) {
+        return supportGraph.getOrCompute(LevelBands.class, LevelBands::new);
+    }
+
+    private int firstLevelAbove(int y) {
+        int low = 0, high = levelYs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (levelYs[mid] <= y)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    public int getLevelCount() {
+        return levelYs.length;
+    }
+
+    /**
+     * @param level index of the level
+     * @return the y-coordinate of the level
+     */
+    public int getLevelY(int level) {
+        return levelYs[level];
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @return the index of the level of the item's top surface
+     */
+    public int getOwnLevel(int index) {
+        return ownLevels[index];
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @return the index of the lowest level the item lies in; greater than its own level if the item has no height
+     */
+    public int getFirstLevel(int index) {
+        return firstLevels[index];
+    }
+}
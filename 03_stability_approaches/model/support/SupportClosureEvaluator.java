@@ -0,0 +1,141 @@
+package com.wim.palletizing.model.support;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether an item and every item it (directly or indirectly) rests on are stable at a given sequence step.
+ * <p>
+ * The local stability of an item only depends on the items on top of it that are already placed at the step, so it
+ * is calculated once and reused until the step reaches the sequence of the next item on top. The items below are
+ * visited iteratively, each at most once per query, so a query costs at most the number of support relations below
+ * the item and can not overflow the stack, however tall the arrangement is.
+ * <p>
+ * Bottom items are considered stable without asking the local stability, like in the recursive evaluation this
+ * replaces. An evaluator is not thread-safe.
+ */
+public class SupportClosureEvaluator {
+
+    /**
+     * Local stability of a single item, without regard to the items below
+     */
+    @FunctionalInterface
+    public interface LocalStability {
+        /**
+         * @param index index of the item in the support graph
+         * @param step  the sequence step; the items on top with a sequence up to the step are placed
+         * @return true if the item is stable with the items placed on top of it
+         */
+        boolean isLocallyStable(int index, int step);
+    }
+
+    private final SupportGraph supportGraph;
+
+    private final LocalStability localStability;
+
+    /**
+     * Sorted sequences of the items on top of each item, in the layout of the top adjacency of the graph
+     */
+    private final int[] topSequences;
+
+    private final boolean[] bottomItem;
+
+    /**
+     * Memoized local stability, valid for the steps from {@link #validFrom} up to (including) {@link #validTo}
+     */
+    private final boolean[] locallyStable;
+    private final int[] validFrom, validTo;
+
+    /**
+     * Stamp of the last query an item has been visited in
+     */
+    private final int[] visited;
+    private int stamp;
+
+    private final int[] stack;
+
+    public SupportClosureEvaluator(SupportGraph supportGraph, LocalStability localStability) {
+        this.supportGraph = supportGraph;
+        this.localStability = localStability;
+
+        int itemCount = supportGraph.getItemCount();
+        int[] topOffsets = supportGraph.getTopOffsets();
+        int[] topIndices = supportGraph.getTopIndices();
+
+        topSequences = new int[topIndices.length];
+        for (int edge = 0; edge < topIndices.length; edge++)
+            topSequences[edge] = supportGraph.getItem(topIndices[edge]).sequence;
+        for (int i = 0; i < itemCount; i++)
+            Arrays.sort(topSequences, topOffsets[i], topOffsets[i + 1]);
+
+        bottomItem = new boolean[itemCount];
+        for (int i = 0; i < itemCount; i++)
+            bottomItem[i] = supportGraph.getItem(i).isBottomItem();
+
+        locallyStable = new boolean[itemCount];
+        validFrom = new int[itemCount];
+        validTo = new int[itemCount];
+        // empty ranges, nothing is memoized yet
+        Arrays.fill(validFrom, Integer.MAX_VALUE);
+        Arrays.fill(validTo, Integer.MIN_VALUE);
+
+        visited = new int[itemCount];
+        stack = new int[itemCount];
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @param step  the sequence step
+     * @return true if the item and all items it rests on directly or indirectly are stable at the step
+     */
+    public boolean isStable(int index, int step) {
+        if (bottomItem[index])
+            return true;
+
+        int[] belowOffsets = supportGraph.getBelowOffsets();
+        int[] belowIndices = supportGraph.getBelowIndices();
+
+        stamp++;
+        int size = 0;
+        stack[size++] = index;
+        visited[index] = stamp;
+
+        while (size > 0) {
+            int current = stack[--size];
+            if (!bottomItem[current] && !isLocallyStable(current, step))
+                return false;
+
+            for (int edge = belowOffsets[current]; edge < belowOffsets[current + 1]; edge++) {
+                int below = belowIndices[edge];
+                if (visited[below] != stamp) {
+                    visited[below] = stamp;
+                    stack[size++] = below;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isLocallyStable(int index, int step) {
+        if (validFrom[index] <= step && step <= validTo[index])
+            return locallyStable[index];
+
+        locallyStable[index] = localStability.isLocallyStable(index, step);
+
+        // the result holds as long as the same items on top are placed
+        int[] topOffsets = supportGraph.getTopOffsets();
+        int from = Integer.MIN_VALUE, to = Integer.MAX_VALUE;
+        for (int edge = topOffsets[index]; edge < topOffsets[index + 1]; edge++) {
+            if (topSequences[edge] <= step)
+                from = topSequences[edge];
+            else {
+                to = topSequences[edge] - 1;
+                break;
+            }
+        }
+        validFrom[index] = from;
+        validTo[index] = to;
+
+        return locallyStable[index];
+    }
+}
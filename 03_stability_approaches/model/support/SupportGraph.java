@@ -0,0 +1,358 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.item.EnvironmentRelations;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * The support structure (which item rests directly on which) of one layout of a
+ * {@link com.wim.palletizing.model.ULD}.
+ * <p>
+ * The graph is calculated once per layout and shared by every criterion assessing it. It carries the layout version
+ * of the ULD it was calculated for, so the ULD can tell when it has to be recalculated. Items are indexed by their
+ * position in sequence order.
+ * <p>
+ * Besides the {@link EnvironmentRelations} of the items, the graph holds the relations in compressed sparse row
+ * form: the indices of the items below item {@code i} are {@code belowIndices[belowOffsets[i]]} up to (excluding)
+ * {@code belowIndices[belowOffsets[i + 1]]}, and likewise for the items on top. Traversing these arrays avoids the
+ * pointer chasing and hashing of the object collections.
+ * <p>
+ * The contact geometry of every support relation is cached per edge of the below adjacency, so the base support
+ * factors and contact points are computed only once per layout, no matter how many criteria ask for them. Results
+ * derived from the graph by the criteria themselves can be attached to it with {@link #getOrCompute}.
+ */
+public class SupportGraph implements ContactPointCache {
+
+    /**
+     * Layout version of the ULD this graph has been calculated for
+     */
+    private final long version;
+
+    /**
+     * The items of the layout, ordered by sequence
+     */
+    private final List<PlacedItem> items;
+
+    private final Map<PlacedItem, Integer> indices;
+
+    /**
+     * Compressed sparse row adjacency of the items directly below each item
+     */
+    private final int[] belowOffsets, belowIndices;
+
+    /**
+     * Compressed sparse row adjacency of the items directly on top of each item
+     */
+    private final int[] topOffsets, topIndices;
+
+    /**
+     * Cache for {@link #getBaseSupportFactor(int)}
+     */
+    private volatile double[] baseSupportFactors;
+
+    /**
+     * Cache for {@link #getContactPoints(int, int)}, one entry per edge of the below adjacency
+     */
+    private final AtomicReferenceArray<List<Point2D>> contactPoints;
+
+    /**
+     * Cache for {@link #getSupportPolygon(int)}
+     */
+    private final AtomicReferenceArray<SupportPolygon> supportPolygons;
+
+    /**
+     * Results derived from this graph, keyed by their type
+     */
+    private final ConcurrentMap<Class<?>, Object> attachments = new ConcurrentHashMap<>();
+
+    private SupportGraph(long version, List<PlacedItem> items) {
+        this.version = version;
+        this.items = Collections.unmodifiableList(items);
+        this.indices = new IdentityHashMap<>(items.size());
+        for (PlacedItem item : items)
+            indices.put(item, indices.size());
+
+        int belowCount = 0, topCount = 0;
+        for (PlacedItem item : items) {
+            belowCount += item.getEnvironmentRelations().getItemsBelow().size();
+            topCount += item.getEnvironmentRelations().getItemsOnTop().size();
+        }
+
+        belowOffsets = new int[items.size() + 1];
+        belowIndices = new int[belowCount];
+        topOffsets = new int[items.size() + 1];
+        topIndices = new int[topCount];
+
+        for (int i = 0, below = 0, top = 0; i < items.size(); i++) {
+            EnvironmentRelations relations = items.get(i).getEnvironmentRelations();
+
+            belowOffsets[i] = below;
+            for (PlacedItem itemBelow : relations.getItemsBelow())
+                belowIndices[below++] = indices.get(itemBelow);
+
+            topOffsets[i] = top;
+            for (PlacedItem itemOnTop : relations.getItemsOnTop())
+                topIndices[top++] = indices.get(itemOnTop);
+        }
+        belowOffsets[items.size()] = belowCount;
+        topOffsets[items.size()] = topCount;
+
+        contactPoints = new AtomicReferenceArray<>(belowCount);
+        supportPolygons = new AtomicReferenceArray<>(items.size());
+    }
+
+    /**
+     * Calculates the support structure of the given items and stores it in their
+     * {@link EnvironmentRelations}. The previously stored items below and on top are replaced, so relations are never
+     * added twice; all other relations of the items are kept. The items must not be read by other threads meanwhile.
+     *
+     * @param version     the layout version of the ULD the items belong to
+     * @param placedItems all items of the layout
+     * @return the support graph of the layout
+     */
+    public static SupportGraph calculate(long version, Collection<PlacedItem> placedItems) {
+        List<PlacedItem> itemsInSequence = new ArrayList<>(placedItems);
+        itemsInSequence.sort(Comparator.comparingInt(placedItem -> placedItem.sequence));
+
+        for (PlacedItem placedItem : itemsInSequence)
+            placedItem.clearSupportRelations();
+
+        FootprintIndex footprintIndex = new FootprintIndex(itemsInSequence);
+        footprintIndex.forEachSupportCandidatePair(itemsInSequence,
+                (candidateBelow, itemOnTop) -> candidateBelow.calculateAndStoreSupportRelation(itemOnTop));
+
+        return new SupportGraph(version, itemsInSequence);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * @return the items of the layout, ordered by sequence
+     */
+    public List<PlacedItem> getItems() {
+        return items;
+    }
+
+    public PlacedItem getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the item's position in sequence order or -1, if it is not part of the layout
+     */
+    public int indexOf(PlacedItem placedItem) {
+        Integer index = indices.get(placedItem);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the number of support relations (edges) of the layout
+     */
+    public int getEdgeCount() {
+        return belowIndices.length;
+    }
+
+    public int getBelowCount(int index) {
+        return belowOffsets[index + 1] - belowOffsets[index];
+    }
+
+    /**
+     * @param index    index of the item on top
+     * @param position position within the item's list of items below, between 0 and {@link #getBelowCount(int)}
+     * @return the index of the item below
+     */
+    public int getBelow(int index, int position) {
+        return belowIndices[belowOffsets[index] + position];
+    }
+
+    public int getTopCount(int index) {
+        return topOffsets[index + 1] - topOffsets[index];
+    }
+
+    /**
+     * @param index    index of the item below
+     * @param position position within the item's list of items on top, between 0 and {@link #getTopCount(int)}
+     * @return the index of the item on top
+     */
+    public int getTop(int index, int position) {
+        return topIndices[topOffsets[index] + position];
+    }
+
+    /**
+     * Row offsets into {@link #getBelowIndices()}, one entry per item plus a trailing entry. Must not be modified.
+     */
+    public int[] getBelowOffsets() {
+        return belowOffsets;
+    }
+
+    /**
+     * Indices of the items below, grouped per item on top. Must not be modified.
+     */
+    public int[] getBelowIndices() {
+        return belowIndices;
+    }
+
+    /**
+     * Row offsets into {@link #getTopIndices()}, one entry per item plus a trailing entry. Must not be modified.
+     */
+    public int[] getTopOffsets() {
+        return topOffsets;
+    }
+
+    /**
+     * Indices of the items on top, grouped per item below. Must not be modified.
+     */
+    public int[] getTopIndices() {
+        return topIndices;
+    }
+
+    /**
+     * @param index      index of the item on top
+     * @param indexBelow index of the item below
+     * @return the position of the item below within the item's list of items below or -1, if it does not support
+     * the item directly
+     */
+    public int findBelowPosition(int index, int indexBelow) {
+        for (int edge = belowOffsets[index]; edge < belowOffsets[index + 1]; edge++)
+            if (belowIndices[edge] == indexBelow)
+                return edge - belowOffsets[index];
+        return -1;
+    }
+
+    /**
+     * Same as {@link PlacedItem#getBaseSupportFactor()}, but calculated only once per layout.
+     *
+     * @param index index of the item
+     * @return percentage of the item's base surface that is supported by the floor and the items below
+     */
+    public double getBaseSupportFactor(int index) {
+        double[] factors = baseSupportFactors;
+        if (factors == null)
+            synchronized (this) {
+                factors = baseSupportFactors;
+                if (factors == null)
+                    baseSupportFactors = factors = calculateBaseSupportFactors();
+            }
+
+        return factors[index];
+    }
+
+    private double[] calculateBaseSupportFactors() {
+        double[] factors = new double[items.size()];
+
+        for (int i = 0; i < items.size(); i++) {
+            PlacedItem item = items.get(i);
+            ItemCoordinates coordinates = item.getItemCoordinates();
+            double supportFactor = item.getFloorSupportFactor();
+
+            for (int edge = belowOffsets[i]; edge < belowOffsets[i + 1]; edge++) {
+                PlacedItem itemBelow = items.get(belowIndices[edge]);
+                if (itemBelow.sequence < item.sequence) {
+                    ItemCoordinates coordinatesBelow = itemBelow.getItemCoordinates();
+                    supportFactor += item.shape.getBaseSupportFactor(itemBelow.shape,
+                            coordinatesBelow.getX() - coordinates.getX(),
+                            coordinatesBelow.getY() - coordinates.getY(),
+                            coordinatesBelow.getZ() - coordinates.getZ());
+                }
+            }
+            factors[i] = supportFactor;
+        }
+
+        return factors;
+    }
+
+    /**
+     * Points of the convex hull of the contact area between an item and an item directly below it, as calculated by
+     * {@link com.wim.palletizing.geometry.dim3.Shape3D#getContactPointsWithBottomShape}.
+     *
+     * @param index    index of the item on top
+     * @param position position within the item's list of items below, between 0 and {@link #getBelowCount(int)}
+     * @return the contact points; must not be modified
+     */
+    public List<Point2D> getContactPoints(int index, int position) {
+        int edge = belowOffsets[index] + position;
+        List<Point2D> points = contactPoints.get(edge);
+        if (points == null) {
+            PlacedItem item = items.get(index);
+            PlacedItem itemBelow = items.get(belowIndices[edge]);
+            points = Collections.unmodifiableList(item.shape.getContactPointsWithBottomShape(itemBelow.shape,
+                    toPoint3D(item.getItemCoordinates()), toPoint3D(itemBelow.getItemCoordinates())));
+            // concurrent callers calculate the same points, the first one is kept
+            if (!contactPoints.compareAndSet(edge, null, points))
+                points = contactPoints.get(edge);
+        }
+        return points;
+    }
+
+    /**
+     * Looks up the contact points between two items of the layout. If the items are not in a direct support
+     * relation, the points are calculated without being cached.
+     *
+     * @param placedItem the item on top
+     * @param itemBelow  the item below
+     * @return the contact points; must not be modified
+     */
+    @Override
+    public List<Point2D> getContactPoints(PlacedItem placedItem, PlacedItem itemBelow) {
+        int index = indexOf(placedItem);
+        int position = index < 0 ? -1 : findBelowPosition(index, indexOf(itemBelow));
+        if (position >= 0)
+            return getContactPoints(index, position);
+
+        return placedItem.shape.getContactPointsWithBottomShape(itemBelow.shape,
+                toPoint3D(placedItem.getItemCoordinates()), toPoint3D(itemBelow.getItemCoordinates()));
+    }
+
+    /**
+     * @param index index of the item
+     * @return the area in which the item is supported by the items directly below it
+     */
+    public SupportPolygon getSupportPolygon(int index) {
+        SupportPolygon supportPolygon = supportPolygons.get(index);
+        if (supportPolygon == null) {
+            supportPolygon = SupportPolygon.calculate(this, index);
+            if (!supportPolygons.compareAndSet(index, null, supportPolygon))
+                supportPolygon = supportPolygons.get(index);
+        }
+        return supportPolygon;
+    }
+
+    private static Point3D toPoint3D(ItemCoordinates coordinates) {
+        return new Point3D(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+
+    /**
+     * Returns the result of the given type attached to this graph, calculating and attaching it on first request.
+     * This way, several criteria assessing the same layout share a result derived from its support structure.
+     *
+     * @param type    the type of the result, used as key
+     * @param factory calculates the result from this graph
+     * @return the attached result
+     */
+    public <T> T getOrCompute(Class<T> type, Function<SupportGraph, ? extends T> factory) {
+        Object attachment = attachments.get(type);
+        if (attachment == null) {
+            // not computeIfAbsent, so a factory may itself request other attachments
+            T calculated = factory.apply(this);
+            attachment = attachments.putIfAbsent(type, calculated);
+            if (attachment == null)
+                attachment = calculated;
+        }
+        return type.cast(attachment);
+    }
+}
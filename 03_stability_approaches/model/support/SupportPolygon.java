@@ -0,0 +1,198 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The area in the x-z plane in which an item is supported by the items directly below it.
+ * <p>
+ * A point is supported if it lies on the footprint of one of the items below (including its edges) or strictly
+ * inside the convex hull of all contact points with the items below. The hull is kept as a primitive array of its
+ * vertices in counterclockwise order, so the containment test needs no allocation. For a hull degenerated to a
+ * point or a line, containment follows the semantics of JTS: a point is contained only if it is equal to the single
+ * point or lies strictly between the endpoints of the line.
+ */
+public class SupportPolygon {
+
+    private static final SupportPolygon EMPTY = new SupportPolygon(new int[0], new int[0], new int[0], new int[0],
+            new double[0], new double[0]);
+
+    /**
+     * Footprints of the items below
+     */
+    private final int[] minX, maxX, minZ, maxZ;
+
+    /**
+     * Vertices of the convex hull of the contact points, counterclockwise
+     */
+    private final double[] hullX, hullZ;
+
+    private SupportPolygon(int[] minX, int[] maxX, int[] minZ, int[] maxZ, double[] hullX, double[] hullZ) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+        this.hullX = hullX;
+        this.hullZ = hullZ;
+    }
+
+    /**
+     * Builds the support polygon of an item from the support graph of its layout.
+     *
+     * @param supportGraph the support graph
+     * @param index        index of the item
+     * @return the item's support polygon
+     */
+    static SupportPolygon calculate(SupportGraph supportGraph, int index) {
+        int belowCount = supportGraph.getBelowCount(index);
+        List<PlacedItem> itemsBelow = new ArrayList<>(belowCount);
+        List<List<Point2D>> contactPoints = new ArrayList<>(belowCount);
+        for (int position = 0; position < belowCount; position++) {
+            itemsBelow.add(supportGraph.getItem(supportGraph.getBelow(index, position)));
+            contactPoints.add(supportGraph.getContactPoints(index, position));
+        }
+        return calculate(itemsBelow, contactPoints);
+    }
+
+    /**
+     * Builds the support polygon of an item from the items directly below it.
+     *
+     * @param itemsBelow    the items directly below the item
+     * @param contactPoints the contact points with each of the items below, in the same order
+     * @return the item's support polygon
+     */
+    static SupportPolygon calculate(List<PlacedItem> itemsBelow, List<List<Point2D>> contactPoints) {
+        int belowCount = itemsBelow.size();
+        if (belowCount == 0)
+            return EMPTY;
+
+        int[] minX = new int[belowCount], maxX = new int[belowCount];
+        int[] minZ = new int[belowCount], maxZ = new int[belowCount];
+
+        int pointCount = 0;
+        for (int position = 0; position < belowCount; position++) {
+            ItemCoordinates coordinates = itemsBelow.get(position).getItemCoordinates();
+            minX[position] = coordinates.getX();
+            maxX[position] = coordinates.getMaxX();
+            minZ[position] = coordinates.getZ();
+            maxZ[position] = coordinates.getMaxZ();
+            pointCount += contactPoints.get(position).size();
+        }
+
+        double[][] points = new double[pointCount][];
+        int next = 0;
+        for (int position = 0; position < belowCount; position++)
+            for (Point2D contactPoint : contactPoints.get(position))
+                points[next++] = new double[]{contactPoint.x, contactPoint.y};
+
+        double[][] hull = convexHull(points);
+        double[] hullX = new double[hull.length], hullZ = new double[hull.length];
+        for (int i = 0; i < hull.length; i++) {
+            hullX[i] = hull[i][0];
+            hullZ[i] = hull[i][1];
+        }
+
+        return new SupportPolygon(minX, maxX, minZ, maxZ, hullX, hullZ);
+    }
+
+    /**
+     * @return true if the point lies on the footprint of an item below or strictly inside the support hull
+     */
+    public boolean isSupported(double x, double z) {
+        return isOnFootprintBelow(x, z) || hullContains(x, z);
+    }
+
+    /**
+     * @return true if the point lies on the footprint of one of the items below, including its edges
+     */
+    public boolean isOnFootprintBelow(double x, double z) {
+        for (int i = 0; i < minX.length; i++)
+            if (minX[i] <= x && x <= maxX[i] && minZ[i] <= z && z <= maxZ[i])
+                return true;
+        return false;
+    }
+
+    /**
+     * @return true if the point lies strictly inside the convex hull of the contact points
+     */
+    public boolean hullContains(double x, double z) {
+        int n = hullX.length;
+        if (n == 0)
+            return false;
+        if (n == 1)
+            return x == hullX[0] && z == hullZ[0];
+        if (n == 2) {
+            double dx = hullX[1] - hullX[0], dz = hullZ[1] - hullZ[0];
+            if (cross(hullX[0], hullZ[0], hullX[1], hullZ[1], x, z) != 0)
+                return false;
+            double projection = (x - hullX[0]) * dx + (z - hullZ[0]) * dz;
+            return projection > 0 && projection < dx * dx + dz * dz;
+        }
+
+        for (int i = 0, j = n - 1; i < n; j = i++)
+            if (cross(hullX[j], hullZ[j], hullX[i], hullZ[i], x, z) <= 0)
+                return false;
+        return true;
+    }
+
+    public int getHullVertexCount() {
+        return hullX.length;
+    }
+
+    public double getHullX(int vertex) {
+        return hullX[vertex];
+    }
+
+    public double getHullZ(int vertex) {
+        return hullZ[vertex];
+    }
+
+    /**
+     * Andrew's monotone chain; collinear and duplicate points are dropped.
+     *
+     * @return the vertices of the hull in counterclockwise order
+     */
+    private static double[][] convexHull(double[][] points) {
+        if (points.length == 0)
+            return points;
+
+        double[][] sorted = points.clone();
+        Arrays.sort(sorted, (p1, p2) -> p1[0] != p2[0] ? Double.compare(p1[0], p2[0]) : Double.compare(p1[1], p2[1]));
+
+        double[][] hull = new double[2 * sorted.length][];
+        int size = 0;
+
+        for (double[] point : sorted) {
+            while (size >= 2 && cross(hull[size - 2][0], hull[size - 2][1], hull[size - 1][0], hull[size - 1][1],
+                    point[0], point[1]) <= 0)
+                size--;
+            hull[size++] = point;
+        }
+        for (int i = sorted.length - 2, lowerSize = size + 1; i >= 0; i--) {
+            double[] point = sorted[i];
+            while (size >= lowerSize && cross(hull[size - 2][0], hull[size - 2][1], hull[size - 1][0],
+                    hull[size - 1][1], point[0], point[1]) <= 0)
+                size--;
+            hull[size++] = point;
+        }
+
+        // the last point equals the first one; a single distinct point remains twice
+        size = Math.max(1, size - 1);
+        if (size == 2 && hull[0][0] == hull[1][0] && hull[0][1] == hull[1][1])
+            size = 1;
+        return Arrays.copyOf(hull, size);
+    }
+
+    /**
+     * @return positive if (x3, z3) lies left of the directed line from (x1, z1) to (x2, z2), negative if it lies
+     * right of it and 0 if the three points are collinear
+     */
+    private static double cross(double x1, double z1, double x2, double z2, double x3, double z3) {
+        return (x2 - x1) * (z3 - z1) - (z2 - z1) * (x3 - x1);
+    }
+}
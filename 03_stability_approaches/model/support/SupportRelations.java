@@ -0,0 +1,40 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.model.item.EnvironmentRelations;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.List;
+
+/**
+ * The items directly below and on top of the items of a layout, each ordered by sequence
+ */
+public interface SupportRelations {
+
+    /**
+     * The relations stored in the {@link EnvironmentRelations} of the items
+     */
+    SupportRelations ENVIRONMENT_RELATIONS = new SupportRelations() {
+
+        @Override
+        public List<PlacedItem> getItemsBelow(PlacedItem placedItem) {
+            return placedItem.getEnvironmentRelations().getItemsBelow();
+        }
+
+        @Override
+        public List<PlacedItem> getItemsOnTop(PlacedItem placedItem) {
+            return placedItem.getEnvironmentRelations().getItemsOnTop();
+        }
+    };
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the items the item rests on directly; must not be modified
+     */
+    List<PlacedItem> getItemsBelow(PlacedItem placedItem);
+
+    /**
+     * @param placedItem an item of the layout
+     * @return the items resting directly on the item; must not be modified
+     */
+    List<PlacedItem> getItemsOnTop(PlacedItem placedItem);
+}
@@ -0,0 +1,544 @@
+package com.wim.assessment.staticStability;
+
+import com.wim.palletizing.assessment.staticStability.baseSupport.FullBaseSupportCriterion;
+import com.wim.palletizing.assessment.staticStability.baseSupport.PacquayCriterion;
+import com.wim.palletizing.assessment.staticStability.sme.CriteriasToCompare.ScienceOfStaticKrebsCriterion;
+import com.wim.palletizing.assessment.staticStability.sme.CriteriasToCompare.ScienceOfStaticRamosCriterion;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.SequentialForceCalculation;
+import com.wim.palletizing.assessment.staticStability.sme.ScienceOfStaticAssessmentService;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.ULDUnderConstruction;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.IncrementalSupportGraph;
+import org.locationtech.jts.geom.TopologyException;
+
+import java.util.*;
+
+/**
+ * Assesses a layout under construction while its items are appended one after another and removed again from the
+ * end, e.g. by a constructive heuristic trying items, instead of assessing a new {@link com.wim.palletizing.model.ULD}
+ * of the items after every placement.
+ * <p>
+ * The items are appended in sequence order. The support relations, base support factors and support polygons are kept
+ * by an {@link IncrementalSupportGraph} and the forces of the SME by an undoable {@link SequentialForceCalculation}.
+ * For the other criteria the session keeps which items are unstable in their own sequence step, and appending or
+ * removing an item only evaluates the items whose outcome it can change:
+ * <ul>
+ *     <li>Base support: the factor of the appended item, kept as prefix minima like by the
+ *     {@link com.wim.palletizing.assessment.staticStability.baseSupport.MultiThresholdBaseSupportEvaluator}</li>
+ *     <li>Pacquay: the item and the items directly on top of it, whose support polygon changes</li>
+ *     <li>Krebs: the item and the items which get it as item directly below or in their corridor below</li>
+ *     <li>Ramos: the item and the items it supports directly or indirectly</li>
+ * </ul>
+ * The scores are the same as the ones of the criteria for a layout of the appended items. Pacquay, Ramos and Krebs
+ * only assess boxes; their state is not kept while an item of another shape is appended. A session is not
+ * thread-safe; the support relations are kept by its graph, the environment relations of the appended items are not
+ * changed.
+ */
+public class IncrementalAssessmentSession {
+
+    private final IncrementalSupportGraph supportGraph = new IncrementalSupportGraph();
+
+    private final ScienceOfStaticAssessmentService scienceOfStaticAssessmentService;
+
+    private final SequentialForceCalculation forceCalculation;
+
+    /**
+     * Per appended item, in sequence order
+     */
+    private final List<ItemState> itemStates = new ArrayList<>();
+
+    /**
+     * Number of appended items with a shape other than {@link Box}
+     */
+    private int irregularItemCount;
+
+    /**
+     * Positions of the items which are unstable in their own step, per criterion
+     */
+    private final BitSet pacquayUnstable = new BitSet(), krebsUnstable = new BitSet(), ramosUnstable = new BitSet();
+
+    /**
+     * Position of the item the force calculation failed for or -1
+     */
+    private int forceCalculationFailure = -1;
+
+    /**
+     * The sequence the force calculation became unstable in and the item unstable in it, or -1 and null while all
+     * placed items are stable
+     */
+    private int firstUnstableSequence = -1;
+    private PlacedItem unstableItem;
+
+    private int stamp;
+
+    /**
+     * @param scienceOfStaticAssessmentService the service whose solver and solution cache are used and which scores
+     *                                         the forces
+     */
+    public IncrementalAssessmentSession(ScienceOfStaticAssessmentService scienceOfStaticAssessmentService) {
+        this.scienceOfStaticAssessmentService = scienceOfStaticAssessmentService;
+        this.forceCalculation = new SequentialForceCalculation(supportGraph, supportGraph,
+                scienceOfStaticAssessmentService.getSolutionCache(),
+                scienceOfStaticAssessmentService.getReactionForceSolver(), true, null);
+    }
+
+    /**
+     * Creates a session of the items placed in the layout so far
+     *
+     * @param uldUnderConstruction             the layout under construction
+     * @param scienceOfStaticAssessmentService the service used for the SME
+     * @return the session with all placed items appended
+     */
+    public static IncrementalAssessmentSession of(ULDUnderConstruction uldUnderConstruction,
+                                                  ScienceOfStaticAssessmentService scienceOfStaticAssessmentService) {
+        IncrementalAssessmentSession session = new IncrementalAssessmentSession(scienceOfStaticAssessmentService);
+
+        List<PlacedItem> placedItems = new ArrayList<>(uldUnderConstruction.placedItems.values());
+        placedItems.sort(Comparator.comparingInt(item -> item.sequence));
+        for (PlacedItem placedItem : placedItems)
+            session.append(placedItem);
+        return session;
+    }
+
+    /**
+     * Appends the item to the layout and updates the assessment of the items affected by it
+     *
+     * @param placedItem the item, its sequence greater than the ones of all items appended before
+     * @throws IllegalArgumentException if the sequence of the item is not greater than the one of the last item
+     */
+    public void append(PlacedItem placedItem) {
+        int index = supportGraph.append(placedItem);
+        ItemState state = new ItemState();
+        itemStates.add(state);
+
+        double baseSupportFactor = supportGraph.getBaseSupportFactor(index);
+        double minimumFactor = index == 0 ? Double.POSITIVE_INFINITY : itemStates.get(index - 1).prefixMinimumFactor;
+        // like in FullBaseSupportCriterion, an undefined factor never fails
+        state.prefixMinimumFactor = Double.isNaN(baseSupportFactor) ? minimumFactor
+                : Math.min(minimumFactor, baseSupportFactor);
+
+        if (!(placedItem.shape instanceof Box))
+            irregularItemCount++;
+        if (irregularItemCount == 0) {
+            Pair<Point2D, Double> itemCoMAndForce = ScienceOfStaticRamosCriterion.getItemCoMAndForce(placedItem);
+            state.ownMomentX = itemCoMAndForce.first.x;
+            state.ownMomentZ = itemCoMAndForce.first.y;
+            state.ownForce = itemCoMAndForce.second;
+
+            addItemsInCorridor(index);
+            invalidateLocalStability(index);
+
+            Set<Integer> affected = getAffectedItems(index);
+            affected.add(index);
+            updateAssessments(affected, getSupportedClosure(index));
+        }
+
+        placeInForceCalculation(index);
+    }
+
+    /**
+     * Removes the item appended last and updates the assessment of the items affected by it
+     *
+     * @return the removed item
+     * @throws IllegalStateException if no item has been appended
+     */
+    public PlacedItem removeLast() {
+        if (itemStates.isEmpty())
+            throw new IllegalStateException("No item has been appended");
+
+        int index = itemStates.size() - 1;
+        ItemState state = itemStates.get(index);
+        boolean assessed = irregularItemCount == 0;
+
+        Set<Integer> affected = Collections.emptySet(), supportedClosure = Collections.emptySet();
+        if (assessed) {
+            affected = getAffectedItems(index);
+            supportedClosure = getSupportedClosure(index);
+            supportedClosure.remove(index);
+            for (int indexBelow : state.corridorAbove) {
+                List<Integer> itemsInCorridorBelow = itemStates.get(indexBelow).itemsInCorridorBelow;
+                itemsInCorridorBelow.remove(itemsInCorridorBelow.size() - 1);
+            }
+            invalidateLocalStability(index);
+        }
+
+        // the item is the last one placed in the force calculation, if it has been placed, and the only one an item
+        // can have become unstable by, as no item is placed after it
+        if (forceCalculation.getPlacedItemCount() > index) {
+            forceCalculation.removeLastItem();
+            firstUnstableSequence = -1;
+            unstableItem = null;
+        }
+        if (forceCalculationFailure == index)
+            forceCalculationFailure = -1;
+
+        PlacedItem placedItem = supportGraph.removeLast();
+        itemStates.remove(index);
+        pacquayUnstable.clear(index);
+        krebsUnstable.clear(index);
+        ramosUnstable.clear(index);
+
+        if (!(placedItem.shape instanceof Box))
+            irregularItemCount--;
+        if (assessed)
+            updateAssessments(affected, supportedClosure);
+
+        return placedItem;
+    }
+
+    /**
+     * Reevaluates Pacquay and Krebs for the affected items and Ramos for the items resting on the appended or
+     * removed item
+     *
+     * @param affected         the items whose support polygon, items below or items in the corridor below changed
+     * @param supportedClosure the items whose items below (directly or indirectly) changed
+     */
+    private void updateAssessments(Set<Integer> affected, Set<Integer> supportedClosure) {
+        for (int i : affected) {
+            pacquayUnstable.set(i, !PacquayCriterion.isStableOnSupportPolygon(supportGraph.getItem(i),
+                    supportGraph.getSupportPolygon(i)));
+            krebsUnstable.set(i, !isStableAfterKrebs(i));
+        }
+
+        for (int i : supportedClosure)
+            ramosUnstable.set(i, !isStableAfterRamos(i, i));
+    }
+
+    /**
+     * @return the items directly on top of the item and the items it lies in the corridor below of
+     */
+    private Set<Integer> getAffectedItems(int index) {
+        Set<Integer> affected = new TreeSet<>(itemStates.get(index).corridorAbove);
+        for (int position = 0; position < supportGraph.getTopCount(index); position++)
+            affected.add(supportGraph.getTop(index, position));
+        return affected;
+    }
+
+    /**
+     * @return the item and all items resting on it directly or indirectly, ascending
+     */
+    private Set<Integer> getSupportedClosure(int index) {
+        Set<Integer> closure = new TreeSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        closure.add(index);
+        stack.push(index);
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            for (int position = 0; position < supportGraph.getTopCount(current); position++) {
+                int top = supportGraph.getTop(current, position);
+                if (closure.add(top))
+                    stack.push(top);
+            }
+        }
+        return closure;
+    }
+
+    private void placeInForceCalculation(int index) {
+        if (forceCalculationFailure >= 0 || !forceCalculation.isStable()
+                || forceCalculation.getPlacedItemCount() != index)
+            return;
+
+        try {
+            if (!forceCalculation.placeItem(supportGraph.getItem(index))) {
+                firstUnstableSequence = forceCalculation.getCurrentSequence();
+                unstableItem = forceCalculation.getUnstableItem();
+            }
+        } catch (TopologyException | IllegalArgumentException e) {
+            forceCalculationFailure = index;
+        }
+    }
+
+    /*
+     * Krebs
+     */
+
+    /**
+     * Adds the item to the corridor below of the items appended before and these to its own, with the checks of
+     * {@link ScienceOfStaticKrebsCriterion}
+     */
+    private void addItemsInCorridor(int index) {
+        PlacedItem p2 = supportGraph.getItem(index);
+        ItemCoordinates coordinates2 = p2.getItemCoordinates();
+        ItemState state = itemStates.get(index);
+
+        for (int i : supportGraph.getEarlierItemsWithOverlappingFootprint(index)) {
+            PlacedItem p1 = supportGraph.getItem(i);
+            ItemCoordinates coordinates1 = p1.getItemCoordinates();
+
+            int theoreticalY = p1.getMinPossibleYForOtherShape(p2.shape, coordinates2.getX(), coordinates2.getZ());
+
+            //No corridor intersection or item directly on top
+            if (theoreticalY == 0 || theoreticalY == coordinates2.getY())
+                continue;
+
+            //Item p1 in corridor below p2
+            if (coordinates2.getY() > theoreticalY) {
+                state.itemsInCorridorBelow.add(i);
+                continue;
+            }
+
+            theoreticalY = p2.getMinPossibleYForOtherShape(p1.shape, coordinates1.getX(), coordinates1.getZ());
+
+            //Item p2 in corridor below p1
+            if (theoreticalY != coordinates1.getY() && coordinates1.getY() > theoreticalY) {
+                itemStates.get(i).itemsInCorridorBelow.add(index);
+                state.corridorAbove.add(i);
+            }
+        }
+    }
+
+    private boolean isStableAfterKrebs(int index) {
+        PlacedItem item = supportGraph.getItem(index);
+        if (item.isBottomItem())
+            return true;
+
+        double centerX = item.getItemCoordinates().getX() + ((Box) item.shape).width * 0.5;
+        double centerZ = item.getItemCoordinates().getZ() + ((Box) item.shape).depth * 0.5;
+
+        List<PlacedItem> allItemsSomehowBelow = new ArrayList<>();
+        for (int position = 0; position < supportGraph.getBelowCount(index); position++)
+            allItemsSomehowBelow.add(supportGraph.getItem(supportGraph.getBelow(index, position)));
+        for (int indexBelow : itemStates.get(index).itemsInCorridorBelow)
+            allItemsSomehowBelow.add(supportGraph.getItem(indexBelow));
+
+        if (!isCenterWithinLevels(centerX, centerZ, allItemsSomehowBelow))
+            return false;
+
+        return !(supportGraph.getBaseSupportFactor(index)
+                < ScienceOfStaticKrebsCriterion.MIN_SUPPORT_FACTOR - ScienceOfStaticKrebsCriterion.EPSILON);
+    }
+
+    /**
+     * The level check of {@link ScienceOfStaticKrebsCriterion}: for the top surface of every given item, the
+     * footprints of the given items crossing or ending at its height must enclose the center
+     */
+    private static boolean isCenterWithinLevels(double centerX, double centerZ, List<PlacedItem> itemsBelow) {
+        int[] levels = itemsBelow.stream().mapToInt(item -> item.getItemCoordinates().getMaxY()).sorted().distinct()
+                .toArray();
+
+        for (int levelY : levels) {
+            int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minZ = Integer.MAX_VALUE, maxZ = Integer.MIN_VALUE;
+            for (PlacedItem itemBelow : itemsBelow) {
+                ItemCoordinates coordinates = itemBelow.getItemCoordinates();
+                if (coordinates.getY() < levelY && levelY <= coordinates.getMaxY()) {
+                    minX = Math.min(minX, coordinates.getX());
+                    maxX = Math.max(maxX, coordinates.getMaxX());
+                    minZ = Math.min(minZ, coordinates.getZ());
+                    maxZ = Math.max(maxZ, coordinates.getMaxZ());
+                }
+            }
+            if (centerX <= minX || centerX >= maxX || centerZ <= minZ || centerZ >= maxZ)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Ramos
+     */
+
+    /**
+     * Same as {@link com.wim.palletizing.model.support.SupportClosureEvaluator#isStable(int, int)} on the items of
+     * the session
+     */
+    private boolean isStableAfterRamos(int index, int step) {
+        if (supportGraph.getItem(index).isBottomItem())
+            return true;
+
+        stamp++;
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(index);
+        itemStates.get(index).visited = stamp;
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            if (!supportGraph.getItem(current).isBottomItem() && !isLocallyStable(current, step))
+                return false;
+
+            for (int position = 0; position < supportGraph.getBelowCount(current); position++) {
+                int below = supportGraph.getBelow(current, position);
+                if (itemStates.get(below).visited != stamp) {
+                    itemStates.get(below).visited = stamp;
+                    stack.push(below);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Local stability of the item with the items on top placed at the step, memoized until the step reaches the
+     * sequence of the next item on top or the items around the item change
+     */
+    private boolean isLocallyStable(int index, int step) {
+        ItemState state = itemStates.get(index);
+        if (state.validFrom <= step && step <= state.validTo)
+            return state.locallyStable;
+
+        double momentX = state.ownMomentX, momentZ = state.ownMomentZ, force = state.ownForce;
+        int from = Integer.MIN_VALUE, to = Integer.MAX_VALUE;
+        // the items on top are ordered by sequence
+        for (int position = 0; position < supportGraph.getTopCount(index); position++) {
+            int top = supportGraph.getTop(index, position);
+            int sequence = supportGraph.getItem(top).sequence;
+            if (sequence > step) {
+                to = sequence - 1;
+                break;
+            }
+            ItemState topState = itemStates.get(top);
+            momentX += topState.ownMomentX;
+            momentZ += topState.ownMomentZ;
+            force += topState.ownForce;
+            from = sequence;
+        }
+
+        state.locallyStable = supportGraph.getSupportPolygon(index).isSupported(momentX / force, momentZ / force);
+        state.validFrom = from;
+        state.validTo = to;
+        return state.locallyStable;
+    }
+
+    /**
+     * Drops the memoized local stability of the item and the items directly below and on top of it
+     */
+    private void invalidateLocalStability(int index) {
+        itemStates.get(index).invalidateLocalStability();
+        for (int position = 0; position < supportGraph.getBelowCount(index); position++)
+            itemStates.get(supportGraph.getBelow(index, position)).invalidateLocalStability();
+        for (int position = 0; position < supportGraph.getTopCount(index); position++)
+            itemStates.get(supportGraph.getTop(index, position)).invalidateLocalStability();
+    }
+
+    /*
+     * Scores
+     */
+
+    public int getItemCount() {
+        return itemStates.size();
+    }
+
+    public IncrementalSupportGraph getSupportGraph() {
+        return supportGraph;
+    }
+
+    /**
+     * @return the score of the {@link FullBaseSupportCriterion}
+     */
+    public double getFullBaseSupportScore() {
+        return getBaseSupportScore(1.0d);
+    }
+
+    /**
+     * @param alpha the minimal base support factor of the
+     *              {@link com.wim.palletizing.assessment.staticStability.baseSupport.PartialBaseSupportCriterion}
+     * @return the score of the criterion
+     */
+    public double getPartialBaseSupportScore(double alpha) {
+        return getBaseSupportScore(alpha);
+    }
+
+    private double getBaseSupportScore(double minBaseSupportFactor) {
+        double limit = minBaseSupportFactor - FullBaseSupportCriterion.EPSILON;
+
+        // the prefix minima are non-increasing
+        int low = 0, high = itemStates.size() - 1, firstFailing = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (itemStates.get(mid).prefixMinimumFactor < limit) {
+                firstFailing = mid;
+                high = mid - 1;
+            } else
+                low = mid + 1;
+        }
+        return firstFailing < 0 ? 1.0 : (double) supportGraph.getItem(firstFailing).sequence / itemStates.size();
+    }
+
+    /**
+     * @return the score of the {@link PacquayCriterion}
+     */
+    public double getPacquayScore() {
+        return getBoxScore(pacquayUnstable);
+    }
+
+    /**
+     * @return the score of the {@link ScienceOfStaticRamosCriterion}
+     */
+    public double getRamosScore() {
+        return getBoxScore(ramosUnstable);
+    }
+
+    /**
+     * @return the score of the {@link ScienceOfStaticKrebsCriterion}
+     */
+    public double getKrebsScore() {
+        return getBoxScore(krebsUnstable);
+    }
+
+    private double getBoxScore(BitSet unstable) {
+        if (itemStates.isEmpty())
+            return 1.0;
+        if (irregularItemCount > 0)
+            return -1;
+
+        int firstUnstable = unstable.nextSetBit(0);
+        return (double) (firstUnstable < 0 ? itemStates.size() : firstUnstable) / itemStates.size();
+    }
+
+    /**
+     * @return the SME score of the items, like sequence-major by the {@link ScienceOfStaticAssessmentService}, or -1
+     * if the forces can not be calculated
+     */
+    public double getSmeScore() {
+        if (forceCalculationFailure >= 0)
+            return -1;
+        if (itemStates.isEmpty())
+            return 1.0;
+
+        return scienceOfStaticAssessmentService.scoreFirstUnstableSequence(supportGraph.getItems(),
+                firstUnstableSequence, unstableItem, supportGraph);
+    }
+
+    /**
+     * The state of the assessments of one item
+     */
+    private static final class ItemState {
+
+        /**
+         * Minimal base support factor of the items up to (including) this one
+         */
+        private double prefixMinimumFactor;
+
+        /**
+         * The item's own force and its moments, like in {@link ScienceOfStaticRamosCriterion}
+         */
+        private double ownMomentX, ownMomentZ, ownForce;
+
+        /**
+         * Memoized local stability, valid for the steps from validFrom up to (including) validTo
+         */
+        private boolean locallyStable;
+        private int validFrom = Integer.MAX_VALUE, validTo = Integer.MIN_VALUE;
+
+        private int visited;
+
+        /**
+         * Items in the corridor below the item, which are not directly below it
+         */
+        private final List<Integer> itemsInCorridorBelow = new ArrayList<>();
+
+        /**
+         * Items the item has been added to the corridor below of, when it was appended
+         */
+        private final List<Integer> corridorAbove = new ArrayList<>();
+
+        void invalidateLocalStability() {
+            validFrom = Integer.MAX_VALUE;
+            validTo = Integer.MIN_VALUE;
+        }
+    }
+}
@@ -6,7 +6,6 @@ import com.wim.assessment.AbstractAssessmentCriterion;
 import com.wim.assessment.AssessmentCriterionType;
 import com.wim.model.ULD;
 import com.wim.model.item.InputItemSet;
-import com.wim.model.item.PlacedItem;
 import com.wim.model.uld_properties.ULDProperties;
 import org.springframework.data.annotation.PersistenceConstructor;
 
@@ -59,26 +58,15 @@ public class FullBaseSupportCriterion extends AbstractAssessmentCriterion {
     @Override
     protected double assessUld(ULD uld) {
 
-        assureULDSupportStructureHasBeenCalculated(uld);
-
         int nItems = uld.getItemCount();
         if (nItems == 0) return 1.0;
-        for (PlacedItem item: uld.getPlacedItemsSorted()){
-            double baseSupportFactor = item.getBaseSupportFactor();
-            if (Math.abs(baseSupportFactor - this.minBaseSupportFactor) <= EPSILON) continue;
-            if (baseSupportFactor < this.minBaseSupportFactor) return (double) item.sequence / nItems;
-        }
-        return 1.0;
+
+        // shared by all base support criteria assessing this layout
+        return MultiThresholdBaseSupportEvaluator.of(uld).getScore(this.minBaseSupportFactor);
     }
 
     public static void assureULDSupportStructureHasBeenCalculated(ULD uld) {
-        if (uld.getPlacedItems().isEmpty())
-            return;
-
-        PlacedItem testItem = uld.getPlacedItems().values().iterator().next();
-
-        if (testItem.getEnvironmentRelations().getItemsBelow().isEmpty() && testItem.getEnvironmentRelations().getItemsOnTop().isEmpty())
-            uld.calculateItemSupportStructure();
+        uld.updateSupportGraph();
     }
 
     @Override
@@ -0,0 +1,104 @@
+package com.wim.assessment.staticStability.baseSupport;
+
+import com.wim.model.ULD;
+import com.wim.model.item.PlacedItem;
+import com.wim.model.support.SupportGraph;
+
+/**
+ * Evaluates the base support of a layout for any number of minimal base support factors at once.
+ * <p>
+ * The base support factor of every item is read once and the sequence is walked once, keeping the minimal factor
+ * of all items up to each position. An item fails a threshold alpha if its factor is below alpha by more than
+ * {@link FullBaseSupportCriterion#EPSILON}, so the first failing item for any alpha is found by a binary search over
+ * these (non-increasing) prefix minima. The evaluator is attached to the {@link SupportGraph} of the layout, so the
+ * {@link FullBaseSupportCriterion} and all {@link PartialBaseSupportCriterion}s of a job share it.
+ */
+public class MultiThresholdBaseSupportEvaluator {
+
+    /**
+     * Sequences of the items, ordered by sequence
+     */
+    private final int[] sequences;
+
+    /**
+     * Minimal base support factor of the items up to (including) each position
+     */
+    private final double[] prefixMinimumFactors;
+
+    public MultiThresholdBaseSupportEvaluator(SupportGraph supportGraph) {
+        int nItems = supportGraph.getItemCount();
+        sequences = new int[nItems];
+        prefixMinimumFactors = new double[nItems];
+
+        double minimumFactor = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < nItems; i++) {
+            PlacedItem item = supportGraph.getItem(i);
+            sequences[i] = item.sequence;
+            double baseSupportFactor = supportGraph.getBaseSupportFactor(i);
+            // like in FullBaseSupportCriterion, an undefined factor never fails
+            if (!Double.isNaN(baseSupportFactor))
+                minimumFactor = Math.min(minimumFactor, baseSupportFactor);
+            prefixMinimumFactors[i] = minimumFactor;
+        }
+    }
+
+    /**
+     * @param uld the layout whose support graph is evaluated
+     * @return the evaluator attached to the layout's current support graph
+     */
+    public static MultiThresholdBaseSupportEvaluator of(ULD uld) {
+        return uld.updateSupportGraph().getOrCompute(MultiThresholdBaseSupportEvaluator.class,
+                MultiThresholdBaseSupportEvaluator::new);
+    }
+
+    /**
+     * @param minBaseSupportFactor the minimal base support factor every item must reach
+     * @return the position (in sequence order) of the first item with a lower base support factor or -1, if all
+     * items reach it
+     */
+    public int getFirstFailingPosition(double minBaseSupportFactor) {
+        double limit = minBaseSupportFactor - FullBaseSupportCriterion.EPSILON;
+
+        int low = 0, high = prefixMinimumFactors.length - 1, firstFailing = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (prefixMinimumFactors[mid] < limit) {
+                firstFailing = mid;
+                high = mid - 1;
+            } else
+                low = mid + 1;
+        }
+        return firstFailing;
+    }
+
+    /**
+     * @param minBaseSupportFactor the minimal base support factor every item must reach
+     * @return the sequence of the first item with a lower base support factor or -1, if all items reach it
+     */
+    public int getFirstFailingSequence(double minBaseSupportFactor) {
+        int position = getFirstFailingPosition(minBaseSupportFactor);
+        return position < 0 ? -1 : sequences[position];
+    }
+
+    /**
+     * Same score as {@link FullBaseSupportCriterion} with the given minimal base support factor.
+     *
+     * @param minBaseSupportFactor the minimal base support factor every item must reach
+     * @return the sequence of the first failing item divided by the number of items, 1.0 if no item fails
+     */
+    public double getScore(double minBaseSupportFactor) {
+        int position = getFirstFailingPosition(minBaseSupportFactor);
+        return position < 0 ? 1.0 : (double) sequences[position] / sequences.length;
+    }
+
+    /**
+     * @param minBaseSupportFactors the thresholds to evaluate
+     * @return the score for each threshold, in the order of the thresholds
+     */
+    public double[] getScores(double... minBaseSupportFactors) {
+        double[] scores = new double[minBaseSupportFactors.length];
+        for (int i = 0; i < minBaseSupportFactors.length; i++)
+            scores[i] = getScore(minBaseSupportFactors[i]);
+        return scores;
+    }
+}
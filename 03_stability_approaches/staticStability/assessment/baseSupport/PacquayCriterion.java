@@ -6,20 +6,15 @@ import com.wim.assessment.AbstractAssessmentCriterion;
 import com.wim.assessment.AssessmentCriterionType;
 import com.wim.geometry.dim2.Point2D;
 import com.wim.geometry.dim3.Box;
-import com.wim.geometry.dim3.Point3D;
 import com.wim.model.ULD;
 import com.wim.model.item.InputItemSet;
 import com.wim.model.item.PlacedItem;
+import com.wim.model.support.SupportGraph;
+import com.wim.model.support.SupportPolygon;
 import com.wim.model.uld_properties.ULDProperties;
-import org.locationtech.jts.algorithm.ConvexHull;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
 import org.springframework.data.annotation.PersistenceConstructor;
 
 import javax.persistence.Entity;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
@@ -67,8 +62,8 @@ public class PacquayCriterion extends AbstractAssessmentCriterion {
         if (uld.isEmpty())
             return 1.0;
 
-        // First, calculate all environment relations of every item (Items on top or bottom)
-        this.calculateULDSupportStructure(uld);
+        // First, assure all environment relations of every item (Items on top or bottom) have been calculated
+        SupportGraph supportGraph = uld.updateSupportGraph();
 
         //Only applicable to boxes, check for non-boxes
         for (PlacedItem item : uld.getPlacedItemsSorted())
@@ -77,29 +72,30 @@ public class PacquayCriterion extends AbstractAssessmentCriterion {
 
         int sequence = 0;
         for (PlacedItem item : uld.getPlacedItemsSorted()) {
-            if (!this.isStableWithItemAtSequence(item, uld, sequence)) {
+            if (!this.isStableWithItem(item, supportGraph)) {
                 break;
             }
             sequence++;
         }
         return (double) sequence / uld.getPlacedItemsSorted().size();
     }
-    private void calculateULDSupportStructure(ULD uld) {
-        //Take the first item of the ULD and look, if there is a support structure present (dummy check)
-        PlacedItem item = uld.getPlacedItems().values().iterator().next();
-
-        // if support structure has not been calculated, calculate it (is the case if no items are below and above)
-        if (item.getEnvironmentRelations().getItemsBelow().isEmpty() && item.getEnvironmentRelations().getItemsOnTop().isEmpty())
-            uld.calculateItemSupportStructure();
+    /**
+     * Detects instability caused by placing the given item
+     * @param item
+     * @param supportGraph the support graph of the layout
+     * @returns True if the item is stable; False if it is unstable
+     */
+    private boolean isStableWithItem(PlacedItem item, SupportGraph supportGraph) {
+        return isStableOnSupportPolygon(item, supportGraph.getSupportPolygon(supportGraph.indexOf(item)));
     }
+
     /**
-     * Detects instability at a given sequence
+     * Detects instability of an item by the support of its corners, independent of the layout it is placed in
      * @param item
-     * @param uld
-     * @param sequence
-     * @returns True if the sequence is stable; False if it is unstable
+     * @param supportPolygon the area in which the item is supported by the items directly below it
+     * @returns True if at least three corners are supported or the item is a bottom item; False otherwise
      */
-    private boolean isStableWithItemAtSequence(PlacedItem item, ULD uld, int sequence) {
+    public static boolean isStableOnSupportPolygon(PlacedItem item, SupportPolygon supportPolygon) {
         if (item.isBottomItem())
             return true;
 
@@ -111,50 +107,18 @@ public class PacquayCriterion extends AbstractAssessmentCriterion {
                 item.getItemCoordinates().getZ() + item.shape.getDepth());
 
         int supportedNr = 0;
-        if (this.isPointSupported(item, corner1))
+        if (supportPolygon.isSupported(corner1.x, corner1.y))
             supportedNr++;
-        if (this.isPointSupported(item, corner2))
+        if (supportPolygon.isSupported(corner2.x, corner2.y))
             supportedNr++;
-        if (this.isPointSupported(item, corner3))
+        if (supportPolygon.isSupported(corner3.x, corner3.y))
             supportedNr++;
-        if (this.isPointSupported(item, corner4))
+        if (supportPolygon.isSupported(corner4.x, corner4.y))
             supportedNr++;
 
         return supportedNr >= 3;
 
     }
-    private boolean isPointSupported(PlacedItem item, Point2D point2D) {
-        List<Coordinate> supportPolygonCreationList = new ArrayList<>();
-
-
-        for (PlacedItem itemBelow : item.getEnvironmentRelations().getItemsBelow()) {
-            if ((itemBelow.getItemCoordinates().getX() <= point2D.x && point2D.x <= itemBelow.getItemCoordinates().getMaxX()) && (itemBelow.getItemCoordinates().getZ() <= point2D.y && point2D.y <= itemBelow.getItemCoordinates().getMaxZ())) {
-                return true;
-            }
-
-            List<Point2D> contactPoints = item.shape.getContactPointsWithBottomShape(itemBelow.shape,
-                    new Point3D(item.getItemCoordinates().getX(), item.getItemCoordinates().getY(),
-                            item.getItemCoordinates().getZ()), new Point3D(itemBelow.getItemCoordinates().getX(),
-                            itemBelow.getItemCoordinates().getY(), itemBelow.getItemCoordinates().getZ()));
-
-            for (Point2D contactPoint2D: contactPoints){
-                supportPolygonCreationList.add(new Coordinate(contactPoint2D.x, contactPoint2D.y));
-            }
-        }
-        Coordinate[] supportPolygonCoordinates = new Coordinate[supportPolygonCreationList.size()];
-        supportPolygonCoordinates = supportPolygonCreationList.toArray(supportPolygonCoordinates);
-
-        GeometryFactory gf = new GeometryFactory();
-
-        ConvexHull ch = new ConvexHull(supportPolygonCoordinates, gf);
-
-        Geometry supportPolygon = ch.getConvexHull();
-
-        Point forcePoint = gf.createPoint(new Coordinate(point2D.x, point2D.y));
-
-        return supportPolygon.contains(forcePoint);
-    }
-
 
     @Override
     public AbstractAssessmentCriterion copy() {
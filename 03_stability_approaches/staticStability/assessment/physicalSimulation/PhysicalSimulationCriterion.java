@@ -68,10 +68,11 @@ public class PhysicalSimulationCriterion extends AbstractAssessmentCriterion
     protected double assessUld(ULD uld) {
         if(uld.isEmpty())
             return 1.0;
-        PhysicalSimulation simulation = new PhysicalSimulation(uld, this.configuration);
-        return simulation.simulate(this.configuration.epsilonTranslation,
-                        this.configuration.resolution,
-                        this.configuration.time, this.configuration.epsilonRotation);
+        try (PhysicalSimulation simulation = new PhysicalSimulation(uld, this.configuration)) {
+            return simulation.simulate(this.configuration.epsilonTranslation,
+                            this.configuration.resolution,
+                            this.configuration.time, this.configuration.epsilonRotation);
+        }
     }
     @Override
     public AbstractAssessmentCriterion copy() {
@@ -14,7 +14,7 @@ import com.wim.palletizing.model.physics.PhysicsULDImpl;
 import javax.vecmath.Vector3f;
 import java.util.UUID;
 
-public class PhysicalSimulation {
+public class PhysicalSimulation implements AutoCloseable {
 
     DiscreteDynamicsWorld physicsWorld;
     PhysicsULDImpl physicsULD;
@@ -22,11 +22,28 @@ public class PhysicalSimulation {
 
     protected PhysicalSimulation() {}
 
+    /**
+     * Creates the simulation in a physics world of the {@link PhysicsWorldPool}, which is returned on {@link #close()}
+     */
     public PhysicalSimulation(ULD uld, StabilityAssessmentEvaluationConfiguration config) {
-        this.physicsWorld = initPhysicsWorld(config.broadPhase);
+        this(uld, config, true);
+    }
 
-        this.physicsGround = AbstractPhysicsItemFactory.createRigidBodyGround(config.restitution, config.friction);
-        this.physicsWorld.addRigidBody(this.physicsGround.getBody());
+    /**
+     * @param pooled whether the physics world is taken from the {@link PhysicsWorldPool}; a new one is created
+     *               otherwise, e.g. for a world that is still used after the simulation
+     */
+    protected PhysicalSimulation(ULD uld, StabilityAssessmentEvaluationConfiguration config, boolean pooled) {
+        if (pooled) {
+            PooledDynamicsWorld pooledWorld = PhysicsWorldPool.acquire(config);
+            this.physicsWorld = pooledWorld;
+            this.physicsGround = pooledWorld.getGround();
+        } else {
+            this.physicsWorld = initPhysicsWorld(config.broadPhase);
+
+            this.physicsGround = AbstractPhysicsItemFactory.createRigidBodyGround(config.restitution, config.friction);
+            this.physicsWorld.addRigidBody(this.physicsGround.getBody());
+        }
 
         try {
             ULD uld_scaled = PhysicalSimulationHelper.scaleULD(uld, config.itemScalingFactor);
@@ -69,15 +86,19 @@ public class PhysicalSimulation {
         return 1.0;
     }
 
+    /**
+     * Returns the physics world to the {@link PhysicsWorldPool}, if it has been taken from it. The simulation can't be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        if (this.physicsWorld instanceof PooledDynamicsWorld)
+            PhysicsWorldPool.release((PooledDynamicsWorld) this.physicsWorld);
+        this.physicsWorld = null;
+    }
+
     protected DiscreteDynamicsWorld initPhysicsWorld(String broadPhaseLabel) {
-        BroadphaseInterface broadphase = null;
-        switch (broadPhaseLabel) {
-            case "simple": {broadphase = new SimpleBroadphase(); break;}
-            case "dvbt": {broadphase = new DbvtBroadphase(); break;}
-            case "axissweep": {broadphase = new AxisSweep3(new Vector3f(-2,-2,-2), new Vector3f(15,15,15));break;}
-            case "axissweep32": {broadphase = new AxisSweep3_32(new Vector3f(-2,-2,-2), new Vector3f(15,15,15));break;}
-            default: broadphase = new DbvtBroadphase();
-        }
+        BroadphaseInterface broadphase = createBroadphase(broadPhaseLabel);
 
         DefaultCollisionConfiguration collisionConfiguration = new DefaultCollisionConfiguration();
         CollisionDispatcher dispatcher = new CollisionDispatcher(collisionConfiguration);
@@ -89,4 +110,16 @@ public class PhysicalSimulation {
 
         return physicsWorld;
     }
+
+    static BroadphaseInterface createBroadphase(String broadPhaseLabel) {
+        BroadphaseInterface broadphase = null;
+        switch (broadPhaseLabel) {
+            case "simple": {broadphase = new SimpleBroadphase(); break;}
+            case "dvbt": {broadphase = new DbvtBroadphase(); break;}
+            case "axissweep": {broadphase = new AxisSweep3(new Vector3f(-2,-2,-2), new Vector3f(15,15,15));break;}
+            case "axissweep32": {broadphase = new AxisSweep3_32(new Vector3f(-2,-2,-2), new Vector3f(15,15,15));break;}
+            default: broadphase = new DbvtBroadphase();
+        }
+        return broadphase;
+    }
 }
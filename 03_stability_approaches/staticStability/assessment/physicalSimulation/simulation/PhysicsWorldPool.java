@@ -0,0 +1,39 @@
+package com.wim.assessment.staticStability.physicalSimulation.simulation;
+
+import com.wim.palletizing.model.StabilityAssessmentEvaluationConfiguration;
+
+/**
+ * Pool of physics worlds, keeping one idle world per thread. Creating a world, with its collision configuration,
+ * solver and ground, costs more than simulating a small layout, so a simulation takes the idle world of its thread
+ * and returns it when it is closed. Only the broadphase and the dispatcher are created anew when a world is reset.
+ * <p>
+ * A world is only used by one simulation at a time. If the thread has no idle world or one for another configuration,
+ * a new world is created; a world that is not released is simply garbage collected.
+ */
+public class PhysicsWorldPool {
+
+    private static final ThreadLocal<PooledDynamicsWorld> IDLE_WORLDS = new ThreadLocal<>();
+
+    /**
+     * @param config the configuration of the simulation, determining the broadphase and the ground
+     * @return a world containing only the ground, used exclusively by the caller until it is released
+     */
+    public static PooledDynamicsWorld acquire(StabilityAssessmentEvaluationConfiguration config) {
+        PooledDynamicsWorld world = IDLE_WORLDS.get();
+        if (world != null && world.matches(config)) {
+            IDLE_WORLDS.remove();
+            return world;
+        }
+        return new PooledDynamicsWorld(config);
+    }
+
+    /**
+     * Resets the world and keeps it as the idle world of the current thread, replacing the previous one
+     *
+     * @param world the world, which must not be used by the caller any more
+     */
+    public static void release(PooledDynamicsWorld world) {
+        world.reset();
+        IDLE_WORLDS.set(world);
+    }
+}
@@ -0,0 +1,86 @@
+package com.wim.assessment.staticStability.physicalSimulation.simulation;
+
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.util.ObjectArrayList;
+import com.wim.palletizing.model.StabilityAssessmentEvaluationConfiguration;
+import com.wim.palletizing.model.physics.AbstractPhysicsItem;
+import com.wim.palletizing.model.physics.AbstractPhysicsItemFactory;
+
+import javax.vecmath.Vector3f;
+import java.util.Objects;
+
+/**
+ * Physics world with a ground, which can be reset to contain only the ground again and be reused for the next
+ * simulation (see {@link PhysicsWorldPool}). The ground and the broadphase depend on the configuration the world is
+ * created for.
+ */
+public class PooledDynamicsWorld extends DiscreteDynamicsWorld {
+
+    private final AbstractPhysicsItem ground;
+
+    private final DefaultCollisionConfiguration collisionConfiguration;
+    private final String broadPhase;
+    private final float restitution, friction;
+
+    PooledDynamicsWorld(StabilityAssessmentEvaluationConfiguration config) {
+        this(new DefaultCollisionConfiguration(), config);
+    }
+
+    private PooledDynamicsWorld(DefaultCollisionConfiguration collisionConfiguration,
+                                StabilityAssessmentEvaluationConfiguration config) {
+        super(new CollisionDispatcher(collisionConfiguration), PhysicalSimulation.createBroadphase(config.broadPhase),
+                new SequentialImpulseConstraintSolver(), collisionConfiguration);
+        this.collisionConfiguration = collisionConfiguration;
+        this.broadPhase = config.broadPhase;
+        this.restitution = config.restitution;
+        this.friction = config.friction;
+
+        setGravity(new Vector3f(0f, -9.8f, 0f));
+        ground = AbstractPhysicsItemFactory.createRigidBodyGround(config.restitution, config.friction);
+        addRigidBody(ground.getBody());
+    }
+
+    /**
+     * Removes all bodies and replaces the broadphase and the dispatcher, then adds the ground again and resets the
+     * internal clock and the solver, so the next simulation starts like in a new world. The pair cache and the proxy
+     * ids of the broadphase and the manifold pool of the dispatcher decide the order the contacts are solved in and
+     * would otherwise carry over from the previous simulation.
+     */
+    void reset() {
+        ObjectArrayList<CollisionObject> collisionObjects = getCollisionObjectArray();
+        for (int i = collisionObjects.size() - 1; i >= 0; i--) {
+            CollisionObject collisionObject = collisionObjects.get(i);
+            RigidBody body = RigidBody.upcast(collisionObject);
+            if (body != null)
+                removeRigidBody(body);
+            else
+                removeCollisionObject(collisionObject);
+        }
+
+        setBroadphase(PhysicalSimulation.createBroadphase(broadPhase));
+        dispatcher1 = new CollisionDispatcher(collisionConfiguration);
+
+        clearForces();
+        localTime = 1f / 60f;
+        getConstraintSolver().reset();
+        setGravity(new Vector3f(0f, -9.8f, 0f));
+        addRigidBody(ground.getBody());
+    }
+
+    /**
+     * @return true if the world has been created for a configuration with the same broadphase and ground
+     */
+    boolean matches(StabilityAssessmentEvaluationConfiguration config) {
+        return Objects.equals(broadPhase, config.broadPhase) && restitution == config.restitution
+                && friction == config.friction;
+    }
+
+    public AbstractPhysicsItem getGround() {
+        return ground;
+    }
+}
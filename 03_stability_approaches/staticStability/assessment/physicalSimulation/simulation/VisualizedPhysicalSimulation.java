@@ -10,7 +10,8 @@ public class VisualizedPhysicalSimulation extends PhysicalSimulation {
     public static final AssessmentCriterionType type = AssessmentCriterionType.PHYSICAL_SIMULATION_VISUALIZED;
 
     public VisualizedPhysicalSimulation(ULD uld, StabilityAssessmentEvaluationConfiguration config) {
-        super(uld, config);
+        // the visualization keeps using the world, so it is not taken from the pool
+        super(uld, config, false);
     }
     @Override
     public double simulate(float epsilonTranslation, int resolution, float time, float epsilonRotation) {
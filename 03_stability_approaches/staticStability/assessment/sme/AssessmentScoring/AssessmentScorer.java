@@ -0,0 +1,49 @@
+package com.wim.assessment.staticStability.sme.AssessmentScoring;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.StabilityMatrix;
+
+/**
+ * Strategy scoring the stability of the items of a layout per sequence. The matrices are three-valued: true if the
+ * item is stable in the sequence, false if it is unstable and null if it is not placed or not assessed in it.
+ */
+public interface AssessmentScorer {
+
+    /**
+     * @return true if the score does not depend on the sequences after the ones returned by
+     * {@link #optimizeMaxSequence(Boolean[])}, so they need not be assessed
+     */
+    boolean shouldOptimize();
+
+    /**
+     * @param stabilityPerSequence the stability of an item for every sequence it has been assessed for
+     * @return the number of sequences the following items need to be assessed for
+     */
+    int optimizeMaxSequence(Boolean[] stabilityPerSequence);
+
+    /**
+     * @param stabilityMatrix the stability of every item for every sequence it has been assessed for
+     * @return the stability score
+     */
+    double scoreStabilityMatrix(Boolean[][] stabilityMatrix);
+
+    /**
+     * Same as {@link #optimizeMaxSequence(Boolean[])} for a row of the bit-packed matrix
+     *
+     * @param stabilityMatrix the stability matrix
+     * @param item            the row of the item
+     * @return the number of sequences the following items need to be assessed for
+     */
+    default int optimizeMaxSequence(StabilityMatrix stabilityMatrix, int item) {
+        return optimizeMaxSequence(stabilityMatrix.getRow(item));
+    }
+
+    /**
+     * Same as {@link #scoreStabilityMatrix(Boolean[][])} for the bit-packed matrix
+     *
+     * @param stabilityMatrix the stability matrix
+     * @return the stability score
+     */
+    default double scoreStabilityMatrix(StabilityMatrix stabilityMatrix) {
+        return scoreStabilityMatrix(stabilityMatrix.toBooleanMatrix());
+    }
+}
@@ -0,0 +1,65 @@
+package com.wim.assessment.staticStability.sme.AssessmentScoring;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.StabilityMatrix;
+
+/**
+ * Scores a layout by the share of the sequences before the first one any item is unstable in. The sequences after the
+ * first unstable sequence of an item can't lower the score, so they are not assessed for the following items.
+ */
+public class LowestSequenceScoring implements AssessmentScorer {
+
+    @Override
+    public boolean shouldOptimize() {
+        return true;
+    }
+
+    @Override
+    public int optimizeMaxSequence(Boolean[] stabilityPerSequence) {
+        for (int sequence = 0; sequence < stabilityPerSequence.length; sequence++)
+            if (Boolean.FALSE.equals(stabilityPerSequence[sequence]))
+                return sequence + 1;
+        return stabilityPerSequence.length;
+    }
+
+    @Override
+    public double scoreStabilityMatrix(Boolean[][] stabilityMatrix) {
+        int firstUnstableSequence = -1;
+        for (Boolean[] stabilityPerSequence : stabilityMatrix) {
+            int length = firstUnstableSequence < 0 ? stabilityPerSequence.length
+                    : Math.min(firstUnstableSequence, stabilityPerSequence.length);
+            for (int sequence = 0; sequence < length; sequence++) {
+                if (Boolean.FALSE.equals(stabilityPerSequence[sequence])) {
+                    firstUnstableSequence = sequence;
+                    break;
+                }
+            }
+        }
+        return score(firstUnstableSequence, stabilityMatrix.length);
+    }
+
+    /**
+     * Scans the packed words of the row instead of the three-valued row
+     */
+    @Override
+    public int optimizeMaxSequence(StabilityMatrix stabilityMatrix, int item) {
+        int firstUnstableSequence = stabilityMatrix.getFirstUnstableSequence(item);
+        return firstUnstableSequence < 0 ? stabilityMatrix.getRowLength(item) : firstUnstableSequence + 1;
+    }
+
+    /**
+     * Scans the packed words of the rows instead of the three-valued matrix
+     */
+    @Override
+    public double scoreStabilityMatrix(StabilityMatrix stabilityMatrix) {
+        return score(stabilityMatrix.getFirstUnstableSequence(), stabilityMatrix.getItemCount());
+    }
+
+    /**
+     * @param firstUnstableSequence the first sequence an item is unstable in or -1, if all items are stable
+     * @param sequenceCount         the number of sequences of the layout, one per item
+     * @return the stability score
+     */
+    private static double score(int firstUnstableSequence, int sequenceCount) {
+        return firstUnstableSequence < 0 ? 1 : (double) firstUnstableSequence / sequenceCount;
+    }
+}
@@ -0,0 +1,131 @@
+package com.wim.assessment.staticStability.sme.CriteriasToCompare;
+
+import com.wim.palletizing.model.support.SupportGraph;
+
+/**
+ * Running sums of the gravitational forces and their moments acting on each item of a layout, including the items
+ * directly on top that are placed at the current sequence step.
+ * <p>
+ * The items on top of every item are ordered by their sequence. While the step advances, the contribution of each
+ * item on top is added once, when its sequence is reached, so the resultant force point of an item at a step is
+ * available without summing up all items on top again. Asking for an earlier step than before starts the sums of
+ * the item over. An accumulator is not thread-safe.
+ */
+class ResultantForceAccumulator {
+
+    /**
+     * Contribution of each item on its own: the absolute position of its center of mass times its force, and the
+     * force
+     */
+    private final double[] ownMomentX, ownMomentZ, ownForce;
+
+    /**
+     * Items on top of each item ordered by sequence, in the layout of the top adjacency of the graph
+     */
+    private final int[] topOffsets, topIndices, topSequences;
+
+    /**
+     * Running sums per item
+     */
+    private final double[] momentX, momentZ, force;
+
+    /**
+     * Position of the next item on top to be added per item
+     */
+    private final int[] nextTop;
+
+    /**
+     * Step the sums of each item have been advanced to
+     */
+    private final int[] steps;
+
+    ResultantForceAccumulator(SupportGraph supportGraph, double[] ownMomentX, double[] ownMomentZ,
+                              double[] ownForce) {
+        this.ownMomentX = ownMomentX;
+        this.ownMomentZ = ownMomentZ;
+        this.ownForce = ownForce;
+
+        int itemCount = supportGraph.getItemCount();
+        topOffsets = supportGraph.getTopOffsets();
+        topIndices = supportGraph.getTopIndices().clone();
+        topSequences = new int[topIndices.length];
+
+        // Sort the items on top of every item by their sequence (insertion sort, the lists are short and mostly
+        // ordered already)
+        for (int i = 0; i < itemCount; i++) {
+            for (int edge = topOffsets[i]; edge < topOffsets[i + 1]; edge++) {
+                int top = topIndices[edge];
+                int sequence = supportGraph.getItem(top).sequence;
+                int position = edge;
+                while (position > topOffsets[i] && topSequences[position - 1] > sequence) {
+                    topIndices[position] = topIndices[position - 1];
+                    topSequences[position] = topSequences[position - 1];
+                    position--;
+                }
+                topIndices[position] = top;
+                topSequences[position] = sequence;
+            }
+        }
+
+        momentX = new double[itemCount];
+        momentZ = new double[itemCount];
+        force = new double[itemCount];
+        nextTop = new int[itemCount];
+        steps = new int[itemCount];
+        for (int i = 0; i < itemCount; i++)
+            reset(i);
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @param step  the sequence step; the items on top with a sequence up to the step are taken into account
+     * @return the x-coordinate of the resultant force point of the item at the step
+     */
+    double getResultantX(int index, int step) {
+        advance(index, step);
+        return momentX[index] / force[index];
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @param step  the sequence step; the items on top with a sequence up to the step are taken into account
+     * @return the z-coordinate of the resultant force point of the item at the step
+     */
+    double getResultantZ(int index, int step) {
+        advance(index, step);
+        return momentZ[index] / force[index];
+    }
+
+    /**
+     * @param index index of the item in the support graph
+     * @param step  the sequence step; the items on top with a sequence up to the step are taken into account
+     * @return the resultant force of the item at the step
+     */
+    double getResultantForce(int index, int step) {
+        advance(index, step);
+        return force[index];
+    }
+
+    private void advance(int index, int step) {
+        if (step < steps[index])
+            reset(index);
+
+        int edge = nextTop[index];
+        while (edge < topOffsets[index + 1] && topSequences[edge] <= step) {
+            int top = topIndices[edge++];
+            momentX[index] += ownMomentX[top];
+            momentZ[index] += ownMomentZ[top];
+            force[index] += ownForce[top];
+        }
+        nextTop[index] = edge;
+        steps[index] = step;
+    }
+
+    private void reset(int index) {
+        momentX[index] = ownMomentX[index];
+        momentZ[index] = ownMomentZ[index];
+        force[index] = ownForce[index];
+        nextTop[index] = topOffsets[index];
+        steps[index] = Integer.MIN_VALUE;
+    }
+}
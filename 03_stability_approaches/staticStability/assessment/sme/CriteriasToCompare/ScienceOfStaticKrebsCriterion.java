@@ -13,7 +13,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.wim.palletizing.geometry.dim3.Box;
 import com.wim.palletizing.model.ULD;
 import com.wim.palletizing.model.item.InputItemSet;
+import com.wim.palletizing.model.item.ItemCoordinates;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.CorridorIndex;
+import com.wim.palletizing.model.support.LevelBands;
+import com.wim.palletizing.model.support.SupportGraph;
 import com.wim.palletizing.model.uld_properties.ULDProperties;
 
 import javax.persistence.Entity;
@@ -21,8 +25,8 @@ import javax.persistence.Entity;
 @Entity
 public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
 
-    private final double MIN_SUPPORT_FACTOR = 0.75d;
-    private final double EPSILON = 0.001d;
+    public static final double MIN_SUPPORT_FACTOR = 0.75d;
+    public static final double EPSILON = 0.001d;
 
 
     public static final AssessmentCriterionType type = AssessmentCriterionType.SCIENCE_OF_STATIC_KREBS;
@@ -58,9 +62,11 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
         Map<String, List<PlacedItem>> itemsInCorridorBelow = assureULDSupportStructureHasBeenCalculated(uld);
 
 
+        SupportGraph supportGraph = uld.updateSupportGraph();
+
         int counter = 0;
         for (PlacedItem item : uld.getPlacedItemsSorted()) {
-            if (!isItemStable(item, itemsInCorridorBelow.get(item.itemLabel))) {
+            if (!isItemStable(item, itemsInCorridorBelow.get(item.itemLabel), supportGraph)) {
                 break;
             }
             counter++;
@@ -73,12 +79,7 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
     }
 
     private Map<String, List<PlacedItem>> assureULDSupportStructureHasBeenCalculated(ULD uld) {
-
-
-        PlacedItem testItem = uld.getPlacedItems().values().iterator().next();
-
-        if (testItem.getEnvironmentRelations().getItemsBelow().isEmpty() && testItem.getEnvironmentRelations().getItemsOnTop().isEmpty())
-            uld.calculateItemSupportStructure();
+        uld.updateSupportGraph();
 
         return calculateItemsInCorridor(uld);
 
@@ -86,14 +87,26 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
 
     private Map<String, List<PlacedItem>> calculateItemsInCorridor(ULD uld) {
         Map<String, List<PlacedItem>> itemsInCorridorBelow = new HashMap<>();
-        LinkedList<PlacedItem> pIList = new LinkedList<>(uld.getPlacedItems().values());
+        List<PlacedItem> pIList = new ArrayList<>(uld.getPlacedItems().values());
+
+        Map<PlacedItem, Integer> positions = new IdentityHashMap<>();
+        for (PlacedItem placedItem : pIList)
+            positions.put(placedItem, positions.size());
 
+        // Only items with overlapping footprints can lie in the corridor of each other. The pairs are visited in the
+        // same order as by comparing every item with all following ones, so the lists keep their order
+        CorridorIndex corridorIndex = new CorridorIndex(pIList);
 
         for (int i = 0; i < pIList.size(); i++) {
-            for (int j = i + 1; j < pIList.size(); j++) {
+            PlacedItem p1 = pIList.get(i);
+
+            List<PlacedItem> followingItemsInCorridor = new ArrayList<>();
+            for (PlacedItem item : corridorIndex.getItemsWithOverlappingFootprint(p1))
+                if (positions.get(item) > i)
+                    followingItemsInCorridor.add(item);
+            followingItemsInCorridor.sort(Comparator.comparingInt(positions::get));
 
-                PlacedItem p1 = pIList.get(i);
-                PlacedItem p2 = pIList.get(j);
+            for (PlacedItem p2 : followingItemsInCorridor) {
 
                 int theoreticalY = p1.getMinPossibleYForOtherShape(p2.shape, p2.getItemCoordinates().getX(),
                         p2.getItemCoordinates().getZ());
@@ -134,7 +147,7 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
         return itemsInCorridorBelow;
     }
 
-    private boolean isItemStable(PlacedItem item, List<PlacedItem> itemsInCorridorBelow) {
+    private boolean isItemStable(PlacedItem item, List<PlacedItem> itemsInCorridorBelow, SupportGraph supportGraph) {
         if (item.isBottomItem())
             return true;
 
@@ -142,18 +155,19 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
         // skipped
 
         //Theoretically also for MinimalSupport should be checked
-        if (isItemStableAfterKrebs(item, itemsInCorridorBelow)) {
-            return isPartiallySupported(item);
+        if (isItemStableAfterKrebs(item, itemsInCorridorBelow, supportGraph)) {
+            return isPartiallySupported(item, supportGraph);
         } else
             return false;
     }
 
-    private boolean isPartiallySupported(PlacedItem item) {
-        return ! (item.getBaseSupportFactor() < MIN_SUPPORT_FACTOR - EPSILON);
+    private boolean isPartiallySupported(PlacedItem item, SupportGraph supportGraph) {
+        return ! (supportGraph.getBaseSupportFactor(supportGraph.indexOf(item)) < MIN_SUPPORT_FACTOR - EPSILON);
     }
 
 
-    private boolean isItemStableAfterKrebs(PlacedItem item, List<PlacedItem> itemsInCorridorBelow) {
+    private boolean isItemStableAfterKrebs(PlacedItem item, List<PlacedItem> itemsInCorridorBelow,
+                                           SupportGraph supportGraph) {
 
         double center_x = item.getItemCoordinates().getX() + ((Box) item.shape).width * 0.5;
         double center_z = item.getItemCoordinates().getZ() + ((Box) item.shape).depth * 0.5;
@@ -166,35 +180,48 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
                 .collect(Collectors.toList());
 
 
-        return constructLevelsAndControlStabilityWithItems(center_x, center_z, allItemsSomehowBelow);
+        return constructLevelsAndControlStabilityWithItems(center_x, center_z, allItemsSomehowBelow, supportGraph);
 
 
     }
 
     private boolean constructLevelsAndControlStabilityWithItems(double center_x, double center_z,
-                                                                List<PlacedItem> itemsList) {
+                                                                List<PlacedItem> itemsList,
+                                                                SupportGraph supportGraph) {
+        if (itemsList.isEmpty())
+            return true;
 
-        for (PlacedItem itemA : itemsList) {
-            int minX = itemA.getItemCoordinates().getX();
-            int maxX = itemA.getItemCoordinates().getMaxX();
-            int minZ = itemA.getItemCoordinates().getZ();
-            int maxZ = itemA.getItemCoordinates().getMaxZ();
+        LevelBands levelBands = LevelBands.of(supportGraph);
 
-            for (PlacedItem itemB : itemsList) {
-                if (itemA.equals(itemB))
-                    continue;
+        // The "outest" edges are the same for all items with the same top level, so they are determined once per
+        // level: every item spans the levels from above its bottom up to its top
+        int[] itemIndices = new int[itemsList.size()];
+        for (int i = 0; i < itemsList.size(); i++)
+            itemIndices[i] = supportGraph.indexOf(itemsList.get(i));
 
-                //If itemB lies in same level, find "outest" edges
-                if (itemB.getItemCoordinates().getMaxY() >= itemA.getItemCoordinates().getMaxY() && itemB.getItemCoordinates().getY() < itemA.getItemCoordinates().getMaxY()) {
+        int[] levels = Arrays.stream(itemIndices).map(levelBands::getOwnLevel).sorted().distinct().toArray();
 
-                    minX = Math.min(minX, itemB.getItemCoordinates().getX());
-                    maxX = Math.max(maxX, itemB.getItemCoordinates().getMaxX());
-                    minZ = Math.min(minZ, itemB.getItemCoordinates().getZ());
-                    maxZ = Math.max(maxZ, itemB.getItemCoordinates().getMaxZ());
-                }
-            }
+        int[] minX = new int[levels.length], maxX = new int[levels.length];
+        int[] minZ = new int[levels.length], maxZ = new int[levels.length];
+        Arrays.fill(minX, Integer.MAX_VALUE);
+        Arrays.fill(maxX, Integer.MIN_VALUE);
+        Arrays.fill(minZ, Integer.MAX_VALUE);
+        Arrays.fill(maxZ, Integer.MIN_VALUE);
+
+        for (int i = 0; i < itemsList.size(); i++) {
+            ItemCoordinates coordinates = itemsList.get(i).getItemCoordinates();
+            int ownLevel = levelBands.getOwnLevel(itemIndices[i]);
 
-            if (center_x <= minX || center_x >= maxX || center_z <= minZ || center_z >= maxZ) {
+            int level = Arrays.binarySearch(levels, ownLevel);
+            extendLevel(level, coordinates, minX, maxX, minZ, maxZ);
+
+            for (level = firstLevelFrom(levels, levelBands.getFirstLevel(itemIndices[i]));
+                 level < levels.length && levels[level] < ownLevel; level++)
+                extendLevel(level, coordinates, minX, maxX, minZ, maxZ);
+        }
+
+        for (int level = 0; level < levels.length; level++) {
+            if (center_x <= minX[level] || center_x >= maxX[level] || center_z <= minZ[level] || center_z >= maxZ[level]) {
                 return false;
             }
         }
@@ -202,6 +229,29 @@ public class ScienceOfStaticKrebsCriterion extends AbstractAssessmentCriterion {
         return true;
     }
 
+    private static void extendLevel(int level, ItemCoordinates coordinates, int[] minX, int[] maxX, int[] minZ,
+                                    int[] maxZ) {
+        minX[level] = Math.min(minX[level], coordinates.getX());
+        maxX[level] = Math.max(maxX[level], coordinates.getMaxX());
+        minZ[level] = Math.min(minZ[level], coordinates.getZ());
+        maxZ[level] = Math.max(maxZ[level], coordinates.getMaxZ());
+    }
+
+    /**
+     * @return position of the first of the sorted levels which is not below the given level
+     */
+    private static int firstLevelFrom(int[] levels, int level) {
+        int low = 0, high = levels.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (levels[mid] < level)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
     @Override
     public AssessmentCriterionType getType() {
         return type;
@@ -6,21 +6,16 @@ import com.wim.palletizing.assessment.AbstractAssessmentCriterion;
 import com.wim.palletizing.assessment.AssessmentCriterionType;
 import com.wim.palletizing.geometry.dim2.Point2D;
 import com.wim.palletizing.geometry.dim3.Box;
-import com.wim.palletizing.geometry.dim3.Point3D;
 import com.wim.palletizing.helper.Pair;
 import com.wim.palletizing.model.ULD;
 import com.wim.palletizing.model.item.InputItemSet;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportClosureEvaluator;
+import com.wim.palletizing.model.support.SupportGraph;
 import com.wim.palletizing.model.uld_properties.ULDProperties;
-import org.locationtech.jts.algorithm.ConvexHull;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
 import org.springframework.data.annotation.PersistenceConstructor;
 
 import javax.persistence.Entity;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -52,17 +47,25 @@ public class ScienceOfStaticRamosCriterion extends AbstractAssessmentCriterion {
         if (uld.isEmpty())
             return 1.0;
 
-        // First, calculate all environment relations of every item (Items on top or bottom)
-        this.calculateULDSupportStructure(uld);
+        // First, assure all environment relations of every item (Items on top or bottom) have been calculated
+        SupportGraph supportGraph = uld.updateSupportGraph();
 
         //Only applicable to boxes, check for non-boxes
         for (PlacedItem item : uld.getPlacedItemsSorted())
             if (!(item.shape instanceof Box))
                 return -1;
 
+        // The resultant forces are summed up while the sequence advances, each item on top is added once
+        ResultantForceAccumulator resultantForces = this.createResultantForceAccumulator(supportGraph);
+
+        // Every item is tested together with all items directly and indirectly below it; the stability of each item
+        // is evaluated once and reused until another item is placed on top of it
+        SupportClosureEvaluator evaluator = new SupportClosureEvaluator(supportGraph,
+                (index, step) -> this.isItemItselfStableAtSequence(supportGraph, resultantForces, index, step));
+
         int sequence = 0;
         for (PlacedItem item : uld.getPlacedItemsSorted()) {
-            if (!this.isStableWithItemAtSequence(item, uld, sequence)) {
+            if (!evaluator.isStable(supportGraph.indexOf(item), sequence)) {
                 break;
             }
             sequence++;
@@ -70,157 +73,50 @@ public class ScienceOfStaticRamosCriterion extends AbstractAssessmentCriterion {
         return (double) sequence / uld.getPlacedItemsSorted().size();
     }
 
-    private void calculateULDSupportStructure(ULD uld) {
-        //Take the first item of the ULD and look, if there is a support structure present (dummy check)
-        PlacedItem item = uld.getPlacedItems().values().iterator().next();
-
-        // if support structure has not been calculated, calculate it (is the case if no items are below and above)
-        if (item.getEnvironmentRelations().getItemsBelow().isEmpty() && item.getEnvironmentRelations().getItemsOnTop().isEmpty())
-            uld.calculateItemSupportStructure();
-    }
-
     /**
-     * Detects instability at a given sequence
-     * @param item
-     * @param uld
+     * Detects instability of a single item at a given sequence, regardless of the items below
+     * @param supportGraph
+     * @param resultantForces
+     * @param index
      * @param sequence
-     * @returns True if the sequence is stable; False if it is unstable
+     * @returns True if the resultant force point of the item is supported; False otherwise
      */
-    private boolean isStableWithItemAtSequence(PlacedItem item, ULD uld, int sequence) {
-        if (item.isBottomItem())
-            return true;
-
+    private boolean isItemItselfStableAtSequence(SupportGraph supportGraph, ResultantForceAccumulator resultantForces,
+                                                 int index, int sequence) {
         // We first calculate the resulting force point of this item
-        Point2D resultantForcePoint = this.getResultantForcePointRegardingSequenceStep(item, sequence);
+        double x = resultantForces.getResultantX(index, sequence);
+        double z = resultantForces.getResultantZ(index, sequence);
 
         //Test if this item is stable; resultant force point is not supported -> unstable
-        if (!this.isResultantForcePointSupported(item, resultantForcePoint))
-            return false;
-
-        //Test for all items below if they are still stable
-        return this.testForItemsDirectAndIndirectBelow(item, uld, sequence);
+        return supportGraph.getSupportPolygon(index).isSupported(x, z);
     }
 
-
     /**
-     *
-     * @param item
-     * @param uld
-     * @param sequence
-     * @returns true if all items below are still stable, false otherwise
+     * Determines the force point and force of every item on its own, as starting point of the resultant forces
+     * @param supportGraph
+     * @return the accumulator of the resultant forces of all items
      */
-    private boolean testForItemsDirectAndIndirectBelow(PlacedItem item, ULD uld, int sequence) {
-        for (PlacedItem itemBelow : item.getEnvironmentRelations().getItemsBelow()) {
-            if (!this.isStableWithItemAtSequence(itemBelow, uld, sequence))
-                return false;
-
-            if (!this.testForItemsDirectAndIndirectBelow(itemBelow, uld, sequence))
-                return false;
+    private ResultantForceAccumulator createResultantForceAccumulator(SupportGraph supportGraph) {
+        double[] momentX = new double[supportGraph.getItemCount()];
+        double[] momentZ = new double[supportGraph.getItemCount()];
+        double[] force = new double[supportGraph.getItemCount()];
+
+        for (int i = 0; i < supportGraph.getItemCount(); i++) {
+            Pair<Point2D, Double> itemCoMWeightedForce = ScienceOfStaticRamosCriterion.getItemCoMAndForce(supportGraph.getItem(i));
+            momentX[i] = itemCoMWeightedForce.first.x;
+            momentZ[i] = itemCoMWeightedForce.first.y;
+            force[i] = itemCoMWeightedForce.second;
         }
 
-        return true;
-    }
-
-    private boolean isResultantForcePointSupported(PlacedItem item, Point2D resultantForcePoint) {
-        List<Coordinate> supportPolygonCreationList = new ArrayList<>();
-
-
-        for (PlacedItem itemBelow : item.getEnvironmentRelations().getItemsBelow()) {
-            if ((itemBelow.getItemCoordinates().getX() <= resultantForcePoint.x && resultantForcePoint.x <= itemBelow.getItemCoordinates().getMaxX()) && (itemBelow.getItemCoordinates().getZ() <= resultantForcePoint.y && resultantForcePoint.y <= itemBelow.getItemCoordinates().getMaxZ())) {
-                return true;
-            }
-
-            List<Point2D> contactPoints = item.shape.getContactPointsWithBottomShape(itemBelow.shape,
-                    new Point3D(item.getItemCoordinates().getX(), item.getItemCoordinates().getY(),
-                            item.getItemCoordinates().getZ()), new Point3D(itemBelow.getItemCoordinates().getX(),
-                            itemBelow.getItemCoordinates().getY(), itemBelow.getItemCoordinates().getZ()));
-
-            for (Point2D contactPoint2D: contactPoints){
-                supportPolygonCreationList.add(new Coordinate(contactPoint2D.x, contactPoint2D.y));
-            }
-
-//            supportPolygonCreationList.add(new Coordinate(Math.max(itemBelow.getItemCoordinates().getX(), item.getItemCoordinates().getX()), Math.max(itemBelow.getItemCoordinates().getZ(),
-//                    item.getItemCoordinates().getZ())));
-//            supportPolygonCreationList.add(new Coordinate(Math.max(itemBelow.getItemCoordinates().getX(), item.getItemCoordinates().getX()), Math.min(itemBelow.getItemCoordinates().getMaxZ(),
-//                    item.getItemCoordinates().getMaxZ())));
-//            supportPolygonCreationList.add(new Coordinate(Math.min(itemBelow.getItemCoordinates().getMaxX(), item.getItemCoordinates().getMaxX()), Math.max(itemBelow.getItemCoordinates().getZ(),
-//                    item.getItemCoordinates().getZ())));
-//            supportPolygonCreationList.add(new Coordinate(Math.min(itemBelow.getItemCoordinates().getMaxX(), item.getItemCoordinates().getMaxX()),
-//                    Math.min(itemBelow.getItemCoordinates().getMaxZ(), item.getItemCoordinates().getMaxZ())));
-        }
-        Coordinate[] supportPolygonCoordinates = new Coordinate[supportPolygonCreationList.size()];
-        supportPolygonCoordinates = supportPolygonCreationList.toArray(supportPolygonCoordinates);
-
-        GeometryFactory gf = new GeometryFactory();
-
-        ConvexHull ch = new ConvexHull(supportPolygonCoordinates, gf);
-
-        Geometry supportPolygon = ch.getConvexHull();
-
-        Point forcePoint = gf.createPoint(new Coordinate(resultantForcePoint.x, resultantForcePoint.y));
-
-        return supportPolygon.contains(forcePoint);
-    }
-
-    /**
-     * For any item in the arrangement, that is relevant at sequence sequence, determine resultant force poin
-     * @param item
-     * @param sequence
-     * @return
-     */
-    private Point2D getResultantForcePointRegardingSequenceStep(PlacedItem item, int sequence) {
-
-        // Has the structure <Point2D, Force>
-        Pair<Point2D, Double> resultantPair = new Pair<>(new Point2D(0, 0), 0.0);
-
-        // First, the resultant force point is simply the center of gravity of the current item, since we have no
-        // other influences (resultantPair is just initialized)
-        resultantPair = this.addItemGravitationalForce(item, resultantPair);
-
-        // Iterate through all items that lie on top of this item
-        for (PlacedItem itemOnTop : item.getEnvironmentRelations().getItemsOnTop()) {
-            // Check, if the item on top is relevant for the calculation of this sequence
-            // In other words, only consider items relevant to this sequence
-            if (itemOnTop.sequence <= sequence) {
-
-                // We know there must be an influence, since item is at the top. Now add influence of item on top to
-                // our item
-                resultantPair = addItemGravitationalForce(itemOnTop, resultantPair);
-            }
-        }
-
-        double x = resultantPair.first.x / resultantPair.second;
-        double z = resultantPair.first.y / resultantPair.second;
-
-        return new Point2D(x, z);
-    }
-
-    /**
-     * Determine item force point and add to some stride (resultantPair), if present
-     * @param item
-     * @param resultantPair
-     * @returns the cumulative resultant item force point and the cumulative weight
-     */
-    private Pair<Point2D, Double> addItemGravitationalForce(PlacedItem item, Pair<Point2D, Double> resultantPair) {
-        Pair<Point2D, Double> getItemCoMWeightedForce = this.getItemCoMAndForce(item);
-
-        // Add the location of the absolute CoM times the force
-        double x = resultantPair.first.x + getItemCoMWeightedForce.first.x;
-        double z = resultantPair.first.y + getItemCoMWeightedForce.first.y;
-
-        // Add up entire force, do not split up force (?)
-        double resultantForce = resultantPair.second + getItemCoMWeightedForce.second;
-
-        // Resulting point has absolute coordinates
-        return new Pair<>(new Point2D(x, z), resultantForce);
+        return new ResultantForceAccumulator(supportGraph, momentX, momentZ, force);
     }
 
     /**
      * Determines the force point of an item in absolute coordinates
      * @param item
-     * @return
+     * @return the absolute position of the item's center of mass times its force, and the force
      */
-    private Pair<Point2D, Double> getItemCoMAndForce(PlacedItem item) {
+    public static Pair<Point2D, Double> getItemCoMAndForce(PlacedItem item) {
         double g = 9.81;
         Double force = item.weight * g;
 
@@ -23,6 +23,8 @@ import com.wim.palletizing.helper.Pair;
 import com.wim.palletizing.model.ULD;
 import com.wim.palletizing.model.item.InputItemSet;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportClosureEvaluator;
+import com.wim.palletizing.model.support.SupportGraph;
 import com.wim.palletizing.model.uld_properties.ULDProperties;
 
 @Entity
@@ -54,15 +56,19 @@ public class ScienceOfStaticRamosCriterionByKrebs extends AbstractAssessmentCrit
         if (uld.isEmpty())
             return 1.0;
 
-        assureULDSupportStructureHasBeenCalculated(uld);
+        SupportGraph supportGraph = uld.updateSupportGraph();
 
         for (PlacedItem item : uld.getPlacedItemsSorted())
             if (isNoBox(item))
                 return -1;
 
+        // All items on top are taken into account, regardless of the sequence
+        SupportClosureEvaluator evaluator = new SupportClosureEvaluator(supportGraph,
+                (index, step) -> isItemItselfStable(supportGraph.getItem(index)));
+
         int counter = 0;
         for (PlacedItem item : uld.getPlacedItemsSorted()) {
-            if (!isStableWithItem(item)) {
+            if (!isStableWithItem(evaluator, supportGraph.indexOf(item))) {
                 break;
             }
             counter++;
@@ -74,29 +80,16 @@ public class ScienceOfStaticRamosCriterionByKrebs extends AbstractAssessmentCrit
         return !(item.shape instanceof Box);
     }
 
-    private void assureULDSupportStructureHasBeenCalculated(ULD uld) {
-        PlacedItem testItem = uld.getPlacedItems().values().iterator().next();
-
-        if (testItem.getEnvironmentRelations().getItemsBelow().isEmpty() && testItem.getEnvironmentRelations().getItemsOnTop().isEmpty())
-            uld.calculateItemSupportStructure();
+    private boolean isStableWithItem(SupportClosureEvaluator evaluator, int index) {
+        //Test if this item and all items below are stable
+        return evaluator.isStable(index, Integer.MAX_VALUE);
     }
 
-    private boolean isStableWithItem(PlacedItem item) {
-        if (item.isBottomItem())
-            return true;
+    private boolean isItemItselfStable(PlacedItem item) {
         Point2D resultantForcePoint = getResultantForcePoint(item);
 
         //Test if this item is stable
-        if (!isResultantForcePointSupported(item, resultantForcePoint))
-            return false;
-
-        //Test for all items below if they are still stable
-        for (PlacedItem itemBelow : item.getEnvironmentRelations().getItemsBelow())
-            if (!isStableWithItem(itemBelow))
-                return false;
-
-
-        return true;
+        return isResultantForcePointSupported(item, resultantForcePoint);
     }
 
     private boolean isResultantForcePointSupported(PlacedItem item, Point2D resultantForcePoint) {
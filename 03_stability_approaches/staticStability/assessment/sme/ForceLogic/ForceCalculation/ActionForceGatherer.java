@@ -1,10 +1,9 @@
 package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
 
 import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
-import com.wim.palletizing.geometry.dim2.Point2D;
-import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
 
-import java.util.*;
+import java.util.List;
 
 /**
  * @auhor Frederick Gamer
@@ -15,50 +14,62 @@ public class ActionForceGatherer {
 
     /**
      * Gathers all action forces acting on the item for the given sequence range.
-     * Runs for each sequence through the items onTop and takes their reactionForces acting on this item
+     * Runs for each sequence through the items onTop and takes their reactionForces acting on this item.
+     * Between the change points the actionForces of the previous sequence are taken over
      *
-     * @param itemLabel the label identifying the item for which the actionForce is gathered
+     * @param itemSequence the sequence identifying the item for which the actionForce is gathered
      * @param startSequence the sequence from which on the forces are calculated
      * @param forceItemsOnTop the forceItemDTOs from which forces are gathered
      * @param maxSequence the sequence until which the forces are calculated
-     * @return the actionForces (point and magnitude) mapped to each itemLabel and to the sequence
+     * @param changePoints the sequences the forces of the item can change in, ascending
+     * @return the actionForces (point and magnitude) of each sequence, referencing the item on top they come from;
+     * without any segment if there are no items on top
      */
-    protected static Map<Integer, List<Pair<Point2D, Double>>> gatherRelatedActionForcesFromTopItems(
-            String itemLabel, int startSequence, List<ForceItemDTO> forceItemsOnTop, int maxSequence) {
+    protected static ForceSegments gatherRelatedActionForcesFromTopItems(
+            int itemSequence, int startSequence, List<ForceItemDTO> forceItemsOnTop, int maxSequence,
+            int[] changePoints) {
+        ForceSegments actionForces = new ForceSegments(startSequence, maxSequence);
         if (forceItemsOnTop.isEmpty())
-            return new HashMap<>();
-
-        Map<Integer, List<Pair<Point2D, Double>>> actionForcesPerSequence = new HashMap<>();
+            return actionForces;
 
+        int nextChangePoint = 0;
         for (int s = startSequence; s < maxSequence; s++) {
-            List<Pair<Point2D, Double>> actionForces = new ArrayList<>();
+            if (nextChangePoint < changePoints.length && changePoints[nextChangePoint] == s)
+                nextChangePoint++;
+            else if (s > startSequence) {
+                actionForces.repeatSegment(s);
+                continue;
+            }
 
-            for (ForceItemDTO forceItem : forceItemsOnTop) {
+            actionForces.startSegment(s);
 
-                actionForces.addAll(ActionForceGatherer.getReactionForceForItemAndSequence(forceItem, itemLabel,
-                        s));
+            for (ForceItemDTO forceItem : forceItemsOnTop) {
+                ActionForceGatherer.addReactionForcesForItemAndSequence(actionForces, forceItem, itemSequence, s);
             }
-            actionForcesPerSequence.put(s, actionForces);
-
         }
-        return actionForcesPerSequence;
+        return actionForces;
     }
 
     /**
-     * Returns the reactionForces (Point and Magnitude) of this sequence acting on the given item.
-     * Returns an empty list if no exist
+     * Adds the reactionForces (Point and Magnitude) of this sequence acting on the given item.
+     * Adds nothing if none exist
      *
+     * @param actionForces the action forces to add to, the segment of the sequence has been started
      * @param forceItem the forceItemDTO from which forces are gathered
-     * @param itemLabel the label identifying the item  for which the actionForce is gathered
+     * @param itemSequence the sequence identifying the item for which the actionForce is gathered
      * @param sequence the sequence for which the force is gathered
-     * @return the actionForces (point and magnitude)
      */
-    private static Collection<? extends Pair<Point2D, Double>> getReactionForceForItemAndSequence(
-            ForceItemDTO forceItem, String itemLabel, int sequence) {
-        if (forceItem.getREACTION_FORCES_PER_SEQUENCE().containsKey(sequence))
-            if (forceItem.getREACTION_FORCES_PER_SEQUENCE().get(sequence).containsKey(itemLabel))
-                return forceItem.getREACTION_FORCES_PER_SEQUENCE().get(sequence).get(itemLabel);
+    private static void addReactionForcesForItemAndSequence(ForceSegments actionForces, ForceItemDTO forceItem,
+                                                            int itemSequence, int sequence) {
+        ForceSegments reactionForces = forceItem.getREACTION_FORCES();
+        if (!reactionForces.contains(sequence))
+            return;
 
-        return new ArrayList<>();
+        for (int entry = reactionForces.getSegmentStart(sequence); entry < reactionForces.getSegmentEnd(sequence);
+             entry++) {
+            if (reactionForces.getReference(entry) == itemSequence)
+                actionForces.add(reactionForces.getX(entry), reactionForces.getZ(entry),
+                        reactionForces.getMagnitude(entry), forceItem.getPLACED_ITEM().sequence);
+        }
     }
 }
@@ -0,0 +1,56 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Service to determine the sequences in which the forces of an item can change.
+ * <p>
+ * The forces of an item only depend on the reactionForces of the items on top and on which of its reactionPoints
+ * exist. Both stay the same unless an item on top changes its forces or an item below is placed, so the forces only
+ * need to be calculated in these sequences and stay the same in between.
+ */
+public class ChangePointCalculator {
+
+    /**
+     * Calculates the sequences in which the forces of the item can change: the sequence the item is placed in, every
+     * sequence an item below with reactionPoints is placed in afterwards and every sequence the forces of an item on
+     * top can change in
+     *
+     * @param placedItem      the item to calculate the change points for
+     * @param forceItemsOnTop the forceItems being on Top of this item
+     * @param reactionPoints  the points along with the item of the reactionForce
+     * @param maxSequence     the sequence until which the forces are calculated
+     * @return the sequences from the one the item is placed in until the maxSequence in which the forces of the item
+     * can change, ascending
+     */
+    protected static int[] calculateChangePoints(PlacedItem placedItem, List<ForceItemDTO> forceItemsOnTop,
+                                                 List<Pair<Point2D, PlacedItem>> reactionPoints, int maxSequence) {
+        int startSequence = placedItem.sequence;
+        if (startSequence >= maxSequence)
+            return new int[0];
+
+        BitSet changePoints = new BitSet(maxSequence);
+        changePoints.set(Math.max(startSequence, 0));
+
+        for (Pair<Point2D, PlacedItem> reactionPoint : reactionPoints) {
+            int sequenceBelow = reactionPoint.second.sequence;
+            if (sequenceBelow > startSequence && sequenceBelow < maxSequence)
+                changePoints.set(sequenceBelow);
+        }
+
+        for (ForceItemDTO forceItemOnTop : forceItemsOnTop) {
+            for (int changePoint : forceItemOnTop.getCHANGE_POINTS()) {
+                if (changePoint > startSequence && changePoint < maxSequence)
+                    changePoints.set(changePoint);
+            }
+        }
+
+        return changePoints.stream().toArray();
+    }
+}
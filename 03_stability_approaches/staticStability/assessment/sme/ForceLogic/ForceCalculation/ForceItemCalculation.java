@@ -2,15 +2,17 @@ package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
 
 import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ItemStabilityAssessor;
 import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
 import com.wim.palletizing.geometry.dim2.Point2D;
 import com.wim.palletizing.helper.Pair;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportRelations;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @auhor Frederick Gamer
@@ -30,6 +32,56 @@ public class ForceItemCalculation {
      */
     public static ForceItemDTO createForceItem(@NotNull PlacedItem placedItem, List<ForceItemDTO> forceItemsOnTop,
                                                int maxSequence) {
+        return createForceItem(placedItem, forceItemsOnTop, maxSequence, null, ReactionForceSolver.getDefault());
+    }
+
+    /**
+     * Trigger services to calculate the forceItemInformation.
+     * @param placedItem the element representing the item which ForceItem is calculated
+     * @param forceItemsOnTop the forceItems being on Top of this item
+     * @param maxSequence the sequence until which the forces are calculated
+     * @param solutionCache the cache of already solved reactionForce systems; may be null
+     * @param solver the solver distributing the resultantForces to the reactionPoints
+     * @return the forceItem for the given placedItem
+     */
+    public static ForceItemDTO createForceItem(@NotNull PlacedItem placedItem, List<ForceItemDTO> forceItemsOnTop,
+                                               int maxSequence, ReactionForceSolutionCache solutionCache,
+                                               @NotNull ReactionForceSolver solver) {
+        return createForceItem(placedItem, forceItemsOnTop, maxSequence, solutionCache, solver, null);
+    }
+
+    /**
+     * Trigger services to calculate the forceItemInformation.
+     * @param placedItem the element representing the item which ForceItem is calculated
+     * @param forceItemsOnTop the forceItems being on Top of this item
+     * @param maxSequence the sequence until which the forces are calculated
+     * @param solutionCache the cache of already solved reactionForce systems; may be null
+     * @param solver the solver distributing the resultantForces to the reactionPoints
+     * @param metrics the metrics to record the solved systems in; may be null
+     * @return the forceItem for the given placedItem
+     */
+    public static ForceItemDTO createForceItem(@NotNull PlacedItem placedItem, List<ForceItemDTO> forceItemsOnTop,
+                                               int maxSequence, ReactionForceSolutionCache solutionCache,
+                                               @NotNull ReactionForceSolver solver, SolverMetrics metrics) {
+        return createForceItem(placedItem, forceItemsOnTop, maxSequence, solutionCache, solver, metrics,
+                SupportRelations.ENVIRONMENT_RELATIONS);
+    }
+
+    /**
+     * Trigger services to calculate the forceItemInformation.
+     * @param placedItem the element representing the item which ForceItem is calculated
+     * @param forceItemsOnTop the forceItems being on Top of this item
+     * @param maxSequence the sequence until which the forces are calculated
+     * @param solutionCache the cache of already solved reactionForce systems; may be null
+     * @param solver the solver distributing the resultantForces to the reactionPoints
+     * @param metrics the metrics to record the solved systems in; may be null
+     * @param supportRelations the relations the items below are taken from
+     * @return the forceItem for the given placedItem
+     */
+    public static ForceItemDTO createForceItem(@NotNull PlacedItem placedItem, List<ForceItemDTO> forceItemsOnTop,
+                                               int maxSequence, ReactionForceSolutionCache solutionCache,
+                                               @NotNull ReactionForceSolver solver, SolverMetrics metrics,
+                                               @NotNull SupportRelations supportRelations) {
 
         RequierementCheckService.asserCOMIsCorrect(placedItem.itemLabel, placedItem.shape.getWidth(),
                 placedItem.shape.getHeight(),
@@ -41,28 +93,33 @@ public class ForceItemCalculation {
                 GravitationForceCalculator.calculateGravitationForce(placedItem.getAbsoluteCenterOfMassPoint(),
                         placedItem.weight);
 
-        Map<Integer, List<Pair<Point2D, Double>>> actionForcesPerSequence =
-                ActionForceGatherer.gatherRelatedActionForcesFromTopItems(placedItem.itemLabel,
-                        placedItem.sequence, forceItemsOnTop, maxSequence);
+        List<PlacedItem> itemsBelow = new ArrayList<>(supportRelations.getItemsBelow(placedItem));
+        List<Pair<Point2D, PlacedItem>> reactionPoints =
+                ReactionPointCalculator.calculateReactionPoints(placedItem, itemsBelow);
 
-        Map<Integer, Pair<Point2D, Double>> resultantForcePerSequence =
-                ResultantForceCalculator.calculateResultantForcesForAllSequences(placedItem.sequence, maxSequence,
-                        gravitationForce, actionForcesPerSequence);
+        int[] changePoints = ChangePointCalculator.calculateChangePoints(placedItem, forceItemsOnTop,
+                reactionPoints, maxSequence);
 
-        List<Pair<Point2D, PlacedItem>> reactionPoints = ReactionPointCalculator.calculateReactionPoints(placedItem,
-                new ArrayList<>(placedItem.getEnvironmentRelations().getItemsBelow()));
+        ForceSegments actionForces =
+                ActionForceGatherer.gatherRelatedActionForcesFromTopItems(placedItem.sequence,
+                        placedItem.sequence, forceItemsOnTop, maxSequence, changePoints);
+
+        ForceSegments resultantForces =
+                ResultantForceCalculator.calculateResultantForcesForAllSequences(placedItem.sequence, maxSequence,
+                        gravitationForce, actionForces, changePoints);
 
 
-        Map<Integer, Map<String, List<Pair<Point2D, Double>>>> reactionForcesPerSequence =
+        ForceSegments reactionForces =
                 ReactionForceCalculator.calculateReactionForces(placedItem.sequence, maxSequence, reactionPoints,
-                        resultantForcePerSequence);
+                        resultantForces, changePoints, solutionCache, solver, metrics);
 
-        Boolean[] stabilityPerSequence =
+        BitSet stabilityPerSequence =
                 ItemStabilityAssessor.getStabilityFromReactionForcesPerSequence(placedItem.sequence,
-                maxSequence, reactionForcesPerSequence);
+                maxSequence, reactionForces);
+        BitSet placedPerSequence = ItemStabilityAssessor.getPlacedSequences(placedItem.sequence, maxSequence);
 
 
-        return new ForceItemDTO(placedItem, gravitationForce, reactionPoints, actionForcesPerSequence,
-                resultantForcePerSequence, reactionForcesPerSequence, stabilityPerSequence);
+        return new ForceItemDTO(placedItem, gravitationForce, reactionPoints, actionForces, resultantForces,
+                reactionForces, changePoints, maxSequence, placedPerSequence, stabilityPerSequence);
     }
 }
@@ -0,0 +1,302 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationSystem;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ReactionForceSolver} solving the equilibrium of the item as non-negative least-squares problem with the
+ * active-set method of Lawson and Hanson.
+ * <p>
+ * The forces f of the placed reactionPoints have to carry the resultant force (sum of f equals its magnitude) without
+ * a moment (sum of f times the position relative to the resultant force point is zero). Instead of solving the
+ * system first and handling indeterminate systems and negative forces afterwards, the forces minimizing the
+ * violation of these three equations under the constraint f >= 0 are searched directly. The item is stable if the
+ * remaining violation is within the tolerance, i.e. if the resultant force point lies in the convex hull of the
+ * placed reactionPoints. The number of iterations is bounded by a multiple of the number of reactionPoints.
+ * <p>
+ * Every thread solves on its own buffers, which grow to the largest number of reactionPoints seen, so solving does not
+ * allocate once they are large enough. The solutions are returned on these buffers and are only valid until the
+ * thread solves the next system; the {@link ReactionForceSolutionCache} stores copies of them.
+ */
+public class NonNegativeLeastSquaresReactionForceSolver implements ReactionForceSolver {
+
+    private static final double ROUNDING_FACTOR = 10000.0;
+
+    /**
+     * Tolerance of the remaining violation of the (normalized) equations
+     */
+    private static final double RESIDUAL_TOLERANCE = 1e-6;
+
+    /**
+     * Tolerance of the gradient and of forces treated as zero
+     */
+    private static final double EPSILON = 1e-12;
+
+    private static final int ROWS = 3;
+
+    /**
+     * Right-hand side of the normalized equations, only read
+     */
+    private static final double[] B = {1, 0, 0};
+
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce) {
+        return solve(sequence, reactionPoints, resultantForce, null);
+    }
+
+    /**
+     * Same as {@link #solve(int, List, Pair)}, recording the number of placed reactionPoints, whether the item is
+     * supported (as unique or no solution) and the iterations of the active-set method in the given metrics
+     *
+     * @param metrics the metrics to record in; may be null
+     */
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        int n = reactionPoints.size();
+        Workspace workspace = WORKSPACES.get();
+        workspace.ensureCapacity(n);
+
+        int[] placed = workspace.placed;
+        int k = 0;
+        for (int i = 0; i < n; i++)
+            if (reactionPoints.get(i).second.sequence <= sequence)
+                placed[k++] = i;
+        if (k == 0)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // normalized equations: sum f = 1, sum f * dx / extent = 0, sum f * dz / extent = 0
+        double[][] a = workspace.a;
+        double extent = 0;
+        for (int j = 0; j < k; j++) {
+            Point2D point = reactionPoints.get(placed[j]).first;
+            a[1][j] = point.x - resultantForce.first.x;
+            a[2][j] = point.y - resultantForce.first.y;
+            extent = Math.max(extent, Math.max(Math.abs(a[1][j]), Math.abs(a[2][j])));
+        }
+        if (extent == 0)
+            extent = 1;
+        for (int j = 0; j < k; j++) {
+            a[0][j] = 1;
+            a[1][j] /= extent;
+            a[2][j] /= extent;
+        }
+
+        int iterations = solveNonNegativeLeastSquares(workspace, k);
+        double[] x = workspace.x;
+
+        double[] residual = residual(workspace, k);
+        double residualNorm = Math.sqrt(residual[0] * residual[0] + residual[1] * residual[1]
+                + residual[2] * residual[2]);
+        boolean supported = residualNorm <= RESIDUAL_TOLERANCE;
+        if (metrics != null) {
+            metrics.recordSystem(k, supported ? LinearEquationSystem.Solubility.UNIQUE_SOLUTION
+                    : LinearEquationSystem.Solubility.NO_SOLUTION);
+            metrics.recordIterations(iterations);
+        }
+        if (!supported)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        int[] pointIndices = workspace.pointIndices;
+        double[] forces = workspace.forces;
+        int carrying = 0;
+        for (int j = 0; j < k; j++) {
+            if (x[j] > 0) {
+                pointIndices[carrying] = placed[j];
+                forces[carrying++] = Math.round(x[j] * resultantForce.second * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+            }
+        }
+        return new ReactionForceSolutionCache.Solution(pointIndices, forces, carrying);
+    }
+
+    /**
+     * Lawson-Hanson active-set method: minimizes |a x - b| subject to x >= 0 on the matrix of the workspace (3 rows,
+     * k columns), leaving the solution in its x
+     *
+     * @param workspace the workspace holding the matrix
+     * @param k         the number of columns
+     * @return the number of iterations, i.e. of solved least-squares problems
+     */
+    private static int solveNonNegativeLeastSquares(Workspace workspace, int k) {
+        double[] x = workspace.x;
+        double[] z = workspace.z;
+        boolean[] passive = workspace.passive;
+        double[][] a = workspace.a;
+        Arrays.fill(x, 0, k, 0);
+        Arrays.fill(passive, 0, k, false);
+        int maxIterations = 3 * k + 10;
+        int iterations = 0;
+
+        while (iterations < maxIterations) {
+            // gradient of the negative half squared residual
+            double[] residual = residual(workspace, k);
+            int next = -1;
+            double maxGradient = EPSILON;
+            for (int j = 0; j < k; j++) {
+                if (passive[j])
+                    continue;
+                double gradient = a[0][j] * residual[0] + a[1][j] * residual[1] + a[2][j] * residual[2];
+                if (gradient > maxGradient) {
+                    maxGradient = gradient;
+                    next = j;
+                }
+            }
+            if (next < 0)
+                break;
+
+            passive[next] = true;
+
+            while (true) {
+                iterations++;
+                if (!solveLeastSquaresOnPassiveSet(workspace, k)) {
+                    // the new column depends linearly on the passive ones, it can not improve the solution
+                    passive[next] = false;
+                    return iterations;
+                }
+
+                double alpha = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < k; j++)
+                    if (passive[j] && z[j] <= 0)
+                        alpha = Math.min(alpha, x[j] / (x[j] - z[j]));
+
+                if (alpha == Double.POSITIVE_INFINITY) {
+                    System.arraycopy(z, 0, x, 0, k);
+                    break;
+                }
+
+                for (int j = 0; j < k; j++) {
+                    if (!passive[j])
+                        continue;
+                    x[j] += alpha * (z[j] - x[j]);
+                    if (x[j] <= EPSILON) {
+                        x[j] = 0;
+                        passive[j] = false;
+                    }
+                }
+
+                if (iterations >= maxIterations)
+                    return iterations;
+            }
+        }
+        return iterations;
+    }
+
+    /**
+     * Solves the unconstrained least-squares problem on the columns of the passive set by the normal equations,
+     * leaving the solution in z of the workspace, zero outside the passive set
+     *
+     * @return false if the columns are linearly dependent
+     */
+    private static boolean solveLeastSquaresOnPassiveSet(Workspace workspace, int k) {
+        double[][] a = workspace.a;
+        boolean[] passive = workspace.passive;
+        int[] columns = workspace.columns;
+        int p = 0;
+        for (int j = 0; j < k; j++)
+            if (passive[j])
+                columns[p++] = j;
+
+        // normal equations (a_P^T a_P) z = a_P^T b
+        double[][] gram = workspace.gram;
+        for (int r = 0; r < p; r++) {
+            Arrays.fill(gram[r], 0, p + 1, 0);
+            for (int c = 0; c < p; c++)
+                for (int row = 0; row < ROWS; row++)
+                    gram[r][c] += a[row][columns[r]] * a[row][columns[c]];
+            for (int row = 0; row < ROWS; row++)
+                gram[r][p] += a[row][columns[r]] * B[row];
+        }
+
+        // Gaussian elimination with partial pivoting
+        for (int i = 0; i < p; i++) {
+            int pivotRow = i;
+            for (int r = i + 1; r < p; r++)
+                if (Math.abs(gram[r][i]) > Math.abs(gram[pivotRow][i]))
+                    pivotRow = r;
+            if (Math.abs(gram[pivotRow][i]) <= EPSILON)
+                return false;
+            double[] temp = gram[i];
+            gram[i] = gram[pivotRow];
+            gram[pivotRow] = temp;
+
+            for (int r = i + 1; r < p; r++) {
+                double factor = gram[r][i] / gram[i][i];
+                for (int c = i; c <= p; c++)
+                    gram[r][c] -= factor * gram[i][c];
+            }
+        }
+
+        double[] z = workspace.z;
+        double[] zPassive = workspace.zPassive;
+        Arrays.fill(z, 0, k, 0);
+        for (int i = p - 1; i >= 0; i--) {
+            double t = gram[i][p];
+            for (int c = i + 1; c < p; c++)
+                t -= gram[i][c] * zPassive[c];
+            zPassive[i] = t / gram[i][i];
+        }
+        for (int i = 0; i < p; i++)
+            z[columns[i]] = zPassive[i];
+        return true;
+    }
+
+    /**
+     * @return the residual b - a x of the workspace, on its buffer
+     */
+    private static double[] residual(Workspace workspace, int k) {
+        double[] residual = workspace.residual;
+        System.arraycopy(B, 0, residual, 0, ROWS);
+        for (int j = 0; j < k; j++) {
+            double x = workspace.x[j];
+            if (x == 0)
+                continue;
+            for (int row = 0; row < ROWS; row++)
+                residual[row] -= workspace.a[row][j] * x;
+        }
+        return residual;
+    }
+
+    /**
+     * The buffers of a thread
+     */
+    private static final class Workspace {
+
+        private int[] placed = new int[0];
+        private int[] columns = new int[0];
+        private int[] pointIndices = new int[0];
+        private double[][] a = new double[ROWS][0];
+        private double[][] gram = new double[0][0];
+        private double[] x = new double[0];
+        private double[] z = new double[0];
+        private double[] zPassive = new double[0];
+        private double[] forces = new double[0];
+        private boolean[] passive = new boolean[0];
+        private final double[] residual = new double[ROWS];
+
+        /**
+         * Grows the buffers to the given number of reactionPoints, discarding their content
+         */
+        void ensureCapacity(int n) {
+            if (placed.length >= n)
+                return;
+            placed = new int[n];
+            columns = new int[n];
+            pointIndices = new int[n];
+            a = new double[ROWS][n];
+            gram = new double[n][n + 1];
+            x = new double[n];
+            z = new double[n];
+            zPassive = new double[n];
+            forces = new double[n];
+            passive = new boolean[n];
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
 
-import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationSystem;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
 import com.wim.palletizing.geometry.dim2.Point2D;
 import com.wim.palletizing.helper.Pair;
 import com.wim.palletizing.model.item.PlacedItem;
 
-import java.util.*;
+import java.util.List;
 
 /**
  * @author Frederick Gamer
@@ -16,67 +16,122 @@ public class ReactionForceCalculator {
 
     /**
      * Calculates the reactionForces for each startSequence from when the item is placed to the maxSequence,
-     * grouped and mapped to the item they act on and mapped to each startSequence
+     * each referencing the item they act on by its sequence.
+     * The forces are only calculated in the change points and taken over from the previous sequence in between, as
+     * neither the resultantForce nor the placed reactionPoints change there
      *
-     * @param startSequence                  the sequence from which on the reactionForces are calculated
-     * @param maxSequence               the sequence until which the reactionForces are calculated
-     * @param reactionPoints            the points along with the item of the reactionForce
-     * @param resultantForcePerSequence the resultantForces of all sequences that should be calculated
-     * @return the reactionForce(Point and Magnitude) grouped as list and mapped to the item they act on, again mapped
-     * to the sequence they are active in
+     * @param startSequence   the sequence from which on the reactionForces are calculated
+     * @param maxSequence     the sequence until which the reactionForces are calculated
+     * @param reactionPoints  the points along with the item of the reactionForce
+     * @param resultantForces the resultantForces of all sequences that should be calculated
+     * @param changePoints    the sequences the forces of the item can change in, ascending
+     * @param solutionCache   the cache of already solved systems; may be null
+     * @param solver          the solver distributing the resultantForce to the reactionPoints
+     * @param metrics         the metrics to record the solved systems in; may be null
+     * @return the reactionForces (Point and Magnitude); only the sequences they could be calculated for have a segment
      */
-    protected static Map<Integer, Map<String, List<Pair<Point2D, Double>>>>
-    calculateReactionForces(int startSequence, int maxSequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
-                            Map<Integer, Pair<Point2D, Double>> resultantForcePerSequence) {
-        Map<Integer, Map<String, List<Pair<Point2D, Double>>>> reactionForcesPerSequence = new HashMap<>();
+    protected static ForceSegments calculateReactionForces(int startSequence, int maxSequence,
+                                                           List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                           ForceSegments resultantForces, int[] changePoints,
+                                                           ReactionForceSolutionCache solutionCache,
+                                                           ReactionForceSolver solver, SolverMetrics metrics) {
+        ForceSegments reactionForces = new ForceSegments(startSequence, maxSequence);
+        int nextChangePoint = 0;
         for (int i = startSequence; i < maxSequence; i++) {
-            Map<String, List<Pair<Point2D, Double>>> reactionForces =
-                    ReactionForceCalculator.calculateReactionForcesForSequence(i,
-                    reactionPoints, resultantForcePerSequence.get(i));
-            if (reactionForces != null) {
-                reactionForcesPerSequence.put(i, reactionForces);
+            if (nextChangePoint < changePoints.length && changePoints[nextChangePoint] == i)
+                nextChangePoint++;
+            else if (i > startSequence) {
+                reactionForces.repeatSegment(i);
+                continue;
             }
+
+            int entry = resultantForces.getSegmentStart(i);
+            Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(resultantForces.getX(entry),
+                    resultantForces.getZ(entry)), resultantForces.getMagnitude(entry));
+            ReactionForceCalculator.calculateReactionForcesForSequence(reactionForces, i, reactionPoints,
+                    resultantForce, solutionCache, solver, metrics);
         }
 
-        return reactionForcesPerSequence;
+        return reactionForces;
     }
 
     /**
      * For the given sequence  the given resultantForce is distributed to
      * the reactionPoints existing at that sequence depending on the distance of the reacting points.
      * If no calculation is possible, the item is expected to be unstable and this state is saved in the object
-     * The resulting reactionForces are returned.
+     * The resulting reactionForces are added as segment of the sequence.
+     *
+     * @param reactionForces the reactionForces to add to
+     * @param sequence       the current sequence number for which the reactionForces are calculated
+     * @param reactionPoints the points along with the item of the reactionForce
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @param solutionCache  the cache of already solved systems; may be null
+     * @param solver         the solver distributing the resultantForce to the reactionPoints
+     * @param metrics        the metrics to record the solved systems in; may be null
+     * @return true if the reactionForces could be calculated
+     */
+    private static boolean calculateReactionForcesForSequence(ForceSegments reactionForces, int sequence,
+                                                              List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                              Pair<Point2D, Double> resultantForce,
+                                                              ReactionForceSolutionCache solutionCache,
+                                                              ReactionForceSolver solver, SolverMetrics metrics) {
+        return ReactionForceCalculator.addReactionForces(reactionForces, sequence, reactionPoints,
+                ReactionForceCalculator.solveForSequence(sequence, reactionPoints, resultantForce, solutionCache,
+                        solver, metrics));
+    }
+
+    /**
+     * Distributes the given resultantForce to the reactionPoints existing at the given sequence.
+     * The reactionPoints are sorted by their distance to the resultantForce, the solution refers to this order.
+     * A system of the same configuration as one solved before is taken from the cache instead of being solved again.
      *
      * @param sequence       the current sequence number for which the reactionForces are calculated
      * @param reactionPoints the points along with the item of the reactionForce
      * @param resultantForce the resultantForce (Point and magnitude) of the item
-     * @return the reactionForce(Point and Magnitude) grouped as list and mapped to the item they act on
+     * @param solutionCache  the cache of already solved systems; may be null
+     * @param solver         the solver distributing the resultantForce to the reactionPoints
+     * @param metrics        the metrics to record the solved system and the time in; may be null
+     * @return the solution, unsolvable if there are no reactionPoints
      */
-    private static Map<String, List<Pair<Point2D, Double>>>
-    calculateReactionForcesForSequence(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
-                                       Pair<Point2D, Double> resultantForce) {
+    static ReactionForceSolutionCache.Solution solveForSequence(int sequence,
+                                                                List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                                Pair<Point2D, Double> resultantForce,
+                                                                ReactionForceSolutionCache solutionCache,
+                                                                ReactionForceSolver solver, SolverMetrics metrics) {
+        if (metrics == null)
+            return ReactionForceCalculator.solve(sequence, reactionPoints, resultantForce, solutionCache, solver,
+                    null);
+
+        long start = System.nanoTime();
+        ReactionForceSolutionCache.Solution solution = ReactionForceCalculator.solve(sequence, reactionPoints,
+                resultantForce, solutionCache, solver, metrics);
+        metrics.recordSequenceTime(System.nanoTime() - start);
+        return solution;
+    }
+
+    private static ReactionForceSolutionCache.Solution solve(int sequence,
+                                                             List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                             Pair<Point2D, Double> resultantForce,
+                                                             ReactionForceSolutionCache solutionCache,
+                                                             ReactionForceSolver solver, SolverMetrics metrics) {
         if(reactionPoints.size() == 0){
-            return null;
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
         }
 
 
         //Sort the reactionPoints based on the distance to the resultantPoint
         ReactionForceCalculator.sortReactionPointsByDistanceToResultantForce(reactionPoints, resultantForce);
-        // Creates a LES using the distances between reactionPoints and the resultantForce
-        LinearEquationSystem les = ReactionForceCalculator.createLES(sequence, reactionPoints, resultantForce);
 
-        LinearEquationSystem.Solubility solubility = les.solveLesAsPossible();
+        if (solutionCache == null)
+            return solver.solve(sequence, reactionPoints, resultantForce, metrics);
 
-        switch (solubility) {
-            case UNIQUE_SOLUTION:
-                return ReactionForceCalculator.readReactionForcesFromLES(les, reactionPoints);
-            case INFINITE_SOLUTIONS:
-                return ReactionForceCalculator.handleIndeterminateSystem(les, reactionPoints, resultantForce);
-            case NO_SOLUTION:
-                return null;
-            default:
-                throw new IllegalArgumentException("Feedback of LES-solving can't be handled");
+        Object key = ReactionForceSolutionCache.createKey(sequence, reactionPoints, resultantForce);
+        ReactionForceSolutionCache.Solution solution = solutionCache.get(key);
+        if (solution == null) {
+            solution = solver.solve(sequence, reactionPoints, resultantForce, metrics);
+            solutionCache.put(key, solution);
         }
+        return solution;
     }
 
     /**
@@ -95,226 +150,30 @@ public class ReactionForceCalculator {
     }
 
     /**
-     * Creates a LES using all reactionPoints and the resultant Force of the given Sequence
-     * The LES contains on the left-hand-side all distances between the reactionForces (each on X and Z) and on the
-     * right-hand-side the distance to the resultantForce times the magnitude of the force
-     *
-     * @param sequence       the sequence setting which reactionPoints to consider
-     * @param reactionPoints the reactionPoints used to create the LES
-     * @param resultantForce the resultantForce(Point and magnitude) used to create the LES
-     * @return a LES containing all distance equations
-     */
-    private static LinearEquationSystem createLES(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
-                                                            Pair<Point2D, Double> resultantForce) {
-        //The left-hand side matrix, containing all the distance from one reactionPoint to the other
-        //Each column contains the coefficients of one variable that is to solve
-        double[][] lhs = new double[reactionPoints.size() * 2][reactionPoints.size()];
-
-        //The right-hand side matrix, containing the value the lhs should achieve
-        //Value is the magnitude of the resultant force times the distance to the specific reactionForcePoint
-        double[] rhs = new double[reactionPoints.size() * 2];
-
-        //Create matrix (2n x n) for n reactionForcePoints
-        for (int i = 0; i < reactionPoints.size(); i++) {
-
-            //Skips all reactionForcePoints not existing placed at the given sequence
-            if (reactionPoints.get(i).second.sequence > sequence)
-                continue;
-
-            //Calculate moments on x-Axis (2i) and z-Axis (2i+1)
-            for (int j = 0; j < reactionPoints.size(); j++) {
-
-                //Skips reactionForcePoints not placed yet or if it's the same then in outer loop, array contains 0 per default
-                if (reactionPoints.get(i).second.sequence > sequence || i == j)
-                    continue;
-
-                //distance on x
-                lhs[2 * i][j] = reactionPoints.get(i).first.x - reactionPoints.get(j).first.x;
-                //distance on z-axis
-                lhs[2 * i + 1][j] = reactionPoints.get(i).first.y - reactionPoints.get(j).first.y;
-            }
-            //distance of resultant Force on x-axis
-            rhs[2 * i] = (reactionPoints.get(i).first.x - resultantForce.first.x)
-                    * resultantForce.second;
-            rhs[2 * i] = Math.round(rhs[2 * i] * 100) / 100.0;
-            //distance of resultant Force on y-axis
-            rhs[2 * i + 1] = (reactionPoints.get(i).first.y - resultantForce.first.y)
-                    * resultantForce.second;
-            rhs[2 * i + 1] = Math.round(rhs[2 * i + 1] * 100) / 100.0;
-
-        }
-
-        return new LinearEquationSystem(lhs, rhs);
-    }
-
-    /**
-     * Matching the results of the linear equation system to the reactionPoints to
-     * create reactionForces with points and magnitude mapped to the item the act on
+     * Creates the reactionForces of the solution with points and magnitude referencing the item the act on
      *
-     * @param les            the solved linear equation system,
-     * @param reactionPoints the reactionPoints the LES is solved for
-     * @return the reactionForces
+     * @param reactionForces the reactionForces to add the segment of the sequence to
+     * @param sequence       the sequence the solution is for
+     * @param reactionPoints the reactionPoints the solution is for
+     * @param solution       the solution
+     * @return true if the solution is solvable and has been added
      */
-    private static Map<String, List<Pair<Point2D, Double>>> readReactionForcesFromLES(
-            LinearEquationSystem les, List<Pair<Point2D, PlacedItem>> reactionPoints) {
-        double[] forceSolution = les.getSolution();
+    static boolean addReactionForces(ForceSegments reactionForces, int sequence,
+                                     List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                     ReactionForceSolutionCache.Solution solution) {
+        if (!solution.isSolvable())
+            return false;
 
         //Save the reactionForces (Point and Magnitude) along with the corresponding item
-        Map<String, List<Pair<Point2D, Double>>> reactionForces = new HashMap<>();
-
-        for (int i = 0; i < reactionPoints.size(); i++) {
-            if (!reactionForces.containsKey(reactionPoints.get(i).second.itemLabel))
-                reactionForces.put(reactionPoints.get(i).second.itemLabel, new LinkedList<>());
-            reactionForces.get(reactionPoints.get(i).second.itemLabel).add(new Pair<>(reactionPoints.get(i).first,
-                    forceSolution[i]));
-        }
-
-        return reactionForces;
-    }
-
-    /**
-     * Determines three reactionPoints out of all which form a stable support and calculates the system for them
-     *
-     * @param les            the indeterminate equation system
-     * @param reactionPoints all reaction points
-     * @param resultantForce the resultantForce of the item
-     * @return the calculated reactionForces or an empty list, if no calculation is possible
-     */
-    private static Map<String, List<Pair<Point2D, Double>>> handleIndeterminateSystem(
-            LinearEquationSystem les, List<Pair<Point2D, PlacedItem>> reactionPoints,
-            Pair<Point2D, Double> resultantForce) {
-
-        //Check if all points belong to one item and distribute force equally if so
-//        if (ReactionForceCalculator.reactionPointsBelongToOneItem(reactionPoints)) {
-//            return ReactionForceCalculator.distributeForceEqually(reactionPoints, resultantForce);
-//        }
-
-        //Otherwise, the three points that are closed to the reactionForce and stable are determined
-
-        //As only items being in different quadrant can be a stable support, the quadrants are used to speed the
-        //process up
-        int[] reactionPointQuadrants = ReactionForceCalculator.deriveQuadrantsOfReactionPoints(reactionPoints,
-                resultantForce);
-        Map<String, List<Pair<Point2D, Double>>> reactionForces;
-
-        for (int i = 2; i < reactionPoints.size(); i++) {
-            for (int c1 = 0; c1 < i; c1++) {
-                if (reactionPointQuadrants[c1] == reactionPointQuadrants[i])
-                    continue;
-                for (int c2 = c1 + 1; c2 < i; c2++) {
-                    if (reactionPointQuadrants[c2] == reactionPointQuadrants[i] ||
-                            reactionPointQuadrants[c2] == reactionPointQuadrants[c1])
-                        continue;
-
-                    reactionForces = ReactionForceCalculator.tryCalculatingReactionForcesForTriple(reactionPoints,
-                            Arrays.asList(c1, c2, i), les);
-
-                    if (reactionForces != null) {
-                        return reactionForces;
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Checks if all reactionPoints belong to the same item
-     *
-     * @param reactionPoints the points checked
-     * @return true, if all reactionPoints belong to the same item. false else
-     */
-    private static boolean reactionPointsBelongToOneItem(List<Pair<Point2D, PlacedItem>> reactionPoints) {
-
-        Pair<Point2D, PlacedItem> reactionPoint1 = reactionPoints.get(0);
-        for (Pair<Point2D, PlacedItem> reactionPoint2 : reactionPoints) {
-            if (!reactionPoint1.second.equals(reactionPoint2.second))
-                return false;
+        int[] pointIndices = solution.getPointIndices();
+        double[] forces = solution.getForces();
+        reactionForces.startSegment(sequence);
+        for (int i = 0; i < solution.getLength(); i++) {
+            Pair<Point2D, PlacedItem> reactionPoint = reactionPoints.get(pointIndices[i]);
+            reactionForces.add(reactionPoint.first.x, reactionPoint.first.y, forces[i],
+                    reactionPoint.second.sequence);
         }
         return true;
     }
 
-    /**
-     * Creates the reactionForces by distributing the resultant Force equally to the reactionPoints
-     *
-     * @param reactionPoints the list of points
-     * @param resultantForce the force distributed to the points
-     * @return the reactionForces
-     */
-    private static Map<String, List<Pair<Point2D, Double>>> distributeForceEqually(
-            List<Pair<Point2D, PlacedItem>> reactionPoints, Pair<Point2D, Double> resultantForce) {
-        Map<String, List<Pair<Point2D, Double>>> reactionForces = new HashMap<>();
-
-        for (int i = 0; i < reactionPoints.size(); i++) {
-            if (!reactionForces.containsKey(reactionPoints.get(i).second.itemLabel))
-                reactionForces.put(reactionPoints.get(i).second.itemLabel, new LinkedList<>());
-            double force = Math.round(resultantForce.second / reactionPoints.size() * 100) / 100.0;
-            reactionForces.get(reactionPoints.get(i).second.itemLabel).add(new Pair<>(reactionPoints.get(i).first, force));
-        }
-
-        return reactionForces;
-    }
-
-    /**
-     * Deriving a positional quadrant for each reactionPoint depending on it's position to the resultantForce point:
-     * x<= & y<=  => quadrant 0
-     * x<= & y>   => quadrant 1
-     * x> & y<=   => quadrant 2
-     * x> & y>    => quadrant 3
-     *
-     * @param reactionPoints the points the quadrant is derived for
-     * @param resultantForce giving the point the points are rated relative to
-     * @return an array of ints, showing the positional quadrant of the reaction Points
-     */
-    private static int[] deriveQuadrantsOfReactionPoints(List<Pair<Point2D,
-            PlacedItem>> reactionPoints, Pair<Point2D, Double> resultantForce) {
-        int[] reactionPointQuadrant = new int[reactionPoints.size()];
-
-        for (int i = 0; i < reactionPoints.size(); i++) {
-            if (reactionPoints.get(i).first.x >= resultantForce.first.x)
-                reactionPointQuadrant[i] += 2;
-            if (reactionPoints.get(i).first.y >= resultantForce.first.y)
-                reactionPointQuadrant[i] += 1;
-        }
-        return reactionPointQuadrant;
-    }
-
-    /**
-     * Test if system is stable for three points and solves system if so
-     *
-     * @param reactionPoints all reactionPoints existing
-     * @param indices        the indices of the reactionPoints to consider
-     * @param lesLarge       the LES containing all reactionPoints
-     * @return the reactionForces if possible to calculate or null
-     */
-    private static Map<String, List<Pair<Point2D, Double>>> tryCalculatingReactionForcesForTriple(List<Pair<Point2D,
-            PlacedItem>> reactionPoints, List<Integer> indices, LinearEquationSystem lesLarge) {
-
-        LinearEquationSystem lesTriple = new LinearEquationSystem(lesLarge.getSpecificColumnsOfLHS(indices),
-                lesLarge.getRhsReduced());
-
-        if (lesTriple.solveLesAsPossible() == LinearEquationSystem.Solubility.UNIQUE_SOLUTION)
-            return readReactionForcesFromLES(lesTriple,
-                    ReactionForceCalculator.getSpecificReactionPoints(reactionPoints, indices));
-
-        return null;
-    }
-
-    /**
-     * Creates a new list only containing the reactionPoints specified by the indices
-     *
-     * @param reactionPoints a list containing the reactionPoints to filter
-     * @param indices        containing the indices of the reactionPoints to filter
-     * @return a list with only the reactionPoints with the indices given
-     */
-    private static List<Pair<Point2D, PlacedItem>> getSpecificReactionPoints(
-            List<Pair<Point2D, PlacedItem>> reactionPoints, List<Integer> indices) {
-        List<Pair<Point2D, PlacedItem>> reducedReactionPoints = new ArrayList<>();
-
-        for (int i : indices) {
-            reducedReactionPoints.add(reactionPoints.get(i));
-        }
-        return reducedReactionPoints;
-    }
-
 }
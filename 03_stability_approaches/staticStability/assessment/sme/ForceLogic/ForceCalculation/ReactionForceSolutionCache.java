@@ -0,0 +1,257 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the solutions of the reactionForce systems, so systems of the same configuration are solved only once.
+ * <p>
+ * A configuration consists of the sorted reactionPoints relative to the resultant force point, whether each of
+ * them exists (is placed) in the sequence, and the magnitude of the resultant force. As contact points and resultant
+ * force points are rounded to hundredths, the relative positions are encoded exactly as hundredths, so the same
+ * configuration is recognized wherever it is placed, e.g. between consecutive sequences or between identically
+ * shaped items of uniform layers. The forces of a cached solution can differ from the ones of a new calculation at
+ * another position in the last digits only, as the coordinate differences are calculated from other absolute values.
+ * <p>
+ * The cache holds a limited number of solutions and evicts the least recently used one. It can be shared between
+ * threads.
+ */
+public class ReactionForceSolutionCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The reactionForces of a solved system: the positions of the reactionPoints in the sorted list that carry a
+     * force and their force.
+     * <p>
+     * The arrays may be longer than the solution, e.g. if they are the buffers of a {@link
+     * com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationWorkspace}; only the first
+     * {@link #getLength()} entries belong to it. A solution on such buffers is only valid until the thread solves the
+     * next system, {@link #copy()} keeps it.
+     */
+    public static class Solution {
+
+        /**
+         * Solution of a system that can not be solved, the item is unstable
+         */
+        public static final Solution UNSOLVABLE = new Solution(null, null);
+
+        private final int[] pointIndices;
+        private final double[] forces;
+        private final int length;
+
+        public Solution(int[] pointIndices, double[] forces) {
+            this(pointIndices, forces, pointIndices == null ? 0 : pointIndices.length);
+        }
+
+        /**
+         * @param pointIndices the positions of the reactionPoints, at least length entries
+         * @param forces       the forces of the reactionPoints, at least length entries
+         * @param length       the number of reactionPoints carrying a force
+         */
+        public Solution(int[] pointIndices, double[] forces, int length) {
+            this.pointIndices = pointIndices;
+            this.forces = forces;
+            this.length = length;
+        }
+
+        public boolean isSolvable() {
+            return pointIndices != null;
+        }
+
+        public int[] getPointIndices() {
+            return pointIndices;
+        }
+
+        public double[] getForces() {
+            return forces;
+        }
+
+        /**
+         * @return the number of reactionPoints carrying a force, the entries of the arrays belonging to the solution
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return a solution on arrays of its own length, not sharing them with the solver
+         */
+        public Solution copy() {
+            if (!isSolvable())
+                return UNSOLVABLE;
+            return new Solution(Arrays.copyOf(pointIndices, length), Arrays.copyOf(forces, length), length);
+        }
+    }
+
+    /**
+     * Canonical encoding of a configuration. The key returned by {@link #createKey(int, List, Pair)} is reused by the
+     * next call of the thread; the cache stores a copy of it.
+     */
+    private static class Key {
+
+        private long[] encoding;
+        private int length;
+        private int hash;
+
+        private Key(long[] encoding, int length) {
+            this.encoding = encoding;
+            this.length = length;
+            this.hash = hash(encoding, length);
+        }
+
+        /**
+         * Sizes the encoding for the given number of values, keeping its array if it is large enough
+         */
+        private void resize(int length) {
+            if (encoding.length < length)
+                encoding = new long[Math.max(length, encoding.length * 2)];
+            this.length = length;
+        }
+
+        private static int hash(long[] encoding, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++)
+                hash = 31 * hash + Long.hashCode(encoding[i]);
+            return hash;
+        }
+
+        private Key copy() {
+            return new Key(Arrays.copyOf(encoding, length), length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            if (hash != other.hash || length != other.length)
+                return false;
+            for (int i = 0; i < length; i++)
+                if (encoding[i] != other.encoding[i])
+                    return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The key of every thread the configurations are encoded into
+     */
+    private static final ThreadLocal<Key> KEYS = ThreadLocal.withInitial(() -> new Key(new long[64], 0));
+
+    private final Map<Key, Solution> solutions;
+
+    private long hits, misses;
+
+    public ReactionForceSolutionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximal number of solutions held
+     */
+    public ReactionForceSolutionCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+
+        this.solutions = new LinkedHashMap<Key, Solution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Solution> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Creates the key of the configuration of the reactionForce system of a sequence
+     *
+     * @param sequence       the sequence setting which reactionPoints exist
+     * @param reactionPoints the reactionPoints, in the order the system is created for
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @return the key of the configuration, valid until the thread creates the next key
+     */
+    public static Object createKey(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                   Pair<Point2D, Double> resultantForce) {
+        Key key = KEYS.get();
+        key.resize(1 + reactionPoints.size() * 3);
+        long[] encoding = key.encoding;
+        encoding[0] = Double.doubleToLongBits(resultantForce.second);
+
+        int i = 1;
+        for (int k = 0; k < reactionPoints.size(); k++) {
+            Pair<Point2D, PlacedItem> reactionPoint = reactionPoints.get(k);
+            encoding[i++] = Math.round((reactionPoint.first.x - resultantForce.first.x) * 100);
+            encoding[i++] = Math.round((reactionPoint.first.y - resultantForce.first.y) * 100);
+            encoding[i++] = reactionPoint.second.sequence > sequence ? 0 : 1;
+        }
+        key.hash = Key.hash(encoding, key.length);
+        return key;
+    }
+
+    /**
+     * @param key the key of the configuration, see {@link #createKey(int, List, Pair)}
+     * @return the cached solution or null, if the configuration has not been solved (recently)
+     */
+    public synchronized Solution get(Object key) {
+        Solution solution = solutions.get(key);
+        if (solution == null)
+            misses++;
+        else
+            hits++;
+        return solution;
+    }
+
+    /**
+     * @param key      the key of the configuration, see {@link #createKey(int, List, Pair)}
+     * @param solution the solution of the configuration; a copy is stored, so it may be on the buffers of the solver
+     */
+    public void put(Object key, Solution solution) {
+        if (!(key instanceof Key))
+            throw new IllegalArgumentException("Key must be created by createKey");
+        Key storedKey = ((Key) key).copy();
+        Solution storedSolution = solution.copy();
+        synchronized (this) {
+            solutions.put(storedKey, storedSolution);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the share of lookups that found a solution, 0 if there has been none yet
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return solutions.size();
+    }
+
+    /**
+     * Removes all solutions and resets the counters
+     */
+    public synchronized void clear() {
+        solutions.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
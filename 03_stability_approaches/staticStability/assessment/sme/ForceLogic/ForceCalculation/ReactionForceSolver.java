@@ -0,0 +1,49 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.List;
+
+/**
+ * Strategy distributing the resultant force of an item to its reactionPoints, used by the
+ * {@link ReactionForceCalculator}. Implementations must be stateless or thread-safe, as one solver is shared by all
+ * items of an assessment.
+ */
+public interface ReactionForceSolver {
+
+    /**
+     * Distributes the resultantForce to the reactionPoints existing at the sequence with non-negative forces
+     *
+     * @param sequence       the current sequence number; reactionPoints of items with a greater sequence are not
+     *                       placed yet
+     * @param reactionPoints the points along with the item of the reactionForce, sorted by the distance to the
+     *                       resultantForce
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @return the forces of the reactionPoints carrying the resultantForce, unsolvable if the item is unstable
+     */
+    ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                              Pair<Point2D, Double> resultantForce);
+
+    /**
+     * Same as {@link #solve(int, List, Pair)}, recording the solved systems in the given metrics, if the solver
+     * solves any
+     *
+     * @param metrics the metrics to record in; may be null
+     */
+    default ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                      Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        return solve(sequence, reactionPoints, resultantForce);
+    }
+
+    /**
+     * The {@link ReferenceReactionForceSolver}, so results stay the ones of the original calculation unless a caller
+     * opts in to the {@link WorkspaceReactionForceSolver} or the {@link NonNegativeLeastSquaresReactionForceSolver}
+     *
+     * @return the solver used if none is configured
+     */
+    static ReactionForceSolver getDefault() {
+        return new ReferenceReactionForceSolver();
+    }
+}
@@ -4,7 +4,9 @@ import com.wim.palletizing.geometry.dim2.Point2D;
 import com.wim.palletizing.geometry.dim3.Point3D;
 import com.wim.palletizing.helper.Pair;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.ContactPointCache;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -25,7 +27,7 @@ public class ReactionPointCalculator {
      */
     protected static List<Pair<Point2D, PlacedItem>> calculateReactionPoints(PlacedItem placedItem,
                                                                              List<PlacedItem> itemsBelow) {
-        List<Pair<Point2D, PlacedItem>> reactionForcePoints_local = new LinkedList<>();
+        List<Pair<Point2D, PlacedItem>> reactionForcePoints_local = new ArrayList<>();
 
         for (PlacedItem itemBelow : itemsBelow) {
             reactionForcePoints_local.addAll(ReactionPointCalculator.getReactionPointsWithOtherItem(placedItem,
@@ -35,6 +37,29 @@ public class ReactionPointCalculator {
         return reactionForcePoints_local;
     }
 
+    /**
+     * Calculates all reactionForcePoints with all items directly below the item.
+     * The contact points are taken from the given cache
+     *
+     * @param placedItem        the item to calculate the reactionPoints for
+     * @param itemsBelow        the items directly below the item
+     * @param contactPointCache the contact points of the layout the items belong to, e.g. its support graph
+     * @return the points, along with the item on which reactionForces acts
+     */
+    protected static List<Pair<Point2D, PlacedItem>> calculateReactionPoints(PlacedItem placedItem,
+                                                                             List<PlacedItem> itemsBelow,
+                                                                             ContactPointCache contactPointCache) {
+        List<Pair<Point2D, PlacedItem>> reactionForcePoints_local = new ArrayList<>();
+
+        for (PlacedItem itemBelow : itemsBelow) {
+            for (Point2D contactPoint : contactPointCache.getContactPoints(placedItem, itemBelow)) {
+                reactionForcePoints_local.add(new Pair<>(contactPoint, itemBelow));
+            }
+        }
+
+        return reactionForcePoints_local;
+    }
+
     /**
      * Using the shape3D of own item and given item the point(s) where forces act
      * are determined. From the perspective of this item this force is called
@@ -0,0 +1,277 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationSystem;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reference {@link ReactionForceSolver}: creates a new {@link LinearEquationSystem} of the moments around every
+ * reactionPoint for each system, rounding every elimination step. If the system is indeterminate, triples of
+ * reactionPoints in different quadrants around the resultant force point are tried, closest first, until one can be
+ * solved with non-negative forces.
+ */
+public class ReferenceReactionForceSolver implements ReactionForceSolver {
+
+    /**
+     * Creates and solves the LES of the reactionForces of the sequence
+     *
+     * @param sequence       the current sequence number for which the reactionForces are calculated
+     * @param reactionPoints the points along with the item of the reactionForce, sorted by the distance to the
+     *                       resultantForce
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @return the solution, unsolvable if the item is unstable
+     */
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce) {
+        return solve(sequence, reactionPoints, resultantForce, null);
+    }
+
+    /**
+     * Same as {@link #solve(int, List, Pair)}, recording the system and the triples tried in the given metrics
+     *
+     * @param metrics the metrics to record in; may be null
+     */
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        // Creates a LES using the distances between reactionPoints and the resultantForce
+        LinearEquationSystem les = ReferenceReactionForceSolver.createLES(sequence, reactionPoints, resultantForce);
+
+        LinearEquationSystem.Solubility solubility = les.solveLesAsPossible();
+        if (metrics != null)
+            metrics.recordSystem(reactionPoints.size(), solubility);
+
+        switch (solubility) {
+            case UNIQUE_SOLUTION:
+                return ReferenceReactionForceSolver.readSolutionFromLES(les, allIndices(reactionPoints.size()));
+            case INFINITE_SOLUTIONS:
+                return ReferenceReactionForceSolver.handleIndeterminateSystem(les, reactionPoints, resultantForce,
+                        metrics);
+            case NO_SOLUTION:
+                return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+            default:
+                throw new IllegalArgumentException("Feedback of LES-solving can't be handled");
+        }
+    }
+
+    /**
+     * @param size the number of reactionPoints
+     * @return the indices of all reactionPoints, in order
+     */
+    static int[] allIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++)
+            indices[i] = i;
+        return indices;
+    }
+
+    /**
+     * Creates a LES using all reactionPoints and the resultant Force of the given Sequence
+     * The LES contains on the left-hand-side all distances between the reactionForces (each on X and Z) and on the
+     * right-hand-side the distance to the resultantForce times the magnitude of the force
+     *
+     * @param sequence       the sequence setting which reactionPoints to consider
+     * @param reactionPoints the reactionPoints used to create the LES
+     * @param resultantForce the resultantForce(Point and magnitude) used to create the LES
+     * @return a LES containing all distance equations
+     */
+    private static LinearEquationSystem createLES(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                            Pair<Point2D, Double> resultantForce) {
+        //The left-hand side matrix, containing all the distance from one reactionPoint to the other
+        //Each column contains the coefficients of one variable that is to solve
+        double[][] lhs = new double[reactionPoints.size() * 2][reactionPoints.size()];
+
+        //The right-hand side matrix, containing the value the lhs should achieve
+        //Value is the magnitude of the resultant force times the distance to the specific reactionForcePoint
+        double[] rhs = new double[reactionPoints.size() * 2];
+
+        //Create matrix (2n x n) for n reactionForcePoints
+        for (int i = 0; i < reactionPoints.size(); i++) {
+
+            //Skips all reactionForcePoints not existing placed at the given sequence
+            if (reactionPoints.get(i).second.sequence > sequence)
+                continue;
+
+            //Calculate moments on x-Axis (2i) and z-Axis (2i+1)
+            for (int j = 0; j < reactionPoints.size(); j++) {
+
+                //Skips reactionForcePoints not placed yet or if it's the same then in outer loop, array contains 0 per default
+                if (reactionPoints.get(i).second.sequence > sequence || i == j)
+                    continue;
+
+                //distance on x
+                lhs[2 * i][j] = reactionPoints.get(i).first.x - reactionPoints.get(j).first.x;
+                //distance on z-axis
+                lhs[2 * i + 1][j] = reactionPoints.get(i).first.y - reactionPoints.get(j).first.y;
+            }
+            //distance of resultant Force on x-axis
+            rhs[2 * i] = (reactionPoints.get(i).first.x - resultantForce.first.x)
+                    * resultantForce.second;
+            rhs[2 * i] = Math.round(rhs[2 * i] * 100) / 100.0;
+            //distance of resultant Force on y-axis
+            rhs[2 * i + 1] = (reactionPoints.get(i).first.y - resultantForce.first.y)
+                    * resultantForce.second;
+            rhs[2 * i + 1] = Math.round(rhs[2 * i + 1] * 100) / 100.0;
+
+        }
+
+        return new LinearEquationSystem(lhs, rhs);
+    }
+
+    /**
+     * Matching the results of the linear equation system to the reactionPoints it is solved for
+     *
+     * @param les          the solved linear equation system,
+     * @param pointIndices the indices of the reactionPoints the LES is solved for, one per column
+     * @return the solution
+     */
+    private static ReactionForceSolutionCache.Solution readSolutionFromLES(LinearEquationSystem les,
+                                                                           int[] pointIndices) {
+        return new ReactionForceSolutionCache.Solution(pointIndices, les.getSolution().clone());
+    }
+
+    /**
+     * Determines three reactionPoints out of all which form a stable support and calculates the system for them
+     *
+     * @param les            the indeterminate equation system
+     * @param reactionPoints all reaction points
+     * @param resultantForce the resultantForce of the item
+     * @param metrics        the metrics to record the number of tried triples in; may be null
+     * @return the solution of the three points, unsolvable if no calculation is possible
+     */
+    private static ReactionForceSolutionCache.Solution handleIndeterminateSystem(
+            LinearEquationSystem les, List<Pair<Point2D, PlacedItem>> reactionPoints,
+            Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+
+        //Check if all points belong to one item and distribute force equally if so
+//        if (ReferenceReactionForceSolver.reactionPointsBelongToOneItem(reactionPoints)) {
+//            return ReferenceReactionForceSolver.distributeForceEqually(reactionPoints, resultantForce);
+//        }
+
+        //Otherwise, the three points that are closed to the reactionForce and stable are determined
+
+        //As only items being in different quadrant can be a stable support, the quadrants are used to speed the
+        //process up
+        int[] reactionPointQuadrants = ReferenceReactionForceSolver.deriveQuadrantsOfReactionPoints(reactionPoints,
+                resultantForce);
+
+        int triples = 0;
+        for (int i = 2; i < reactionPoints.size(); i++) {
+            for (int c1 = 0; c1 < i; c1++) {
+                if (reactionPointQuadrants[c1] == reactionPointQuadrants[i])
+                    continue;
+                for (int c2 = c1 + 1; c2 < i; c2++) {
+                    if (reactionPointQuadrants[c2] == reactionPointQuadrants[i] ||
+                            reactionPointQuadrants[c2] == reactionPointQuadrants[c1])
+                        continue;
+
+                    triples++;
+                    ReactionForceSolutionCache.Solution solution =
+                            ReferenceReactionForceSolver.tryCalculatingReactionForcesForTriple(
+                                    Arrays.asList(c1, c2, i), les);
+
+                    if (solution.isSolvable()) {
+                        if (metrics != null)
+                            metrics.recordTriplesTried(triples);
+                        return solution;
+                    }
+                }
+            }
+        }
+        if (metrics != null)
+            metrics.recordTriplesTried(triples);
+        return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+    }
+
+    /**
+     * Checks if all reactionPoints belong to the same item
+     *
+     * @param reactionPoints the points checked
+     * @return true, if all reactionPoints belong to the same item. false else
+     */
+    private static boolean reactionPointsBelongToOneItem(List<Pair<Point2D, PlacedItem>> reactionPoints) {
+
+        Pair<Point2D, PlacedItem> reactionPoint1 = reactionPoints.get(0);
+        for (Pair<Point2D, PlacedItem> reactionPoint2 : reactionPoints) {
+            if (!reactionPoint1.second.equals(reactionPoint2.second))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the reactionForces by distributing the resultant Force equally to the reactionPoints
+     *
+     * @param reactionPoints the list of points
+     * @param resultantForce the force distributed to the points
+     * @return the solution distributing the force
+     */
+    private static ReactionForceSolutionCache.Solution distributeForceEqually(
+            List<Pair<Point2D, PlacedItem>> reactionPoints, Pair<Point2D, Double> resultantForce) {
+        double[] forces = new double[reactionPoints.size()];
+        for (int i = 0; i < reactionPoints.size(); i++) {
+            forces[i] = Math.round(resultantForce.second / reactionPoints.size() * 100) / 100.0;
+        }
+        return new ReactionForceSolutionCache.Solution(allIndices(reactionPoints.size()), forces);
+    }
+
+    /**
+     * Deriving a positional quadrant for each reactionPoint depending on it's position to the resultantForce point:
+     * x<= & y<=  => quadrant 0
+     * x<= & y>   => quadrant 1
+     * x> & y<=   => quadrant 2
+     * x> & y>    => quadrant 3
+     *
+     * @param reactionPoints the points the quadrant is derived for
+     * @param resultantForce giving the point the points are rated relative to
+     * @return an array of ints, showing the positional quadrant of the reaction Points
+     */
+    private static int[] deriveQuadrantsOfReactionPoints(List<Pair<Point2D,
+            PlacedItem>> reactionPoints, Pair<Point2D, Double> resultantForce) {
+        int[] reactionPointQuadrant = new int[reactionPoints.size()];
+
+        for (int i = 0; i < reactionPoints.size(); i++) {
+            reactionPointQuadrant[i] = deriveQuadrant(reactionPoints.get(i).first, resultantForce);
+        }
+        return reactionPointQuadrant;
+    }
+
+    /**
+     * @param reactionPoint  the point the quadrant is derived for
+     * @param resultantForce giving the point the point is rated relative to
+     * @return the positional quadrant of the point, see {@link #deriveQuadrantsOfReactionPoints(List, Pair)}
+     */
+    static int deriveQuadrant(Point2D reactionPoint, Pair<Point2D, Double> resultantForce) {
+        int quadrant = 0;
+        if (reactionPoint.x >= resultantForce.first.x)
+            quadrant += 2;
+        if (reactionPoint.y >= resultantForce.first.y)
+            quadrant += 1;
+        return quadrant;
+    }
+
+    /**
+     * Test if system is stable for three points and solves system if so
+     *
+     * @param indices        the indices of the reactionPoints to consider
+     * @param lesLarge       the LES containing all reactionPoints
+     * @return the solution for the three points, unsolvable if not possible to calculate
+     */
+    private static ReactionForceSolutionCache.Solution tryCalculatingReactionForcesForTriple(
+            List<Integer> indices, LinearEquationSystem lesLarge) {
+
+        LinearEquationSystem lesTriple = new LinearEquationSystem(lesLarge.getSpecificColumnsOfLHS(indices),
+                lesLarge.getRhsReduced());
+
+        if (lesTriple.solveLesAsPossible() == LinearEquationSystem.Solubility.UNIQUE_SOLUTION)
+            return readSolutionFromLES(lesTriple, indices.stream().mapToInt(Integer::intValue).toArray());
+
+        return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+    }
+
+}
@@ -1,13 +1,9 @@
 package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
 
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
 import com.wim.palletizing.geometry.dim2.Point2D;
 import com.wim.palletizing.helper.Pair;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
 /**
  * @author Frederick Gamer
  * created February 2022
@@ -17,27 +13,36 @@ public class ResultantForceCalculator {
 
     /**
      * Calculates the resultingForce of the item for all sequences from when the item is placed until the given sequence.
-     * Uses the given gravitationForce and the given actionForces of each sequence for the computation
+     * Uses the given gravitationForce and the given actionForces of each sequence for the computation.
+     * Between the change points the resultingForce of the previous sequence is taken over
      *
-     * @param sequence                the sequence from which on the resultingForce is calculated
-     * @param maxSequence             the sequence until the resultingForce is calculated
-     * @param gravitationForce        the gravitationForce of the item
-     * @param actionForcesPerSequence the map containing the actionForces of every sequence the resultingForce
-     *                                should be calculated for
-     * @return the calculated resultantForce (Point and Magnitude) mapped to the sequences
+     * @param sequence         the sequence from which on the resultingForce is calculated
+     * @param maxSequence      the sequence until the resultingForce is calculated
+     * @param gravitationForce the gravitationForce of the item
+     * @param actionForces     the actionForces of every sequence the resultingForce should be calculated for
+     * @param changePoints     the sequences the forces of the item can change in, ascending
+     * @return the calculated resultantForce (Point and Magnitude), one entry for each sequence
      */
-    protected static Map<Integer, Pair<Point2D, Double>>
-    calculateResultantForcesForAllSequences(int sequence, int maxSequence, Pair<Point2D,
-            Double> gravitationForce, Map<Integer, List<Pair<Point2D, Double>>> actionForcesPerSequence) {
+    protected static ForceSegments calculateResultantForcesForAllSequences(int sequence, int maxSequence,
+                                                                           Pair<Point2D, Double> gravitationForce,
+                                                                           ForceSegments actionForces,
+                                                                           int[] changePoints) {
+        ForceSegments resultantForces = new ForceSegments(sequence, maxSequence);
 
-        Map<Integer, Pair<Point2D, Double>> resultantForcePerSequenceLocal = new HashMap<>();
+        int nextChangePoint = 0;
+        for (int i = sequence; i < maxSequence; i++) {
+            if (nextChangePoint < changePoints.length && changePoints[nextChangePoint] == i)
+                nextChangePoint++;
+            else if (i > sequence) {
+                resultantForces.repeatSegment(i);
+                continue;
+            }
 
-        for (int i = sequence; i < maxSequence; i++)
-            resultantForcePerSequenceLocal.put(i, ResultantForceCalculator.calculateResultantForce(gravitationForce,
-                    actionForcesPerSequence.containsKey(i) ? actionForcesPerSequence.get(i) : new LinkedList<>() {
-                    }));
+            resultantForces.startSegment(i);
+            ResultantForceCalculator.addResultantForce(resultantForces, gravitationForce, actionForces, i);
+        }
 
-        return resultantForcePerSequenceLocal;
+        return resultantForces;
     }
 
     /**
@@ -45,12 +50,13 @@ public class ResultantForceCalculator {
      * of the points of actionForces and gravitationForce and summing up their
      * forces
      *
+     * @param resultantForces  the resultant forces to add the force to, the segment of the sequence has been started
      * @param gravitationForce the gravitationForce(Point and magnitude) of the item
-     * @param actionForces     the actionForces acting on the item of one sequence
-     * @return the calculated resultant force consisting of the point2d and the magnitude as double
+     * @param actionForces     the actionForces acting on the item
+     * @param sequence         the sequence the resultant force is calculated for
      */
-    private static Pair<Point2D, Double> calculateResultantForce(Pair<Point2D,
-            Double> gravitationForce, List<Pair<Point2D, Double>> actionForces) {
+    static void addResultantForce(ForceSegments resultantForces, Pair<Point2D, Double> gravitationForce,
+                                  ForceSegments actionForces, int sequence) {
         //Add gravitation force of item
         double resultantForce = gravitationForce.second;
 
@@ -58,20 +64,22 @@ public class ResultantForceCalculator {
         double y = gravitationForce.first.y * gravitationForce.second;
 
         //Add all action forces (if any exist)
-        for (Pair<Point2D, Double> actionForce : actionForces) {
-            resultantForce += actionForce.second;
+        if (actionForces.contains(sequence)) {
+            for (int entry = actionForces.getSegmentStart(sequence); entry < actionForces.getSegmentEnd(sequence);
+                 entry++) {
+                double magnitude = actionForces.getMagnitude(entry);
+                resultantForce += magnitude;
 
-            x += actionForce.first.x * actionForce.second;
-            y += actionForce.first.y * actionForce.second;
+                x += actionForces.getX(entry) * magnitude;
+                y += actionForces.getZ(entry) * magnitude;
+            }
         }
 
+        //Divide by overall magnitude to get non-weighted point
         x = Math.round(x / resultantForce * 100) / 100.0;
         y = Math.round(y / resultantForce * 100) / 100.0;
 
-        //Divide by overall magnitude to get non-weighted point
-        Point2D resultantForcePoint = new Point2D(x, y);
-
-        return new Pair<>(resultantForcePoint, resultantForce);
+        resultantForces.add(x, y, resultantForce, -1);
     }
 
 }
@@ -0,0 +1,470 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.ContactPointCache;
+import com.wim.palletizing.model.support.SupportRelations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sequence-major calculation of the forces of a loading sequence: the items are placed one sequence after another and
+ * only the forces of the current sequence are kept per item.
+ * <p>
+ * Placing an item changes the forces of the item itself and of the items on top of it, which get a new reactionPoint.
+ * A changed reactionForce changes the actionForces of the item below it, so the change is propagated downwards. The
+ * affected items are processed top-down, ordered by their height, and an item whose reactionForces stay the same does
+ * not affect the items below. The forces are calculated like in {@link ForceItemCalculation}; since the reactionPoints
+ * are sorted and solved the same way, the forces equal the ones of the forceItems in every sequence.
+ * <p>
+ * The calculation stops at the first item becoming unstable. The forces of the remaining affected items are not
+ * calculated then and no further items can be placed.
+ * <p>
+ * If created undoable, the forces replaced while placing an item are logged, so the item placed last can be removed
+ * again ({@link #removeLastItem()}), e.g. to try another item in its place.
+ */
+public class SequentialForceCalculation {
+
+    /**
+     * Items in the order they have to be processed: items on top before the items below
+     */
+    private static final Comparator<ItemForces> TOP_DOWN = Comparator
+            .comparingDouble((ItemForces itemForces) -> -itemForces.placedItem.getItemCoordinates().getY())
+            .thenComparingInt(itemForces -> itemForces.placedItem.sequence);
+
+    private final ContactPointCache contactPointCache;
+    private final SupportRelations supportRelations;
+    private final ReactionForceSolutionCache solutionCache;
+    private final ReactionForceSolver solver;
+
+    private final boolean undoable;
+
+    /**
+     * Metrics of the calculations; may be null
+     */
+    private final SolverMetrics metrics;
+
+    /**
+     * The forces of the placed items, indexed by their sequence
+     */
+    private ItemForces[] itemForcesBySequence = new ItemForces[16];
+
+    private final PriorityQueue<ItemForces> affectedItems = new PriorityQueue<>(TOP_DOWN);
+
+    private int currentSequence = -1;
+
+    private PlacedItem unstableItem;
+
+    private long calculationCount;
+
+    /**
+     * The placed items' forces in the order they have been placed
+     */
+    private final List<ItemForces> placedOrder = new ArrayList<>();
+
+    /**
+     * The forces replaced while placing the items, and per placed item the position its entries start at
+     */
+    private final List<Runnable> undoLog = new ArrayList<>();
+    private final List<Integer> undoLogStarts = new ArrayList<>();
+
+    /**
+     * @param contactPointCache the contact points of the layout, e.g. its support graph; may be null
+     * @param solutionCache     the cache of already solved reactionForce systems; may be null
+     * @param solver            the solver distributing the resultantForces to the reactionPoints
+     */
+    public SequentialForceCalculation(ContactPointCache contactPointCache,
+                                      ReactionForceSolutionCache solutionCache, ReactionForceSolver solver) {
+        this(contactPointCache, solutionCache, solver, false);
+    }
+
+    /**
+     * @param contactPointCache the contact points of the layout, e.g. its support graph; may be null
+     * @param solutionCache     the cache of already solved reactionForce systems; may be null
+     * @param solver            the solver distributing the resultantForces to the reactionPoints
+     * @param undoable          whether the replaced forces are logged, so placed items can be removed again
+     */
+    public SequentialForceCalculation(ContactPointCache contactPointCache,
+                                      ReactionForceSolutionCache solutionCache, ReactionForceSolver solver,
+                                      boolean undoable) {
+        this(contactPointCache, solutionCache, solver, undoable, null);
+    }
+
+    /**
+     * @param contactPointCache the contact points of the layout, e.g. its support graph; may be null
+     * @param solutionCache     the cache of already solved reactionForce systems; may be null
+     * @param solver            the solver distributing the resultantForces to the reactionPoints
+     * @param undoable          whether the replaced forces are logged, so placed items can be removed again
+     * @param metrics           the metrics to record the calculations in, the time to place an item as its item
+     *                          time; may be null
+     */
+    public SequentialForceCalculation(ContactPointCache contactPointCache,
+                                      ReactionForceSolutionCache solutionCache, ReactionForceSolver solver,
+                                      boolean undoable, SolverMetrics metrics) {
+        this(contactPointCache, SupportRelations.ENVIRONMENT_RELATIONS, solutionCache, solver, undoable, metrics);
+    }
+
+    /**
+     * @param contactPointCache the contact points of the layout, e.g. its support graph; may be null
+     * @param supportRelations  the items below and on top of the items, e.g. the ones of a support graph growing with
+     *                          the calculation
+     * @param solutionCache     the cache of already solved reactionForce systems; may be null
+     * @param solver            the solver distributing the resultantForces to the reactionPoints
+     * @param undoable          whether the replaced forces are logged, so placed items can be removed again
+     * @param metrics           the metrics to record the calculations in, the time to place an item as its item
+     *                          time; may be null
+     */
+    public SequentialForceCalculation(ContactPointCache contactPointCache, SupportRelations supportRelations,
+                                      ReactionForceSolutionCache solutionCache, ReactionForceSolver solver,
+                                      boolean undoable, SolverMetrics metrics) {
+        this.contactPointCache = contactPointCache;
+        this.supportRelations = supportRelations;
+        this.solutionCache = solutionCache;
+        this.solver = solver;
+        this.undoable = undoable;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Places the item in its sequence and calculates the forces of all items affected by it
+     *
+     * @param placedItem the item to place, its sequence greater than the one of all items placed before
+     * @return true if all placed items are stable in the sequence of the item, false if an item became unstable
+     * @throws IllegalArgumentException if the sequence of the item is not greater than the current sequence
+     * @throws IllegalStateException    if an item has become unstable before
+     */
+    public boolean placeItem(PlacedItem placedItem) {
+        if (metrics == null)
+            return place(placedItem);
+
+        long start = System.nanoTime();
+        try {
+            return place(placedItem);
+        } finally {
+            metrics.recordItemTime(System.nanoTime() - start);
+        }
+    }
+
+    private boolean place(PlacedItem placedItem) {
+        if (unstableItem != null)
+            throw new IllegalStateException("Item " + unstableItem.itemLabel + " is unstable in sequence "
+                    + currentSequence + ", no further items can be placed");
+        if (placedItem.sequence <= currentSequence)
+            throw new IllegalArgumentException("Items must be placed in ascending sequence order, got "
+                    + placedItem.sequence + " after " + currentSequence);
+
+        if (!placedItem.isBottomItem())
+            RequierementCheckService.asserCOMIsCorrect(placedItem.itemLabel, placedItem.shape.getWidth(),
+                    placedItem.shape.getHeight(),
+                    placedItem.shape.getDepth(),
+                    placedItem.centerOfMass);
+
+        ItemForces placed = new ItemForces(placedItem);
+        if (placedItem.sequence >= itemForcesBySequence.length)
+            itemForcesBySequence = Arrays.copyOf(itemForcesBySequence,
+                    Math.max(placedItem.sequence + 1, itemForcesBySequence.length * 2));
+        itemForcesBySequence[placedItem.sequence] = placed;
+        currentSequence = placedItem.sequence;
+        placedOrder.add(placed);
+        if (undoable)
+            undoLogStarts.add(undoLog.size());
+
+        // the item itself and the items it is a new reactionPoint for; bottom items are stable anyway
+        enqueue(placed);
+        for (PlacedItem placedItemOnTop : supportRelations.getItemsOnTop(placedItem)) {
+            addReactionPoints(getItemForces(placedItemOnTop), placedItem);
+            enqueue(getItemForces(placedItemOnTop));
+        }
+
+        while (!affectedItems.isEmpty()) {
+            ItemForces itemForces = affectedItems.poll();
+            itemForces.queued = false;
+
+            boolean changed = calculateForces(itemForces, placedItem);
+            if (!itemForces.stable) {
+                unstableItem = itemForces.placedItem;
+                clearAffectedItems();
+                return false;
+            }
+
+            if (changed)
+                for (PlacedItem placedItemBelow : supportRelations.getItemsBelow(itemForces.placedItem))
+                    enqueue(getItemForces(placedItemBelow));
+        }
+        return true;
+    }
+
+    /**
+     * Removes the item placed last and restores the forces of all items to the ones before it had been placed
+     *
+     * @return the removed item
+     * @throws IllegalStateException if the calculation is not undoable or no item is placed
+     */
+    public PlacedItem removeLastItem() {
+        if (!undoable)
+            throw new IllegalStateException("The calculation has not been created undoable");
+        if (placedOrder.isEmpty())
+            throw new IllegalStateException("No item has been placed");
+
+        ItemForces removed = placedOrder.remove(placedOrder.size() - 1);
+        int logStart = undoLogStarts.remove(undoLogStarts.size() - 1);
+        for (int i = undoLog.size() - 1; i >= logStart; i--)
+            undoLog.remove(i).run();
+
+        itemForcesBySequence[removed.placedItem.sequence] = null;
+        currentSequence = placedOrder.isEmpty() ? -1 : placedOrder.get(placedOrder.size() - 1).placedItem.sequence;
+        unstableItem = null;
+        // left over if the calculation stopped or failed while placing the item
+        clearAffectedItems();
+        return removed.placedItem;
+    }
+
+    /**
+     * Adds the reactionPoints with the given item below to an item placed before it, if they are missing. They are
+     * missing if the item below has not been related to the item on top yet when the item on top was placed, like in
+     * a layout that grows while it is calculated.
+     */
+    private void addReactionPoints(ItemForces itemForces, PlacedItem placedItemBelow) {
+        if (itemForces == null)
+            return;
+        for (Pair<Point2D, PlacedItem> reactionPoint : itemForces.reactionPoints)
+            if (reactionPoint.second == placedItemBelow)
+                return;
+
+        List<PlacedItem> itemsBelow = Collections.singletonList(placedItemBelow);
+        itemForces.reactionPoints.addAll((contactPointCache == null)
+                ? ReactionPointCalculator.calculateReactionPoints(itemForces.placedItem, itemsBelow)
+                : ReactionPointCalculator.calculateReactionPoints(itemForces.placedItem, itemsBelow,
+                        contactPointCache));
+        // the points are appended and only sorted by a later calculation, which logs their order itself
+        if (undoable)
+            undoLog.add(() -> itemForces.reactionPoints.removeIf(
+                    reactionPoint -> reactionPoint.second == placedItemBelow));
+    }
+
+    private void clearAffectedItems() {
+        while (!affectedItems.isEmpty())
+            affectedItems.poll().queued = false;
+    }
+
+    private void enqueue(ItemForces itemForces) {
+        if (itemForces == null || itemForces.queued || itemForces.placedItem.isBottomItem())
+            return;
+        itemForces.queued = true;
+        affectedItems.add(itemForces);
+    }
+
+    /**
+     * @return the forces of the item if it has been placed, otherwise null
+     */
+    private ItemForces getItemForces(PlacedItem placedItem) {
+        int sequence = placedItem.sequence;
+        if (sequence < 0 || sequence >= itemForcesBySequence.length)
+            return null;
+        ItemForces itemForces = itemForcesBySequence[sequence];
+        return itemForces != null && itemForces.placedItem == placedItem ? itemForces : null;
+    }
+
+    /**
+     * Calculates the forces of the item in the current sequence
+     *
+     * @param itemForces the forces of the item, replaced by the ones of the current sequence
+     * @param placedItem the item placed in the current sequence
+     * @return true if the reactionForces of the item changed
+     */
+    private boolean calculateForces(ItemForces itemForces, PlacedItem placedItem) {
+        int sequence = currentSequence;
+        int itemSequence = itemForces.placedItem.sequence;
+
+        ForceSegments actionForces = new ForceSegments(sequence, sequence + 1);
+        actionForces.startSegment(sequence);
+        for (PlacedItem placedItemOnTop : supportRelations.getItemsOnTop(itemForces.placedItem)) {
+            ItemForces forcesOnTop = getItemForces(placedItemOnTop);
+            if (forcesOnTop == null || !forcesOnTop.stable)
+                continue;
+
+            ForceSegments reactionForces = forcesOnTop.reactionForces;
+            int reactionSequence = reactionForces.getStartSequence();
+            for (int entry = reactionForces.getSegmentStart(reactionSequence);
+                 entry < reactionForces.getSegmentEnd(reactionSequence); entry++) {
+                if (reactionForces.getReference(entry) == itemSequence)
+                    actionForces.add(reactionForces.getX(entry), reactionForces.getZ(entry),
+                            reactionForces.getMagnitude(entry), placedItemOnTop.sequence);
+            }
+        }
+
+        ForceSegments resultantForces = new ForceSegments(sequence, sequence + 1);
+        resultantForces.startSegment(sequence);
+        ResultantForceCalculator.addResultantForce(resultantForces, itemForces.gravitationForce, actionForces,
+                sequence);
+        double x = resultantForces.getX(0), z = resultantForces.getZ(0);
+        double magnitude = resultantForces.getMagnitude(0);
+
+        // unless a reactionPoint has been placed, the same resultantForce leads to the same reactionForces
+        boolean reactionPointPlaced = itemForces.placedItem == placedItem
+                || supportRelations.getItemsOnTop(placedItem).contains(itemForces.placedItem);
+        if (!reactionPointPlaced && x == itemForces.resultantX && z == itemForces.resultantZ
+                && magnitude == itemForces.resultantMagnitude)
+            return false;
+
+        if (undoable)
+            undoLog.add(new ReplacedForces(itemForces)::restore);
+        itemForces.resultantX = x;
+        itemForces.resultantZ = z;
+        itemForces.resultantMagnitude = magnitude;
+
+        calculationCount++;
+        ReactionForceSolutionCache.Solution solution = ReactionForceCalculator.solveForSequence(sequence,
+                itemForces.reactionPoints, new Pair<>(new Point2D(x, z), magnitude), solutionCache, solver, metrics);
+
+        ForceSegments reactionForces = new ForceSegments(sequence, sequence + 1);
+        boolean stable = ReactionForceCalculator.addReactionForces(reactionForces, sequence,
+                itemForces.reactionPoints, solution);
+
+        boolean changed = stable != itemForces.stable
+                || (stable && !sameForces(reactionForces, itemForces.reactionForces));
+        itemForces.stable = stable;
+        itemForces.reactionForces = reactionForces;
+        return changed;
+    }
+
+    /**
+     * @return true if both reactionForces have the same entries in the segment of their only sequence
+     */
+    private static boolean sameForces(ForceSegments forces, ForceSegments otherForces) {
+        if (otherForces == null)
+            return false;
+
+        int start = forces.getSegmentStart(forces.getStartSequence());
+        int otherStart = otherForces.getSegmentStart(otherForces.getStartSequence());
+        int count = forces.getSegmentEnd(forces.getStartSequence()) - start;
+        if (count != otherForces.getSegmentEnd(otherForces.getStartSequence()) - otherStart)
+            return false;
+
+        for (int i = 0; i < count; i++) {
+            if (forces.getX(start + i) != otherForces.getX(otherStart + i)
+                    || forces.getZ(start + i) != otherForces.getZ(otherStart + i)
+                    || forces.getMagnitude(start + i) != otherForces.getMagnitude(otherStart + i)
+                    || forces.getReference(start + i) != otherForces.getReference(otherStart + i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the sequence of the item placed last, -1 if none has been placed
+     */
+    public int getCurrentSequence() {
+        return currentSequence;
+    }
+
+    /**
+     * @return true if no item has become unstable
+     */
+    public boolean isStable() {
+        return unstableItem == null;
+    }
+
+    /**
+     * @return the item that became unstable in the current sequence or null, if all items are stable
+     */
+    public PlacedItem getUnstableItem() {
+        return unstableItem;
+    }
+
+    /**
+     * @return the number of reactionForce systems solved (or taken from the cache) so far
+     */
+    public long getCalculationCount() {
+        return calculationCount;
+    }
+
+    /**
+     * @return the items placed so far, ordered by their sequence
+     */
+    public List<PlacedItem> getPlacedItems() {
+        List<PlacedItem> placedItems = new ArrayList<>(placedOrder.size());
+        for (ItemForces itemForces : placedOrder)
+            placedItems.add(itemForces.placedItem);
+        return placedItems;
+    }
+
+    /**
+     * @return the number of placed items
+     */
+    public int getPlacedItemCount() {
+        return placedOrder.size();
+    }
+
+    /**
+     * The forces of an item before they have been replaced. Solving sorts the reactionPoints in place and the sort
+     * keeps the order of points with the same distance, so their order is restored as well.
+     */
+    private static class ReplacedForces {
+
+        private final ItemForces itemForces;
+        private final double resultantX, resultantZ, resultantMagnitude;
+        private final ForceSegments reactionForces;
+        private final boolean stable;
+        private final List<Pair<Point2D, PlacedItem>> reactionPoints;
+
+        ReplacedForces(ItemForces itemForces) {
+            this.itemForces = itemForces;
+            this.resultantX = itemForces.resultantX;
+            this.resultantZ = itemForces.resultantZ;
+            this.resultantMagnitude = itemForces.resultantMagnitude;
+            this.reactionForces = itemForces.reactionForces;
+            this.stable = itemForces.stable;
+            this.reactionPoints = new ArrayList<>(itemForces.reactionPoints);
+        }
+
+        void restore() {
+            itemForces.resultantX = resultantX;
+            itemForces.resultantZ = resultantZ;
+            itemForces.resultantMagnitude = resultantMagnitude;
+            itemForces.reactionForces = reactionForces;
+            itemForces.stable = stable;
+            itemForces.reactionPoints.clear();
+            itemForces.reactionPoints.addAll(reactionPoints);
+        }
+    }
+
+    /**
+     * The forces of a placed item in the sequence they have been calculated in last
+     */
+    private class ItemForces {
+
+        private final PlacedItem placedItem;
+        private final Pair<Point2D, Double> gravitationForce;
+        private final List<Pair<Point2D, PlacedItem>> reactionPoints;
+
+        private double resultantX = Double.NaN, resultantZ = Double.NaN, resultantMagnitude = Double.NaN;
+
+        /**
+         * The reactionForces, referencing the item below they act on by its sequence; null if not calculated yet
+         */
+        private ForceSegments reactionForces;
+
+        private boolean stable;
+
+        private boolean queued;
+
+        ItemForces(PlacedItem placedItem) {
+            this.placedItem = placedItem;
+            this.gravitationForce = GravitationForceCalculator.calculateGravitationForce(
+                    placedItem.getAbsoluteCenterOfMassPoint(), placedItem.weight);
+
+            List<PlacedItem> itemsBelow = new ArrayList<>(supportRelations.getItemsBelow(placedItem));
+            this.reactionPoints = (contactPointCache == null)
+                    ? ReactionPointCalculator.calculateReactionPoints(placedItem, itemsBelow)
+                    : ReactionPointCalculator.calculateReactionPoints(placedItem, itemsBelow, contactPointCache);
+        }
+    }
+}
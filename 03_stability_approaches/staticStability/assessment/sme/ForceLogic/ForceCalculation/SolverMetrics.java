@@ -0,0 +1,263 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationSystem;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the reactionForce calculations of an assessment, to find out why the assessment of a
+ * layout is slow:
+ * <ul>
+ *     <li>the dimension (number of variables, i.e. reactionPoints) of the solved linear equation systems, which have
+ *     twice as many equations</li>
+ *     <li>how many of them have a unique, infinite or no solution</li>
+ *     <li>the number of triples of reactionPoints tried per indeterminate system</li>
+ *     <li>the number of iterations per system of an iterative solver</li>
+ *     <li>the time to calculate the forces of an item and to solve the reactionForces of an item in one sequence</li>
+ * </ul>
+ * Recording only increments {@link LongAdder}s, so the metrics can be shared by the threads of an assessment. The
+ * histograms have power-of-two buckets. {@link #snapshot()} returns the current values.
+ */
+public class SolverMetrics {
+
+    private final Distribution systemDimensions = new Distribution();
+    private final LongAdder uniqueSolutions = new LongAdder();
+    private final LongAdder infiniteSolutions = new LongAdder();
+    private final LongAdder noSolutions = new LongAdder();
+    private final Distribution triplesTried = new Distribution();
+    private final Distribution iterations = new Distribution();
+    private final Distribution itemNanos = new Distribution();
+    private final Distribution sequenceNanos = new Distribution();
+
+    /**
+     * @param columns    the number of variables of the solved system
+     * @param solubility the solubility of the system
+     */
+    public void recordSystem(int columns, LinearEquationSystem.Solubility solubility) {
+        systemDimensions.record(columns);
+        switch (solubility) {
+            case UNIQUE_SOLUTION:
+                uniqueSolutions.increment();
+                break;
+            case INFINITE_SOLUTIONS:
+                infiniteSolutions.increment();
+                break;
+            default:
+                noSolutions.increment();
+        }
+    }
+
+    /**
+     * @param triples the number of triples tried to solve an indeterminate system, including the solved one
+     */
+    public void recordTriplesTried(int triples) {
+        triplesTried.record(triples);
+    }
+
+    /**
+     * @param iterations the number of iterations an iterative solver needed for a system
+     */
+    public void recordIterations(int iterations) {
+        this.iterations.record(iterations);
+    }
+
+    /**
+     * @param nanos the time to calculate the forces of an item
+     */
+    public void recordItemTime(long nanos) {
+        itemNanos.record(nanos);
+    }
+
+    /**
+     * @param nanos the time to solve the reactionForces of an item in one sequence, including the cache lookup
+     */
+    public void recordSequenceTime(long nanos) {
+        sequenceNanos.record(nanos);
+    }
+
+    /**
+     * @return the values recorded so far
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(systemDimensions.snapshot(), uniqueSolutions.sum(), infiniteSolutions.sum(),
+                noSolutions.sum(), triplesTried.snapshot(), iterations.snapshot(), itemNanos.snapshot(),
+                sequenceNanos.snapshot());
+    }
+
+    /**
+     * Distribution of non-negative values in power-of-two buckets: bucket 0 counts the value 0, bucket i the values
+     * from 2^(i-1) up to 2^i - 1
+     */
+    private static class Distribution {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+        Distribution() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        void record(long value) {
+            value = Math.max(0, value);
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        }
+
+        Histogram snapshot() {
+            long[] bucketCounts = new long[buckets.length];
+            int used = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                bucketCounts[i] = buckets[i].sum();
+                if (bucketCounts[i] != 0)
+                    used = i + 1;
+            }
+            return new Histogram(count.sum(), sum.sum(), max.get(), Arrays.copyOf(bucketCounts, used));
+        }
+    }
+
+    /**
+     * Recorded values of a distribution
+     */
+    public static class Histogram {
+
+        private final long count, sum, max;
+        private final long[] bucketCounts;
+
+        Histogram(long count, long sum, long max, long[] bucketCounts) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.bucketCounts = bucketCounts;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the values, 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return the number of values per bucket, up to the last non-empty one
+         */
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        /**
+         * @param bucket the index of the bucket
+         * @return the greatest value counted in the bucket
+         */
+        public static long getBucketUpperBound(int bucket) {
+            return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + String.format("%.1f", getMean()) + ", max=" + max
+                    + ", buckets=" + Arrays.toString(bucketCounts);
+        }
+    }
+
+    /**
+     * The values of the metrics at one point in time
+     */
+    public static class Snapshot {
+
+        /**
+         * Snapshot without any recorded values, e.g. of an assessment without metrics
+         */
+        public static final Snapshot EMPTY = new SolverMetrics().snapshot();
+
+        private final Histogram systemDimensions;
+        private final long uniqueSolutions, infiniteSolutions, noSolutions;
+        private final Histogram triplesTried;
+        private final Histogram iterations;
+        private final Histogram itemNanos, sequenceNanos;
+
+        Snapshot(Histogram systemDimensions, long uniqueSolutions, long infiniteSolutions, long noSolutions,
+                 Histogram triplesTried, Histogram iterations, Histogram itemNanos, Histogram sequenceNanos) {
+            this.systemDimensions = systemDimensions;
+            this.uniqueSolutions = uniqueSolutions;
+            this.infiniteSolutions = infiniteSolutions;
+            this.noSolutions = noSolutions;
+            this.triplesTried = triplesTried;
+            this.iterations = iterations;
+            this.itemNanos = itemNanos;
+            this.sequenceNanos = sequenceNanos;
+        }
+
+        /**
+         * @return the number of variables of the solved linear equation systems
+         */
+        public Histogram getSystemDimensions() {
+            return systemDimensions;
+        }
+
+        public long getUniqueSolutions() {
+            return uniqueSolutions;
+        }
+
+        public long getInfiniteSolutions() {
+            return infiniteSolutions;
+        }
+
+        public long getNoSolutions() {
+            return noSolutions;
+        }
+
+        /**
+         * @return the number of triples tried per indeterminate system
+         */
+        public Histogram getTriplesTried() {
+            return triplesTried;
+        }
+
+        /**
+         * @return the number of iterations per system of an iterative solver
+         */
+        public Histogram getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return the nanoseconds to calculate the forces of an item
+         */
+        public Histogram getItemNanos() {
+            return itemNanos;
+        }
+
+        /**
+         * @return the nanoseconds to solve the reactionForces of an item in one sequence
+         */
+        public Histogram getSequenceNanos() {
+            return sequenceNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "systems: " + systemDimensions + ", unique " + uniqueSolutions + ", infinite " + infiniteSolutions
+                    + ", none " + noSolutions + "; triples: " + triplesTried + "; iterations: " + iterations
+                    + "; item nanos: " + itemNanos + "; sequence nanos: " + sequenceNanos;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the reactionPoints that support the resultant force of an indeterminate system geometrically.
+ * <p>
+ * Three reactionPoints carry the resultant force with non-negative forces if, and only if, the resultant force point
+ * lies in their triangle; the forces are then the barycentric coordinates of the point times the magnitude. Two ways
+ * to find such a triangle are offered:
+ * <ul>
+ *     <li>{@link #locate(int, List, Pair, SolverMetrics)} tries the triples in the order of the
+ *     {@link ReferenceReactionForceSolver}, all reactionPoints in pairwise different quadrants around the resultant
+ *     force point, including the ones not placed yet, but each with a test of constant cost instead of solving the
+ *     reduced system. It finds the triple of the reference, but still tries O(k^3) triples for k reactionPoints in the
+ *     worst case.</li>
+ *     <li>{@link #locateInHullFan(int, List, Pair, SolverMetrics)} triangulates the convex hull of the placed
+ *     reactionPoints as a fan from its first vertex and locates the triangle containing the resultant force point by
+ *     a binary search over the fan, in O(k log k) and with a single triangle tested. The triangle may differ from
+ *     the one of the reference, as may the stability: it ignores reactionPoints not placed yet and accepts triangles
+ *     with two points in the same quadrant, and it carries the resultant force by two points or one if the hull
+ *     degenerates to a segment or a point.</li>
+ * </ul>
+ * If the resultant force point lies outside the convex hull, no triangle can contain it and both return unsolvable
+ * after O(k log k).
+ * <p>
+ * Without any placed reactionPoint the system has no equations; the reference can't reduce it and the item is
+ * treated as not supported.
+ */
+class SupportTriangleLocator {
+
+    private static final double ROUNDING_FACTOR = 10000.0;
+
+    /**
+     * Tolerance for areas and orientation tests, relative to the squared extent of the points
+     */
+    private static final double EPSILON = 1e-9;
+
+    private SupportTriangleLocator() {
+    }
+
+    /**
+     * @param sequence       the sequence setting which reactionPoints exist
+     * @param reactionPoints all reaction points, sorted by the distance to the resultant force
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @param metrics        the metrics to record the number of tried triples in; may be null
+     * @return the solution of the first triple of the reference containing the resultant force point, unsolvable if
+     * there is none
+     */
+    static ReactionForceSolutionCache.Solution locate(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        int n = reactionPoints.size();
+        if (n < 3 || !hasPlacedReactionPoint(sequence, reactionPoints))
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // coordinates relative to the resultant force point, which is the origin then
+        double[] x = new double[n];
+        double[] z = new double[n];
+        int[] quadrants = new int[n];
+        double extent = 0;
+        for (int i = 0; i < n; i++) {
+            Point2D point = reactionPoints.get(i).first;
+            x[i] = point.x - resultantForce.first.x;
+            z[i] = point.y - resultantForce.first.y;
+            quadrants[i] = ReferenceReactionForceSolver.deriveQuadrant(point, resultantForce);
+            extent = Math.max(extent, Math.max(Math.abs(x[i]), Math.abs(z[i])));
+        }
+        double tolerance = EPSILON * Math.max(1, extent * extent);
+
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++)
+            all[i] = i;
+        if (!hullContainsOrigin(convexHull(all, n, x, z), x, z, tolerance))
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        double magnitude = resultantForce.second;
+        int triples = 0;
+        for (int i = 2; i < n; i++) {
+            for (int c1 = 0; c1 < i; c1++) {
+                if (quadrants[c1] == quadrants[i])
+                    continue;
+                for (int c2 = c1 + 1; c2 < i; c2++) {
+                    if (quadrants[c2] == quadrants[i] || quadrants[c2] == quadrants[c1])
+                        continue;
+
+                    triples++;
+                    ReactionForceSolutionCache.Solution solution = locateInTriangle(c1, c2, i, x, z, tolerance,
+                            magnitude);
+                    if (solution.isSolvable()) {
+                        if (metrics != null)
+                            metrics.recordTriplesTried(triples);
+                        return solution;
+                    }
+                }
+            }
+        }
+        if (metrics != null)
+            metrics.recordTriplesTried(triples);
+        return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+    }
+
+    /**
+     * @param sequence       the sequence setting which reactionPoints exist
+     * @param reactionPoints all reaction points
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @param metrics        the metrics to record the tested triangle in; may be null
+     * @return the solution of the points of the fan triangle containing the resultant force point, unsolvable if it
+     * lies outside the convex hull of the placed reactionPoints
+     */
+    static ReactionForceSolutionCache.Solution locateInHullFan(int sequence,
+                                                               List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                               Pair<Point2D, Double> resultantForce,
+                                                               SolverMetrics metrics) {
+        int n = reactionPoints.size();
+        int count = 0;
+        int[] placed = new int[n];
+        for (int i = 0; i < n; i++)
+            if (reactionPoints.get(i).second.sequence <= sequence)
+                placed[count++] = i;
+        if (count == 0)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // coordinates relative to the resultant force point, which is the origin then
+        double[] x = new double[n];
+        double[] z = new double[n];
+        double extent = 0;
+        for (int k = 0; k < count; k++) {
+            int i = placed[k];
+            x[i] = reactionPoints.get(i).first.x - resultantForce.first.x;
+            z[i] = reactionPoints.get(i).first.y - resultantForce.first.y;
+            extent = Math.max(extent, Math.max(Math.abs(x[i]), Math.abs(z[i])));
+        }
+        double tolerance = EPSILON * Math.max(1, extent * extent);
+
+        int[] hull = convexHull(placed, count, x, z);
+        double magnitude = resultantForce.second;
+
+        if (hull.length == 1)
+            return x[hull[0]] * x[hull[0]] + z[hull[0]] * z[hull[0]] <= tolerance
+                    ? solution(new int[]{hull[0]}, new double[]{1}, magnitude)
+                    : ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        if (hull.length == 2)
+            return locateOnSegment(hull[0], hull[1], x, z, tolerance, magnitude);
+
+        // fan of triangles (hull[0], hull[j], hull[j + 1]); find the wedge containing the origin
+        int apex = hull[0];
+        if (cross(x, z, apex, hull[1]) < -tolerance || cross(x, z, apex, hull[hull.length - 1]) > tolerance)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        int low = 1, high = hull.length - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (cross(x, z, apex, hull[mid]) >= 0)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        if (metrics != null)
+            metrics.recordTriplesTried(1);
+        return locateInFanTriangle(apex, hull[low], hull[low + 1], x, z, tolerance, magnitude);
+    }
+
+    /**
+     * The moment equations are taken around the placed reactionPoints; without any, the item is not supported
+     */
+    private static boolean hasPlacedReactionPoint(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints) {
+        for (Pair<Point2D, PlacedItem> reactionPoint : reactionPoints)
+            if (reactionPoint.second.sequence <= sequence)
+                return true;
+        return false;
+    }
+
+    /**
+     * Orientation of the origin relative to the directed line from point a to point b: positive if the origin lies
+     * to the left of it
+     */
+    private static double cross(double[] x, double[] z, int a, int b) {
+        return (x[b] - x[a]) * (-z[a]) - (z[b] - z[a]) * (-x[a]);
+    }
+
+    /**
+     * @param hull the hull vertices in counter-clockwise order
+     * @return true if the origin lies inside the hull or on its border; false for degenerate hulls without area
+     */
+    private static boolean hullContainsOrigin(int[] hull, double[] x, double[] z, double tolerance) {
+        if (hull.length < 3)
+            return false;
+        for (int k = 0; k < hull.length; k++)
+            if (cross(x, z, hull[k], hull[(k + 1) % hull.length]) < -tolerance)
+                return false;
+        return true;
+    }
+
+    /**
+     * Solves the triple like the reduced system of the reference: unsolvable if the points are collinear or the
+     * rounded forces are negative
+     */
+    private static ReactionForceSolutionCache.Solution locateInTriangle(int a, int b, int c, double[] x, double[] z,
+                                                                        double tolerance, double magnitude) {
+        double area = (x[b] - x[a]) * (z[c] - z[a]) - (z[b] - z[a]) * (x[c] - x[a]);
+        if (Math.abs(area) <= tolerance)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // barycentric coordinates of the origin
+        double lambdaA = (x[b] * z[c] - x[c] * z[b]) / area;
+        double lambdaB = (x[c] * z[a] - x[a] * z[c]) / area;
+        double lambdaC = 1 - lambdaA - lambdaB;
+
+        double forceA = round(lambdaA * magnitude);
+        double forceB = round(lambdaB * magnitude);
+        double forceC = round(lambdaC * magnitude);
+        if (forceA < 0 || forceB < 0 || forceC < 0)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        return new ReactionForceSolutionCache.Solution(new int[]{a, b, c}, new double[]{forceA, forceB, forceC});
+    }
+
+    private static double round(double force) {
+        return Math.round(force * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+    }
+
+    /**
+     * Like {@link #locateInTriangle(int, int, int, double[], double[], double, double)}, but accepting the origin on
+     * the border of the triangle up to the tolerance, as the fan triangles share their borders
+     */
+    private static ReactionForceSolutionCache.Solution locateInFanTriangle(int a, int b, int c, double[] x,
+                                                                           double[] z, double tolerance,
+                                                                           double magnitude) {
+        double area = (x[b] - x[a]) * (z[c] - z[a]) - (z[b] - z[a]) * (x[c] - x[a]);
+        if (Math.abs(area) <= tolerance)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // barycentric coordinates of the origin
+        double lambdaA = (x[b] * z[c] - x[c] * z[b]) / area;
+        double lambdaB = (x[c] * z[a] - x[a] * z[c]) / area;
+        double lambdaC = 1 - lambdaA - lambdaB;
+
+        double limit = -EPSILON;
+        if (lambdaA < limit || lambdaB < limit || lambdaC < limit)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        return solution(new int[]{a, b, c}, new double[]{lambdaA, lambdaB, lambdaC}, magnitude);
+    }
+
+    private static ReactionForceSolutionCache.Solution locateOnSegment(int a, int b, double[] x, double[] z,
+                                                                       double tolerance, double magnitude) {
+        double dx = x[b] - x[a], dz = z[b] - z[a];
+        double lengthSquared = dx * dx + dz * dz;
+        if (Math.abs(cross(x, z, a, b)) > tolerance * Math.max(1, Math.sqrt(lengthSquared)))
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        // position of the origin along the segment
+        double t = (-x[a] * dx - z[a] * dz) / lengthSquared;
+        if (t < -EPSILON || t > 1 + EPSILON)
+            return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+
+        return solution(new int[]{a, b}, new double[]{1 - t, t}, magnitude);
+    }
+
+    private static ReactionForceSolutionCache.Solution solution(int[] pointIndices, double[] shares,
+                                                                double magnitude) {
+        double[] forces = new double[shares.length];
+        for (int i = 0; i < shares.length; i++)
+            forces[i] = round(Math.max(0, shares[i]) * magnitude);
+        return new ReactionForceSolutionCache.Solution(pointIndices, forces);
+    }
+
+    /**
+     * Monotone chain convex hull of the given points; of points with the same coordinates, the first one in the list
+     * of reactionPoints is taken
+     *
+     * @param points the indices of the points, ascending
+     * @param count  the number of indices used
+     * @return the indices of the hull vertices in counter-clockwise order, without collinear points
+     */
+    private static int[] convexHull(int[] points, int count, double[] x, double[] z) {
+        Integer[] sorted = new Integer[count];
+        for (int k = 0; k < count; k++)
+            sorted[k] = points[k];
+        // stable, so points with the same coordinates keep their order
+        Arrays.sort(sorted, (i, j) -> x[i] != x[j] ? Double.compare(x[i], x[j]) : Double.compare(z[i], z[j]));
+
+        int distinct = 0;
+        for (int k = 0; k < count; k++)
+            if (distinct == 0 || x[sorted[k]] != x[sorted[distinct - 1]] || z[sorted[k]] != z[sorted[distinct - 1]])
+                sorted[distinct++] = sorted[k];
+        if (distinct < 3) {
+            int[] hull = new int[distinct];
+            for (int k = 0; k < distinct; k++)
+                hull[k] = sorted[k];
+            return hull;
+        }
+
+        int[] hull = new int[2 * distinct];
+        int size = 0;
+        // lower hull
+        for (int k = 0; k < distinct; k++) {
+            while (size >= 2 && turn(x, z, hull[size - 2], hull[size - 1], sorted[k]) <= 0)
+                size--;
+            hull[size++] = sorted[k];
+        }
+        // upper hull
+        for (int k = distinct - 2, lowerSize = size + 1; k >= 0; k--) {
+            while (size >= lowerSize && turn(x, z, hull[size - 2], hull[size - 1], sorted[k]) <= 0)
+                size--;
+            hull[size++] = sorted[k];
+        }
+        // the first point is repeated at the end
+        return Arrays.copyOf(hull, Math.max(1, size - 1));
+    }
+
+    private static double turn(double[] x, double[] z, int a, int b, int c) {
+        return (x[b] - x[a]) * (z[c] - z[a]) - (z[b] - z[a]) * (x[c] - x[a]);
+    }
+}
@@ -0,0 +1,194 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationSystem;
+import com.wim.palletizing.assessment.staticStability.sme.helper.LinearEquationWorkspace;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.List;
+
+/**
+ * {@link ReactionForceSolver} solving the moment system of the {@link ReferenceReactionForceSolver} in place on the
+ * {@link LinearEquationWorkspace} of the thread, with tolerance based pivoting instead of rounding every operation.
+ * Indeterminate systems are solved as set by the {@link TriangleSearch}: by solving the reduced system for the triples
+ * of reactionPoints of the reference, by testing these triples geometrically, or by locating the supporting triangle
+ * in the convex hull of the placed reactionPoints (see {@link SupportTriangleLocator}).
+ * <p>
+ * The solutions of the workspace are returned on its buffers, so they are only valid until the thread solves the next
+ * system; the {@link ReactionForceSolutionCache} stores copies of them.
+ * <p>
+ * The solver is opt-in: {@link ReactionForceSolver#getDefault()} is the {@link ReferenceReactionForceSolver}, and
+ * the ScienceOfStaticAssessmentService only uses this one after {@code setReactionForceSolver}.
+ */
+public class WorkspaceReactionForceSolver implements ReactionForceSolver {
+
+    /**
+     * How the supporting reactionPoints of an indeterminate system are found
+     */
+    public enum TriangleSearch {
+        /**
+         * Solves the reduced system for the triples of reactionPoints in different quadrants, in the order of the
+         * reference
+         */
+        REDUCED_SYSTEM,
+        /**
+         * Tests whether the resultant force point lies in the triangle of the triples of the reference, in its order,
+         * so the same triple is found with a test of constant cost per triple
+         */
+        REFERENCE_TRIPLES,
+        /**
+         * Locates the resultant force point in the fan triangulation of the convex hull of the placed reactionPoints
+         * in O(k log k). The triangle, and for border cases the stability, may differ from the reference
+         */
+        HULL_FAN
+    }
+
+    private final TriangleSearch triangleSearch;
+
+    /**
+     * Solver testing the triples of the reference geometrically for indeterminate systems
+     */
+    public WorkspaceReactionForceSolver() {
+        this(TriangleSearch.REFERENCE_TRIPLES);
+    }
+
+    /**
+     * @param triangleSearch how indeterminate systems are solved
+     */
+    public WorkspaceReactionForceSolver(TriangleSearch triangleSearch) {
+        this.triangleSearch = triangleSearch;
+    }
+
+    /**
+     * Fills the LES of the reactionForces of the sequence into the workspace of the thread and solves it there,
+     * like the {@link ReferenceReactionForceSolver} does with a new system
+     *
+     * @param sequence       the current sequence number for which the reactionForces are calculated
+     * @param reactionPoints the points along with the item of the reactionForce, sorted by the distance to the
+     *                       resultantForce
+     * @param resultantForce the resultantForce (Point and magnitude) of the item
+     * @return the solution, unsolvable if the item is unstable
+     */
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce) {
+        return solve(sequence, reactionPoints, resultantForce, null);
+    }
+
+    /**
+     * Same as {@link #solve(int, List, Pair)}, recording the system and the triples tried in the given metrics
+     *
+     * @param metrics the metrics to record in; may be null
+     */
+    @Override
+    public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                     Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        LinearEquationWorkspace workspace = LinearEquationWorkspace.get();
+        int n = reactionPoints.size();
+        workspace.reset(n * 2, n);
+
+        for (int i = 0; i < n; i++) {
+            Pair<Point2D, PlacedItem> reactionPoint = reactionPoints.get(i);
+
+            //Skips all reactionForcePoints not existing placed at the given sequence
+            if (reactionPoint.second.sequence > sequence)
+                continue;
+
+            for (int j = 0; j < n; j++) {
+                if (i == j)
+                    continue;
+                Point2D otherPoint = reactionPoints.get(j).first;
+                workspace.setLhs(2 * i, j, reactionPoint.first.x - otherPoint.x);
+                workspace.setLhs(2 * i + 1, j, reactionPoint.first.y - otherPoint.y);
+            }
+            workspace.setRhs(2 * i, Math.round((reactionPoint.first.x - resultantForce.first.x)
+                    * resultantForce.second * 100) / 100.0);
+            workspace.setRhs(2 * i + 1, Math.round((reactionPoint.first.y - resultantForce.first.y)
+                    * resultantForce.second * 100) / 100.0);
+        }
+
+        LinearEquationSystem.Solubility solubility = workspace.solve();
+        if (metrics != null)
+            metrics.recordSystem(n, solubility);
+
+        switch (solubility) {
+            case UNIQUE_SOLUTION:
+                int[] pointIndices = workspace.getColumnSelection();
+                for (int i = 0; i < n; i++)
+                    pointIndices[i] = i;
+                return WorkspaceReactionForceSolver.readSolutionFromWorkspace(workspace, pointIndices, n);
+            case INFINITE_SOLUTIONS:
+                switch (triangleSearch) {
+                    case REFERENCE_TRIPLES:
+                        return SupportTriangleLocator.locate(sequence, reactionPoints, resultantForce, metrics);
+                    case HULL_FAN:
+                        return SupportTriangleLocator.locateInHullFan(sequence, reactionPoints, resultantForce,
+                                metrics);
+                    default:
+                        return WorkspaceReactionForceSolver.handleIndeterminateSystem(workspace, reactionPoints,
+                                resultantForce, metrics);
+                }
+            case NO_SOLUTION:
+                return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+            default:
+                throw new IllegalArgumentException("Feedback of LES-solving can't be handled");
+        }
+    }
+
+    /**
+     * Determines three reactionPoints out of all which form a stable support and solves the reduced system of the
+     * workspace for them, in the same order as the {@link ReferenceReactionForceSolver}
+     *
+     * @param workspace      the workspace holding the indeterminate system
+     * @param reactionPoints all reaction points
+     * @param resultantForce the resultantForce of the item
+     * @param metrics        the metrics to record the number of tried triples in; may be null
+     * @return the solution of the three points, unsolvable if no calculation is possible
+     */
+    private static ReactionForceSolutionCache.Solution handleIndeterminateSystem(
+            LinearEquationWorkspace workspace, List<Pair<Point2D, PlacedItem>> reactionPoints,
+            Pair<Point2D, Double> resultantForce, SolverMetrics metrics) {
+        int[] columns = workspace.getColumnSelection();
+        int triples = 0;
+
+        for (int i = 2; i < reactionPoints.size(); i++) {
+            int quadrant = ReferenceReactionForceSolver.deriveQuadrant(reactionPoints.get(i).first, resultantForce);
+            for (int c1 = 0; c1 < i; c1++) {
+                int quadrant1 = ReferenceReactionForceSolver.deriveQuadrant(reactionPoints.get(c1).first, resultantForce);
+                if (quadrant1 == quadrant)
+                    continue;
+                for (int c2 = c1 + 1; c2 < i; c2++) {
+                    int quadrant2 = ReferenceReactionForceSolver.deriveQuadrant(reactionPoints.get(c2).first, resultantForce);
+                    if (quadrant2 == quadrant || quadrant2 == quadrant1)
+                        continue;
+
+                    columns[0] = c1;
+                    columns[1] = c2;
+                    columns[2] = i;
+                    triples++;
+                    if (workspace.solveColumns(columns, 3) == LinearEquationSystem.Solubility.UNIQUE_SOLUTION) {
+                        if (metrics != null)
+                            metrics.recordTriplesTried(triples);
+                        return WorkspaceReactionForceSolver.readSolutionFromWorkspace(workspace, columns, 3);
+                    }
+                }
+            }
+        }
+        if (metrics != null)
+            metrics.recordTriplesTried(triples);
+        return ReactionForceSolutionCache.Solution.UNSOLVABLE;
+    }
+
+    /**
+     * @param workspace    the workspace with a unique solution
+     * @param pointIndices the indices of the reactionPoints the system is solved for, one per column
+     * @param length       the number of columns solved for
+     * @return the solution on the buffers of the workspace, valid until the thread solves the next system
+     */
+    private static ReactionForceSolutionCache.Solution readSolutionFromWorkspace(LinearEquationWorkspace workspace,
+                                                                                 int[] pointIndices, int length) {
+        return new ReactionForceSolutionCache.Solution(pointIndices, workspace.getSolutionBuffer(), length);
+    }
+
+}
@@ -1,10 +1,21 @@
 package com.wim.assessment.staticStability.sme.ForceLogic;
 
 import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ForceItemCalculation;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolutionCache;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolver;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.SolverMetrics;
 import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportRelations;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @auhor Frederick Gamer
@@ -14,15 +25,116 @@ import java.util.List;
  */
 public class ForceItemManager {
 
+    private static final Logger logger = LogManager.getLogger();
+
     private final ForceItemRepository forceItemRepository;
 
     private int maxSequence;
 
+    /**
+     * Cache of the solved reactionForce systems
+     */
+    private final ReactionForceSolutionCache solutionCache;
+
+    /**
+     * Solver distributing the resultantForces to the reactionPoints
+     */
+    private final ReactionForceSolver solver;
+
+    /**
+     * Pool the forceItems of a wave are created on; null to create them on the calling thread
+     */
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Metrics of the calculations; may be null
+     */
+    private final SolverMetrics metrics;
+
+    /**
+     * The items below and on top of the items
+     */
+    private final SupportRelations supportRelations;
+
+    /**
+     * Sink receiving every created forceItem; may be null, set to null if it fails
+     */
+    private volatile ForceTraceSink forceTraceSink;
+
 
     public ForceItemManager(int maxSequence) {
+        this(maxSequence, new ReactionForceSolutionCache());
+    }
+
+    /**
+     * @param maxSequence   the sequence until which the forces are calculated
+     * @param solutionCache the cache of solved reactionForce systems, may be shared between managers
+     */
+    public ForceItemManager(int maxSequence, ReactionForceSolutionCache solutionCache) {
+        this(maxSequence, solutionCache, ReactionForceSolver.getDefault());
+    }
+
+    /**
+     * Manager creating all forceItems on the calling thread
+     *
+     * @param maxSequence   the sequence until which the forces are calculated
+     * @param solutionCache the cache of solved reactionForce systems, may be shared between managers using the same
+     *                      solver
+     * @param solver        the solver distributing the resultantForces to the reactionPoints
+     */
+    public ForceItemManager(int maxSequence, ReactionForceSolutionCache solutionCache,
+                            ReactionForceSolver solver) {
+        this(maxSequence, solutionCache, solver, null);
+    }
+
+    /**
+     * @param maxSequence   the sequence until which the forces are calculated
+     * @param solutionCache the cache of solved reactionForce systems, may be shared between managers using the same
+     *                      solver
+     * @param solver        the solver distributing the resultantForces to the reactionPoints
+     * @param forkJoinPool  the pool the independent forceItems are created on in parallel; null to create all of them
+     *                      on the calling thread
+     */
+    public ForceItemManager(int maxSequence, ReactionForceSolutionCache solutionCache,
+                            ReactionForceSolver solver, ForkJoinPool forkJoinPool) {
+        this(maxSequence, solutionCache, solver, forkJoinPool, null);
+    }
+
+    /**
+     * @param maxSequence   the sequence until which the forces are calculated
+     * @param solutionCache the cache of solved reactionForce systems, may be shared between managers using the same
+     *                      solver
+     * @param solver        the solver distributing the resultantForces to the reactionPoints
+     * @param forkJoinPool  the pool the independent forceItems are created on in parallel; null to create all of them
+     *                      on the calling thread
+     * @param metrics       the metrics to record the calculations in; may be null
+     */
+    public ForceItemManager(int maxSequence, ReactionForceSolutionCache solutionCache,
+                            ReactionForceSolver solver, ForkJoinPool forkJoinPool, SolverMetrics metrics) {
+        this(maxSequence, solutionCache, solver, forkJoinPool, metrics, SupportRelations.ENVIRONMENT_RELATIONS);
+    }
+
+    /**
+     * @param maxSequence      the sequence until which the forces are calculated
+     * @param solutionCache    the cache of solved reactionForce systems, may be shared between managers using the
+     *                         same solver
+     * @param solver           the solver distributing the resultantForces to the reactionPoints
+     * @param forkJoinPool     the pool the independent forceItems are created on in parallel; null to create all of
+     *                         them on the calling thread
+     * @param metrics          the metrics to record the calculations in; may be null
+     * @param supportRelations the items below and on top of the items, e.g. the ones of a support graph
+     */
+    public ForceItemManager(int maxSequence, ReactionForceSolutionCache solutionCache,
+                            ReactionForceSolver solver, ForkJoinPool forkJoinPool, SolverMetrics metrics,
+                            SupportRelations supportRelations) {
         this.maxSequence = maxSequence;
+        this.solutionCache = solutionCache;
+        this.solver = solver;
+        this.forkJoinPool = forkJoinPool;
+        this.metrics = metrics;
+        this.supportRelations = supportRelations;
 
-        forceItemRepository = new ForceItemRepository();
+        forceItemRepository = new ForceItemRepository(maxSequence);
     }
 
     /**
@@ -44,29 +156,108 @@ public class ForceItemManager {
     }
 
     /**
-     * Checks if for all items on top a forceItem exists
+     * Creates and saves a forceItem for the related placedItem and for all items above it without one.
+     * The forceItem of an item needs the forceItems of all items on top of it, so the missing items form a DAG of
+     * dependencies, which is processed top-down in waves (Kahn's algorithm): every wave contains the items whose
+     * items on top all have a forceItem. The items of a wave are independent and created in parallel, if the manager
+     * has a pool.
      *
-     * @param placedItem the item which topItems are used
+     * @param placedItem representing the related item
+     * @throws IllegalArgumentException if the items above the placedItem are on top of each other in a cycle
      */
-    private void assureForceItemsOnTopAlreadyExist(PlacedItem placedItem) {
-        for (PlacedItem placedItemOnTop : placedItem.getEnvironmentRelations().getItemsOnTop()) {
-            if (!forceItemRepository.relatedForceItemExists(placedItemOnTop)) {
-                this.createAndSaveRelatedForceItem(placedItemOnTop);
+    private void createAndSaveRelatedForceItem(PlacedItem placedItem) {
+        // collect the items without forceItem, indexed in the order they are found
+        Map<PlacedItem, Integer> indices = new IdentityHashMap<>();
+        List<PlacedItem> missingItems = new ArrayList<>();
+        indices.put(placedItem, 0);
+        missingItems.add(placedItem);
+        for (int i = 0; i < missingItems.size(); i++) {
+            for (PlacedItem placedItemOnTop : supportRelations.getItemsOnTop(missingItems.get(i))) {
+                if (!indices.containsKey(placedItemOnTop)
+                        && !forceItemRepository.relatedForceItemExists(placedItemOnTop)) {
+                    indices.put(placedItemOnTop, missingItems.size());
+                    missingItems.add(placedItemOnTop);
+                }
+            }
+        }
+
+        // per missing item: the number of missing items on top and the missing items below (its dependents)
+        int[] missingOnTopCount = new int[missingItems.size()];
+        List<List<PlacedItem>> dependents = new ArrayList<>(missingItems.size());
+        for (int i = 0; i < missingItems.size(); i++)
+            dependents.add(new ArrayList<>(2));
+        for (int i = 0; i < missingItems.size(); i++) {
+            for (PlacedItem placedItemOnTop : supportRelations.getItemsOnTop(missingItems.get(i))) {
+                Integer onTopIndex = indices.get(placedItemOnTop);
+                if (onTopIndex != null) {
+                    missingOnTopCount[i]++;
+                    dependents.get(onTopIndex).add(missingItems.get(i));
+                }
             }
         }
+
+        List<PlacedItem> wave = new ArrayList<>();
+        for (int i = 0; i < missingItems.size(); i++)
+            if (missingOnTopCount[i] == 0)
+                wave.add(missingItems.get(i));
+
+        int created = 0;
+        while (!wave.isEmpty()) {
+            createAndSaveForceItems(wave);
+            created += wave.size();
+
+            List<PlacedItem> nextWave = new ArrayList<>();
+            for (PlacedItem createdItem : wave)
+                for (PlacedItem dependent : dependents.get(indices.get(createdItem)))
+                    if (--missingOnTopCount[indices.get(dependent)] == 0)
+                        nextWave.add(dependent);
+            wave = nextWave;
+        }
+
+        if (created < missingItems.size())
+            throw new IllegalArgumentException("Items above item " + placedItem.itemLabel
+                    + " are on top of each other in a cycle");
     }
 
     /**
-     * Creates and saves a forceItem for the related placedItem
-     * @param placedItem representing the related item
+     * Creates and saves the forceItems of a wave, in parallel if there is a pool and more than one item
+     *
+     * @param wave items whose items on top all have a forceItem
      */
-    private void createAndSaveRelatedForceItem(PlacedItem placedItem){
-        assureForceItemsOnTopAlreadyExist(placedItem);
+    private void createAndSaveForceItems(List<PlacedItem> wave) {
+        if (forkJoinPool == null || wave.size() == 1) {
+            for (PlacedItem placedItem : wave)
+                forceItemRepository.addForceItem(createRelatedForceItem(placedItem));
+            return;
+        }
+
+        forkJoinPool.invoke(new WaveTask(wave, 0, wave.size()));
+    }
+
+    /**
+     * Creates the forceItems of a range of a wave, splitting it in halves down to single items
+     */
+    private class WaveTask extends RecursiveAction {
+
+        private final List<PlacedItem> wave;
+        private final int from, to;
 
+        WaveTask(List<PlacedItem> wave, int from, int to) {
+            this.wave = wave;
+            this.from = from;
+            this.to = to;
+        }
 
-        ForceItemDTO forceItem = createRelatedForceItem(placedItem);
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                forceItemRepository.addForceItem(createRelatedForceItem(wave.get(from)));
+                return;
+            }
 
-        forceItemRepository.addForceItem(forceItem);
+            int middle = (from + to) >>> 1;
+            invokeAll(new WaveTask(wave, from, middle), new WaveTask(wave, middle, to));
+        }
     }
 
     /**
@@ -75,9 +266,45 @@ public class ForceItemManager {
      * @return a forceItem, containing the force for the given item
      */
     private ForceItemDTO createRelatedForceItem(PlacedItem placedItem) {
-        List<ForceItemDTO> forceItemsOnTop = forceItemRepository.getForceItemsOnTop(placedItem);
+        List<ForceItemDTO> forceItemsOnTop = forceItemRepository.getForceItemsOnTop(placedItem, supportRelations);
+
+        ForceItemDTO forceItem;
+        if (metrics == null) {
+            forceItem = ForceItemCalculation.createForceItem(placedItem, forceItemsOnTop, this.maxSequence,
+                    this.solutionCache, this.solver, null, this.supportRelations);
+        } else {
+            long start = System.nanoTime();
+            forceItem = ForceItemCalculation.createForceItem(placedItem, forceItemsOnTop, this.maxSequence,
+                    this.solutionCache, this.solver, this.metrics, this.supportRelations);
+            metrics.recordItemTime(System.nanoTime() - start);
+        }
 
-        return ForceItemCalculation.createForceItem(placedItem, forceItemsOnTop, this.maxSequence);
+        ForceTraceSink sink = forceTraceSink;
+        if (sink != null)
+            trace(sink, forceItem);
+        return forceItem;
+    }
+
+    /**
+     * Passes the forceItem to the sink. Tracing must not fail the assessment, so a sink throwing an exception, e.g. a
+     * closed writer or one whose file can't be written, is disabled for the following forceItems.
+     */
+    private void trace(ForceTraceSink sink, ForceItemDTO forceItem) {
+        try {
+            sink.trace(forceItem);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (forceTraceSink != sink)
+                    return;
+                forceTraceSink = null;
+            }
+            logger.warn("Force trace disabled, the forceItem of item " + forceItem.getPLACED_ITEM().sequence
+                    + " can't be traced: " + e);
+        }
+    }
+
+    public ReactionForceSolutionCache getSolutionCache() {
+        return solutionCache;
     }
 
     public int getMaxSequence() {
@@ -87,4 +314,15 @@ public class ForceItemManager {
     public void setMaxSequence(int maxSequence) {
         this.maxSequence = maxSequence;
     }
+
+    public ForceTraceSink getForceTraceSink() {
+        return forceTraceSink;
+    }
+
+    /**
+     * @param forceTraceSink the sink receiving the forceItems created from now on; null to trace none
+     */
+    public synchronized void setForceTraceSink(ForceTraceSink forceTraceSink) {
+        this.forceTraceSink = forceTraceSink;
+    }
 }
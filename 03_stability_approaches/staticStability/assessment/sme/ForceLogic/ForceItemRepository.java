@@ -2,35 +2,64 @@ package com.wim.assessment.staticStability.sme.ForceLogic;
 
 import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportRelations;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 /**
  * @author Frederick Gamer
  * created February 2022
- * Class to store and access ForceItems through their related PlacedItem (the global model item)
+ * Class to store and access ForceItems through their related PlacedItem (the global model item), indexed by the
+ * sequence of the item.
+ * ForceItems may be added and read concurrently: adding is serialized, reading does not block.
  */
 @Validated
 public class ForceItemRepository {
 
-    Map<PlacedItem, ForceItemDTO> piToFiMap;
+    private volatile AtomicReferenceArray<ForceItemDTO> forceItemsBySequence;
 
     public ForceItemRepository() {
-        piToFiMap = new HashMap<>();
+        this(16);
+    }
+
+    /**
+     * @param expectedItemCount the number of items expected, the repository grows if there are more
+     */
+    public ForceItemRepository(int expectedItemCount) {
+        forceItemsBySequence = new AtomicReferenceArray<>(Math.max(1, expectedItemCount));
     }
 
     /**
      * Adds the forceItem to the repository
      * @param forceItem the forceItem to add
+     * @throws IllegalArgumentException if another item with the same sequence has been added before
      */
-    public void addForceItem(@NotNull ForceItemDTO forceItem) {
-        piToFiMap.put(forceItem.getPLACED_ITEM(), forceItem);
+    public synchronized void addForceItem(@NotNull ForceItemDTO forceItem) {
+        int sequence = forceItem.getPLACED_ITEM().sequence;
+        if (sequence < 0)
+            throw new IllegalArgumentException("Sequence of item " + forceItem.getPLACED_ITEM().itemLabel
+                    + " must not be negative");
+
+        AtomicReferenceArray<ForceItemDTO> forceItems = forceItemsBySequence;
+        if (sequence >= forceItems.length()) {
+            AtomicReferenceArray<ForceItemDTO> grown =
+                    new AtomicReferenceArray<>(Math.max(sequence + 1, forceItems.length() * 2));
+            for (int i = 0; i < forceItems.length(); i++)
+                grown.set(i, forceItems.get(i));
+            forceItems = grown;
+            forceItemsBySequence = grown;
+        }
+
+        ForceItemDTO existing = forceItems.get(sequence);
+        if (existing != null && existing.getPLACED_ITEM() != forceItem.getPLACED_ITEM())
+            throw new IllegalArgumentException("Sequence " + sequence + " is used by more than one item");
+
+        forceItems.set(sequence, forceItem);
     }
 
     /**
@@ -39,11 +68,23 @@ public class ForceItemRepository {
      * @return a List of the forceItems on Top
      */
     public List<ForceItemDTO> getForceItemsOnTop(@NotNull PlacedItem placedItem) {
+        return getForceItemsOnTop(placedItem, SupportRelations.ENVIRONMENT_RELATIONS);
+    }
+
+    /**
+     * Queries the ForceItem for each placedItem on top of the given placedItem
+     * @param placedItem used to determine the topItems
+     * @param supportRelations the relations the topItems are taken from
+     * @return a List of the forceItems on Top
+     */
+    public List<ForceItemDTO> getForceItemsOnTop(@NotNull PlacedItem placedItem,
+                                                 @NotNull SupportRelations supportRelations) {
         List<ForceItemDTO> forceItemsOnTop = new ArrayList<>();
 
-        for (PlacedItem placedItemOnTop : placedItem.getEnvironmentRelations().getItemsOnTop()) {
-            if (piToFiMap.containsKey(placedItemOnTop))
-                forceItemsOnTop.add(piToFiMap.get(placedItemOnTop));
+        for (PlacedItem placedItemOnTop : supportRelations.getItemsOnTop(placedItem)) {
+            ForceItemDTO forceItemOnTop = getRelatedForceItem(placedItemOnTop);
+            if (forceItemOnTop != null)
+                forceItemsOnTop.add(forceItemOnTop);
 
             else {
                 throw new IllegalStateException("Tried to get ForceItem which has not been created yet");
@@ -59,10 +100,16 @@ public class ForceItemRepository {
      * @return the related forceItem
      */
     public boolean relatedForceItemExists(@NotNull PlacedItem placedItem) {
-        return piToFiMap.containsKey(placedItem);
+        return getRelatedForceItem(placedItem) != null;
     }
 
     public ForceItemDTO getRelatedForceItem(@NotNull PlacedItem placedItem) {
-        return piToFiMap.get(placedItem);
+        int sequence = placedItem.sequence;
+        AtomicReferenceArray<ForceItemDTO> forceItems = forceItemsBySequence;
+        if (sequence < 0 || sequence >= forceItems.length())
+            return null;
+
+        ForceItemDTO forceItem = forceItems.get(sequence);
+        return forceItem != null && forceItem.getPLACED_ITEM() == placedItem ? forceItem : null;
     }
 }
@@ -0,0 +1,16 @@
+package com.wim.assessment.staticStability.sme.ForceLogic;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+
+/**
+ * Receives every forceItem as soon as it has been created, e.g. to export the calculated forces while the
+ * assessment is running. If the manager has a pool, the forceItems of a wave are created in parallel, so
+ * implementations have to be thread-safe.
+ */
+public interface ForceTraceSink {
+
+    /**
+     * @param forceItem the created forceItem
+     */
+    void trace(ForceItemDTO forceItem);
+}
@@ -1,10 +1,8 @@
 package com.wim.assessment.staticStability.sme.ForceLogic;
 
-import com.wim.palletizing.geometry.dim2.Point2D;
-import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
 
-import java.util.List;
-import java.util.Map;
+import java.util.BitSet;
 
 /**
  * @author Frederick Gamer
@@ -20,17 +18,30 @@ public class ItemStabilityAssessor {
      *
      * @param startSequence             the sequence to start checking
      * @param maxSequence               the sequence until which it is checked
-     * @param reactionForcesPerSequence the reactionForces of the item for which the stability is assessed
-     * @return an array containing for each sequence true, if the item is stable, false if unstable and null if not
-     * placed
+     * @param reactionForces            the reactionForces of the item for which the stability is assessed
+     * @return a bit set containing each sequence the item is stable in; the item is placed in all sequences from
+     * the startSequence on (see {@link #getPlacedSequences(int, int)})
      */
-    public static Boolean[] getStabilityFromReactionForcesPerSequence(int startSequence, int maxSequence, Map<Integer
-            , Map<String, List<Pair<Point2D, Double>>>> reactionForcesPerSequence) {
-        Boolean[] stabilityPerSequence = new Boolean[maxSequence];
+    public static BitSet getStabilityFromReactionForcesPerSequence(int startSequence, int maxSequence,
+                                                                   ForceSegments reactionForces) {
+        BitSet stabilityPerSequence = new BitSet(maxSequence);
 
         for (int i = startSequence; i < maxSequence; i++) {
-            stabilityPerSequence[i] = reactionForcesPerSequence.containsKey(i);
+            if (reactionForces.contains(i))
+                stabilityPerSequence.set(i);
         }
         return stabilityPerSequence;
     }
+
+    /**
+     * @param startSequence the sequence the item is placed in
+     * @param maxSequence   the sequence until which it is checked
+     * @return a bit set containing each sequence the item is placed in
+     */
+    public static BitSet getPlacedSequences(int startSequence, int maxSequence) {
+        BitSet placedPerSequence = new BitSet(maxSequence);
+        if (startSequence < maxSequence)
+            placedPerSequence.set(Math.max(startSequence, 0), maxSequence);
+        return placedPerSequence;
+    }
 }
@@ -0,0 +1,285 @@
+package com.wim.assessment.staticStability.sme.ForceLogic;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the gravitation, resultant and reaction forces of the traced forceItems to a memory-mapped, append-only
+ * file, so the forces of large corpora can be exported without keeping them on the heap.
+ * <p>
+ * The file (little endian) starts with a header of {@value #HEADER_SIZE} bytes: the magic number {@link #MAGIC}, the
+ * format version {@link #VERSION} and the length of the file up to the end of the last complete block. The rows
+ * follow in blocks, each storing its rows column by column:
+ * <pre>
+ *     int rowCount, int 0,
+ *     int item[rowCount], int sequence[rowCount], double x[rowCount], double z[rowCount],
+ *     double magnitude[rowCount], int reference[rowCount], byte kind[rowCount],
+ *     padding to a multiple of 8 bytes
+ * </pre>
+ * Items are given by their sequence, like the references of {@link ForceSegments}; the reference of a reactionForce is
+ * the item below it acts on, gravitation and resultant forces reference -1.
+ * <p>
+ * Per item one {@link #GRAVITATION} row is written. The other forces are only written for the sequences they can
+ * change in; in all following sequences without rows the item has the same forces. Every written sequence has one
+ * {@link #RESULTANT} row, followed by the {@link #REACTION} rows of the sequence, or an {@link #UNSTABLE} row if the
+ * item is unstable in it.
+ * <p>
+ * An existing trace file is continued. Rows are buffered until a block is full, so only the rows of the blocks
+ * written before are in the file until the writer is closed.
+ * <p>
+ * The file grows by whole mapped regions, the first one {@value #MIN_REGION_SIZE} bytes and every following one twice
+ * the size of the previous one up to the maximal region size. Closing the writer truncates the file to the length in
+ * the header. A mapped region stays mapped until it is garbage collected, and truncating a file with mapped regions
+ * fails on some platforms; then the file is left as it is, the bytes behind the length in the header are unused and
+ * overwritten when the file is continued.
+ */
+public class MappedForceTraceWriter implements ForceTraceSink, Closeable {
+
+    public static final int MAGIC = 0x534D4654;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public static final byte GRAVITATION = 0;
+    public static final byte RESULTANT = 1;
+    public static final byte REACTION = 2;
+    public static final byte UNSTABLE = 3;
+
+    public static final long MIN_REGION_SIZE = 1L << 20;
+
+    private static final int DEFAULT_BLOCK_ROWS = 8192;
+    private static final long DEFAULT_MAX_REGION_SIZE = 64L << 20;
+
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int ROW_SIZE = 3 * Double.BYTES + 3 * Integer.BYTES + 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+
+    /**
+     * The mapped part of the file the blocks are written to, and the position in the file it starts at
+     */
+    private MappedByteBuffer region;
+    private long regionPosition;
+    private final long maxRegionSize;
+
+    /**
+     * The end of the last complete block
+     */
+    private long position;
+
+    /**
+     * The columns of the rows not written yet
+     */
+    private final int[] items, sequences, references;
+    private final double[] x, z, magnitudes;
+    private final byte[] kinds;
+    private int rows;
+
+    private long rowCount;
+
+    private boolean closed;
+
+    /**
+     * @param path the trace file, created if it doesn't exist
+     * @throws IOException if the file can't be opened or isn't a trace file
+     */
+    public MappedForceTraceWriter(Path path) throws IOException {
+        this(path, DEFAULT_BLOCK_ROWS, DEFAULT_MAX_REGION_SIZE);
+    }
+
+    /**
+     * @param path          the trace file, created if it doesn't exist
+     * @param blockRows     the number of rows per block
+     * @param maxRegionSize the maximal number of bytes mapped at once; a region holds at least one block
+     * @throws IOException if the file can't be opened or isn't a trace file
+     */
+    public MappedForceTraceWriter(Path path, int blockRows, long maxRegionSize) throws IOException {
+        if (blockRows < 1 || maxRegionSize < 1)
+            throw new IllegalArgumentException("Block rows and region size must be positive");
+
+        this.maxRegionSize = maxRegionSize;
+        items = new int[blockRows];
+        sequences = new int[blockRows];
+        references = new int[blockRows];
+        x = new double[blockRows];
+        z = new double[blockRows];
+        magnitudes = new double[blockRows];
+        kinds = new byte[blockRows];
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (size == 0) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, HEADER_SIZE);
+            } else if (size < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(8) < HEADER_SIZE || header.getLong(8) > size) {
+                throw new IOException(path + " is no force trace file of version " + VERSION);
+            }
+            position = header.getLong(8);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the rows of the forceItem
+     *
+     * @throws IllegalStateException if the writer is closed
+     * @throws UncheckedIOException  if a block can't be written
+     */
+    @Override
+    public synchronized void trace(ForceItemDTO forceItem) {
+        if (closed)
+            throw new IllegalStateException("The force trace writer is closed");
+
+        int item = forceItem.getPLACED_ITEM().sequence;
+        addRow(GRAVITATION, item, item, forceItem.getGRAVITATION_FORCE().first.x,
+                forceItem.getGRAVITATION_FORCE().first.y, forceItem.getGRAVITATION_FORCE().second, -1);
+
+        ForceSegments resultantForces = forceItem.getRESULTANT_FORCES();
+        ForceSegments reactionForces = forceItem.getREACTION_FORCES();
+        for (int sequence = resultantForces.getStartSequence(); sequence < resultantForces.getMaxSequence();
+             sequence++) {
+            if (isRepeated(resultantForces, sequence) && isRepeated(reactionForces, sequence))
+                continue;
+
+            addRows(RESULTANT, item, sequence, resultantForces);
+            if (reactionForces.contains(sequence))
+                addRows(REACTION, item, sequence, reactionForces);
+            else
+                addRow(UNSTABLE, item, sequence, 0, 0, 0, -1);
+        }
+    }
+
+    /**
+     * @return true if the sequence has the same segment as the previous one
+     */
+    private static boolean isRepeated(ForceSegments forces, int sequence) {
+        if (sequence == forces.getStartSequence() || forces.contains(sequence) != forces.contains(sequence - 1))
+            return false;
+        return !forces.contains(sequence)
+                || (forces.getSegmentStart(sequence) == forces.getSegmentStart(sequence - 1)
+                && forces.getSegmentEnd(sequence) == forces.getSegmentEnd(sequence - 1));
+    }
+
+    private void addRows(byte kind, int item, int sequence, ForceSegments forces) {
+        for (int entry = forces.getSegmentStart(sequence); entry < forces.getSegmentEnd(sequence); entry++)
+            addRow(kind, item, sequence, forces.getX(entry), forces.getZ(entry), forces.getMagnitude(entry),
+                    kind == RESULTANT ? -1 : forces.getReference(entry));
+    }
+
+    private void addRow(byte kind, int item, int sequence, double forceX, double forceZ, double magnitude,
+                        int reference) {
+        kinds[rows] = kind;
+        items[rows] = item;
+        sequences[rows] = sequence;
+        x[rows] = forceX;
+        z[rows] = forceZ;
+        magnitudes[rows] = magnitude;
+        references[rows] = reference;
+        rows++;
+        rowCount++;
+
+        if (rows == kinds.length)
+            writeBlock();
+    }
+
+    /**
+     * Writes the buffered rows as a block behind the last one and commits it in the header
+     */
+    private void writeBlock() {
+        long blockSize = BLOCK_HEADER_SIZE + ((long) rows * ROW_SIZE + 7) / 8 * 8;
+        try {
+            if (region == null || position + blockSize > regionPosition + region.capacity()) {
+                long regionSize = region == null ? MIN_REGION_SIZE : 2L * region.capacity();
+                if (region != null)
+                    region.force();
+                region = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        Math.max(Math.min(regionSize, maxRegionSize), blockSize));
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                regionPosition = position;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Force trace block can't be mapped", e);
+        }
+
+        ByteBuffer block = region.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        block.position((int) (position - regionPosition));
+        block.putInt(rows).putInt(0);
+        for (int i = 0; i < rows; i++)
+            block.putInt(items[i]);
+        for (int i = 0; i < rows; i++)
+            block.putInt(sequences[i]);
+        for (int i = 0; i < rows; i++)
+            block.putDouble(x[i]);
+        for (int i = 0; i < rows; i++)
+            block.putDouble(z[i]);
+        for (int i = 0; i < rows; i++)
+            block.putDouble(magnitudes[i]);
+        for (int i = 0; i < rows; i++)
+            block.putInt(references[i]);
+        block.put(kinds, 0, rows);
+
+        position += blockSize;
+        header.putLong(8, position);
+        rows = 0;
+    }
+
+    /**
+     * @return the number of rows traced by this writer
+     */
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the buffered rows, commits them in the header and truncates the file behind them
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            if (rows > 0)
+                writeBlock();
+            if (region != null)
+                region.force();
+            header.force();
+            region = null;
+            truncate();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Cuts off the unused part of the last region. The regions are only unmapped when they are garbage collected, so
+     * the file is left as it is if the platform doesn't truncate files with mapped regions.
+     */
+    private void truncate() {
+        try {
+            if (channel.size() > position)
+                channel.truncate(position);
+        } catch (IOException e) {
+            // the header marks the end of the trace, the bytes behind it are overwritten when the file is continued
+        }
+    }
+}
@@ -2,37 +2,119 @@ package com.wim.assessment.staticStability.sme;
 
 import com.wim.palletizing.assessment.staticStability.sme.AssessmentScoring.AssessmentScorer;
 import com.wim.palletizing.assessment.staticStability.sme.AssessmentScoring.LowestSequenceScoring;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolutionCache;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolver;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.SequentialForceCalculation;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.SolverMetrics;
 import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceItemManager;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceTraceSink;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ItemStabilityAssessor;
+import com.wim.palletizing.assessment.staticStability.sme.model.AssessmentResultDTO;
 import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.StabilityMatrix;
 import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.model.support.SupportRelations;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.locationtech.jts.geom.TopologyException;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class ScienceOfStaticAssessmentService {
 
     private static final Logger logger = LogManager.getLogger();
 
+    /**
+     * The order the forces of an item list are calculated in
+     */
+    public enum EvaluationMode {
+        /**
+         * Item by item, each for all sequences until the maxSequence
+         */
+        ITEM_MAJOR,
+        /**
+         * Sequence by sequence, calculating only the items affected by the item placed in the sequence and stopping at
+         * the first sequence an item is unstable in. A scorer which does not optimize needs the stability in all
+         * sequences, so the item lists are assessed item-major for it.
+         */
+        SEQUENCE_MAJOR
+    }
 
     AssessmentScorer assessmentScorer = new LowestSequenceScoring();
 
+    /**
+     * Solved reactionForce systems, shared by all assessments of this service
+     */
+    private final ReactionForceSolutionCache solutionCache = new ReactionForceSolutionCache();
+
+    /**
+     * Solver distributing the resultant forces of the items to their reaction points
+     */
+    private volatile ReactionForceSolver reactionForceSolver = ReactionForceSolver.getDefault();
+
+    private volatile EvaluationMode evaluationMode = EvaluationMode.ITEM_MAJOR;
+
+    private volatile boolean metricsEnabled = true;
+
+    /**
+     * Pool the item-major assessments create independent forceItems on; null to create them on the calling thread
+     */
+    private volatile ForkJoinPool forkJoinPool;
+
+    /**
+     * Sink receiving the forceItems of the item-major assessments; may be null
+     */
+    private volatile ForceTraceSink forceTraceSink;
+
     public double assesItemList(List<PlacedItem> itemList) {
+        return assesItemList(itemList, null);
+    }
+
+    /**
+     * Assesses the item list like {@link #assesItemList(List)} and returns the score together with the metrics of the
+     * reactionForce calculations of this assessment
+     *
+     * @param itemList the items to assess, ordered by sequence
+     * @return the stability score and the metrics, which are empty if disabled
+     */
+    public AssessmentResultDTO assesItemListWithMetrics(List<PlacedItem> itemList) {
+        SolverMetrics metrics = metricsEnabled ? new SolverMetrics() : null;
+        double score = assesItemList(itemList, metrics);
+
+        SolverMetrics.Snapshot snapshot = metrics == null ? SolverMetrics.Snapshot.EMPTY : metrics.snapshot();
+        if (metrics != null && logger.isDebugEnabled())
+            logger.debug("Reaction force metrics: " + snapshot);
+        return new AssessmentResultDTO(score, snapshot);
+    }
 
-        ForceItemManager fiM = new ForceItemManager(itemList.size());
+    private double assesItemList(List<PlacedItem> itemList, SolverMetrics metrics) {
+        return evaluationMode == EvaluationMode.SEQUENCE_MAJOR && assessmentScorer.shouldOptimize()
+                ? assesItemListSequenceMajor(itemList, metrics)
+                : assesItemListItemMajor(itemList, metrics, SupportRelations.ENVIRONMENT_RELATIONS);
+    }
 
+    private double assesItemListItemMajor(List<PlacedItem> itemList, SolverMetrics metrics,
+                                          SupportRelations supportRelations) {
+        ForceItemManager fiM = new ForceItemManager(itemList.size(), solutionCache,
+                reactionForceSolver, forkJoinPool, metrics, supportRelations);
+        ForceTraceSink sink = forceTraceSink;
+        fiM.setForceTraceSink(sink);
 
-        Boolean[][] stabilityMatrix = new Boolean[itemList.size()][itemList.size()];
+
+        StabilityMatrix stabilityMatrix = new StabilityMatrix(itemList.size(), itemList.size());
 
         try {
+            validateSequences(itemList);
             for (int i = 0; i < itemList.size(); i++) {
 
-                stabilityMatrix[i] = testItemsStability(itemList.get(i), fiM);
+                testItemsStability(itemList.get(i), fiM, stabilityMatrix, i);
 
                 if (assessmentScorer.shouldOptimize()) {
-                    fiM.setMaxSequence(assessmentScorer.optimizeMaxSequence(stabilityMatrix[i]));
+                    fiM.setMaxSequence(assessmentScorer.optimizeMaxSequence(stabilityMatrix, i));
                 }
             }
         } catch (TopologyException e) {
@@ -41,31 +123,248 @@ public class ScienceOfStaticAssessmentService {
         } catch (IllegalArgumentException e){
             logger.warn(e.getMessage() + ". No stability assessment possible");
             return -1;
+        } finally {
+            // the manager disables a failing sink, it would fail the following assessments again
+            if (sink != null && fiM.getForceTraceSink() == null)
+                disableForceTraceSink(sink);
         }
 
+        if (logger.isDebugEnabled())
+            logger.debug("Reaction force solution cache: " + solutionCache.getHits() + " hits, "
+                    + solutionCache.getMisses() + " misses, hit rate " + solutionCache.getHitRate());
+
         return assessmentScorer.scoreStabilityMatrix(stabilityMatrix);
 
     }
 
+    /**
+     * Assesses the item list sequence by sequence, stopping at the first sequence an item is unstable in.
+     *
+     * @param itemList     the items to assess
+     * @param metrics      the metrics to record the calculations in; may be null
+     * @return the stability score of the item list or -1, if it can not be assessed
+     */
+    private double assesItemListSequenceMajor(List<PlacedItem> itemList, SolverMetrics metrics) {
+        List<PlacedItem> itemsBySequence = new ArrayList<>(itemList);
+        itemsBySequence.sort(Comparator.comparingInt(item -> item.sequence));
+
+        SequentialForceCalculation calculation = new SequentialForceCalculation(null, solutionCache,
+                reactionForceSolver, false, metrics);
+
+        try {
+            validateSequences(itemList);
+            for (PlacedItem item : itemsBySequence) {
+                if (!calculation.placeItem(item))
+                    break;
+            }
+        } catch (TopologyException e) {
+            logger.warn("A item with " + e.getMessage() + " of the set is wrongly shaped, can't be handled by library");
+            return -1;
+        } catch (IllegalArgumentException e){
+            logger.warn(e.getMessage() + ". No stability assessment possible");
+            return -1;
+        }
+
+        if (logger.isDebugEnabled())
+            logger.debug("Sequence-major assessment solved " + calculation.getCalculationCount()
+                    + " reaction force systems until sequence " + calculation.getCurrentSequence());
+
+        return scoreSequentialForceCalculation(itemList, calculation);
+    }
+
+    /**
+     * Checks that every item has its own, non-negative sequence. The forceItems are stored and the reactionForces
+     * reference the items below by their sequence, so items sharing a sequence can't be told apart.
+     *
+     * @param itemList the items to assess
+     * @throws IllegalArgumentException naming the first item with a negative or already used sequence
+     */
+    static void validateSequences(List<PlacedItem> itemList) {
+        BitSet usedSequences = new BitSet(itemList.size());
+        for (PlacedItem item : itemList) {
+            if (item.sequence < 0)
+                throw new IllegalArgumentException("Item " + item.itemLabel + " has the negative sequence "
+                        + item.sequence);
+            if (usedSequences.get(item.sequence))
+                throw new IllegalArgumentException("Item " + item.itemLabel + " has the sequence " + item.sequence
+                        + " of another item");
+            usedSequences.set(item.sequence);
+        }
+    }
+
+    /**
+     * Scores a sequence-major calculation whose items have been placed until the first unstable one, see
+     * {@link #scoreFirstUnstableSequence(List, int, PlacedItem)}.
+     *
+     * @param itemList    the items of the calculation, including the ones not placed after the unstable one
+     * @param calculation the calculation
+     * @return the stability score of the item list
+     */
+    public double scoreSequentialForceCalculation(List<PlacedItem> itemList, SequentialForceCalculation calculation) {
+        return scoreFirstUnstableSequence(itemList, calculation.isStable() ? -1 : calculation.getCurrentSequence(),
+                calculation.getUnstableItem());
+    }
+
+    /**
+     * Scores an item list whose items have been placed sequence by sequence until the given one, e.g. by a
+     * calculation growing item by item. Every placed item is stable in the sequences before and the unstable item is
+     * unstable in the given sequence; the other items are not assessed in it. Like in the item-major assessment,
+     * bottom items count as placed from the first sequence on. A scorer which does not optimize needs the stability
+     * in all sequences, so the item list is assessed item-major for it.
+     *
+     * @param itemList              the items
+     * @param firstUnstableSequence the first sequence an item is unstable in or -1, if all items are stable
+     * @param unstableItem          the item unstable in that sequence; null if all items are stable
+     * @return the stability score of the item list
+     */
+    public double scoreFirstUnstableSequence(List<PlacedItem> itemList, int firstUnstableSequence,
+                                             PlacedItem unstableItem) {
+        return scoreFirstUnstableSequence(itemList, firstUnstableSequence, unstableItem,
+                SupportRelations.ENVIRONMENT_RELATIONS);
+    }
+
+    /**
+     * Scores the item list like {@link #scoreFirstUnstableSequence(List, int, PlacedItem)}, assessing it item-major
+     * on the given relations if the scorer does not optimize
+     *
+     * @param itemList              the items
+     * @param firstUnstableSequence the first sequence an item is unstable in or -1, if all items are stable
+     * @param unstableItem          the item unstable in that sequence; null if all items are stable
+     * @param supportRelations      the items below and on top of the items, e.g. the ones of a support graph
+     * @return the stability score of the item list
+     */
+    public double scoreFirstUnstableSequence(List<PlacedItem> itemList, int firstUnstableSequence,
+                                             PlacedItem unstableItem, SupportRelations supportRelations) {
+        if (!assessmentScorer.shouldOptimize())
+            return assesItemListItemMajor(itemList, null, supportRelations);
+
+        int maxSequence = firstUnstableSequence < 0 ? itemList.size() : firstUnstableSequence + 1;
+        StabilityMatrix stabilityMatrix = new StabilityMatrix(itemList.size(), itemList.size());
+        for (int row = 0; row < itemList.size(); row++) {
+            PlacedItem item = itemList.get(row);
+            BitSet placedSequences = item.isBottomItem()
+                    ? ItemStabilityAssessor.getPlacedSequences(0, maxSequence)
+                    : ItemStabilityAssessor.getPlacedSequences(item.sequence, maxSequence);
+            if (firstUnstableSequence >= 0 && item != unstableItem)
+                placedSequences.clear(firstUnstableSequence);
+            BitSet stableSequences = (BitSet) placedSequences.clone();
+            if (item == unstableItem)
+                stableSequences.clear(firstUnstableSequence);
+            stabilityMatrix.setRow(row, maxSequence, placedSequences, stableSequences);
+        }
+
+        return assessmentScorer.scoreStabilityMatrix(stabilityMatrix);
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * @param metricsEnabled whether the following assessments with metrics record metrics of their reactionForce
+     *                       calculations; the plain assessments never record them
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public ForceTraceSink getForceTraceSink() {
+        return forceTraceSink;
+    }
+
+    /**
+     * Sets the sink receiving every forceItem of the following assessments, e.g. a
+     * {@link com.wim.palletizing.assessment.staticStability.sme.ForceLogic.MappedForceTraceWriter} to export the
+     * forces. Only the item-major evaluation creates forceItems. A sink failing to trace a forceItem is disabled, the
+     * assessments are not affected by it.
+     *
+     * @param forceTraceSink the sink; null to trace none
+     */
+    public synchronized void setForceTraceSink(ForceTraceSink forceTraceSink) {
+        this.forceTraceSink = forceTraceSink;
+    }
+
+    /**
+     * Stops tracing to the sink, unless another sink has been set meanwhile
+     */
+    private synchronized void disableForceTraceSink(ForceTraceSink sink) {
+        if (forceTraceSink == sink)
+            forceTraceSink = null;
+    }
+
+    public EvaluationMode getEvaluationMode() {
+        return evaluationMode;
+    }
+
+    /**
+     * @param evaluationMode the order the forces of the following assessments are calculated in
+     */
+    public void setEvaluationMode(EvaluationMode evaluationMode) {
+        this.evaluationMode = evaluationMode;
+    }
+
+    /**
+     * Sets the solver used by the following assessments instead of the {@link
+     * com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReferenceReactionForceSolver},
+     * e.g. the faster {@link
+     * com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.WorkspaceReactionForceSolver}.
+     * The cached solutions of the previous solver are removed.
+     *
+     * @param reactionForceSolver the solver distributing the resultant forces to the reaction points
+     */
+    public void setReactionForceSolver(ReactionForceSolver reactionForceSolver) {
+        this.reactionForceSolver = reactionForceSolver;
+        solutionCache.clear();
+    }
+
+    public ReactionForceSolver getReactionForceSolver() {
+        return reactionForceSolver;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Sets the pool the following item-major assessments create the independent forceItems of an item list on in
+     * parallel. The pool stays owned by the caller, who has to shut it down. By default, all forceItems are created on
+     * the calling thread.
+     *
+     * @param forkJoinPool the pool; null to create the forceItems on the calling thread
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * @return the cache of solved reactionForce systems, e.g. to check its hit rate
+     */
+    public ReactionForceSolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
     /**
      * Tests for all sequences the item is already placed if it is stable.
      *
-     * @param item the item which stability is tested
-     * @param fiM  The forceItemManager used to create the forceItems
-     * @return an array of booleans in the size of the maxSequence, representing the stability of the item per sequence
-     * with the following mapping: true -> stable, false -> unstable, null -> item not placed in the sequence
+     * @param item            the item which stability is tested
+     * @param fiM             The forceItemManager used to create the forceItems
+     * @param stabilityMatrix the matrix to store the stability in, a row in the size of the maxSequence,
+     *                        representing the stability of the item per sequence
+     * @param row             the row of the item in the matrix
      */
-    private Boolean[] testItemsStability(PlacedItem item, ForceItemManager fiM) {
+    private void testItemsStability(PlacedItem item, ForceItemManager fiM, StabilityMatrix stabilityMatrix, int row) {
         //for bottom item stability is guaranteed and does not need to be checked
         if (item.isBottomItem()) {
-            Boolean[] stableBooleans = new Boolean[fiM.getMaxSequence()];
-            Arrays.fill(stableBooleans, true);
-            return stableBooleans;
+            BitSet allSequences = new BitSet(fiM.getMaxSequence());
+            allSequences.set(0, fiM.getMaxSequence());
+            stabilityMatrix.setRow(row, fiM.getMaxSequence(), allSequences, allSequences);
+            return;
         }
 
         ForceItemDTO forceItem = fiM.getOrCreateForceItemFromPlacedItem(item);
 
-        return forceItem.getSTABILITY_PER_SEQUENCE();
+        stabilityMatrix.setRow(row, forceItem.getMAX_SEQUENCE(), forceItem.getPLACED_PER_SEQUENCE(),
+                forceItem.getSTABLE_PER_SEQUENCE());
     }
 
 
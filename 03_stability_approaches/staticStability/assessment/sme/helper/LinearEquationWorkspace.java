@@ -0,0 +1,303 @@
+package com.wim.assessment.staticStability.sme.helper;
+
+import java.util.Arrays;
+
+/**
+ * In-place solver for linear equation systems, working on a reusable workspace.
+ * <p>
+ * Follows the elimination of {@link LinearEquationSystem} (partial pivoting, the same thresholds to decide whether a
+ * value is zero and the same reduction to the rows of the rank), but decides about pivots and ranks by these
+ * tolerances only instead of rounding the result of every operation. Only the solution is rounded, like the one of
+ * {@link LinearEquationSystem}. The matrices are stored row-major in flat arrays that grow to the largest system seen,
+ * so solving does not allocate once the workspace is large enough. The solution and the column selection can be read
+ * from the buffers of the workspace directly.
+ * <p>
+ * Every thread has its own workspace ({@link #get()}); a workspace holds one system at a time:
+ * <ol>
+ *     <li>{@link #reset(int, int)} sizes and clears the system</li>
+ *     <li>{@link #setLhs(int, int, double)} and {@link #setRhs(int, double)} fill it</li>
+ *     <li>{@link #solve()} solves it; if it has infinite solutions, {@link #solveColumns(int[], int)} solves the
+ *     reduced system for a subset of the columns (variables) without copying the system</li>
+ * </ol>
+ * <p>
+ * The workspace is only used by the WorkspaceReactionForceSolver, which an assessment uses if it is set on the
+ * ScienceOfStaticAssessmentService; by default the reaction forces are still solved by {@link LinearEquationSystem}.
+ */
+public final class LinearEquationWorkspace {
+
+    private static final double ROUNDING_ERROR_EPSILON = 0.01;
+    private static final double ROUNDING_FACTOR = 10000.0;
+
+    private static final ThreadLocal<LinearEquationWorkspace> WORKSPACES =
+            ThreadLocal.withInitial(LinearEquationWorkspace::new);
+
+    private int rows, columns;
+
+    /**
+     * The system as set
+     */
+    private double[] lhs = new double[0], rhs = new double[0];
+
+    /**
+     * The system in echelon form after {@link #solve()}
+     */
+    private double[] echelonLhs = new double[0], echelonRhs = new double[0];
+    private int rank = -1;
+
+    /**
+     * The reduced system of a column subset
+     */
+    private double[] subsetLhs = new double[0], subsetRhs = new double[0];
+
+    private double[] columnThresholds = new double[0];
+    private double[] solution = new double[0];
+    private int solutionLength;
+
+    private int[] columnSelection = new int[0];
+
+    /**
+     * Outcome of the last elimination
+     */
+    private int rankCoefficient, rankAugmented;
+
+    private LinearEquationWorkspace() {
+    }
+
+    /**
+     * @return the workspace of the current thread
+     */
+    public static LinearEquationWorkspace get() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Sizes the workspace for a system and sets all its values to zero
+     *
+     * @param rows    number of equations
+     * @param columns number of variables, at most the number of equations
+     */
+    public void reset(int rows, int columns) {
+        if (rows == 0 || columns < 1 || columns > rows)
+            throw new IllegalArgumentException("Matrix is incorrectly sized");
+
+        this.rows = rows;
+        this.columns = columns;
+        this.rank = -1;
+        this.solutionLength = 0;
+
+        int size = rows * columns;
+        if (lhs.length < size) {
+            lhs = new double[size];
+            echelonLhs = new double[size];
+            subsetLhs = new double[size];
+        }
+        if (rhs.length < rows) {
+            rhs = new double[rows];
+            echelonRhs = new double[rows];
+            subsetRhs = new double[rows];
+        }
+        if (solution.length < columns) {
+            solution = new double[columns];
+            columnThresholds = new double[columns];
+            columnSelection = new int[columns];
+        }
+
+        Arrays.fill(lhs, 0, size, 0.0);
+        Arrays.fill(rhs, 0, rows, 0.0);
+    }
+
+    public void setLhs(int row, int column, double value) {
+        lhs[row * columns + column] = value;
+    }
+
+    public void setRhs(int row, double value) {
+        rhs[row] = value;
+    }
+
+    /**
+     * Solves the system. If it has a unique solution, the solution is calculated; if it has infinite solutions, the
+     * system is reduced to the rows of its rank for {@link #solveColumns(int[], int)}.
+     *
+     * @return the solubility of the system; a unique solution with negative values has no solution
+     */
+    public LinearEquationSystem.Solubility solve() {
+        System.arraycopy(lhs, 0, echelonLhs, 0, rows * columns);
+        System.arraycopy(rhs, 0, echelonRhs, 0, rows);
+
+        LinearEquationSystem.Solubility solubility = solveInPlace(echelonLhs, echelonRhs, rows, columns);
+        if (solubility == LinearEquationSystem.Solubility.INFINITE_SOLUTIONS)
+            rank = rankCoefficient;
+        return solubility;
+    }
+
+    /**
+     * Solves the reduced system of the last {@link #solve()}, which must have had infinite solutions, for the given
+     * columns only, e.g. for three of the variables
+     *
+     * @param selectedColumns the columns to solve for; only the first count entries are used
+     * @param count           the number of columns
+     * @return the solubility of the system of the columns
+     */
+    public LinearEquationSystem.Solubility solveColumns(int[] selectedColumns, int count) {
+        if (rank < 0)
+            throw new IllegalStateException("The system has not been reduced by solving it before");
+        if (count < 1)
+            throw new IllegalArgumentException("Matrix is incorrectly sized");
+        // fewer equations than variables, e.g. none at all if all coefficients are zero
+        if (count > rank)
+            return LinearEquationSystem.Solubility.INFINITE_SOLUTIONS;
+
+        for (int row = 0; row < rank; row++) {
+            for (int k = 0; k < count; k++)
+                subsetLhs[row * count + k] = echelonLhs[row * columns + selectedColumns[k]];
+            subsetRhs[row] = echelonRhs[row];
+        }
+
+        return solveInPlace(subsetLhs, subsetRhs, rank, count);
+    }
+
+    /**
+     * @return a reusable buffer for the columns of {@link #solveColumns(int[], int)}, large enough for all columns
+     */
+    public int[] getColumnSelection() {
+        return columnSelection;
+    }
+
+    /**
+     * @return the buffer holding the solution of the last unique solve in its first {@link #getSolutionLength()}
+     * values, overwritten by the next solve
+     */
+    public double[] getSolutionBuffer() {
+        return solution;
+    }
+
+    /**
+     * @return the number of values of the solution of the last unique solve
+     */
+    public int getSolutionLength() {
+        return solutionLength;
+    }
+
+    /**
+     * @param index index of the variable (of the column subset, if solved for one)
+     * @return the value of the variable in the solution of the last unique solve
+     */
+    public double getSolution(int index) {
+        if (index >= solutionLength)
+            throw new IndexOutOfBoundsException("Solution has " + solutionLength + " values, got " + index);
+        return solution[index];
+    }
+
+    /**
+     * Eliminates and, if possible, back-substitutes the system in place
+     */
+    private LinearEquationSystem.Solubility solveInPlace(double[] a, double[] b, int n, int m) {
+        solutionLength = 0;
+
+        double rhsThreshold = 0;
+        for (int row = 0; row < n; row++)
+            rhsThreshold = Math.max(rhsThreshold, Math.abs(b[row]));
+        rhsThreshold *= ROUNDING_ERROR_EPSILON;
+
+        for (int col = 0; col < m; col++) {
+            double max = 0;
+            for (int row = 0; row < n; row++)
+                max = Math.max(max, Math.abs(a[row * m + col]));
+            columnThresholds[col] = max * ROUNDING_ERROR_EPSILON;
+        }
+
+        eliminate(a, b, n, m, rhsThreshold);
+
+        if (rankAugmented != rankCoefficient)
+            return LinearEquationSystem.Solubility.NO_SOLUTION;
+        if (rankCoefficient != m)
+            return LinearEquationSystem.Solubility.INFINITE_SOLUTIONS;
+
+        // back substitution on the first m rows
+        for (int j = m - 1; j >= 0; j--) {
+            double t = 0.0;
+            for (int k = j + 1; k < m; k++)
+                t += a[j * m + k] * solution[k];
+            solution[j] = Math.round(((b[j] - t) / a[j * m + j]) * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+        }
+        for (int j = 0; j < m; j++)
+            if (solution[j] < 0)
+                return LinearEquationSystem.Solubility.NO_SOLUTION;
+
+        solutionLength = m;
+        return LinearEquationSystem.Solubility.UNIQUE_SOLUTION;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting; values within the thresholds are treated as zero
+     */
+    private void eliminate(double[] a, double[] b, int n, int m, double rhsThreshold) {
+        for (int i = 0; i < m; i++) {
+            // Find the largest pivot of this column in the rows below the current one.
+            int maxElementRow = i;
+            for (int j = i + 1; j < n; j++)
+                if (Math.abs(a[j * m + i]) > Math.abs(a[maxElementRow * m + i]))
+                    maxElementRow = j;
+
+            if (isZero(a[maxElementRow * m + i], columnThresholds[i])) {
+                if (!restIsZero(a, n, m, maxElementRow, i))
+                    continue;
+                rankCoefficient = i;
+                rankAugmented = i;
+                for (int k = i; k < n; k++)
+                    if (!isZero(b[k], rhsThreshold)) {
+                        rankAugmented = i + 1;
+                        break;
+                    }
+                return;
+            }
+
+            swapRows(a, b, m, i, maxElementRow);
+
+            double pivot = a[i * m + i];
+            for (int j = i + 1; j < n; j++) {
+                double rowFactor = a[j * m + i] / pivot;
+                if (rowFactor == 0)
+                    continue;
+                for (int k = m - 1; k >= i; k--)
+                    a[j * m + k] -= a[i * m + k] * rowFactor;
+                // the pivot column is zero below the pivot by construction
+                a[j * m + i] = 0;
+                b[j] -= b[i] * rowFactor;
+            }
+        }
+
+        rankCoefficient = m;
+        rankAugmented = m;
+        for (int i = m; i < n; i++)
+            if (!isZero(b[i], rhsThreshold)) {
+                rankAugmented = m + 1;
+                return;
+            }
+    }
+
+    private static boolean isZero(double value, double threshold) {
+        return value == 0.0 || Math.abs(value) <= threshold;
+    }
+
+    private boolean restIsZero(double[] a, int n, int m, int startRow, int startColumn) {
+        for (int row = startRow; row < n; row++)
+            for (int col = startColumn; col < m; col++)
+                if (!isZero(a[row * m + col], columnThresholds[col]))
+                    return false;
+        return true;
+    }
+
+    private static void swapRows(double[] a, double[] b, int m, int i, int j) {
+        if (i == j)
+            return;
+        for (int col = 0; col < m; col++) {
+            double temp = a[i * m + col];
+            a[i * m + col] = a[j * m + col];
+            a[j * m + col] = temp;
+        }
+        double temp = b[i];
+        b[i] = b[j];
+        b[j] = temp;
+    }
+}
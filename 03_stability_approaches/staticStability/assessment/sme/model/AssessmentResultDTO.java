@@ -0,0 +1,32 @@
+package com.wim.assessment.staticStability.sme.model;
+
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.SolverMetrics;
+
+/**
+ * The stability score of an assessed item list together with the metrics of its reactionForce calculations
+ */
+public class AssessmentResultDTO {
+
+    /**
+     * The stability score or -1, if the item list could not be assessed
+     */
+    private final double SCORE;
+
+    /**
+     * The metrics recorded while assessing the item list; empty if the metrics are disabled
+     */
+    private final SolverMetrics.Snapshot METRICS;
+
+    public AssessmentResultDTO(double score, SolverMetrics.Snapshot metrics) {
+        this.SCORE = score;
+        this.METRICS = metrics;
+    }
+
+    public double getSCORE() {
+        return SCORE;
+    }
+
+    public SolverMetrics.Snapshot getMETRICS() {
+        return METRICS;
+    }
+}
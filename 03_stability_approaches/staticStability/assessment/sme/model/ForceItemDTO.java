@@ -6,8 +6,8 @@ import com.wim.palletizing.model.item.PlacedItem;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.NotNull;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 @Validated
 public class ForceItemDTO {
@@ -29,39 +29,57 @@ public class ForceItemDTO {
     private final List<Pair<Point2D, PlacedItem>> REACTION_POINTS;
 
     /**
-     * The action forces and acting points , grouped as list for every
-     * sequenceStep
+     * The action forces and acting points for every sequenceStep; each force references the item on top it comes
+     * from by its sequence
      */
-    private final Map<Integer, List<Pair<Point2D, Double>>> ACTION_FORCES_PER_SEQUENCE;
+    private final ForceSegments ACTION_FORCES;
 
     /**
-     * The resultant force magnitude and its acting point
-     * for every sequenceStep
+     * The resultant force magnitude and its acting point for every sequenceStep, one entry each
      */
-    private final Map<Integer, Pair<Point2D, Double>> RESULTANT_FORCE_PER_SEQUENCE;
+    private final ForceSegments RESULTANT_FORCES;
 
     /**
-     * The reactionForces (Point and magnitude) mapped to the reacting item and the sequence
+     * The reactionForces (Point and magnitude) for every sequenceStep the item is stable in; each force references
+     * the item below it acts on by its sequence
      */
-    private final Map<Integer, Map<String, List<Pair<Point2D, Double>>>> REACTION_FORCES_PER_SEQUENCE;
+    private final ForceSegments REACTION_FORCES;
 
     /**
-     * Containing true for every sequence the item is stable in, false if unstable and null if it doesn't exist
+     * The sequences in which the forces of the item can change, ascending; in all other sequences they are the same
+     * as in the previous one
      */
-    private final Boolean[] STABILITY_PER_SEQUENCE;
+    private final int[] CHANGE_POINTS;
+
+    /**
+     * The number of sequences the stability has been assessed for
+     */
+    private final int MAX_SEQUENCE;
+
+    /**
+     * Bit set for every sequence the item exists (is placed) in
+     */
+    private final BitSet PLACED_PER_SEQUENCE;
+
+    /**
+     * Bit set for every sequence the item is stable in
+     */
+    private final BitSet STABLE_PER_SEQUENCE;
 
     public ForceItemDTO(@NotNull PlacedItem placedItem,
                         Pair<Point2D, Double> gravitationForce, List<Pair<Point2D, PlacedItem>> reactionPoints,
-                        Map<Integer, List<Pair<Point2D, Double>>> actionForcesPerSequence, Map<Integer,
-            Pair<Point2D, Double>> resultantForcePerSequence, Map<Integer, Map<String, List<Pair<Point2D,
-            Double>>>> reactionForcesPerSequence, Boolean[] stabilityPerSequence) {
+                        ForceSegments actionForces, ForceSegments resultantForces, ForceSegments reactionForces,
+                        int[] changePoints, int maxSequence, BitSet placedPerSequence, BitSet stablePerSequence) {
         this.PLACED_ITEM = placedItem;
         this.GRAVITATION_FORCE = gravitationForce;
         this.REACTION_POINTS = reactionPoints;
-        this.ACTION_FORCES_PER_SEQUENCE = actionForcesPerSequence;
-        this.RESULTANT_FORCE_PER_SEQUENCE = resultantForcePerSequence;
-        this.REACTION_FORCES_PER_SEQUENCE = reactionForcesPerSequence;
-        this.STABILITY_PER_SEQUENCE = stabilityPerSequence;
+        this.ACTION_FORCES = actionForces;
+        this.RESULTANT_FORCES = resultantForces;
+        this.REACTION_FORCES = reactionForces;
+        this.CHANGE_POINTS = changePoints;
+        this.MAX_SEQUENCE = maxSequence;
+        this.PLACED_PER_SEQUENCE = placedPerSequence;
+        this.STABLE_PER_SEQUENCE = stablePerSequence;
     }
 
 
@@ -77,19 +95,43 @@ public class ForceItemDTO {
         return REACTION_POINTS;
     }
 
-    public Map<Integer, List<Pair<Point2D, Double>>> getACTION_FORCES_PER_SEQUENCE() {
-        return ACTION_FORCES_PER_SEQUENCE;
+    public ForceSegments getACTION_FORCES() {
+        return ACTION_FORCES;
     }
 
-    public Map<Integer, Pair<Point2D, Double>> getRESULTANT_FORCE_PER_SEQUENCE() {
-        return RESULTANT_FORCE_PER_SEQUENCE;
+    public ForceSegments getRESULTANT_FORCES() {
+        return RESULTANT_FORCES;
     }
 
-    public Map<Integer, Map<String, List<Pair<Point2D, Double>>>> getREACTION_FORCES_PER_SEQUENCE() {
-        return REACTION_FORCES_PER_SEQUENCE;
+    public ForceSegments getREACTION_FORCES() {
+        return REACTION_FORCES;
     }
 
+    public int[] getCHANGE_POINTS() {
+        return CHANGE_POINTS;
+    }
+
+    public int getMAX_SEQUENCE() {
+        return MAX_SEQUENCE;
+    }
+
+    public BitSet getPLACED_PER_SEQUENCE() {
+        return PLACED_PER_SEQUENCE;
+    }
+
+    public BitSet getSTABLE_PER_SEQUENCE() {
+        return STABLE_PER_SEQUENCE;
+    }
+
+    /**
+     * @return an array containing true for every sequence the item is stable in, false if unstable and null if it
+     * doesn't exist
+     */
     public Boolean[] getSTABILITY_PER_SEQUENCE() {
-        return STABILITY_PER_SEQUENCE;
+        Boolean[] stabilityPerSequence = new Boolean[MAX_SEQUENCE];
+        for (int i = PLACED_PER_SEQUENCE.nextSetBit(0); i >= 0 && i < MAX_SEQUENCE;
+             i = PLACED_PER_SEQUENCE.nextSetBit(i + 1))
+            stabilityPerSequence[i] = STABLE_PER_SEQUENCE.get(i);
+        return stabilityPerSequence;
     }
 }
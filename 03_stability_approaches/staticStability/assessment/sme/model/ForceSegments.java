@@ -0,0 +1,175 @@
+package com.wim.assessment.staticStability.sme.model;
+
+import java.util.Arrays;
+
+/**
+ * Forces (acting point and magnitude) of one item for a range of sequences, stored column-wise in primitive arrays.
+ * <p>
+ * The forces of each sequence form a contiguous segment of entries. Every entry consists of the x- and z-coordinate
+ * of the acting point, the magnitude and a reference to the item the force is related to, given by its sequence
+ * (the item a reaction force acts on, or the item an action force comes from). A sequence without a segment has no
+ * forces at all, which differs from a sequence with an empty segment.
+ * <p>
+ * Segments are appended in ascending order of their sequence; after the last one has been appended, the segments
+ * must not be modified any more. A sequence whose forces are the same as in the previous sequence shares the entries
+ * of the previous segment (see {@link #repeatSegment(int)}), so forces staying the same over many sequences are
+ * stored only once.
+ */
+public class ForceSegments {
+
+    private static final int NO_SEGMENT = -1;
+
+    private final int startSequence, maxSequence;
+
+    /**
+     * Per sequence (relative to the start sequence): first entry and end (exclusive) of the segment
+     */
+    private final int[] segmentStart, segmentEnd;
+
+    private double[] x, z, magnitude;
+    private int[] reference;
+
+    private int size;
+
+    private int currentSequence;
+
+    /**
+     * Whether forces can be added to the segment of the current sequence
+     */
+    private boolean appendable;
+
+    /**
+     * @param startSequence the first sequence forces can be stored for
+     * @param maxSequence   the sequence until which (excluding) forces can be stored
+     */
+    public ForceSegments(int startSequence, int maxSequence) {
+        this.startSequence = startSequence;
+        this.maxSequence = Math.max(startSequence, maxSequence);
+
+        int sequenceCount = this.maxSequence - startSequence;
+        segmentStart = new int[sequenceCount];
+        segmentEnd = new int[sequenceCount];
+        Arrays.fill(segmentStart, NO_SEGMENT);
+        Arrays.fill(segmentEnd, NO_SEGMENT);
+
+        int capacity = Math.max(4, sequenceCount);
+        x = new double[capacity];
+        z = new double[capacity];
+        magnitude = new double[capacity];
+        reference = new int[capacity];
+
+        currentSequence = startSequence - 1;
+    }
+
+    /**
+     * Starts the (possibly empty) segment of the given sequence. Following calls of
+     * {@link #add(double, double, double, int)} add to this segment.
+     *
+     * @param sequence the sequence, greater than the one of the previous segment
+     */
+    public void startSegment(int sequence) {
+        if (sequence <= currentSequence || sequence >= maxSequence)
+            throw new IllegalArgumentException("Segments must be started in ascending sequence order within "
+                    + startSequence + " and " + maxSequence + ", got " + sequence);
+
+        currentSequence = sequence;
+        appendable = true;
+        segmentStart[sequence - startSequence] = size;
+        segmentEnd[sequence - startSequence] = size;
+    }
+
+    /**
+     * Takes over the forces of the previous sequence for the given sequence: it shares the segment of the previous
+     * sequence, or has no segment either if the previous sequence has none.
+     *
+     * @param sequence the sequence, greater than the one of the previous segment
+     */
+    public void repeatSegment(int sequence) {
+        if (sequence <= currentSequence || sequence >= maxSequence)
+            throw new IllegalArgumentException("Segments must be started in ascending sequence order within "
+                    + startSequence + " and " + maxSequence + ", got " + sequence);
+
+        currentSequence = sequence;
+        appendable = false;
+        if (contains(sequence - 1)) {
+            segmentStart[sequence - startSequence] = segmentStart[sequence - 1 - startSequence];
+            segmentEnd[sequence - startSequence] = segmentEnd[sequence - 1 - startSequence];
+        }
+    }
+
+    /**
+     * Adds a force to the segment started last
+     */
+    public void add(double forceX, double forceZ, double forceMagnitude, int forceReference) {
+        if (!appendable)
+            throw new IllegalStateException("No segment has been started");
+
+        if (size == x.length) {
+            int capacity = x.length * 2;
+            x = Arrays.copyOf(x, capacity);
+            z = Arrays.copyOf(z, capacity);
+            magnitude = Arrays.copyOf(magnitude, capacity);
+            reference = Arrays.copyOf(reference, capacity);
+        }
+
+        x[size] = forceX;
+        z[size] = forceZ;
+        magnitude[size] = forceMagnitude;
+        reference[size] = forceReference;
+        size++;
+        segmentEnd[currentSequence - startSequence] = size;
+    }
+
+    public int getStartSequence() {
+        return startSequence;
+    }
+
+    public int getMaxSequence() {
+        return maxSequence;
+    }
+
+    /**
+     * @return true if a (possibly empty) segment exists for the sequence
+     */
+    public boolean contains(int sequence) {
+        return sequence >= startSequence && sequence < maxSequence
+                && segmentStart[sequence - startSequence] != NO_SEGMENT;
+    }
+
+    /**
+     * @return the first entry of the sequence's segment; the segment has to exist
+     */
+    public int getSegmentStart(int sequence) {
+        return segmentStart[sequence - startSequence];
+    }
+
+    /**
+     * @return the end (exclusive) of the sequence's segment; the segment has to exist
+     */
+    public int getSegmentEnd(int sequence) {
+        return segmentEnd[sequence - startSequence];
+    }
+
+    /**
+     * @return the number of entries of all segments
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getX(int entry) {
+        return x[entry];
+    }
+
+    public double getZ(int entry) {
+        return z[entry];
+    }
+
+    public double getMagnitude(int entry) {
+        return magnitude[entry];
+    }
+
+    public int getReference(int entry) {
+        return reference[entry];
+    }
+}
@@ -0,0 +1,138 @@
+package com.wim.assessment.staticStability.sme.model;
+
+import java.util.BitSet;
+
+/**
+ * The stability of every item in every sequence, stored as two bits per entry: whether the item is placed in the
+ * sequence and whether it is stable in it.
+ * <p>
+ * Every row (item) has its own length, the number of sequences it has been assessed for. The rows are packed into
+ * words of 64 sequences, so scanning for unstable items handles 64 sequences at a time. {@link #getRow(int)} and
+ * {@link #toBooleanMatrix()} provide the three-valued view (true: stable, false: unstable, null: not placed).
+ */
+public class StabilityMatrix {
+
+    private final int itemCount;
+
+    private final int wordsPerRow;
+
+    /**
+     * Number of sequences assessed per item
+     */
+    private final int[] rowLengths;
+
+    private final long[] placed, stable;
+
+    /**
+     * @param itemCount     number of items (rows)
+     * @param sequenceCount maximal number of sequences per item
+     */
+    public StabilityMatrix(int itemCount, int sequenceCount) {
+        this.itemCount = itemCount;
+        this.wordsPerRow = (sequenceCount + 63) >>> 6;
+        this.rowLengths = new int[itemCount];
+        this.placed = new long[itemCount * wordsPerRow];
+        this.stable = new long[itemCount * wordsPerRow];
+    }
+
+    /**
+     * Sets the stability of an item for all sequences
+     *
+     * @param item              index of the item
+     * @param length            number of sequences assessed for the item
+     * @param placedPerSequence bit set for every sequence the item is placed in
+     * @param stablePerSequence bit set for every sequence the item is stable in
+     */
+    public void setRow(int item, int length, BitSet placedPerSequence, BitSet stablePerSequence) {
+        if (length > wordsPerRow << 6)
+            throw new IllegalArgumentException("Row length " + length + " exceeds the number of sequences");
+
+        rowLengths[item] = length;
+        copyWords(placedPerSequence, length, placed, item * wordsPerRow);
+        copyWords(stablePerSequence, length, stable, item * wordsPerRow);
+    }
+
+    private void copyWords(BitSet bits, int length, long[] target, int offset) {
+        long[] words = bits.get(0, length).toLongArray();
+        for (int word = 0; word < wordsPerRow; word++)
+            target[offset + word] = word < words.length ? words[word] : 0L;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getRowLength(int item) {
+        return rowLengths[item];
+    }
+
+    public boolean isPlaced(int item, int sequence) {
+        return sequence < rowLengths[item] && bit(placed, item, sequence);
+    }
+
+    public boolean isStable(int item, int sequence) {
+        return sequence < rowLengths[item] && bit(stable, item, sequence);
+    }
+
+    private boolean bit(long[] words, int item, int sequence) {
+        return (words[item * wordsPerRow + (sequence >>> 6)] & (1L << sequence)) != 0;
+    }
+
+    /**
+     * @return true if the item is stable, false if it is unstable and null if it is not placed in the sequence
+     */
+    public Boolean get(int item, int sequence) {
+        if (!isPlaced(item, sequence))
+            return null;
+        return isStable(item, sequence);
+    }
+
+    /**
+     * @param item index of the item
+     * @return the three-valued stability of the item for every sequence it has been assessed for
+     */
+    public Boolean[] getRow(int item) {
+        Boolean[] row = new Boolean[rowLengths[item]];
+        for (int sequence = 0; sequence < row.length; sequence++)
+            row[sequence] = get(item, sequence);
+        return row;
+    }
+
+    /**
+     * @return the three-valued stability of every item for every sequence it has been assessed for
+     */
+    public Boolean[][] toBooleanMatrix() {
+        Boolean[][] matrix = new Boolean[itemCount][];
+        for (int item = 0; item < itemCount; item++)
+            matrix[item] = getRow(item);
+        return matrix;
+    }
+
+    /**
+     * @param item index of the item
+     * @return the first sequence the item is placed in but unstable or -1, if it is stable whenever it is placed
+     */
+    public int getFirstUnstableSequence(int item) {
+        int offset = item * wordsPerRow;
+        for (int word = 0; word < wordsPerRow; word++) {
+            long unstable = placed[offset + word] & ~stable[offset + word];
+            if (unstable != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(unstable);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first sequence any item is placed in but unstable or -1, if all items are stable whenever they are
+     * placed
+     */
+    public int getFirstUnstableSequence() {
+        int firstUnstable = -1;
+        for (int item = 0; item < itemCount; item++) {
+            int sequence = getFirstUnstableSequence(item);
+            if (sequence >= 0 && (firstUnstable < 0 || sequence < firstUnstable))
+                firstUnstable = sequence;
+        }
+        return firstUnstable;
+    }
+}
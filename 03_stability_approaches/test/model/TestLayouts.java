@@ -0,0 +1,74 @@
+package com.wim.palletizing.model;
+
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.item.PlacedItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random layouts of boxes for comparing the indexed and cached calculations with the ones they replace
+ */
+public final class TestLayouts {
+
+    public static final int PALLET_WIDTH = 12;
+    public static final int PALLET_DEPTH = 10;
+
+    private TestLayouts() {
+    }
+
+    /**
+     * Drops boxes of random sizes, weights and centers of mass onto the pallet in sequence order, each resting on the
+     * highest top surface below its footprint. Boxes overhang and bridge gaps, so most layouts become unstable at
+     * some sequence. Layouts of the same seed are prefixes of each other, their items are new objects.
+     *
+     * @param seed      the seed of the layout
+     * @param itemCount the number of boxes
+     * @return the boxes, ordered by sequence, without a support structure
+     */
+    public static List<PlacedItem> createLayout(long seed, int itemCount) {
+        Random random = new Random(seed);
+        int[][] heights = new int[PALLET_WIDTH][PALLET_DEPTH];
+        List<PlacedItem> items = new ArrayList<>(itemCount);
+
+        for (int sequence = 0; sequence < itemCount; sequence++) {
+            int width = 2 + random.nextInt(4), height = 1 + random.nextInt(3), depth = 2 + random.nextInt(4);
+            int x = random.nextInt(PALLET_WIDTH - width + 1), z = random.nextInt(PALLET_DEPTH - depth + 1);
+            double weight = 1 + random.nextInt(20);
+            Point3D centerOfMass = new Point3D((random.nextInt(5) - 2) * 0.25, 0, (random.nextInt(5) - 2) * 0.25);
+
+            int y = 0;
+            for (int i = x; i < x + width; i++)
+                for (int k = z; k < z + depth; k++)
+                    y = Math.max(y, heights[i][k]);
+            for (int i = x; i < x + width; i++)
+                for (int k = z; k < z + depth; k++)
+                    heights[i][k] = y + height;
+
+            items.add(new PlacedItem("item" + sequence, 1, weight, null, null, new Box(width, height, depth), null, x,
+                    y, z, sequence, 0, null, null, centerOfMass, 0.5, 0.5, 0, null));
+        }
+        return items;
+    }
+
+    /**
+     * @return a ULD of the layout, without a support structure
+     */
+    public static ULD createUld(long seed, int itemCount) {
+        return new ULD(null, createLayout(seed, itemCount));
+    }
+
+    /**
+     * Compares every pair of items, like {@link ULD#calculateItemSupportStructure()} did before the items were
+     * indexed by their footprints
+     *
+     * @param items the items, ordered by sequence, without a support structure
+     */
+    public static void calculateSupportStructureOfAllPairs(List<PlacedItem> items) {
+        for (int i = 0; i < items.size() - 1; i++)
+            for (int j = i + 1; j < items.size(); j++)
+                items.get(i).calculateAndStoreSupportRelation(items.get(j));
+    }
+}
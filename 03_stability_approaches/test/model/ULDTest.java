@@ -0,0 +1,44 @@
+package com.wim.palletizing.model;
+
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the support structure found through the footprint index with comparing every pair of items
+ */
+class ULDTest {
+
+    @Test
+    void calculatesTheSupportStructureOfAllPairs() {
+        for (long seed = 0; seed < 100; seed++) {
+            int itemCount = 1 + (int) (seed % 50);
+            List<PlacedItem> items = TestLayouts.createLayout(seed, itemCount);
+            TestLayouts.calculateSupportStructureOfAllPairs(items);
+
+            ULD uld = TestLayouts.createUld(seed, itemCount);
+            uld.calculateItemSupportStructure();
+
+            for (PlacedItem item : items) {
+                PlacedItem indexedItem = uld.getItem(item.itemLabel);
+                String layout = "seed " + seed + ", " + item.itemLabel;
+                assertEquals(labels(item.getEnvironmentRelations().getItemsBelow()),
+                        labels(indexedItem.getEnvironmentRelations().getItemsBelow()), layout);
+                assertEquals(labels(item.getEnvironmentRelations().getItemsOnTop()),
+                        labels(indexedItem.getEnvironmentRelations().getItemsOnTop()), layout);
+            }
+        }
+    }
+
+    /**
+     * @return the labels of the items, in the order they are stored
+     */
+    private static List<String> labels(Collection<PlacedItem> items) {
+        return items.stream().map(item -> item.itemLabel).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the lookups through the {@link CorridorIndex} with checking all pairs of items
+ */
+class CorridorIndexTest {
+
+    @Test
+    void findsTheOverlappingFootprintsOfAllPairs() {
+        for (long seed = 0; seed < 100; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, 1 + (int) (seed % 50));
+            CorridorIndex index = new CorridorIndex(items);
+
+            for (PlacedItem item : items) {
+                Set<PlacedItem> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (PlacedItem otherItem : items)
+                    if (otherItem != item && footprintsTouch(item, otherItem))
+                        expected.add(otherItem);
+
+                List<PlacedItem> candidates = index.getItemsWithOverlappingFootprint(item);
+                Set<PlacedItem> found = Collections.newSetFromMap(new IdentityHashMap<>());
+                found.addAll(candidates);
+                assertEquals(candidates.size(), found.size(), "seed " + seed + ", " + item.itemLabel);
+                assertEquals(expected, found, "seed " + seed + ", " + item.itemLabel);
+            }
+        }
+    }
+
+    /**
+     * Every pair the corridor check of Krebs decides on is found through the index, in both directions
+     */
+    @Test
+    void findsEveryPairWithACorridorIntersection() {
+        for (long seed = 0; seed < 100; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, 1 + (int) (seed % 50));
+            CorridorIndex index = new CorridorIndex(items);
+
+            for (PlacedItem item : items) {
+                List<PlacedItem> candidates = index.getItemsWithOverlappingFootprint(item);
+                for (PlacedItem otherItem : items) {
+                    if (otherItem == item)
+                        continue;
+                    ItemCoordinates coordinates = otherItem.getItemCoordinates();
+                    if (item.getMinPossibleYForOtherShape(otherItem.shape, coordinates.getX(), coordinates.getZ()) != 0)
+                        assertTrue(candidates.contains(otherItem),
+                                "seed " + seed + ", " + item.itemLabel + " " + otherItem.itemLabel);
+                }
+            }
+        }
+    }
+
+    private static boolean footprintsTouch(PlacedItem item, PlacedItem otherItem) {
+        ItemCoordinates a = item.getItemCoordinates(), b = otherItem.getItemCoordinates();
+        return a.getX() <= b.getMaxX() && b.getX() <= a.getMaxX() && a.getZ() <= b.getMaxZ() && b.getZ() <= a.getMaxZ();
+    }
+}
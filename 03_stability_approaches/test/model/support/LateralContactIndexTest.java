@@ -0,0 +1,176 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.item.PlacedItem;
+import com.wim.palletizing.packing_sequence.model.PackingSide;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the lookups through the {@link LateralContactIndex} with checking all pairs of items
+ */
+class LateralContactIndexTest {
+
+    private static final int PALLET_WIDTH = 12;
+    private static final int PALLET_DEPTH = 10;
+
+    private static PlacedItem item(int sequence, int x, int y, int z, int width, int height, int depth) {
+        return new PlacedItem("item" + sequence, 1, 1, null, null, new Box(width, height, depth), null, x, y, z,
+                sequence, 0, null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+    }
+
+    /**
+     * Rows of touching boxes of different sizes, boxes with gaps and edge contacts, stacks and boxes on the pallet
+     * edges, completed by random boxes on a coarse grid, which often share a face plane without touching
+     */
+    private static List<PlacedItem> createMixedLayout() {
+        List<PlacedItem> items = new ArrayList<>();
+        items.add(item(0, 0, 0, 0, 4, 3, 5));
+        items.add(item(1, 4, 0, 0, 3, 2, 5));
+        items.add(item(2, 7, 0, 1, 5, 4, 3));
+        items.add(item(3, 0, 0, 5, 4, 3, 5));
+        items.add(item(4, 5, 0, 5, 2, 3, 2));
+        items.add(item(5, 7, 0, 7, 5, 2, 3));
+        items.add(item(6, 4, 0, 9, 3, 1, 1));
+        items.add(item(7, 0, 3, 0, 4, 2, 10));
+        items.add(item(8, 4, 2, 0, 2, 2, 2));
+        items.add(item(9, 6, 3, 2, 3, 1, 3));
+        items.add(item(10, 9, 4, 4, 3, 2, 3));
+
+        Random random = new Random(4);
+        for (int sequence = items.size(); sequence < 80; sequence++)
+            items.add(item(sequence, 2 * random.nextInt(6), 2 * random.nextInt(4), 2 * random.nextInt(5),
+                    1 + random.nextInt(4), 1 + random.nextInt(3), 1 + random.nextInt(4)));
+        return items;
+    }
+
+    @Test
+    void findsTheSideNeighborsOfAllPairs() {
+        List<PlacedItem> items = createMixedLayout();
+        LateralContactIndex index = new LateralContactIndex(1, items);
+
+        for (PlacedItem item : items) {
+            Set<PlacedItem> xCandidates = identitySet(index.getXContactCandidates(item));
+            Set<PlacedItem> zCandidates = identitySet(index.getZContactCandidates(item));
+            for (PlacedItem otherItem : items) {
+                String pair = item.itemLabel + " " + otherItem.itemLabel;
+                if (otherItem.isRightNeighborOf(item) || otherItem.isLeftNeighborOf(item))
+                    assertTrue(xCandidates.contains(otherItem), pair);
+                if (otherItem.isBehind(item) || otherItem.isInFrontOf(item))
+                    assertTrue(zCandidates.contains(otherItem), pair);
+            }
+        }
+    }
+
+    /**
+     * A row of boxes shares the plane of their right faces; only the ones reaching the queried face are candidates
+     */
+    @Test
+    void findsOnlyTheFacesOfAPlaneReachingTheItem() {
+        List<PlacedItem> items = new ArrayList<>();
+        for (int sequence = 0; sequence < 10; sequence++)
+            items.add(item(sequence, 0, 0, sequence, 4, 2, 1));
+        items.add(item(10, 0, 2, 0, 4, 2, 10));
+        items.add(item(11, 0, 5, 0, 4, 1, 10));
+        PlacedItem item = item(12, 4, 0, 3, 2, 2, 2);
+        items.add(item);
+        LateralContactIndex index = new LateralContactIndex(1, items);
+
+        // the boxes 2 to 5 reach the z-range 3 to 5 of the item, the box on top of the row touches its upper edge and
+        // the box above it is out of reach
+        List<String> candidates = new ArrayList<>();
+        for (PlacedItem candidate : index.getXContactCandidates(item))
+            candidates.add(candidate.itemLabel);
+        Collections.sort(candidates);
+        assertEquals(Arrays.asList("item10", "item2", "item3", "item4", "item5"), candidates);
+    }
+
+    /**
+     * The candidates of {@link com.wim.palletizing.model.ULD#calculateNeighbors()}: the lateral candidates and the
+     * items below and on top in the support graph
+     */
+    @Test
+    void findsTheNeighborsOfAllPairs() {
+        List<PlacedItem> items = createMixedLayout();
+        LateralContactIndex index = new LateralContactIndex(1, items);
+        SupportGraph graph = SupportGraph.calculate(1, items);
+
+        for (PlacedItem item : items) {
+            Set<PlacedItem> candidates = identitySet(index.getLateralContactCandidates(item));
+            int graphIndex = graph.indexOf(item);
+            for (int position = 0; position < graph.getBelowCount(graphIndex); position++)
+                candidates.add(graph.getItem(graph.getBelow(graphIndex, position)));
+            for (int position = 0; position < graph.getTopCount(graphIndex); position++)
+                candidates.add(graph.getItem(graph.getTop(graphIndex, position)));
+
+            Set<PlacedItem> neighbors = identitySet(Collections.emptyList());
+            Set<PlacedItem> indexedNeighbors = identitySet(Collections.emptyList());
+            for (PlacedItem otherItem : items) {
+                if (otherItem == item || !item.checkForNeighborhood(otherItem))
+                    continue;
+                neighbors.add(otherItem);
+                if (candidates.contains(otherItem))
+                    indexedNeighbors.add(otherItem);
+            }
+            assertEquals(neighbors, indexedNeighbors, item.itemLabel);
+        }
+    }
+
+    /**
+     * Like the baseline, the sides counted from all items include the item itself
+     */
+    @Test
+    void countsTheSupportedSidesOfAllPairs() {
+        List<PlacedItem> items = createMixedLayout();
+        LateralContactIndex index = new LateralContactIndex(1, items);
+
+        for (PlacedItem item : items)
+            assertEquals(countSupportedSides(item, items),
+                    countSupportedSides(item, index.getLateralContactCandidates(item)), item.itemLabel);
+    }
+
+    @Test
+    void decidesTheLateralSupportOfAllPairs() {
+        List<PlacedItem> items = createMixedLayout();
+        LateralContactIndex index = new LateralContactIndex(1, items);
+
+        for (PlacedItem item : items) {
+            List<PlacedItem> otherItems = new ArrayList<>(items);
+            otherItems.remove(item);
+
+            assertEquals(item.hasXSupport(otherItems, PALLET_WIDTH), item.hasXSupport(index, PALLET_WIDTH),
+                    item.itemLabel);
+            assertEquals(item.hasZSupport(otherItems, PALLET_DEPTH), item.hasZSupport(index, PALLET_DEPTH),
+                    item.itemLabel);
+        }
+    }
+
+    /**
+     * The sides counted by {@link com.wim.palletizing.model.ULD#getNumberOfSupportedSides(PlacedItem)}
+     */
+    private static int countSupportedSides(PlacedItem item, Collection<PlacedItem> otherItems) {
+        EnumSet<PackingSide> supportedSides = EnumSet.noneOf(PackingSide.class);
+        for (PlacedItem otherItem : otherItems) {
+            if (otherItem.isRightNeighborOf(item))
+                supportedSides.add(PackingSide.RIGHT);
+            else if (otherItem.isLeftNeighborOf(item))
+                supportedSides.add(PackingSide.LEFT);
+            else if (otherItem.isBehind(item))
+                supportedSides.add(PackingSide.BACK);
+            else if (otherItem.isInFrontOf(item))
+                supportedSides.add(PackingSide.FRONT);
+        }
+        return supportedSides.size();
+    }
+
+    private static Set<PlacedItem> identitySet(Collection<PlacedItem> items) {
+        Set<PlacedItem> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(items);
+        return set;
+    }
+}
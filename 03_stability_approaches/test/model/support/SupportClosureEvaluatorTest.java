@@ -0,0 +1,85 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the {@link SupportClosureEvaluator} with the recursive evaluation of the items below it replaces
+ */
+class SupportClosureEvaluatorTest {
+
+    /**
+     * The local stability depends on the items placed on top, like the resultant force Ramos checks
+     */
+    @Test
+    void evaluatesLikeTheRecursion() {
+        for (long seed = 0; seed < 100; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, 1 + (int) (seed % 40));
+            SupportGraph supportGraph = SupportGraph.calculate(1, items);
+            SupportClosureEvaluator.LocalStability localStability = (index, step) ->
+                    isLocallyStable(supportGraph, index, step);
+
+            // in sequence order, like the criteria, and at random steps, which invalidate the memoized results
+            SupportClosureEvaluator evaluator = new SupportClosureEvaluator(supportGraph, localStability);
+            for (int step = 0; step < items.size(); step++)
+                for (int index = 0; index < items.size(); index++)
+                    assertEquals(isStableRecursively(supportGraph, localStability, index, step),
+                            evaluator.isStable(index, step), "seed " + seed + ", step " + step + ", item " + index);
+
+            Random random = new Random(seed);
+            for (int query = 0; query < 200; query++) {
+                int index = random.nextInt(items.size()), step = random.nextInt(items.size());
+                assertEquals(isStableRecursively(supportGraph, localStability, index, step),
+                        evaluator.isStable(index, step), "seed " + seed + ", step " + step + ", item " + index);
+            }
+        }
+    }
+
+    @Test
+    void evaluatesDeepStacks() {
+        List<PlacedItem> items = new ArrayList<>();
+        for (int sequence = 0; sequence < 50000; sequence++)
+            items.add(new PlacedItem("item" + sequence, 1, 1, null, null, new Box(1, 1, 1), null, 0, sequence, 0,
+                    sequence, 0, null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null));
+        SupportGraph supportGraph = SupportGraph.calculate(1, items);
+        int top = items.size() - 1;
+
+        assertTrue(new SupportClosureEvaluator(supportGraph, (index, step) -> true).isStable(top, top));
+        assertFalse(new SupportClosureEvaluator(supportGraph, (index, step) -> index != 1).isStable(top, top));
+    }
+
+    /**
+     * An arbitrary stability of the item with the items on top placed at the step
+     */
+    private static boolean isLocallyStable(SupportGraph supportGraph, int index, int step) {
+        int placedOnTop = 0;
+        for (int position = 0; position < supportGraph.getTopCount(index); position++)
+            if (supportGraph.getItem(supportGraph.getTop(index, position)).sequence <= step)
+                placedOnTop++;
+        return (index * 31 + placedOnTop * 17) % 5 != 0;
+    }
+
+    private static boolean isStableRecursively(SupportGraph supportGraph,
+                                               SupportClosureEvaluator.LocalStability localStability, int index,
+                                               int step) {
+        if (supportGraph.getItem(index).isBottomItem())
+            return true;
+        if (!localStability.isLocallyStable(index, step))
+            return false;
+        for (int position = 0; position < supportGraph.getBelowCount(index); position++)
+            if (!isStableRecursively(supportGraph, localStability, supportGraph.getBelow(index, position), step))
+                return false;
+        return true;
+    }
+}
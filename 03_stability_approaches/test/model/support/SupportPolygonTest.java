@@ -0,0 +1,106 @@
+package com.wim.palletizing.model.support;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.ItemCoordinates;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.algorithm.ConvexHull;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the containment test of the {@link SupportPolygon} with the convex hull of JTS it replaces
+ */
+class SupportPolygonTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    /**
+     * Random point sets on a half unit grid, including single points, duplicates and collinear points, queried on
+     * the vertices, edges and inside and outside of their hull
+     */
+    @Test
+    void containsLikeTheConvexHullOfJts() {
+        PlacedItem itemBelow = new PlacedItem("below", 1, 1, null, null, new Box(1, 1, 1), null, 100, 0, 100, 0, 0,
+                null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+        Random random = new Random(8);
+
+        for (int set = 0; set < 500; set++) {
+            List<Point2D> points = new ArrayList<>();
+            int pointCount = 1 + random.nextInt(8);
+            boolean collinear = set % 5 == 0;
+            for (int i = 0; i < pointCount; i++) {
+                double x = random.nextInt(9) * 0.5;
+                points.add(new Point2D(x, collinear ? x : random.nextInt(9) * 0.5));
+            }
+            SupportPolygon supportPolygon = SupportPolygon.calculate(Collections.singletonList(itemBelow),
+                    Collections.singletonList(points));
+            Geometry hull = convexHull(points);
+
+            for (double x = -0.5; x <= 4.5; x += 0.25)
+                for (double z = -0.5; z <= 4.5; z += 0.25)
+                    assertEquals(contains(hull, x, z), supportPolygon.hullContains(x, z),
+                            "points " + points + " at " + x + ", " + z);
+        }
+    }
+
+    /**
+     * The support polygons of the support graph on random layouts, queried on the footprint of every item on a
+     * quarter unit grid, which includes the corners Pacquay tests and the edges of the items below
+     */
+    @Test
+    void supportsLikeTheContactPointsOfTheItemsBelow() {
+        for (long seed = 0; seed < 100; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, 1 + (int) (seed % 30));
+            SupportGraph supportGraph = SupportGraph.calculate(1, items);
+
+            for (PlacedItem item : items) {
+                SupportPolygon supportPolygon = supportGraph.getSupportPolygon(supportGraph.indexOf(item));
+                ItemCoordinates coordinates = item.getItemCoordinates();
+                for (double x = coordinates.getX(); x <= coordinates.getMaxX(); x += 0.25)
+                    for (double z = coordinates.getZ(); z <= coordinates.getMaxZ(); z += 0.25)
+                        assertEquals(isSupportedByJts(item, x, z), supportPolygon.isSupported(x, z),
+                                "seed " + seed + ", " + item.itemLabel + " at " + x + ", " + z);
+            }
+        }
+    }
+
+    /**
+     * The support test before the support polygons were cached: a point on an item below or strictly inside the JTS
+     * convex hull of all contact points with the items below
+     */
+    private static boolean isSupportedByJts(PlacedItem item, double x, double z) {
+        List<Point2D> contactPoints = new ArrayList<>();
+        for (PlacedItem itemBelow : item.getEnvironmentRelations().getItemsBelow()) {
+            ItemCoordinates below = itemBelow.getItemCoordinates();
+            if (below.getX() <= x && x <= below.getMaxX() && below.getZ() <= z && z <= below.getMaxZ())
+                return true;
+            contactPoints.addAll(item.shape.getContactPointsWithBottomShape(itemBelow.shape,
+                    toPoint3D(item.getItemCoordinates()), toPoint3D(below)));
+        }
+        return contains(convexHull(contactPoints), x, z);
+    }
+
+    private static Geometry convexHull(List<Point2D> points) {
+        Coordinate[] coordinates = new Coordinate[points.size()];
+        for (int i = 0; i < points.size(); i++)
+            coordinates[i] = new Coordinate(points.get(i).x, points.get(i).y);
+        return new ConvexHull(coordinates, GEOMETRY_FACTORY).getConvexHull();
+    }
+
+    private static boolean contains(Geometry geometry, double x, double z) {
+        return geometry.contains(GEOMETRY_FACTORY.createPoint(new Coordinate(x, z)));
+    }
+
+    private static Point3D toPoint3D(ItemCoordinates coordinates) {
+        return new Point3D(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+}
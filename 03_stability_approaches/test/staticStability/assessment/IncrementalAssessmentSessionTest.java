@@ -0,0 +1,86 @@
+package com.wim.assessment.staticStability;
+
+import com.wim.palletizing.assessment.staticStability.sme.ScienceOfStaticAssessmentService;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.EnvironmentRelations;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Compares the SME score of a session after every append and removal with the one of assessing new items of the
+ * appended layout at once
+ */
+class IncrementalAssessmentSessionTest {
+
+    private static final int ITEM_COUNT = 24;
+
+    @Test
+    void scoresLikeTheServiceWhileAppendingAndRemoving() {
+        for (long seed = 0; seed < 40; seed++) {
+            IncrementalAssessmentSession session = new IncrementalAssessmentSession(
+                    new ScienceOfStaticAssessmentService());
+            appendAndRemove(seed, session, TestLayouts.createLayout(seed, ITEM_COUNT));
+        }
+    }
+
+    /**
+     * The items carry the relations of the whole layout, e.g. of a {@link com.wim.palletizing.model.ULD} they have
+     * been taken from. The session uses the relations of its own graph and leaves the ones of the items as they are.
+     */
+    @Test
+    void keepsTheEnvironmentRelationsOfTheItems() {
+        for (long seed = 100; seed < 120; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, ITEM_COUNT);
+            TestLayouts.calculateSupportStructureOfAllPairs(items);
+            List<EnvironmentRelations> relations = new ArrayList<>();
+            List<List<PlacedItem>> itemsBelow = new ArrayList<>(), itemsOnTop = new ArrayList<>();
+            for (PlacedItem item : items) {
+                relations.add(item.getEnvironmentRelations());
+                itemsBelow.add(new ArrayList<>(item.getEnvironmentRelations().getItemsBelow()));
+                itemsOnTop.add(new ArrayList<>(item.getEnvironmentRelations().getItemsOnTop()));
+            }
+
+            IncrementalAssessmentSession session = new IncrementalAssessmentSession(
+                    new ScienceOfStaticAssessmentService());
+            appendAndRemove(seed, session, items);
+
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                String item = "seed " + seed + ", " + items.get(i).itemLabel;
+                assertSame(relations.get(i), items.get(i).getEnvironmentRelations(), item);
+                assertEquals(itemsBelow.get(i), items.get(i).getEnvironmentRelations().getItemsBelow(), item);
+                assertEquals(itemsOnTop.get(i), items.get(i).getEnvironmentRelations().getItemsOnTop(), item);
+            }
+        }
+    }
+
+    /**
+     * Appends all items, removes the second half and appends it again, comparing the score after every step
+     */
+    private static void appendAndRemove(long seed, IncrementalAssessmentSession session, List<PlacedItem> items) {
+        for (PlacedItem item : items) {
+            session.append(item);
+            assertSmeScore(seed, session);
+        }
+        while (session.getItemCount() > ITEM_COUNT / 2) {
+            session.removeLast();
+            assertSmeScore(seed, session);
+        }
+        for (PlacedItem item : items.subList(session.getItemCount(), ITEM_COUNT)) {
+            session.append(item);
+            assertSmeScore(seed, session);
+        }
+    }
+
+    private static void assertSmeScore(long seed, IncrementalAssessmentSession session) {
+        List<PlacedItem> items = TestLayouts.createLayout(seed, session.getItemCount());
+        TestLayouts.calculateSupportStructureOfAllPairs(items);
+        assertEquals(new ScienceOfStaticAssessmentService().assesItemList(items), session.getSmeScore(),
+                "seed " + seed + ", " + session.getItemCount() + " items");
+    }
+}
@@ -0,0 +1,39 @@
+package com.wim.assessment.staticStability.baseSupport;
+
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.model.ULD;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PacquayCriterionTest {
+
+    private static PlacedItem item(int sequence, int x, int y, int z, int width, int depth) {
+        return new PlacedItem("item" + sequence, 1, 1, null, null, new Box(width, 1, depth), null, x, y, z, sequence,
+                0, null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+    }
+
+    /**
+     * The top item overhangs both items below, its fourth corner lies outside the hull of the contact points
+     */
+    @Test
+    void acceptsThreeSupportedCorners() {
+        ULD uld = new ULD(null, Arrays.asList(item(0, 0, 0, 0, 4, 4), item(1, 4, 0, 0, 2, 2),
+                item(2, 2, 1, 0, 4, 4)));
+        assertEquals(1.0, new PacquayCriterion(1).assessUld(uld));
+    }
+
+    /**
+     * The third item only rests on a corner of the second one, so the layout is stable up to the second item
+     */
+    @Test
+    void stopsAtTheFirstItemWithTwoSupportedCorners() {
+        ULD uld = new ULD(null, Arrays.asList(item(0, 0, 0, 0, 4, 4), item(1, 0, 1, 0, 4, 4),
+                item(2, 2, 2, 2, 4, 4), item(3, 0, 2, 0, 2, 2)));
+        assertEquals(2.0 / 4, new PacquayCriterion(1).assessUld(uld));
+    }
+}
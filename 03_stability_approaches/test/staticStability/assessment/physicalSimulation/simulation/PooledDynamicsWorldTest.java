@@ -0,0 +1,103 @@
+package com.wim.assessment.staticStability.physicalSimulation.simulation;
+
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+import com.wim.palletizing.model.StabilityAssessmentEvaluationConfiguration;
+import org.junit.jupiter.api.Test;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares simulations in a world that has been reset after other simulations with the same ones in a new world
+ */
+class PooledDynamicsWorldTest {
+
+    private static final int BOX_COUNT = 12;
+    private static final int RESOLUTION = 60;
+    private static final float TIME = 2f;
+
+    @Test
+    void simulatesLikeANewWorldAfterAReset() {
+        for (String broadPhase : new String[]{"simple", "dvbt", "axissweep"}) {
+            StabilityAssessmentEvaluationConfiguration config = createConfiguration(broadPhase);
+            PooledDynamicsWorld pooledWorld = new PooledDynamicsWorld(config);
+            for (long seed = 0; seed < 10; seed++) {
+                float[] expected = simulate(new PooledDynamicsWorld(config), seed);
+                float[] actual = simulate(pooledWorld, seed);
+                assertArrayEquals(expected, actual, broadPhase + ", seed " + seed);
+
+                pooledWorld.reset();
+                assertEquals(1, pooledWorld.getNumCollisionObjects(), broadPhase + ", seed " + seed);
+            }
+        }
+    }
+
+    private static StabilityAssessmentEvaluationConfiguration createConfiguration(String broadPhase) {
+        return new StabilityAssessmentEvaluationConfiguration(0.1f, RESOLUTION, TIME, 10, 0.2f, 0.5f, 0f, 0f, 0.01f,
+                broadPhase, 0.01f, 0f);
+    }
+
+    /**
+     * Drops boxes of random sizes onto each other, adding one box per step like the physical simulation
+     *
+     * @return the positions and rotations of all boxes after the last step
+     */
+    private static float[] simulate(PooledDynamicsWorld world, long seed) {
+        Random random = new Random(seed);
+        List<RigidBody> bodies = new ArrayList<>();
+        for (int i = 0; i < BOX_COUNT; i++) {
+            Vector3f halfExtents = new Vector3f(0.2f + 0.3f * random.nextFloat(), 0.1f + 0.2f * random.nextFloat(),
+                    0.2f + 0.3f * random.nextFloat());
+            Vector3f origin = new Vector3f(random.nextFloat(), 0.5f + 0.6f * i, random.nextFloat());
+            RigidBody body = createBox(halfExtents, origin);
+            bodies.add(body);
+
+            world.addRigidBody(body);
+            world.stepSimulation(1f / RESOLUTION, 1, 1f / RESOLUTION);
+        }
+        world.stepSimulation(TIME, (int) (TIME * RESOLUTION), 1f / RESOLUTION);
+
+        float[] transforms = new float[bodies.size() * 7];
+        Transform transform = new Transform();
+        Quat4f rotation = new Quat4f();
+        for (int i = 0; i < bodies.size(); i++) {
+            bodies.get(i).getWorldTransform(transform);
+            transform.getRotation(rotation);
+            transforms[7 * i] = transform.origin.x;
+            transforms[7 * i + 1] = transform.origin.y;
+            transforms[7 * i + 2] = transform.origin.z;
+            transforms[7 * i + 3] = rotation.x;
+            transforms[7 * i + 4] = rotation.y;
+            transforms[7 * i + 5] = rotation.z;
+            transforms[7 * i + 6] = rotation.w;
+        }
+        return transforms;
+    }
+
+    private static RigidBody createBox(Vector3f halfExtents, Vector3f origin) {
+        Transform transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(origin);
+
+        BoxShape shape = new BoxShape(halfExtents);
+        float mass = 8 * halfExtents.x * halfExtents.y * halfExtents.z;
+        Vector3f inertia = new Vector3f();
+        shape.calculateLocalInertia(mass, inertia);
+
+        RigidBodyConstructionInfo constructionInfo = new RigidBodyConstructionInfo(mass,
+                new DefaultMotionState(transform), shape, inertia);
+        constructionInfo.restitution = 0.2f;
+        constructionInfo.friction = 0.5f;
+        return new RigidBody(constructionInfo);
+    }
+}
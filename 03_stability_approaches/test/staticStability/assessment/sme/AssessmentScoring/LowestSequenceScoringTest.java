@@ -0,0 +1,56 @@
+package com.wim.assessment.staticStability.sme.AssessmentScoring;
+
+import com.wim.palletizing.assessment.staticStability.sme.model.StabilityMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the scoring of the packed words with the one of the three-valued matrix
+ */
+class LowestSequenceScoringTest {
+
+    @Test
+    void scoresThePackedMatrixLikeTheThreeValuedOne() {
+        LowestSequenceScoring scoring = new LowestSequenceScoring();
+        Random random = new Random(13);
+
+        for (int matrix = 0; matrix < 200; matrix++) {
+            int itemCount = 1 + random.nextInt(150);
+            StabilityMatrix stabilityMatrix = new StabilityMatrix(itemCount, itemCount);
+            for (int item = 0; item < itemCount; item++) {
+                int length = random.nextInt(itemCount + 1);
+                BitSet placed = new BitSet(), stable = new BitSet();
+                placed.set(Math.min(item, length), length);
+                stable.set(Math.min(item, length), length);
+                // most rows are stable, so the first unstable sequence varies between the matrices
+                if (random.nextInt(4) == 0 && length > 0)
+                    stable.clear(random.nextInt(length));
+                stabilityMatrix.setRow(item, length, placed, stable);
+
+                assertEquals(scoring.optimizeMaxSequence(stabilityMatrix.getRow(item)),
+                        scoring.optimizeMaxSequence(stabilityMatrix, item), "matrix " + matrix + ", item " + item);
+            }
+            assertEquals(scoring.scoreStabilityMatrix(stabilityMatrix.toBooleanMatrix()),
+                    scoring.scoreStabilityMatrix(stabilityMatrix), "matrix " + matrix);
+        }
+    }
+
+    @Test
+    void scoresTheFirstUnstableSequence() {
+        Boolean[][] stabilityMatrix = {
+                {true, true, true, true},
+                {null, true, false, null},
+                {null, null, true, false},
+                {null, null, null, true}};
+        LowestSequenceScoring scoring = new LowestSequenceScoring();
+
+        assertEquals(2.0 / 4, scoring.scoreStabilityMatrix(stabilityMatrix));
+        assertEquals(4, scoring.optimizeMaxSequence(stabilityMatrix[0]));
+        assertEquals(3, scoring.optimizeMaxSequence(stabilityMatrix[1]));
+        assertEquals(1.0, scoring.scoreStabilityMatrix(new Boolean[][]{{true, null}, {null, true}}));
+    }
+}
@@ -0,0 +1,117 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ItemStabilityAssessor;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the forceItems calculated at the change points of their forces with solving every sequence
+ */
+class ForceItemCalculationTest {
+
+    @Test
+    void calculatesTheForcesOfEverySequence() {
+        int changePointCount = 0, sequenceCount = 0;
+
+        for (long seed = 0; seed < 100; seed++) {
+            int itemCount = 1 + (int) (seed % 30);
+            List<PlacedItem> items = TestLayouts.createLayout(seed, itemCount);
+            TestLayouts.calculateSupportStructureOfAllPairs(items);
+
+            // the items on top of an item have been dropped after it
+            Map<PlacedItem, ForceItemDTO> atChangePoints = new IdentityHashMap<>();
+            Map<PlacedItem, ForceItemDTO> atEverySequence = new IdentityHashMap<>();
+            for (int i = items.size() - 1; i >= 0; i--) {
+                PlacedItem item = items.get(i);
+                atChangePoints.put(item, ForceItemCalculation.createForceItem(item,
+                        getForceItemsOnTop(item, atChangePoints), itemCount));
+                atEverySequence.put(item, createForceItemAtEverySequence(item,
+                        getForceItemsOnTop(item, atEverySequence), itemCount));
+            }
+
+            for (PlacedItem item : items) {
+                String label = "seed " + seed + ", " + item.itemLabel;
+                ForceItemDTO forceItem = atChangePoints.get(item), expected = atEverySequence.get(item);
+                assertSameForces(expected.getRESULTANT_FORCES(), forceItem.getRESULTANT_FORCES(), label);
+                assertSameForces(expected.getREACTION_FORCES(), forceItem.getREACTION_FORCES(), label);
+                assertEquals(expected.getSTABLE_PER_SEQUENCE(), forceItem.getSTABLE_PER_SEQUENCE(), label);
+
+                changePointCount += forceItem.getCHANGE_POINTS().length;
+                sequenceCount += itemCount - item.sequence;
+            }
+        }
+
+        // most sequences take over the forces of the previous one
+        assertTrue(changePointCount < sequenceCount / 2, changePointCount + " of " + sequenceCount);
+    }
+
+    private static List<ForceItemDTO> getForceItemsOnTop(PlacedItem item, Map<PlacedItem, ForceItemDTO> forceItems) {
+        List<ForceItemDTO> forceItemsOnTop = new ArrayList<>();
+        for (PlacedItem itemOnTop : item.getEnvironmentRelations().getItemsOnTop())
+            forceItemsOnTop.add(forceItems.get(itemOnTop));
+        return forceItemsOnTop;
+    }
+
+    /**
+     * {@link ForceItemCalculation#createForceItem(PlacedItem, List, int)} with every sequence as change point, so
+     * the forces of every sequence are gathered and solved
+     */
+    private static ForceItemDTO createForceItemAtEverySequence(PlacedItem placedItem,
+                                                               List<ForceItemDTO> forceItemsOnTop, int maxSequence) {
+        Pair<Point2D, Double> gravitationForce = GravitationForceCalculator.calculateGravitationForce(
+                placedItem.getAbsoluteCenterOfMassPoint(), placedItem.weight);
+        List<Pair<Point2D, PlacedItem>> reactionPoints = ReactionPointCalculator.calculateReactionPoints(placedItem,
+                new ArrayList<>(placedItem.getEnvironmentRelations().getItemsBelow()));
+
+        int[] everySequence = new int[Math.max(0, maxSequence - placedItem.sequence)];
+        for (int i = 0; i < everySequence.length; i++)
+            everySequence[i] = placedItem.sequence + i;
+
+        ForceSegments actionForces = ActionForceGatherer.gatherRelatedActionForcesFromTopItems(placedItem.sequence,
+                placedItem.sequence, forceItemsOnTop, maxSequence, everySequence);
+        ForceSegments resultantForces = ResultantForceCalculator.calculateResultantForcesForAllSequences(
+                placedItem.sequence, maxSequence, gravitationForce, actionForces, everySequence);
+        ForceSegments reactionForces = ReactionForceCalculator.calculateReactionForces(placedItem.sequence,
+                maxSequence, reactionPoints, resultantForces, everySequence, null, new ReferenceReactionForceSolver(),
+                null);
+
+        BitSet stablePerSequence = ItemStabilityAssessor.getStabilityFromReactionForcesPerSequence(
+                placedItem.sequence, maxSequence, reactionForces);
+        BitSet placedPerSequence = ItemStabilityAssessor.getPlacedSequences(placedItem.sequence, maxSequence);
+        return new ForceItemDTO(placedItem, gravitationForce, reactionPoints, actionForces, resultantForces,
+                reactionForces, everySequence, maxSequence, placedPerSequence, stablePerSequence);
+    }
+
+    private static void assertSameForces(ForceSegments expected, ForceSegments actual, String label) {
+        for (int sequence = expected.getStartSequence(); sequence < expected.getMaxSequence(); sequence++) {
+            String entry = label + ", sequence " + sequence;
+            assertEquals(expected.contains(sequence), actual.contains(sequence), entry);
+            if (!expected.contains(sequence))
+                continue;
+
+            int expectedStart = expected.getSegmentStart(sequence), start = actual.getSegmentStart(sequence);
+            int length = expected.getSegmentEnd(sequence) - expectedStart;
+            assertEquals(length, actual.getSegmentEnd(sequence) - start, entry);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected.getX(expectedStart + i), actual.getX(start + i), entry);
+                assertEquals(expected.getZ(expectedStart + i), actual.getZ(start + i), entry);
+                assertEquals(expected.getMagnitude(expectedStart + i), actual.getMagnitude(start + i), entry);
+                assertEquals(expected.getReference(expectedStart + i), actual.getReference(start + i), entry);
+            }
+        }
+    }
+}
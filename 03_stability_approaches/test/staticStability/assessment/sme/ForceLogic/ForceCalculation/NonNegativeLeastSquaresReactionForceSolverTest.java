@@ -0,0 +1,160 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the {@link NonNegativeLeastSquaresReactionForceSolver} with the {@link ReferenceReactionForceSolver}
+ */
+class NonNegativeLeastSquaresReactionForceSolverTest {
+
+    private static final PlacedItem PLACED = item(0);
+    private static final PlacedItem PLACED_LATER = item(5);
+
+    private static PlacedItem item(int sequence) {
+        return new PlacedItem("item" + sequence, 1, 1, null, null, new Box(1, 1, 1), null, 0, 0, 0, sequence, 0,
+                null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+    }
+
+    private static Pair<Point2D, PlacedItem> point(double x, double z, PlacedItem item) {
+        return new Pair<>(new Point2D(x, z), item);
+    }
+
+    private static List<Pair<Point2D, PlacedItem>> createReactionPoints(Random random, int count,
+                                                                       Pair<Point2D, Double> resultantForce) {
+        List<Pair<Point2D, PlacedItem>> reactionPoints = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            reactionPoints.add(point(random.nextInt(41) / 2.0, random.nextInt(41) / 2.0, PLACED));
+        reactionPoints.sort(Comparator.comparingDouble(point -> resultantForce.first.distance(point.first)));
+        return reactionPoints;
+    }
+
+    private static Pair<Point2D, Double> createResultantForce(Random random) {
+        return new Pair<>(new Point2D(5 + random.nextDouble() * 10, 5 + random.nextDouble() * 10),
+                1.0 + random.nextInt(50));
+    }
+
+    /**
+     * The forces may be distributed to other reactionPoints than the ones of the reference, but they carry the item
+     * whenever the reference finds a solution. The reference decides about zero pivots on rounded values, so some of
+     * its solutions don't balance the item; these are not compared.
+     */
+    @Test
+    void balancesTheResultantForceWheneverTheReferenceDoes() {
+        NonNegativeLeastSquaresReactionForceSolver solver = new NonNegativeLeastSquaresReactionForceSolver();
+        Random random = new Random(19);
+        int solvable = 0;
+
+        for (int system = 0; system < 2000; system++) {
+            Pair<Point2D, Double> resultantForce = createResultantForce(random);
+            List<Pair<Point2D, PlacedItem>> reactionPoints = createReactionPoints(random, 1 + random.nextInt(15),
+                    resultantForce);
+            String label = "system " + system;
+
+            ReactionForceSolutionCache.Solution reference =
+                    new ReferenceReactionForceSolver().solve(0, reactionPoints, resultantForce);
+            ReactionForceSolutionCache.Solution solution = solver.solve(0, reactionPoints, resultantForce).copy();
+
+            if (solution.isSolvable())
+                assertTrue(isBalanced(reactionPoints, resultantForce, solution), label);
+
+            // on the border of the hull, rounding decides whether the item is supported
+            double border = 0.01 * resultantForce.second;
+            if (!reference.isSolvable() || Arrays.stream(reference.getForces()).min().orElse(0) < border
+                    || !isBalanced(reactionPoints, resultantForce, reference))
+                continue;
+            solvable++;
+            assertTrue(solution.isSolvable(), label);
+        }
+
+        assertTrue(solvable > 100, solvable + " solvable systems");
+    }
+
+    /**
+     * @return true if the forces are non-negative, sum up to the magnitude and their center is the resultant force
+     * point
+     */
+    private static boolean isBalanced(List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                      Pair<Point2D, Double> resultantForce,
+                                      ReactionForceSolutionCache.Solution solution) {
+        double sum = 0, momentX = 0, momentZ = 0;
+        for (int k = 0; k < solution.getLength(); k++) {
+            double force = solution.getForces()[k];
+            Point2D point = reactionPoints.get(solution.getPointIndices()[k]).first;
+            if (force < 0)
+                return false;
+            sum += force;
+            momentX += force * point.x;
+            momentZ += force * point.y;
+        }
+        return Math.abs(sum - resultantForce.second) <= 0.01 * resultantForce.second
+                && Math.abs(momentX / sum - resultantForce.first.x) <= 0.01
+                && Math.abs(momentZ / sum - resultantForce.first.y) <= 0.01;
+    }
+
+    @Test
+    void carriesTheItemByThePlacedReactionPointsOnly() {
+        List<Pair<Point2D, PlacedItem>> reactionPoints = Arrays.asList(point(9, 9, PLACED), point(11, 9, PLACED),
+                point(10, 12, PLACED_LATER), point(8, 8, PLACED));
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 30.0);
+        NonNegativeLeastSquaresReactionForceSolver solver = new NonNegativeLeastSquaresReactionForceSolver();
+
+        assertFalse(solver.solve(1, reactionPoints, resultantForce).isSolvable());
+        ReactionForceSolutionCache.Solution solution = solver.solve(5, reactionPoints, resultantForce).copy();
+        assertTrue(solution.isSolvable());
+        assertTrue(isBalanced(reactionPoints, resultantForce, solution));
+    }
+
+    /**
+     * The buffers of the thread are reused, so a system solved after a larger one has the same solution as before
+     */
+    @Test
+    void solvesTheSameAfterALargerSystem() {
+        NonNegativeLeastSquaresReactionForceSolver solver = new NonNegativeLeastSquaresReactionForceSolver();
+        Random random = new Random(191);
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 20.0);
+        List<Pair<Point2D, PlacedItem>> reactionPoints = Arrays.asList(point(9, 9, PLACED), point(11, 9, PLACED),
+                point(10, 12, PLACED), point(8, 8, PLACED));
+
+        ReactionForceSolutionCache.Solution first = solver.solve(0, reactionPoints, resultantForce).copy();
+        solver.solve(0, createReactionPoints(random, 40, resultantForce), resultantForce);
+        ReactionForceSolutionCache.Solution second = solver.solve(0, reactionPoints, resultantForce).copy();
+
+        assertArrayEquals(first.getPointIndices(), second.getPointIndices());
+        assertArrayEquals(first.getForces(), second.getForces(), 0);
+    }
+
+    @Test
+    void recordsTheIterationsOfEverySystem() {
+        NonNegativeLeastSquaresReactionForceSolver solver = new NonNegativeLeastSquaresReactionForceSolver();
+        SolverMetrics metrics = new SolverMetrics();
+        Random random = new Random(192);
+
+        for (int system = 0; system < 100; system++) {
+            Pair<Point2D, Double> resultantForce = createResultantForce(random);
+            solver.solve(0, createReactionPoints(random, 1 + random.nextInt(15), resultantForce), resultantForce,
+                    metrics);
+        }
+
+        SolverMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(100, snapshot.getIterations().getCount());
+        assertEquals(100, snapshot.getUniqueSolutions() + snapshot.getNoSolutions());
+        assertEquals(100, snapshot.getSystemDimensions().getCount());
+        assertTrue(snapshot.getIterations().getMax() > 1);
+    }
+}
@@ -0,0 +1,144 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReactionForceSolutionCacheTest {
+
+    private static final PlacedItem FIRST_BELOW = item(0), SECOND_BELOW = item(1);
+
+    private static PlacedItem item(int sequence) {
+        return new PlacedItem("item" + sequence, 1, 1, null, null, new Box(1, 1, 1), null, 0, 0, 0, sequence, 0, null,
+                null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+    }
+
+    private static Pair<Point2D, PlacedItem> point(double x, double z, PlacedItem itemBelow) {
+        return new Pair<>(new Point2D(x, z), itemBelow);
+    }
+
+    private static Pair<Point2D, Double> force(double x, double z, double magnitude) {
+        return new Pair<>(new Point2D(x, z), magnitude);
+    }
+
+    private static ReactionForceSolutionCache.Solution solution(double force) {
+        return new ReactionForceSolutionCache.Solution(new int[]{0}, new double[]{force});
+    }
+
+    /**
+     * Stores the solution under the key of the configuration and looks it up with the key of another one
+     */
+    private static ReactionForceSolutionCache.Solution putAndGet(int sequence, List<Pair<Point2D, PlacedItem>> points,
+                                                                 Pair<Point2D, Double> resultant, int otherSequence,
+                                                                 List<Pair<Point2D, PlacedItem>> otherPoints,
+                                                                 Pair<Point2D, Double> otherResultant) {
+        ReactionForceSolutionCache cache = new ReactionForceSolutionCache();
+        cache.put(ReactionForceSolutionCache.createKey(sequence, points, resultant), solution(1));
+        return cache.get(ReactionForceSolutionCache.createKey(otherSequence, otherPoints, otherResultant));
+    }
+
+    @Test
+    void findsTheSameConfigurationAtAnotherPosition() {
+        List<Pair<Point2D, PlacedItem>> points = Arrays.asList(point(0, 0, FIRST_BELOW), point(2, 0, SECOND_BELOW));
+        List<Pair<Point2D, PlacedItem>> movedPoints = Arrays.asList(point(3.25, 1, FIRST_BELOW),
+                point(5.25, 1, SECOND_BELOW));
+
+        assertNotNull(putAndGet(1, points, force(1, 0.5, 10), 1, movedPoints, force(4.25, 1.5, 10)));
+        // both items below are placed in both sequences
+        assertNotNull(putAndGet(1, points, force(1, 0.5, 10), 5, points, force(1, 0.5, 10)));
+    }
+
+    @Test
+    void distinguishesConfigurationsDifferingInOneValue() {
+        List<Pair<Point2D, PlacedItem>> points = Arrays.asList(point(0, 0, FIRST_BELOW), point(2, 0, SECOND_BELOW));
+        Pair<Point2D, Double> resultant = force(1, 0.5, 10);
+
+        assertNull(putAndGet(1, points, resultant, 1, points, force(1, 0.5, 10.000001)));
+        assertNull(putAndGet(1, points, resultant, 1, points, force(1.01, 0.5, 10)));
+        assertNull(putAndGet(1, points, resultant, 1,
+                Arrays.asList(point(0, 0, FIRST_BELOW), point(2, 0.01, SECOND_BELOW)), resultant));
+        // the second item below is not placed yet
+        assertNull(putAndGet(1, points, resultant, 0, points, resultant));
+        assertNull(putAndGet(1, points, resultant, 1,
+                Arrays.asList(point(2, 0, SECOND_BELOW), point(0, 0, FIRST_BELOW)), resultant));
+        assertNull(putAndGet(1, points, resultant, 1, points.subList(0, 1), resultant));
+    }
+
+    /**
+     * The offsets 0.01 and 2^32 hundredths have the same hash code, so the keys collide in the hash map
+     */
+    @Test
+    void distinguishesConfigurationsWithTheSameHashCode() {
+        Pair<Point2D, Double> resultant = force(0, 0, 10);
+        List<Pair<Point2D, PlacedItem>> points = Arrays.asList(point(0.01, 0, FIRST_BELOW));
+        List<Pair<Point2D, PlacedItem>> collidingPoints = Arrays.asList(point((1L << 32) / 100.0, 0, FIRST_BELOW));
+        assertEquals(ReactionForceSolutionCache.createKey(1, points, resultant).hashCode(),
+                ReactionForceSolutionCache.createKey(1, collidingPoints, resultant).hashCode());
+
+        ReactionForceSolutionCache cache = new ReactionForceSolutionCache();
+        cache.put(ReactionForceSolutionCache.createKey(1, points, resultant), solution(1));
+        assertNull(cache.get(ReactionForceSolutionCache.createKey(1, collidingPoints, resultant)));
+        cache.put(ReactionForceSolutionCache.createKey(1, collidingPoints, resultant), solution(2));
+
+        assertEquals(2, cache.size());
+        assertEquals(1.0, cache.get(ReactionForceSolutionCache.createKey(1, points, resultant)).getForces()[0]);
+        assertEquals(2.0, cache.get(ReactionForceSolutionCache.createKey(1, collidingPoints, resultant))
+                .getForces()[0]);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSolution() {
+        ReactionForceSolutionCache cache = new ReactionForceSolutionCache(2);
+        List<Pair<Point2D, PlacedItem>> points = Arrays.asList(point(0, 0, FIRST_BELOW));
+
+        cache.put(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 1)), solution(1));
+        cache.put(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 2)), solution(2));
+        assertNotNull(cache.get(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 1))));
+        cache.put(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 3)), solution(3));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 1))));
+        assertNull(cache.get(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 2))));
+        assertNotNull(cache.get(ReactionForceSolutionCache.createKey(1, points, force(0, 0, 3))));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * The key of a thread and the buffers of a solver are reused after the put, the cache keeps copies
+     */
+    @Test
+    void storesCopiesOfTheKeyAndTheSolution() {
+        ReactionForceSolutionCache cache = new ReactionForceSolutionCache();
+        List<Pair<Point2D, PlacedItem>> points = Arrays.asList(point(0, 0, FIRST_BELOW), point(2, 0, SECOND_BELOW));
+        int[] pointIndices = {1, 0, 7};
+        double[] forces = {4, 6, 7};
+
+        cache.put(ReactionForceSolutionCache.createKey(1, points, force(1, 0, 10)),
+                new ReactionForceSolutionCache.Solution(pointIndices, forces, 2));
+        ReactionForceSolutionCache.createKey(1, points.subList(0, 1), force(0, 0, 5));
+        pointIndices[0] = 9;
+        forces[0] = 9;
+
+        ReactionForceSolutionCache.Solution solution = cache.get(
+                ReactionForceSolutionCache.createKey(1, points, force(1, 0, 10)));
+        assertEquals(2, solution.getLength());
+        assertArrayEquals(new int[]{1, 0}, solution.getPointIndices());
+        assertArrayEquals(new double[]{4, 6}, solution.getForces(), 0);
+    }
+}
@@ -0,0 +1,153 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Places items again after removing them and compares the results with the ones of placing them the first time
+ */
+class SequentialForceCalculationTest {
+
+    /**
+     * After the removal, the forces (including the order of the reactionPoints, which decides between points of the
+     * same distance) are the ones before the removed items had been placed, so placing them again solves the same
+     * systems with the same results
+     */
+    @Test
+    void placesTheItemsAgainLikeBeforeTheirRemoval() {
+        int replaced = 0;
+        for (long seed = 0; seed < 150; seed++) {
+            List<PlacedItem> items = TestLayouts.createLayout(seed, 5 + (int) (seed % 25));
+            TestLayouts.calculateSupportStructureOfAllPairs(items);
+            RecordingSolver solver = new RecordingSolver();
+            SequentialForceCalculation calculation = new SequentialForceCalculation(null, null, solver, true);
+
+            List<String> results = new ArrayList<>();
+            for (PlacedItem item : items) {
+                results.add(place(calculation, solver, item));
+                if (!calculation.isStable())
+                    break;
+            }
+
+            int placedCount = calculation.getPlacedItemCount();
+            for (int removed = 1; removed <= placedCount; removed++) {
+                for (int i = 0; i < removed; i++)
+                    calculation.removeLastItem();
+                assertEquals(placedCount - removed, calculation.getPlacedItemCount());
+                assertTrue(calculation.isStable());
+
+                for (int i = placedCount - removed; i < placedCount; i++) {
+                    assertEquals(results.get(i), place(calculation, solver, items.get(i)),
+                            "seed " + seed + ", " + removed + " removed, " + items.get(i).itemLabel);
+                    replaced++;
+                }
+            }
+        }
+        assertTrue(replaced > 1000, replaced + " items placed again");
+    }
+
+    /**
+     * The reactionPoints of the middle item are equally far from its centered resultantForce, so their order decides
+     * which triple of them carries it. The off-center top item sorts them by its load; after removing it, the centered
+     * top item has to find them in the order from before, like a calculation that never placed the off-center one.
+     */
+    @Test
+    void placesAnotherItemLikeACalculationWithoutTheRemovedOne() {
+        for (int corner = 0; corner < 4; corner++) {
+            double offsetX = corner % 2 == 0 ? -0.75 : 0.75, offsetZ = corner < 2 ? -0.75 : 0.75;
+
+            PlacedItem bottom = item("bottom", 0, 4, 0, 0, 0, 0), middle = item("middle", 1, 2, 1, 1, 0, 0);
+            PlacedItem offCenterTop = item("offCenterTop", 2, 2, 1, 2, offsetX, offsetZ);
+            PlacedItem centeredTop = item("centeredTop", 2, 2, 1, 2, 0, 0);
+            bottom.calculateAndStoreSupportRelation(middle);
+            middle.calculateAndStoreSupportRelation(offCenterTop);
+            middle.calculateAndStoreSupportRelation(centeredTop);
+
+            RecordingSolver solver = new RecordingSolver();
+            SequentialForceCalculation calculation = new SequentialForceCalculation(null, null, solver, true);
+            calculation.placeItem(bottom);
+            calculation.placeItem(middle);
+            calculation.placeItem(offCenterTop);
+            calculation.removeLastItem();
+            String replaced = place(calculation, solver, centeredTop);
+
+            PlacedItem freshBottom = item("bottom", 0, 4, 0, 0, 0, 0), freshMiddle = item("middle", 1, 2, 1, 1, 0, 0);
+            PlacedItem freshTop = item("centeredTop", 2, 2, 1, 2, 0, 0);
+            freshBottom.calculateAndStoreSupportRelation(freshMiddle);
+            freshMiddle.calculateAndStoreSupportRelation(freshTop);
+
+            RecordingSolver freshSolver = new RecordingSolver();
+            SequentialForceCalculation freshCalculation = new SequentialForceCalculation(null, null, freshSolver,
+                    true);
+            freshCalculation.placeItem(freshBottom);
+            freshCalculation.placeItem(freshMiddle);
+            assertEquals(place(freshCalculation, freshSolver, freshTop), replaced, "corner " + corner);
+        }
+    }
+
+    /**
+     * @return a square box of height 1, its center of mass offset from its center
+     */
+    private static PlacedItem item(String label, int sequence, int width, int position, int y, double offsetX,
+                                   double offsetZ) {
+        return new PlacedItem(label, 1, 10, null, null, new Box(width, 1, width), null, position, y, position,
+                sequence, 0, null, null, new Point3D(offsetX, 0, offsetZ), 0.5, 0.5, 0, null);
+    }
+
+    /**
+     * @return the stability after placing the item and the systems solved for it
+     */
+    private static String place(SequentialForceCalculation calculation, RecordingSolver solver, PlacedItem item) {
+        solver.systems.clear();
+        boolean stable = calculation.placeItem(item);
+        return stable + ": " + solver.systems;
+    }
+
+    /**
+     * Reference solver recording the solved systems, with the reactionPoints in the order they are passed
+     */
+    private static class RecordingSolver implements ReactionForceSolver {
+
+        private final ReactionForceSolver reference = new ReferenceReactionForceSolver();
+        private final List<String> systems = new ArrayList<>();
+
+        @Override
+        public ReactionForceSolutionCache.Solution solve(int sequence, List<Pair<Point2D, PlacedItem>> reactionPoints,
+                                                         Pair<Point2D, Double> resultantForce) {
+            StringBuilder system = new StringBuilder().append(sequence);
+            for (Pair<Point2D, PlacedItem> reactionPoint : reactionPoints)
+                system.append(' ').append(reactionPoint.second.sequence).append('@').append(reactionPoint.first.x)
+                        .append(',').append(reactionPoint.first.y);
+
+            ReactionForceSolutionCache.Solution solution = reference.solve(sequence, reactionPoints, resultantForce);
+            systems.add(system + " -> " + (solution.isSolvable()
+                    ? Arrays.toString(solution.getPointIndices()) + Arrays.toString(solution.getForces())
+                    : "unsolvable"));
+            return solution;
+        }
+    }
+
+    @Test
+    void removesOnlyIfUndoable() {
+        List<PlacedItem> items = TestLayouts.createLayout(1, 3);
+        TestLayouts.calculateSupportStructureOfAllPairs(items);
+        SequentialForceCalculation calculation = new SequentialForceCalculation(null, null,
+                new ReferenceReactionForceSolver());
+        calculation.placeItem(items.get(0));
+
+        assertThrows(IllegalStateException.class, calculation::removeLastItem);
+    }
+}
@@ -0,0 +1,187 @@
+package com.wim.assessment.staticStability.sme.ForceLogic.ForceCalculation;
+
+import com.wim.palletizing.geometry.dim2.Point2D;
+import com.wim.palletizing.geometry.dim3.Box;
+import com.wim.palletizing.geometry.dim3.Point3D;
+import com.wim.palletizing.helper.Pair;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the triangle searches of the {@link WorkspaceReactionForceSolver} with solving the reduced system for the
+ * triples of the reference
+ */
+class SupportTriangleLocatorTest {
+
+    private static final PlacedItem PLACED = item(0);
+    private static final PlacedItem PLACED_LATER = item(5);
+
+    private static final ReactionForceSolver ENUMERATION =
+            new WorkspaceReactionForceSolver(WorkspaceReactionForceSolver.TriangleSearch.REDUCED_SYSTEM);
+    private static final ReactionForceSolver LOCATOR =
+            new WorkspaceReactionForceSolver(WorkspaceReactionForceSolver.TriangleSearch.REFERENCE_TRIPLES);
+    private static final ReactionForceSolver FAN =
+            new WorkspaceReactionForceSolver(WorkspaceReactionForceSolver.TriangleSearch.HULL_FAN);
+
+    private static PlacedItem item(int sequence) {
+        return new PlacedItem("item" + sequence, 1, 1, null, null, new Box(1, 1, 1), null, 0, 0, 0, sequence, 0,
+                null, null, new Point3D(0, 0, 0), 0.5, 0.5, 0, null);
+    }
+
+    private static Pair<Point2D, PlacedItem> point(double x, double z, PlacedItem item) {
+        return new Pair<>(new Point2D(x, z), item);
+    }
+
+    @Test
+    void supportsWithReactionPointsNotPlacedYet() {
+        List<Pair<Point2D, PlacedItem>> reactionPoints = Arrays.asList(point(9, 9, PLACED), point(11, 9, PLACED),
+                point(10, 12, PLACED_LATER), point(8, 8, PLACED));
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 30.0);
+
+        ReactionForceSolutionCache.Solution located = LOCATOR.solve(1, reactionPoints, resultantForce);
+        ReactionForceSolutionCache.Solution reference =
+                new ReferenceReactionForceSolver().solve(1, reactionPoints, resultantForce);
+
+        assertArrayEquals(new int[]{0, 1, 2}, located.copy().getPointIndices());
+        assertArrayEquals(reference.getPointIndices(), located.copy().getPointIndices());
+        assertArrayEquals(reference.getForces(), located.copy().getForces(), 1e-3);
+    }
+
+    @Test
+    void combinesReactionPointsOfDifferentQuadrantsOnly() {
+        // the first three points contain the resultant force point, but two of them lie in the same quadrant
+        List<Pair<Point2D, PlacedItem>> reactionPoints = Arrays.asList(point(9, 9, PLACED), point(11, 12, PLACED),
+                point(12, 11, PLACED), point(11, 8, PLACED));
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 20.0);
+
+        ReactionForceSolutionCache.Solution located = LOCATOR.solve(0, reactionPoints, resultantForce).copy();
+        ReactionForceSolutionCache.Solution enumerated = ENUMERATION.solve(0, reactionPoints, resultantForce).copy();
+
+        assertArrayEquals(new int[]{0, 1, 3}, located.getPointIndices());
+        assertArrayEquals(enumerated.getPointIndices(), located.getPointIndices());
+        assertArrayEquals(enumerated.getForces(), located.getForces(), 0.2);
+    }
+
+    @Test
+    void findsTheSameTripleAsTheEnumeration() {
+        Random random = new Random(18);
+        for (int system = 0; system < 2000; system++) {
+            List<Pair<Point2D, PlacedItem>> reactionPoints = new ArrayList<>();
+            int count = 4 + random.nextInt(12);
+            for (int i = 0; i < count; i++)
+                reactionPoints.add(point(random.nextInt(41) / 2.0, random.nextInt(41) / 2.0, PLACED));
+            Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(5 + random.nextDouble() * 10,
+                    5 + random.nextDouble() * 10), 1.0 + random.nextInt(50));
+            reactionPoints.sort(Comparator.comparingDouble(point -> resultantForce.first.distance(point.first)));
+
+            ReactionForceSolutionCache.Solution located = LOCATOR.solve(0, reactionPoints, resultantForce).copy();
+            ReactionForceSolutionCache.Solution enumerated =
+                    ENUMERATION.solve(0, reactionPoints, resultantForce).copy();
+
+            // on the border of a triangle, rounding decides which one is taken
+            double border = 0.01 * resultantForce.second;
+            if (minForce(located) < border || minForce(enumerated) < border)
+                continue;
+
+            assertEquals(enumerated.isSolvable(), located.isSolvable(), "system " + system);
+            if (!located.isSolvable())
+                continue;
+            assertArrayEquals(enumerated.getPointIndices(), located.getPointIndices(), "system " + system);
+            assertArrayEquals(enumerated.getForces(), located.getForces(), border, "system " + system);
+            assertEquals(resultantForce.second, Arrays.stream(located.getForces()).sum(), border, "system " + system);
+        }
+    }
+
+    /**
+     * The fan ignores the reactionPoint not placed yet, so the resultant force point lies outside the hull
+     */
+    @Test
+    void locatesInTheHullOfThePlacedReactionPointsOnly() {
+        List<Pair<Point2D, PlacedItem>> reactionPoints = Arrays.asList(point(9, 9, PLACED), point(11, 9, PLACED),
+                point(10, 12, PLACED_LATER), point(8, 8, PLACED));
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 30.0);
+
+        assertFalse(FAN.solve(1, reactionPoints, resultantForce).isSolvable());
+        assertTrue(FAN.solve(5, reactionPoints, resultantForce).isSolvable());
+    }
+
+    /**
+     * Collinear reactionPoints make a hull without area; the resultant force is carried by the end points
+     */
+    @Test
+    void carriesTheResultantForceOnADegenerateHull() {
+        Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(10, 10), 30.0);
+        List<Pair<Point2D, PlacedItem>> segment = Arrays.asList(point(9, 10, PLACED), point(12, 10, PLACED),
+                point(11, 10, PLACED), point(0, 0, PLACED_LATER));
+
+        ReactionForceSolutionCache.Solution located =
+                SupportTriangleLocator.locateInHullFan(0, segment, resultantForce, null);
+        assertArrayEquals(new int[]{0, 1}, located.getPointIndices());
+        assertArrayEquals(new double[]{20, 10}, located.getForces(), 1e-3);
+    }
+
+    /**
+     * The fan may find another triangle than the enumeration, also one with two points in the same quadrant, but its
+     * forces balance the item whenever the enumeration finds a triple
+     */
+    @Test
+    void balancesTheResultantForceWheneverTheEnumerationDoes() {
+        Random random = new Random(18);
+        int differentTriangles = 0;
+        for (int system = 0; system < 2000; system++) {
+            List<Pair<Point2D, PlacedItem>> reactionPoints = new ArrayList<>();
+            int count = 4 + random.nextInt(12);
+            for (int i = 0; i < count; i++)
+                reactionPoints.add(point(random.nextInt(41) / 2.0, random.nextInt(41) / 2.0, PLACED));
+            Pair<Point2D, Double> resultantForce = new Pair<>(new Point2D(5 + random.nextDouble() * 10,
+                    5 + random.nextDouble() * 10), 1.0 + random.nextInt(50));
+            reactionPoints.sort(Comparator.comparingDouble(point -> resultantForce.first.distance(point.first)));
+
+            ReactionForceSolutionCache.Solution located = FAN.solve(0, reactionPoints, resultantForce).copy();
+            ReactionForceSolutionCache.Solution enumerated =
+                    ENUMERATION.solve(0, reactionPoints, resultantForce).copy();
+
+            double border = 0.01 * resultantForce.second;
+            if (minForce(enumerated) < border)
+                continue;
+            if (enumerated.isSolvable())
+                assertTrue(located.isSolvable(), "system " + system);
+            if (!located.isSolvable())
+                continue;
+            if (!Arrays.equals(enumerated.getPointIndices(), located.getPointIndices()))
+                differentTriangles++;
+
+            // the forces carry the resultant force and their moments around its point cancel out
+            double sum = 0, momentX = 0, momentZ = 0;
+            for (int k = 0; k < located.getLength(); k++) {
+                double force = located.getForces()[k];
+                Point2D point = reactionPoints.get(located.getPointIndices()[k]).first;
+                assertTrue(force >= 0, "system " + system);
+                sum += force;
+                momentX += force * (point.x - resultantForce.first.x);
+                momentZ += force * (point.y - resultantForce.first.y);
+            }
+            assertEquals(resultantForce.second, sum, 1e-3, "system " + system);
+            assertEquals(0.0, momentX, 0.01, "system " + system);
+            assertEquals(0.0, momentZ, 0.01, "system " + system);
+        }
+        assertTrue(differentTriangles > 0);
+    }
+
+    private static double minForce(ReactionForceSolutionCache.Solution solution) {
+        if (!solution.isSolvable())
+            return Double.MAX_VALUE;
+        return Arrays.stream(solution.getForces()).min().orElse(Double.MAX_VALUE);
+    }
+}
@@ -0,0 +1,89 @@
+package com.wim.assessment.staticStability.sme.ForceLogic;
+
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolutionCache;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReferenceReactionForceSolver;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the forceItems created in parallel waves with the ones created on the calling thread
+ */
+class ForceItemManagerTest {
+
+    @Test
+    void createsTheSameForceItemsInParallelWaves() {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (long seed = 0; seed < 50; seed++) {
+                int itemCount = 10 + (int) (seed % 40);
+                List<PlacedItem> items = TestLayouts.createLayout(seed, itemCount);
+                TestLayouts.calculateSupportStructureOfAllPairs(items);
+
+                ForceItemManager serial = new ForceItemManager(itemCount, new ReactionForceSolutionCache(),
+                        new ReferenceReactionForceSolver(), null);
+                ForceItemManager parallel = new ForceItemManager(itemCount, new ReactionForceSolutionCache(),
+                        new ReferenceReactionForceSolver(), forkJoinPool);
+
+                // the first item is a bottom item, so its forceItem needs the ones of most items above it
+                for (PlacedItem item : items) {
+                    String label = "seed " + seed + ", " + item.itemLabel;
+                    ForceItemDTO expected = serial.getOrCreateForceItemFromPlacedItem(item);
+                    ForceItemDTO forceItem = parallel.getOrCreateForceItemFromPlacedItem(item);
+
+                    assertEquals(expected.getSTABLE_PER_SEQUENCE(), forceItem.getSTABLE_PER_SEQUENCE(), label);
+                    assertSameForces(expected.getRESULTANT_FORCES(), forceItem.getRESULTANT_FORCES(), label);
+                    assertSameForces(expected.getREACTION_FORCES(), forceItem.getREACTION_FORCES(), label);
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    /**
+     * Without a pool given, no thread of the common pool (or any other) creates forceItems
+     */
+    @Test
+    void createsTheForceItemsOnTheCallingThreadByDefault() {
+        List<PlacedItem> items = TestLayouts.createLayout(20, 40);
+        TestLayouts.calculateSupportStructureOfAllPairs(items);
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+
+        ForceItemManager manager = new ForceItemManager(items.size(), new ReactionForceSolutionCache(),
+                new ReferenceReactionForceSolver());
+        manager.setForceTraceSink(forceItem -> threads.add(Thread.currentThread()));
+        for (PlacedItem item : items)
+            manager.getOrCreateForceItemFromPlacedItem(item);
+
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    private static void assertSameForces(ForceSegments expected, ForceSegments actual, String label) {
+        for (int sequence = expected.getStartSequence(); sequence < expected.getMaxSequence(); sequence++) {
+            String entry = label + ", sequence " + sequence;
+            assertEquals(expected.contains(sequence), actual.contains(sequence), entry);
+            if (!expected.contains(sequence))
+                continue;
+
+            int expectedStart = expected.getSegmentStart(sequence), start = actual.getSegmentStart(sequence);
+            int length = expected.getSegmentEnd(sequence) - expectedStart;
+            assertEquals(length, actual.getSegmentEnd(sequence) - start, entry);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected.getX(expectedStart + i), actual.getX(start + i), entry);
+                assertEquals(expected.getZ(expectedStart + i), actual.getZ(start + i), entry);
+                assertEquals(expected.getMagnitude(expectedStart + i), actual.getMagnitude(start + i), entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.wim.assessment.staticStability.sme.ForceLogic;
+
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReactionForceSolutionCache;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReferenceReactionForceSolver;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceItemDTO;
+import com.wim.palletizing.assessment.staticStability.sme.model.ForceSegments;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads the trace files of the {@link MappedForceTraceWriter} back and compares them with the traced forceItems
+ */
+class MappedForceTraceWriterTest {
+
+    private static final int ITEM_COUNT = 30;
+
+    /**
+     * Small blocks and regions, so the rows are written to many regions. The second writer continues the file.
+     */
+    @Test
+    void readsBackTheForcesOfEveryForceItem() throws IOException {
+        Path path = Files.createTempFile("force-trace", ".bin");
+        try {
+            List<List<ForceItemDTO>> forceItemsPerWriter = new ArrayList<>();
+            List<Long> rowCounts = new ArrayList<>();
+            for (long seed = 0; seed < 2; seed++) {
+                try (MappedForceTraceWriter writer = new MappedForceTraceWriter(path, 100, 1 << 12)) {
+                    forceItemsPerWriter.add(traceForceItems(seed, writer));
+                    rowCounts.add(writer.getRowCount());
+                }
+                assertEquals(getLength(path), Files.size(path));
+            }
+
+            List<Row> rows = read(path);
+            assertEquals(rowCounts.get(0) + rowCounts.get(1), rows.size());
+            int first = (int) (long) rowCounts.get(0);
+            assertTraces(forceItemsPerWriter.get(0), rows.subList(0, first));
+            assertTraces(forceItemsPerWriter.get(1), rows.subList(first, rows.size()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * The unused part of the last region is cut off, so a writer tracing a few rows leaves a file of a few blocks
+     */
+    @Test
+    void truncatesTheFileToTheTracedBlocks() throws IOException {
+        Path path = Files.createTempFile("force-trace", ".bin");
+        try {
+            try (MappedForceTraceWriter writer = new MappedForceTraceWriter(path)) {
+                traceForceItems(3, writer);
+            }
+            assertEquals(getLength(path), Files.size(path));
+            assertTrue(Files.size(path) < MappedForceTraceWriter.MIN_REGION_SIZE, Files.size(path) + " bytes");
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static List<ForceItemDTO> traceForceItems(long seed, MappedForceTraceWriter writer) {
+        List<PlacedItem> items = TestLayouts.createLayout(seed, ITEM_COUNT);
+        TestLayouts.calculateSupportStructureOfAllPairs(items);
+        ForceItemManager manager = new ForceItemManager(ITEM_COUNT, new ReactionForceSolutionCache(),
+                new ReferenceReactionForceSolver());
+        manager.setForceTraceSink(writer);
+
+        List<ForceItemDTO> forceItems = new ArrayList<>();
+        for (PlacedItem item : items)
+            forceItems.add(manager.getOrCreateForceItemFromPlacedItem(item));
+        return forceItems;
+    }
+
+    /**
+     * Every sequence of a forceItem has the forces of the last sequence with rows up to it
+     */
+    private static void assertTraces(List<ForceItemDTO> forceItems, List<Row> rows) {
+        for (ForceItemDTO forceItem : forceItems) {
+            int item = forceItem.getPLACED_ITEM().sequence;
+            Row gravitation = null;
+            Map<Integer, List<Row>> rowsPerSequence = new TreeMap<>();
+            for (Row row : rows) {
+                if (row.item != item)
+                    continue;
+                if (row.kind == MappedForceTraceWriter.GRAVITATION) {
+                    assertNull(gravitation, "item " + item);
+                    gravitation = row;
+                } else
+                    rowsPerSequence.computeIfAbsent(row.sequence, sequence -> new ArrayList<>()).add(row);
+            }
+
+            assertNotNull(gravitation, "item " + item);
+            assertEquals(forceItem.getGRAVITATION_FORCE().first.x, gravitation.x);
+            assertEquals(forceItem.getGRAVITATION_FORCE().first.y, gravitation.z);
+            assertEquals((double) forceItem.getGRAVITATION_FORCE().second, gravitation.magnitude);
+
+            ForceSegments resultantForces = forceItem.getRESULTANT_FORCES();
+            ForceSegments reactionForces = forceItem.getREACTION_FORCES();
+            List<Row> written = null;
+            for (int sequence = resultantForces.getStartSequence(); sequence < resultantForces.getMaxSequence();
+                 sequence++) {
+                String label = "item " + item + ", sequence " + sequence;
+                if (rowsPerSequence.containsKey(sequence))
+                    written = rowsPerSequence.get(sequence);
+                assertNotNull(written, label);
+
+                int reactionRows = written.size() - 1;
+                assertForces(MappedForceTraceWriter.RESULTANT, resultantForces, sequence, written.subList(0, 1),
+                        label);
+                if (reactionForces.contains(sequence))
+                    assertForces(MappedForceTraceWriter.REACTION, reactionForces, sequence,
+                            written.subList(1, 1 + reactionRows), label);
+                else {
+                    assertEquals(1, reactionRows, label);
+                    assertEquals(MappedForceTraceWriter.UNSTABLE, written.get(1).kind, label);
+                }
+            }
+        }
+    }
+
+    private static void assertForces(byte kind, ForceSegments forces, int sequence, List<Row> rows, String label) {
+        int start = forces.getSegmentStart(sequence);
+        assertEquals(forces.getSegmentEnd(sequence) - start, rows.size(), label);
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            assertEquals(kind, row.kind, label);
+            assertEquals(forces.getX(start + i), row.x, label);
+            assertEquals(forces.getZ(start + i), row.z, label);
+            assertEquals(forces.getMagnitude(start + i), row.magnitude, label);
+            assertEquals(kind == MappedForceTraceWriter.RESULTANT ? -1 : forces.getReference(start + i),
+                    row.reference, label);
+        }
+    }
+
+    private static long getLength(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(MappedForceTraceWriter.MAGIC, header.getInt(0));
+        assertEquals(MappedForceTraceWriter.VERSION, header.getInt(4));
+        return header.getLong(8);
+    }
+
+    /**
+     * @return the rows of the blocks up to the length in the header, in the order they have been written
+     */
+    private static List<Row> read(Path path) throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        long length = file.getLong(8);
+        List<Row> rows = new ArrayList<>();
+
+        file.position(MappedForceTraceWriter.HEADER_SIZE);
+        while (file.position() < length) {
+            int blockStart = file.position();
+            int count = file.getInt();
+            assertEquals(0, file.getInt());
+            Row[] block = new Row[count];
+            for (int i = 0; i < count; i++)
+                block[i] = new Row();
+            for (Row row : block)
+                row.item = file.getInt();
+            for (Row row : block)
+                row.sequence = file.getInt();
+            for (Row row : block)
+                row.x = file.getDouble();
+            for (Row row : block)
+                row.z = file.getDouble();
+            for (Row row : block)
+                row.magnitude = file.getDouble();
+            for (Row row : block)
+                row.reference = file.getInt();
+            for (Row row : block)
+                row.kind = file.get();
+            file.position(blockStart + 8 + (file.position() - blockStart - 8 + 7) / 8 * 8);
+
+            for (Row row : block)
+                rows.add(row);
+        }
+        assertEquals(length, file.position());
+        return rows;
+    }
+
+    private static class Row {
+        private byte kind;
+        private int item, sequence, reference;
+        private double x, z, magnitude;
+    }
+}
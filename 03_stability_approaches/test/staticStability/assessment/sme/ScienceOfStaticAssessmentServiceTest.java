@@ -0,0 +1,71 @@
+package com.wim.assessment.staticStability.sme;
+
+import com.wim.palletizing.assessment.staticStability.sme.AssessmentScoring.LowestSequenceScoring;
+import com.wim.palletizing.assessment.staticStability.sme.ForceLogic.ForceCalculation.ReferenceReactionForceSolver;
+import com.wim.palletizing.model.TestLayouts;
+import com.wim.palletizing.model.item.PlacedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the SME scores of both evaluation modes with the baseline, which solves the reactionForces of every item
+ * in every sequence with the reference solver. Every assessment uses a new service, so no solution is taken from the
+ * cache of another one, and new items.
+ */
+class ScienceOfStaticAssessmentServiceTest {
+
+    @Test
+    void scoresLikeTheBaselineOfEverySequence() {
+        int compared = 0, unstable = 0;
+        for (long seed = 0; seed < 200; seed++) {
+            int itemCount = 1 + (int) (seed % 30);
+            double baseline = createBaseline().assesItemList(createLayout(seed, itemCount));
+            // item by item, the forces of items the sequence-major evaluation never reaches can fail
+            if (baseline < 0)
+                continue;
+
+            String layout = "seed " + seed;
+            assertEquals(baseline, createService(ScienceOfStaticAssessmentService.EvaluationMode.ITEM_MAJOR)
+                    .assesItemList(createLayout(seed, itemCount)), layout);
+            assertEquals(baseline, createService(ScienceOfStaticAssessmentService.EvaluationMode.SEQUENCE_MAJOR)
+                    .assesItemList(createLayout(seed, itemCount)), layout);
+            compared++;
+            if (baseline < 1)
+                unstable++;
+        }
+        assertTrue(compared > 100, "compared layouts " + compared);
+        assertTrue(unstable > 20, "unstable layouts " + unstable);
+    }
+
+    /**
+     * A scorer that does not optimize keeps the maxSequence of every item at the number of items
+     */
+    private static ScienceOfStaticAssessmentService createBaseline() {
+        ScienceOfStaticAssessmentService service = new ScienceOfStaticAssessmentService();
+        service.setReactionForceSolver(new ReferenceReactionForceSolver());
+        service.assessmentScorer = new LowestSequenceScoring() {
+            @Override
+            public boolean shouldOptimize() {
+                return false;
+            }
+        };
+        return service;
+    }
+
+    private static ScienceOfStaticAssessmentService createService(
+            ScienceOfStaticAssessmentService.EvaluationMode evaluationMode) {
+        ScienceOfStaticAssessmentService service = new ScienceOfStaticAssessmentService();
+        service.setEvaluationMode(evaluationMode);
+        return service;
+    }
+
+    private static List<PlacedItem> createLayout(long seed, int itemCount) {
+        List<PlacedItem> items = TestLayouts.createLayout(seed, itemCount);
+        TestLayouts.calculateSupportStructureOfAllPairs(items);
+        return items;
+    }
+}
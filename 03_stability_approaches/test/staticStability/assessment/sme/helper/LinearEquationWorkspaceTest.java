@@ -0,0 +1,171 @@
+package com.wim.assessment.staticStability.sme.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares the {@link LinearEquationWorkspace} with the {@link LinearEquationSystem} it solves in place
+ */
+class LinearEquationWorkspaceTest {
+
+    /**
+     * The system rounds every intermediate value to four decimals, the workspace only its solution
+     */
+    private static final double DELTA = 0.01;
+
+    /**
+     * Systems of up to six equations with small integer coefficients, including zero rows, proportional rows and
+     * repeated columns, so many of them are rank-deficient. The right-hand side is either the product with a positive
+     * solution or random.
+     */
+    @Test
+    void solvesLikeTheLinearEquationSystem() {
+        Random random = new Random(17);
+        int infiniteSolutions = 0;
+
+        for (int system = 0; system < 5000; system++) {
+            int rows = 1 + random.nextInt(6), columns = 1 + random.nextInt(rows);
+            double[][] lhs = createLhs(random, rows, columns);
+            double[] rhs = random.nextBoolean() ? multiplyWithPositiveSolution(random, lhs) : createRhs(random, rows);
+            String label = "system " + system;
+
+            LinearEquationWorkspace workspace = LinearEquationWorkspace.get();
+            workspace.reset(rows, columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++)
+                    workspace.setLhs(row, column, lhs[row][column]);
+                workspace.setRhs(row, rhs[row]);
+            }
+
+            LinearEquationSystem reference = new LinearEquationSystem(copy(lhs), rhs.clone());
+            LinearEquationSystem.Solubility solubility = reference.solveLesAsPossible();
+            assertEquals(solubility, workspace.solve(), label);
+
+            if (solubility == LinearEquationSystem.Solubility.UNIQUE_SOLUTION) {
+                assertEquals(columns, workspace.getSolutionLength(), label);
+                for (int column = 0; column < columns; column++)
+                    assertEquals(reference.getSolution()[column], workspace.getSolution(column), DELTA, label);
+            } else if (solubility == LinearEquationSystem.Solubility.INFINITE_SOLUTIONS) {
+                infiniteSolutions++;
+                assertSubsetsSolveLikeTheReducedSystem(workspace, reference, columns, label);
+            }
+        }
+
+        assertEquals(true, infiniteSolutions > 100, infiniteSolutions + " rank-deficient systems");
+    }
+
+    /**
+     * Solves every subset of the columns like the triples of an indeterminate reaction force system: the reference
+     * creates a system of the selected columns of its reduced system
+     */
+    private static void assertSubsetsSolveLikeTheReducedSystem(LinearEquationWorkspace workspace,
+                                                                LinearEquationSystem reference, int columns,
+                                                                String label) {
+        int rank = reference.getRhsReduced().length;
+        for (int subset = 1; subset < 1 << columns; subset++) {
+            List<Integer> indices = new ArrayList<>();
+            int[] selectedColumns = workspace.getColumnSelection();
+            for (int column = 0; column < columns; column++)
+                if ((subset & 1 << column) != 0) {
+                    selectedColumns[indices.size()] = column;
+                    indices.add(column);
+                }
+            String subsetLabel = label + ", columns " + indices;
+
+            LinearEquationSystem.Solubility solubility = workspace.solveColumns(selectedColumns, indices.size());
+            // the reference can not create a system with more variables than equations
+            if (indices.size() > rank) {
+                assertEquals(LinearEquationSystem.Solubility.INFINITE_SOLUTIONS, solubility, subsetLabel);
+                continue;
+            }
+
+            LinearEquationSystem reducedSystem = new LinearEquationSystem(reference.getSpecificColumnsOfLHS(indices),
+                    reference.getRhsReduced().clone());
+            assertEquals(reducedSystem.solveLesAsPossible(), solubility, subsetLabel);
+            if (solubility == LinearEquationSystem.Solubility.UNIQUE_SOLUTION)
+                for (int k = 0; k < indices.size(); k++)
+                    assertEquals(reducedSystem.getSolution()[k], workspace.getSolution(k), DELTA, subsetLabel);
+        }
+    }
+
+    /**
+     * If no reaction point is placed, all coefficients are zero and no column subset can be solved
+     */
+    @Test
+    void solvesNoColumnsOfASystemWithoutEquations() {
+        LinearEquationWorkspace workspace = LinearEquationWorkspace.get();
+        workspace.reset(3, 3);
+        workspace.setRhs(0, 0);
+
+        assertEquals(LinearEquationSystem.Solubility.INFINITE_SOLUTIONS, workspace.solve());
+        int[] selectedColumns = workspace.getColumnSelection();
+        selectedColumns[0] = 1;
+        assertEquals(LinearEquationSystem.Solubility.INFINITE_SOLUTIONS, workspace.solveColumns(selectedColumns, 1));
+    }
+
+    @Test
+    void requiresASolvedSystemForColumnSubsets() {
+        LinearEquationWorkspace workspace = LinearEquationWorkspace.get();
+        workspace.reset(2, 2);
+        assertThrows(IllegalStateException.class, () -> workspace.solveColumns(workspace.getColumnSelection(), 1));
+    }
+
+    private static double[][] createLhs(Random random, int rows, int columns) {
+        double[][] lhs = new double[rows][columns];
+        for (int row = 0; row < rows; row++)
+            for (int column = 0; column < columns; column++)
+                lhs[row][column] = random.nextInt(4) == 0 ? 0 : random.nextInt(11) - 5;
+
+        // make the rows or columns linearly dependent
+        switch (random.nextInt(4)) {
+            case 0:
+                if (rows > 1)
+                    for (int column = 0; column < columns; column++)
+                        lhs[rows - 1][column] = 2 * lhs[0][column];
+                break;
+            case 1:
+                if (columns > 1)
+                    for (int row = 0; row < rows; row++)
+                        lhs[row][columns - 1] = lhs[row][0];
+                break;
+            case 2:
+                lhs[random.nextInt(rows)] = new double[columns];
+                break;
+            default:
+                break;
+        }
+        return lhs;
+    }
+
+    private static double[] multiplyWithPositiveSolution(Random random, double[][] lhs) {
+        double[] solution = new double[lhs[0].length];
+        for (int column = 0; column < solution.length; column++)
+            solution[column] = 1 + random.nextInt(5);
+
+        double[] rhs = new double[lhs.length];
+        for (int row = 0; row < lhs.length; row++)
+            for (int column = 0; column < solution.length; column++)
+                rhs[row] += lhs[row][column] * solution[column];
+        return rhs;
+    }
+
+    private static double[] createRhs(Random random, int rows) {
+        double[] rhs = new double[rows];
+        for (int row = 0; row < rows; row++)
+            rhs[row] = random.nextInt(21) - 10;
+        return rhs;
+    }
+
+    private static double[][] copy(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int row = 0; row < matrix.length; row++)
+            copy[row] = matrix[row].clone();
+        return copy;
+    }
+}
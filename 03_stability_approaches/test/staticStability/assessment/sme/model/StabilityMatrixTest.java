@@ -0,0 +1,81 @@
+package com.wim.assessment.staticStability.sme.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StabilityMatrixTest {
+
+    private static final int[] WORD_BOUNDARIES = {0, 1, 62, 63, 64, 65, 126, 127, 128, 129};
+
+    /**
+     * Every row is placed from its own sequence on and unstable in one sequence at or next to a word boundary
+     */
+    @Test
+    void storesTheEntriesAtTheWordBoundaries() {
+        int sequenceCount = 130;
+        StabilityMatrix stabilityMatrix = new StabilityMatrix(WORD_BOUNDARIES.length, sequenceCount);
+        Boolean[][] expected = new Boolean[WORD_BOUNDARIES.length][sequenceCount];
+
+        for (int item = 0; item < WORD_BOUNDARIES.length; item++) {
+            int unstableSequence = WORD_BOUNDARIES[item], placedFrom = Math.max(0, unstableSequence - 2);
+            BitSet placed = new BitSet(), stable = new BitSet();
+            placed.set(placedFrom, sequenceCount);
+            stable.set(placedFrom, sequenceCount);
+            stable.clear(unstableSequence);
+            stabilityMatrix.setRow(item, sequenceCount, placed, stable);
+
+            for (int sequence = placedFrom; sequence < sequenceCount; sequence++)
+                expected[item][sequence] = sequence != unstableSequence;
+        }
+
+        for (int item = 0; item < WORD_BOUNDARIES.length; item++) {
+            assertArrayEquals(expected[item], stabilityMatrix.getRow(item), "item " + item);
+            assertEquals(WORD_BOUNDARIES[item], stabilityMatrix.getFirstUnstableSequence(item));
+        }
+        assertArrayEquals(expected, stabilityMatrix.toBooleanMatrix());
+        assertEquals(0, stabilityMatrix.getFirstUnstableSequence());
+    }
+
+    /**
+     * The bits after the length of a row are ignored, the entries behind it are not assessed
+     */
+    @Test
+    void ignoresTheSequencesAfterTheRowLength() {
+        StabilityMatrix stabilityMatrix = new StabilityMatrix(3, 192);
+        BitSet placed = new BitSet();
+        placed.set(0, 192);
+
+        for (int item = 0; item < 3; item++) {
+            int length = 63 + item;
+            stabilityMatrix.setRow(item, length, placed, new BitSet());
+            assertEquals(length, stabilityMatrix.getRowLength(item));
+            assertEquals(length, stabilityMatrix.getRow(item).length);
+            assertEquals(false, stabilityMatrix.get(item, length - 1));
+            assertNull(stabilityMatrix.get(item, length));
+            assertEquals(0, stabilityMatrix.getFirstUnstableSequence(item));
+        }
+
+        // the row words of the second item start after the three words of the first one
+        BitSet stable = new BitSet();
+        stable.set(0, 191);
+        stabilityMatrix.setRow(0, 192, placed, stable);
+        stabilityMatrix.setRow(1, 192, placed, placed);
+        stabilityMatrix.setRow(2, 192, new BitSet(), new BitSet());
+        assertEquals(191, stabilityMatrix.getFirstUnstableSequence(0));
+        assertEquals(-1, stabilityMatrix.getFirstUnstableSequence(1));
+        assertEquals(-1, stabilityMatrix.getFirstUnstableSequence(2));
+        assertEquals(191, stabilityMatrix.getFirstUnstableSequence());
+    }
+
+    @Test
+    void rejectsRowsLongerThanTheSequences() {
+        StabilityMatrix stabilityMatrix = new StabilityMatrix(1, 64);
+        assertThrows(IllegalArgumentException.class, () -> stabilityMatrix.setRow(0, 65, new BitSet(), new BitSet()));
+    }
+}